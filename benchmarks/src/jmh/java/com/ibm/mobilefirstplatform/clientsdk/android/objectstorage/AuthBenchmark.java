@@ -0,0 +1,64 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead every operation pays for authentication while the token is still valid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AuthBenchmark {
+
+    private ObjectStorageStandIn standIn;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        standIn = BenchmarkSupport.connect();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        standIn.stop();
+    }
+
+    @Benchmark
+    public boolean hasToReauthenticate(){
+        return ObjectStorage.hasToReauthenticate();
+    }
+
+    @Benchmark
+    public String refreshAuthToken(){
+        BenchmarkSupport.BlockingListener<String> listener = new BenchmarkSupport.BlockingListener<>();
+        ObjectStorage.refreshAuthToken(listener);
+        return listener.await();
+    }
+
+    @Benchmark
+    public long parseExpirationDate(){
+        return ObjectStorage.parseExpirationDate("2016-09-01T18:20:30.000000Z");
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Response;
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared setup for the benchmarks that go through the network path of the SDK.
+ *
+ * On the JVM, operations made through the core SDK's Request, such as {@link ObjectStorageContainer#getObjectList(ObjectStorageResponseListener)}
+ * or {@link ObjectStorageObject#load(boolean, ObjectStorageResponseListener)}, run on the HttpURLConnection based shim in src/shim
+ * rather than on the core SDK that ships with apps. Their results include the shim's overhead and are only comparable with
+ * each other. Operations made through {@link ObjectStorageTransport}, such as stream, file and pooled transfers, run the shipped code.
+ */
+final class BenchmarkSupport {
+    static final String CONTAINER = "benchmark";
+
+    private BenchmarkSupport(){
+    }
+
+    /**
+     * Start a local stand-in, point the SDK at it, authenticate and create the {@link #CONTAINER benchmark container}.
+     */
+    static ObjectStorageStandIn connect() throws IOException {
+        ObjectStorageStandIn standIn = new ObjectStorageStandIn(0);
+
+        ObjectStorage.initialize(standIn.getAuthURL(), standIn.getAPIURL());
+
+        BlockingListener<String> listener = new BlockingListener<>();
+        ObjectStorage.connect("benchmark", "user", "password", listener);
+        listener.await();
+
+        BlockingListener<ObjectStorageContainer> container = new BlockingListener<>();
+        ObjectStorage.createContainer(CONTAINER, container);
+        container.await();
+
+        return standIn;
+    }
+
+    /**
+     * A response listener that lets a benchmark thread wait for the asynchronous result.
+     */
+    static class BlockingListener<T> implements ObjectStorageResponseListener<T> {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile T value;
+        private volatile Throwable failure;
+
+        @Override
+        public void onSuccess(T returnValue) {
+            value = returnValue;
+            latch.countDown();
+        }
+
+        @Override
+        public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+            failure = t != null ? t : new IllegalStateException("Request failed with status " + (response != null ? response.getStatus() : 0));
+            latch.countDown();
+        }
+
+        T await(){
+            try {
+                if(!latch.await(60, TimeUnit.SECONDS)){
+                    throw new IllegalStateException("Timed out waiting for response.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            if(failure != null){
+                throw new IllegalStateException(failure);
+            }
+            return value;
+        }
+    }
+}
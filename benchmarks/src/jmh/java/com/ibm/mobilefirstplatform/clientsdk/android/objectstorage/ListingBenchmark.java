@@ -0,0 +1,89 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing of container and object listings, both on their own and through
+ * {@link ObjectStorageContainer#getObjectList(ObjectStorageResponseListener)} against the local stand-in, which
+ * returns at most 10000 names, like Object Storage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ListingBenchmark {
+
+    private static final int LISTING_PAGE_SIZE = 10000;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int names;
+
+    private String listing;
+    private ObjectStorageContainer container;
+    private ObjectStorageStandIn standIn;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StringBuilder body = new StringBuilder(names * 24);
+        for(int i = 0; i < names; i++){
+            body.append("photos/2016/img_").append(i).append(".jpg\n");
+        }
+        listing = body.toString();
+
+        standIn = BenchmarkSupport.connect();
+        container = new ObjectStorageContainer(BenchmarkSupport.CONTAINER);
+
+        //Object Storage returns at most one page of names per listing request, so only that many are stored.
+        for(int i = 0; i < Math.min(names, LISTING_PAGE_SIZE); i++){
+            BenchmarkSupport.BlockingListener<ObjectStorageObject> listener = new BenchmarkSupport.BlockingListener<>();
+            container.storeObject("photos/2016/img_" + i + ".jpg", new byte[0], listener);
+            listener.await();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        standIn.stop();
+    }
+
+    @Benchmark
+    public List<ObjectStorageObject> parseObjectList(){
+        return ObjectStorageContainer.parseObjectList(listing, container);
+    }
+
+    @Benchmark
+    public List<ObjectStorageContainer> parseContainerList(){
+        return ObjectStorage.parseContainerList(listing);
+    }
+
+    @Benchmark
+    public List<ObjectStorageObject> getObjectList(){
+        BenchmarkSupport.BlockingListener<List<ObjectStorageObject>> listener = new BenchmarkSupport.BlockingListener<>();
+        container.getObjectList(listener);
+        return listener.await();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures store and load throughput for different object sizes against the local stand-in.
+ * Divide the object size by the reported time to get the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransferBenchmark {
+
+    @Param({"1024", "65536", "1048576", "16777216"})
+    public int objectSize;
+
+    private byte[] data;
+    private File file;
+    private ObjectStorageContainer container;
+    private ObjectStorageObject storedObject;
+    private ObjectStorageStandIn standIn;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        data = new byte[objectSize];
+        new Random(42).nextBytes(data);
+
+        file = File.createTempFile("benchmark", ".bin");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+
+        standIn = BenchmarkSupport.connect();
+        container = new ObjectStorageContainer(BenchmarkSupport.CONTAINER);
+
+        BenchmarkSupport.BlockingListener<ObjectStorageObject> listener = new BenchmarkSupport.BlockingListener<>();
+        container.storeObject("loaded", data, listener);
+        storedObject = listener.await();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        standIn.stop();
+        file.delete();
+    }
+
+    @Benchmark
+    public ObjectStorageObject storeObject(){
+        BenchmarkSupport.BlockingListener<ObjectStorageObject> listener = new BenchmarkSupport.BlockingListener<>();
+        container.storeObject("stored", data, listener);
+        return listener.await();
+    }
+
+    @Benchmark
+    public byte[] load(){
+        BenchmarkSupport.BlockingListener<byte[]> listener = new BenchmarkSupport.BlockingListener<>();
+        storedObject.load(false, listener);
+        return listener.await();
+    }
+
+    @Benchmark
+    public ObjectStorageObject getObject(){
+        BenchmarkSupport.BlockingListener<ObjectStorageObject> listener = new BenchmarkSupport.BlockingListener<>();
+        container.getObject("loaded", listener);
+        return listener.await();
+    }
+
+    @Benchmark
+    public ObjectStorageObject storeObjectStream(){
+        BenchmarkSupport.BlockingListener<ObjectStorageObject> listener = new BenchmarkSupport.BlockingListener<>();
+        container.storeObject("stored", new ByteArrayInputStream(data), data.length, listener);
+        return listener.await();
+    }
+
+    @Benchmark
+    public ObjectStorageObject storeObjectFile(){
+        BenchmarkSupport.BlockingListener<ObjectStorageObject> listener = new BenchmarkSupport.BlockingListener<>();
+        container.storeObject("stored", file, listener);
+        return listener.await();
+    }
+
+    @Benchmark
+    public Long loadStream(){
+        BenchmarkSupport.BlockingListener<Long> listener = new BenchmarkSupport.BlockingListener<>();
+        storedObject.load(new CountingOutputStream(), listener);
+        return listener.await();
+    }
+
+    @Benchmark
+    public int loadPooled(){
+        BenchmarkSupport.BlockingListener<ObjectStoragePooledBuffer> listener = new BenchmarkSupport.BlockingListener<>();
+        storedObject.loadPooled(null, listener);
+        ObjectStoragePooledBuffer data = listener.await();
+        int length = data.getLength();
+        data.release();
+        return length;
+    }
+
+    /**
+     * Discards the data, so only the transfer itself is measured.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
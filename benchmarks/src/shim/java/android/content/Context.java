@@ -0,0 +1,17 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package android.content;
+
+/**
+ * JVM stand-in for Android's Context, which the Object Storage SDK only references in documentation.
+ */
+public abstract class Context {
+}
@@ -0,0 +1,20 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package android.os;
+
+/**
+ * JVM stand-in for Android's Build, with the API levels the Object Storage SDK refers to.
+ */
+public class Build {
+    public static class VERSION_CODES {
+        public static final int N = 24;
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.core.api;
+
+import android.content.Context;
+
+/**
+ * JVM stand-in for the Bluemix core SDK's BMSClient. Nothing needs to be initialized outside of Android.
+ */
+public class BMSClient {
+    public static BMSClient getInstance(){
+        return new BMSClient();
+    }
+
+    public void initialize(Context context, String bluemixRegion){
+    }
+}
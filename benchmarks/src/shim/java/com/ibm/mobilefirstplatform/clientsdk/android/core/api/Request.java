@@ -0,0 +1,237 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.core.api;
+
+import android.content.Context;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * JVM stand-in for the Bluemix core SDK's Request, so the Object Storage SDK can be exercised outside of Android.
+ * Requests are sent with HttpURLConnection on a background thread, and the listener is called with the fully
+ * buffered response, like the core SDK does.
+ */
+public class Request {
+    public static final String GET = "GET";
+    public static final String POST = "POST";
+    public static final String PUT = "PUT";
+    public static final String DELETE = "DELETE";
+    public static final String HEAD = "HEAD";
+    public static final String CONTENT_TYPE = "Content-Type";
+
+    private static final int DEFAULT_TIMEOUT = 60000;
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "shim-request");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private String url;
+    private final String method;
+    private int timeout;
+    private final Map<String, List<String>> headers = new LinkedHashMap<>();
+    private final Map<String, String> queryParameters = new LinkedHashMap<>();
+
+    public Request(String url, String method){
+        this(url, method, DEFAULT_TIMEOUT);
+    }
+
+    public Request(String url, String method, int timeout){
+        this.url = url;
+        this.method = method;
+        this.timeout = timeout;
+    }
+
+    public String getUrl(){
+        return url;
+    }
+
+    public String getMethod(){
+        return method;
+    }
+
+    public void setTimeout(int timeout){
+        this.timeout = timeout;
+    }
+
+    public void addHeader(String name, String value){
+        List<String> values = headers.get(name);
+        if(values == null){
+            values = new ArrayList<>();
+            headers.put(name, values);
+        }
+        values.add(value);
+    }
+
+    public void removeHeaders(String name){
+        headers.remove(name);
+    }
+
+    public void setQueryParameter(String name, String value){
+        queryParameters.put(name, value);
+    }
+
+    public void setQueryParameters(Map<String, String> parameters){
+        queryParameters.putAll(parameters);
+    }
+
+    public void send(Context context, ResponseListener listener){
+        send(null, (byte[]) null, listener);
+    }
+
+    public void send(Context context, String body, ResponseListener listener){
+        send(null, body == null ? null : body.getBytes(), listener);
+    }
+
+    public void send(Context context, final byte[] body, final ResponseListener listener){
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ShimResponse response;
+                try {
+                    response = execute(body);
+                } catch (IOException e) {
+                    if(listener != null){
+                        listener.onFailure(null, e, null);
+                    }
+                    return;
+                }
+
+                if(listener == null){
+                    return;
+                }
+                if(response.getStatus() >= 200 && response.getStatus() < 300){
+                    listener.onSuccess(response);
+                }
+                else{
+                    listener.onFailure(response, null, null);
+                }
+            }
+        });
+    }
+
+    private ShimResponse execute(byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(buildURL()).openConnection();
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        connection.setRequestMethod(method);
+
+        for(Map.Entry<String, List<String>> header : headers.entrySet()){
+            for(String value : header.getValue()){
+                connection.addRequestProperty(header.getKey(), value);
+            }
+        }
+
+        if(body != null && !HEAD.equals(method) && !GET.equals(method)){
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            OutputStream out = connection.getOutputStream();
+            out.write(body);
+            out.close();
+        }
+
+        int status = connection.getResponseCode();
+
+        Map<String, List<String>> responseHeaders = new HashMap<>();
+        for(Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()){
+            if(header.getKey() != null){
+                responseHeaders.put(header.getKey(), header.getValue());
+            }
+        }
+
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        byte[] responseBytes = new byte[0];
+        if(in != null){
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[16384];
+            int read;
+            while((read = in.read(buffer)) != -1){
+                bytes.write(buffer, 0, read);
+            }
+            in.close();
+            responseBytes = bytes.toByteArray();
+        }
+
+        return new ShimResponse(status, responseHeaders, responseBytes);
+    }
+
+    private String buildURL() throws IOException {
+        String requestURL = url;
+
+        if(queryParameters.isEmpty()){
+            return requestURL;
+        }
+
+        StringBuilder query = new StringBuilder(requestURL).append(requestURL.contains("?") ? '&' : '?');
+        boolean first = true;
+        for(Map.Entry<String, String> parameter : queryParameters.entrySet()){
+            if(!first){
+                query.append('&');
+            }
+            first = false;
+            query.append(URLEncoder.encode(parameter.getKey(), "UTF-8"));
+            if(parameter.getValue() != null){
+                query.append('=').append(URLEncoder.encode(parameter.getValue(), "UTF-8"));
+            }
+        }
+        return query.toString();
+    }
+
+    private static class ShimResponse implements Response {
+        private final int status;
+        private final Map<String, List<String>> headers;
+        private final byte[] bytes;
+
+        ShimResponse(int status, Map<String, List<String>> headers, byte[] bytes){
+            this.status = status;
+            this.headers = headers;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Override
+        public String getResponseText() {
+            return new String(bytes);
+        }
+
+        @Override
+        public byte[] getResponseBytes() {
+            return bytes;
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.core.api;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JVM stand-in for the Bluemix core SDK's Response, limited to what the Object Storage SDK uses.
+ */
+public interface Response {
+    int getStatus();
+
+    String getResponseText();
+
+    byte[] getResponseBytes();
+
+    Map<String, List<String>> getHeaders();
+}
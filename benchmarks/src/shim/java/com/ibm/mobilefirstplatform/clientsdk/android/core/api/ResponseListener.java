@@ -0,0 +1,22 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.core.api;
+
+import org.json.JSONObject;
+
+/**
+ * JVM stand-in for the Bluemix core SDK's ResponseListener.
+ */
+public interface ResponseListener {
+    void onSuccess(Response response);
+
+    void onFailure(Response response, Throwable t, JSONObject extendedInfo);
+}
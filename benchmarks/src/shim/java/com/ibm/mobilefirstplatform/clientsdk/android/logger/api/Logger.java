@@ -0,0 +1,69 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.logger.api;
+
+/**
+ * JVM stand-in for the Bluemix core SDK's Logger. Errors and warnings are written to standard error when the
+ * objectstorage.shim.verbose system property is set; everything else is dropped, so logging does not skew measurements.
+ */
+public class Logger {
+    public static final String INTERNAL_PREFIX = "mfpsdk.";
+
+    private static final boolean VERBOSE = Boolean.getBoolean("objectstorage.shim.verbose");
+
+    private final String name;
+
+    private Logger(String name){
+        this.name = name;
+    }
+
+    public static Logger getLogger(String name){
+        return new Logger(name);
+    }
+
+    public void debug(String message){
+    }
+
+    public void debug(String message, Throwable t){
+    }
+
+    public void info(String message){
+    }
+
+    public void info(String message, Throwable t){
+    }
+
+    public void warn(String message){
+        log("WARN", message, null);
+    }
+
+    public void warn(String message, Throwable t){
+        log("WARN", message, t);
+    }
+
+    public void error(String message){
+        log("ERROR", message, null);
+    }
+
+    public void error(String message, Throwable t){
+        log("ERROR", message, t);
+    }
+
+    private void log(String level, String message, Throwable t){
+        if(!VERBOSE){
+            return;
+        }
+        System.err.println(level + " " + name + ": " + message);
+        if(t != null){
+            t.printStackTrace();
+        }
+    }
+}
@@ -21,12 +21,14 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.text.ParseException;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
 
 /**
  * IBM® Object Storage is a Bluemix service that can be used to store any data. This class is used to
@@ -35,6 +37,7 @@ import java.util.Map;
 public class ObjectStorage {
     public static final String METADATA_PREFIX = "X-Account-Meta-";
     public static final String AUTH_HEADER = "X-Auth-Token";
+    public static final String TEMP_URL_KEY_HEADER = METADATA_PREFIX + "Temp-URL-Key";
 
     public enum BluemixRegion {DALLAS, LONDON}
 
@@ -44,7 +47,7 @@ public class ObjectStorage {
     protected static final String LONDON_API_URL = "https://lon.objectstorage.open.softlayer.com/v1/AUTH_";
 
     private static String authToken = null;
-    private static String expiresAt = null;
+    private static long expirationTime = 0;
     private static String projectID = null;
     private static String userID = null;
     private static String password = null;
@@ -53,6 +56,17 @@ public class ObjectStorage {
 
     private static BluemixRegion region = null;
 
+    private static String authURL = AUTH_URL;
+    private static String apiURL = DALLAS_API_URL;
+
+    private static ObjectStorageTransport transport = null;
+
+    //The account's TempURL key, remembered from the last metadata update or retrieval.
+    private static volatile String tempURLKey = null;
+
+    //Tokens are renewed slightly before they expire, so they do not expire while a request is in flight.
+    protected static final long TOKEN_EXPIRATION_MARGIN = 60 * 1000;
+
     protected static final Logger logger = Logger.getLogger(Logger.INTERNAL_PREFIX + ObjectStorage.class.getName());
 
     /**
@@ -68,6 +82,94 @@ public class ObjectStorage {
         if(region == null){
             region = BluemixRegion.DALLAS; //Set Dallas region by default if none is specified.
         }
+
+        ObjectStorageRegion endpoints = ObjectStorageRegion.fromBluemixRegion(region);
+        setEndpoints(endpoints.getAuthURL(), endpoints.getAPIURL());
+    }
+
+    /**
+     * Initialize the Object Storage SDK with the given region, which may be one of the Bluemix regions such as
+     * {@link ObjectStorageRegion#DALLAS} or any other Object Storage deployment. All writes go to this region; to read
+     * from replicas in other regions as well, set an {@link ObjectStorageRegionRouter} as the transport.
+     *
+     * @param objectStorageRegion the region of the Object Storage service
+     */
+    public static void initialize(ObjectStorageRegion objectStorageRegion){
+        if(objectStorageRegion == null){
+            initialize((BluemixRegion) null);
+            return;
+        }
+
+        initialize(objectStorageRegion.getAuthURL(), objectStorageRegion.getAPIURL());
+    }
+
+    /**
+     * Initialize the Object Storage SDK with custom service endpoints, for example those of a private Object Storage
+     * deployment or of a local stand-in used for testing.
+     *
+     * @param authenticationURL the Keystone v3 token URL, such as https://identity.example.com/v3/auth/tokens
+     * @param objectStorageAPIURL the Swift API URL up to the project ID, such as https://objectstorage.example.com/v1/AUTH_
+     */
+    public static void initialize(String authenticationURL, String objectStorageAPIURL){
+        if(authenticationURL == null || objectStorageAPIURL == null){
+            logger.error("The authentication and Object Storage URLs cannot be null. Initializing with the Dallas region instead.");
+            initialize(BluemixRegion.DALLAS);
+            return;
+        }
+
+        region = null;
+        setEndpoints(authenticationURL, objectStorageAPIURL);
+    }
+
+    private static void setEndpoints(String authenticationURL, String objectStorageAPIURL){
+        if(!authenticationURL.equals(authURL) || !objectStorageAPIURL.equals(apiURL)){
+            //Tokens and URLs of the previous endpoints cannot be used with the new ones.
+            authToken = null;
+            objectStorageURL = null;
+        }
+
+        authURL = authenticationURL;
+        apiURL = objectStorageAPIURL;
+    }
+
+    /**
+     * Set the HTTP transport used for streaming transfers, such as
+     * {@link ObjectStorageContainer#storeObject(String, java.io.InputStream, long, ObjectStorageResponseListener)} and
+     * {@link ObjectStorageObject#load(java.io.OutputStream, ObjectStorageResponseListener)}.
+     *
+     * @param objectStorageTransport the transport to use, or null to use the default {@link ObjectStorageOkHttpTransport}
+     */
+    public static synchronized void setTransport(ObjectStorageTransport objectStorageTransport){
+        transport = objectStorageTransport;
+    }
+
+    /**
+     * Get the HTTP transport used for streaming transfers. The default {@link ObjectStorageOkHttpTransport} is created
+     * on first use, and may be configured through this method.
+     *
+     * @return the current transport
+     */
+    public static synchronized ObjectStorageTransport getTransport(){
+        if(transport == null){
+            transport = new ObjectStorageOkHttpTransport();
+        }
+
+        return transport;
+    }
+
+    /**
+     * Set the key used to sign temporary URLs with {@link ObjectStorageObject#getTempURL(String, long)}. The key must match
+     * the account's {@link #TEMP_URL_KEY_HEADER} metadata. It is also remembered automatically when that metadata is set with
+     * {@link #updateAccountMetadata(Map, ObjectStorageResponseListener)} or read with {@link #getAccountMetadata(ObjectStorageResponseListener)}.
+     *
+     * @param key the TempURL key, or null to forget it
+     */
+    public static void setTempURLKey(String key){
+        tempURLKey = key;
+    }
+
+    protected static String getTempURLKey(){
+        return tempURLKey;
     }
 
     /**
@@ -85,38 +187,58 @@ public class ObjectStorage {
             if(userResponseListener != null){
                 userResponseListener.onFailure(null, new Throwable("User ID and password cannot be null."), null);
             }
+            return;
         }
 
+        boolean sameCredentials = isEqual(projectID, projectIdentifier) && isEqual(userID, userIdentifier) && isEqual(password, accountPassword);
+
         projectID = projectIdentifier;
         userID = userIdentifier;
         password = accountPassword;
 
-        if(authToken != null && objectStorageURL != null && !hasToReauthenticate()){
+        if(sameCredentials && authToken != null && objectStorageURL != null && !hasToReauthenticate()){
             logger.debug("Authentication session still valid. No authentication request occurred.");
             if(userResponseListener != null){
                 userResponseListener.onSuccess(authToken);
             }
+            return;
+        }
+
+        //Operations that find the token expired at the same time wait for a single token request. The key holds a digest of
+        //the credentials rather than the password, and only callers with exactly the same credentials share the request.
+        String credentials = ObjectStorageUtils.sha256Hex(projectID + "\n" + userID + "\n" + password);
+        final ObjectStorageSingleFlight.Flight<String> flight = ObjectStorageSingleFlight.join(Request.POST + " " + authURL + " " + credentials, userResponseListener, null, null);
+        if(flight == null){
+            return;
         }
 
-        Request request = new Request(AUTH_URL, Request.POST);
+        ObjectStorageMetrics.tokenRefreshed();
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("authenticate");
+
+        Request request = new Request(authURL, Request.POST);
 
         request.addHeader("Content-Type", "application/json");
 
         JSONObject bodyJSON = getAuthenticationRequestBody(projectID, userID, password);
 
+        metrics.authenticated();
+        metrics.requestSent(bodyJSON.toString().length());
+
         request.send(null, bodyJSON.toString(), new ResponseListener() {
             @Override
             public void onSuccess(Response response) {
+                metrics.succeeded(response, true);
+
                 Map<String, List<String>> headers = response.getHeaders();
 
-                if(headers != null && headers.get("X-Subject-Token") != null) {
-                    authToken = headers.get("X-Subject-Token").get(0);
+                String subjectToken = ObjectStorageUtils.getHeader(headers, "X-Subject-Token");
+
+                if(subjectToken != null) {
+                    authToken = subjectToken;
                 }
                 else{
                     logger.error("Failed to authenticate with Object Storage.");
-                    if(userResponseListener != null){
-                        userResponseListener.onFailure(response, new Throwable("Failed to authenticate with Object Storage."), null);
-                    }
+                    flight.onFailure(response, new Throwable("Failed to authenticate with Object Storage."), null);
                     return;
                 }
 
@@ -132,41 +254,29 @@ public class ObjectStorage {
                     }
 
                     if(utcDate != null){
-                        expiresAt = utcDate;
+                        expirationTime = parseExpirationDate(utcDate);
                     }
                     else{
                         logger.error("Failed to authenticate with Object Storage.");
-                        if(userResponseListener != null){
-                            userResponseListener.onFailure(response, new Throwable("Failed to authenticate with Object Storage."), null);
-                        }
+                        flight.onFailure(response, new Throwable("Failed to authenticate with Object Storage."), null);
                         return;
                     }
                 } catch (JSONException e) {
                     logger.error("Failed to authenticate with Object Storage.");
-                    if(userResponseListener != null){
-                        userResponseListener.onFailure(response, e, null);
-                    }
+                    flight.onFailure(response, e, null);
+                    return;
                 }
 
-                switch(region){
-                    case DALLAS:
-                        objectStorageURL = DALLAS_API_URL + projectID;
-                        break;
-                    case LONDON:
-                        objectStorageURL = LONDON_API_URL + projectID;
-                        break;
-                }
+                objectStorageURL = apiURL + projectID;
 
-                if(userResponseListener != null){
-                    userResponseListener.onSuccess(authToken);
-                }
+                flight.onSuccess(authToken);
             }
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
-                if(userResponseListener != null){
-                    userResponseListener.onFailure(response, t, extendedInfo);
-                }
+                metrics.failed(response);
+
+                flight.onFailure(response, t, extendedInfo);
             }
         });
     }
@@ -216,9 +326,13 @@ public class ObjectStorage {
             return;
         }
 
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("createContainer");
+
         refreshAuthToken(new ObjectStorageResponseListener<String>() {
             @Override
             public void onSuccess(String authToken) {
+                metrics.authenticated();
+
                 Request containerRequest = new Request(objectStorageURL + "/" + containerName, Request.PUT);
 
                 containerRequest.addHeader(AUTH_HEADER, authToken);
@@ -227,9 +341,13 @@ public class ObjectStorage {
                 // will ignore it on the PUT.
                 String body = "nonempty";
 
+                metrics.requestSent(body.length());
+
                 containerRequest.send(null, body, new ResponseListener() {
                     @Override
                     public void onSuccess(Response response) {
+                        metrics.succeeded(response, true);
+
                         ObjectStorageContainer container = new ObjectStorageContainer(containerName);
 
                         if(userResponseListener != null){
@@ -239,6 +357,8 @@ public class ObjectStorage {
 
                     @Override
                     public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
                         if(userResponseListener != null){
                             userResponseListener.onFailure(response, t, extendedInfo);
                         }
@@ -248,6 +368,8 @@ public class ObjectStorage {
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
                 logger.error("Could not authenticate with Object Storage. Call ObjectStorage.connect() in order to do so.");
             }
         });
@@ -266,16 +388,24 @@ public class ObjectStorage {
             return;
         }
 
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("getContainer");
+
         refreshAuthToken(new ObjectStorageResponseListener<String>() {
             @Override
             public void onSuccess(String authToken) {
+                metrics.authenticated();
+
                 Request containerRequest = new Request(objectStorageURL + "/" + containerName, Request.GET);
 
                 containerRequest.addHeader(AUTH_HEADER, authToken);
 
+                metrics.requestSent(0);
+
                 containerRequest.send(null, new ResponseListener() {
                     @Override
                     public void onSuccess(Response response) {
+                        metrics.succeeded(response, true);
+
                         ObjectStorageContainer container = new ObjectStorageContainer(containerName);
 
                         if(userResponseListener != null){
@@ -285,6 +415,8 @@ public class ObjectStorage {
 
                     @Override
                     public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
                         if(userResponseListener != null){
                             userResponseListener.onFailure(response, t, extendedInfo);
                         }
@@ -294,6 +426,8 @@ public class ObjectStorage {
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
                 logger.error("Could not authenticate with Object Storage. Call ObjectStorage.connect() in order to do so.");
             }
         });
@@ -311,26 +445,25 @@ public class ObjectStorage {
             return;
         }
 
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("getContainerList");
+
         refreshAuthToken(new ObjectStorageResponseListener<String>() {
             @Override
             public void onSuccess(String authToken) {
+                metrics.authenticated();
+
                 Request containerRequest = new Request(objectStorageURL, Request.GET);
 
                 containerRequest.addHeader(AUTH_HEADER, authToken);
 
+                metrics.requestSent(0);
+
                 containerRequest.send(null, new ResponseListener() {
                     @Override
                     public void onSuccess(Response response) {
-                        List<ObjectStorageContainer> containerList = new ArrayList<>();
+                        metrics.succeeded(response, true);
 
-                        String responseBody = response.getResponseText();
-                        String[] containerNameList = responseBody.split("\n");
-
-                        for(String name : containerNameList){
-                            if(name != null && name.length() > 0){
-                                containerList.add(new ObjectStorageContainer(name));
-                            }
-                        }
+                        List<ObjectStorageContainer> containerList = parseContainerList(response.getResponseText());
 
                         if(userResponseListener != null){
                             userResponseListener.onSuccess(containerList);
@@ -339,6 +472,8 @@ public class ObjectStorage {
 
                     @Override
                     public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
                         if(userResponseListener != null){
                             userResponseListener.onFailure(response, t, extendedInfo);
                         }
@@ -348,11 +483,27 @@ public class ObjectStorage {
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
                 logger.error("Could not authenticate with Object Storage. Call ObjectStorage.connect() in order to do so.");
             }
         });
     }
 
+    protected static List<ObjectStorageContainer> parseContainerList(String responseBody){
+        List<ObjectStorageContainer> containerList = new ArrayList<>();
+
+        String[] containerNameList = responseBody.split("\n");
+
+        for(String name : containerNameList){
+            if(name != null && name.length() > 0){
+                containerList.add(new ObjectStorageContainer(name));
+            }
+        }
+
+        return containerList;
+    }
+
     /**
      * Delete a container from this Object Storage account.
      * @param containerName the name of the container to be deleted
@@ -364,16 +515,23 @@ public class ObjectStorage {
             return;
         }
 
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("deleteContainer");
+
         refreshAuthToken(new ObjectStorageResponseListener<String>() {
             @Override
             public void onSuccess(String authToken) {
+                metrics.authenticated();
+
                 Request containerRequest = new Request(objectStorageURL + "/" + containerName, Request.DELETE);
 
                 containerRequest.addHeader(AUTH_HEADER, authToken);
 
+                metrics.requestSent(0);
+
                 containerRequest.send(null, new ResponseListener() {
                     @Override
                     public void onSuccess(Response response) {
+                        metrics.succeeded(response, true);
 
                         if(userResponseListener != null){
                             logger.debug("Successfully deleted container: " + containerName);
@@ -383,6 +541,8 @@ public class ObjectStorage {
 
                     @Override
                     public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
                         logger.error("Failed to delete container: " + containerName);
                         if(userResponseListener != null){
                             userResponseListener.onFailure(response, t, extendedInfo);
@@ -393,6 +553,8 @@ public class ObjectStorage {
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
                 logger.error("Could not authenticate with Object Storage. Call ObjectStorage.connect() in order to do so.");
             }
         });
@@ -400,6 +562,28 @@ public class ObjectStorage {
 
     }
 
+    /**
+     * Get the account metadata as an ObjectStorageAccountMetadata, whose standard fields are parsed only when they are read.
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the account metadata.
+     */
+    public static void getTypedAccountMetadata(final ObjectStorageResponseListener<ObjectStorageAccountMetadata> userResponseListener){
+        getAccountMetadata(new ObjectStorageResponseListener<Map<String, List<String>>>() {
+            @Override
+            public void onSuccess(Map<String, List<String>> headers) {
+                if(userResponseListener != null){
+                    userResponseListener.onSuccess(new ObjectStorageAccountMetadata(headers));
+                }
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                if(userResponseListener != null){
+                    userResponseListener.onFailure(response, t, extendedInfo);
+                }
+            }
+        });
+    }
+
     /**
      * Get the account metadata.
      * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with a map of the metadata headers.
@@ -409,20 +593,33 @@ public class ObjectStorage {
             logger.error("You have not yet authenticated with Object Storage. Call ObjectStorage.connect() first.");
             return;
         }
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("getAccountMetadata");
+
         refreshAuthToken(new ObjectStorageResponseListener<String>() {
             @Override
             public void onSuccess(String authToken) {
+                metrics.authenticated();
+
                 Request containerRequest = new Request(objectStorageURL, Request.HEAD);
 
                 containerRequest.addHeader(AUTH_HEADER, authToken);
 
+                metrics.requestSent(0);
+
                 containerRequest.send(null, new ResponseListener() {
                     @Override
                     public void onSuccess(Response response) {
+                        metrics.succeeded(response, false);
+
                         Map<String, List<String>> metadataMap = response.getHeaders();
 
                         logger.debug("Successfully retrieved account metadata.");
 
+                        String key = ObjectStorageUtils.getHeader(metadataMap, TEMP_URL_KEY_HEADER);
+                        if(key != null){
+                            tempURLKey = key;
+                        }
+
                         if(userResponseListener != null){
                             userResponseListener.onSuccess(metadataMap);
                         }
@@ -430,6 +627,8 @@ public class ObjectStorage {
 
                     @Override
                     public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
                         logger.error("Failed to retrieve account metadata.");
                         if(userResponseListener != null){
                             userResponseListener.onFailure(response, t, extendedInfo);
@@ -440,6 +639,8 @@ public class ObjectStorage {
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
                 logger.error("Could not authenticate with Object Storage. Call ObjectStorage.connect() in order to do so.");
             }
         });
@@ -456,9 +657,13 @@ public class ObjectStorage {
             return;
         }
 
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("updateAccountMetadata");
+
         refreshAuthToken(new ObjectStorageResponseListener<String>() {
             @Override
             public void onSuccess(String authToken) {
+                metrics.authenticated();
+
                 Request containerRequest = new Request(objectStorageURL, Request.POST);
 
                 containerRequest.addHeader(AUTH_HEADER, authToken);
@@ -469,10 +674,20 @@ public class ObjectStorage {
 
                 String body = "";
 
+                metrics.requestSent(body.length());
+
                 containerRequest.send(null, body, new ResponseListener() {
                     @Override
                     public void onSuccess(Response response) {
+                        metrics.succeeded(response, true);
+
                         logger.debug("Account metadata successfully updated.");
+
+                        for(Map.Entry<String, String> metadata : metadataUpdates.entrySet()){
+                            if(TEMP_URL_KEY_HEADER.equalsIgnoreCase(metadata.getKey())){
+                                tempURLKey = metadata.getValue() == null || metadata.getValue().isEmpty() ? null : metadata.getValue();
+                            }
+                        }
                         if(userResponseListener != null){
                             userResponseListener.onSuccess(null);
                         }
@@ -480,6 +695,8 @@ public class ObjectStorage {
 
                     @Override
                     public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
                         logger.error("Failed to update account metadata.");
                         if(userResponseListener != null){
                             userResponseListener.onFailure(response, t, extendedInfo);
@@ -490,26 +707,73 @@ public class ObjectStorage {
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
                 logger.error("Could not authenticate with Object Storage. Call ObjectStorage.connect() in order to do so.");
             }
         });
     }
 
     protected static boolean hasToReauthenticate(){
-        if(expiresAt == null || authToken == null){
+        if(authToken == null){
             return true;
         }
 
-        try {
-            Date expirationDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").parse(expiresAt);
+        return expirationTime - TOKEN_EXPIRATION_MARGIN < System.currentTimeMillis();
+    }
 
-            return expirationDate.before(new Date());
-        } catch (ParseException e) {
-            logger.error("Failed to parse expiration date, will have to reauthenticate.", e);
-            return true;
+    /**
+     * Parses the expiration date of a token, such as 2016-09-01T18:20:30.000000Z. The date is in UTC, and the
+     * fractional seconds are ignored.
+     * @return the expiration time in milliseconds since the epoch, or 0 if it could not be parsed
+     */
+    protected static long parseExpirationDate(String utcDate){
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        Date expirationDate = dateFormat.parse(utcDate, new ParsePosition(0));
+
+        if(expirationDate == null){
+            logger.error("Failed to parse expiration date, will have to reauthenticate.");
+            return 0;
+        }
+
+        return expirationDate.getTime();
+    }
+
+    /**
+     * Forget the given token after Object Storage rejected it, so the next operation authenticates again. A token
+     * that has already been replaced is kept.
+     */
+    static void invalidateAuthToken(String rejectedToken){
+        if(rejectedToken != null && rejectedToken.equals(authToken)){
+            expirationTime = 0;
         }
     }
 
+    static String getAuthenticationURL(){
+        return authURL;
+    }
+
+    static String getProjectID(){
+        return projectID;
+    }
+
+    static String getAuthToken(){
+        return authToken;
+    }
+
+    /**
+     * The body of a token request with the credentials given to the last call to connect(), for authenticating with another region.
+     */
+    static JSONObject getAuthenticationRequestBody(){
+        return getAuthenticationRequestBody(projectID, userID, password);
+    }
+
+    private static boolean isEqual(String first, String second){
+        return first == null ? second == null : first.equals(second);
+    }
+
     protected static void refreshAuthToken(ObjectStorageResponseListener<String> userResponseListener){
         connect(projectID, userID, password, userResponseListener);
     }
@@ -0,0 +1,77 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The metadata of an Object Storage account, as returned by {@link ObjectStorage#getTypedAccountMetadata(ObjectStorageResponseListener)}.
+ */
+public class ObjectStorageAccountMetadata extends ObjectStorageMetadata {
+    private static final String CONTAINER_COUNT_HEADER = "X-Account-Container-Count";
+    private static final String OBJECT_COUNT_HEADER = "X-Account-Object-Count";
+    private static final String BYTES_USED_HEADER = "X-Account-Bytes-Used";
+
+    private long containerCount = UNPARSED;
+    private long objectCount = UNPARSED;
+    private long bytesUsed = UNPARSED;
+
+    /**
+     * Create the metadata of an account from the headers of a HEAD response.
+     * @param headers the response headers
+     */
+    public ObjectStorageAccountMetadata(Map<String, List<String>> headers){
+        super(headers, ObjectStorage.METADATA_PREFIX);
+    }
+
+    /**
+     * Get the number of containers in the account.
+     * @return the number of containers, or -1 if it is not known
+     */
+    public synchronized long getContainerCount(){
+        if(containerCount == UNPARSED){
+            containerCount = parseLong(CONTAINER_COUNT_HEADER);
+        }
+        return containerCount;
+    }
+
+    /**
+     * Get the number of objects in the account.
+     * @return the number of objects, or -1 if it is not known
+     */
+    public synchronized long getObjectCount(){
+        if(objectCount == UNPARSED){
+            objectCount = parseLong(OBJECT_COUNT_HEADER);
+        }
+        return objectCount;
+    }
+
+    /**
+     * Get the number of bytes stored in the account.
+     * @return the number of bytes, or -1 if it is not known
+     */
+    public synchronized long getBytesUsed(){
+        if(bytesUsed == UNPARSED){
+            bytesUsed = parseLong(BYTES_USED_HEADER);
+        }
+        return bytesUsed;
+    }
+
+    /**
+     * Get the key used to sign temporary URLs, see {@link ObjectStorageObject#getTempURL(String, long)}.
+     * @return the TempURL key, or null if none is set
+     */
+    public String getTempURLKey(){
+        return getHeader(ObjectStorage.TEMP_URL_KEY_HEADER);
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import java.io.InterruptedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the bandwidth used by transfers that go through the {@link ObjectStorageTransport}, so background transfers
+ * do not saturate the link and slow down interactive requests. Limits can be set for all transfers, for each
+ * {@link Priority} and for each {@link NetworkType}; a transfer is held to every limit that applies to it. Each limit is
+ * a token bucket shared by all transfers it applies to, and covers upload and download bytes together.
+ *
+ * Limits may be changed at any time and apply within about a tenth of a second to transfers that are already running.
+ * No limits are set by default.
+ */
+public final class ObjectStorageBandwidthLimiter {
+    /**
+     * The priority class of a transfer, set with {@link ObjectStorageTransferOptions#setPriority(Priority)}.
+     * The {@link ObjectStorageUploadQueue} sends its operations as {@link #BACKGROUND}.
+     */
+    public enum Priority {INTERACTIVE, NORMAL, BACKGROUND}
+
+    /**
+     * The type of network the device is connected to, reported with {@link #setNetworkType(NetworkType)}.
+     */
+    public enum NetworkType {WIFI, CELLULAR, OTHER}
+
+    private static final TokenBucket globalBucket = new TokenBucket();
+    private static final Map<Priority, TokenBucket> priorityBuckets = new EnumMap<>(Priority.class);
+    private static final Map<NetworkType, TokenBucket> networkBuckets = new EnumMap<>(NetworkType.class);
+
+    private static volatile NetworkType networkType = NetworkType.OTHER;
+
+    //Cheap check so unlimited transfers never touch the buckets.
+    private static volatile boolean limited = false;
+
+    static {
+        for(Priority priority : Priority.values()){
+            priorityBuckets.put(priority, new TokenBucket());
+        }
+        for(NetworkType type : NetworkType.values()){
+            networkBuckets.put(type, new TokenBucket());
+        }
+    }
+
+    private ObjectStorageBandwidthLimiter(){
+    }
+
+    /**
+     * Limit the combined bandwidth of all transfers.
+     * @param bytesPerSecond the limit in bytes per second, or 0 for no limit
+     */
+    public static void setLimit(long bytesPerSecond){
+        globalBucket.setRate(bytesPerSecond);
+        updateLimited();
+    }
+
+    /**
+     * Limit the combined bandwidth of all transfers with the given priority.
+     * @param priority the priority class
+     * @param bytesPerSecond the limit in bytes per second, or 0 for no limit
+     */
+    public static void setLimit(Priority priority, long bytesPerSecond){
+        priorityBuckets.get(priority).setRate(bytesPerSecond);
+        updateLimited();
+    }
+
+    /**
+     * Limit the combined bandwidth of all transfers while the device is on the given type of network.
+     * @param type the network type
+     * @param bytesPerSecond the limit in bytes per second, or 0 for no limit
+     */
+    public static void setLimit(NetworkType type, long bytesPerSecond){
+        networkBuckets.get(type).setRate(bytesPerSecond);
+        updateLimited();
+    }
+
+    /**
+     * Get the limit for all transfers.
+     * @return the limit in bytes per second, or 0 if there is none
+     */
+    public static long getLimit(){
+        return globalBucket.getRate();
+    }
+
+    /**
+     * Get the limit for transfers with the given priority.
+     * @param priority the priority class
+     * @return the limit in bytes per second, or 0 if there is none
+     */
+    public static long getLimit(Priority priority){
+        return priorityBuckets.get(priority).getRate();
+    }
+
+    /**
+     * Get the limit for transfers on the given type of network.
+     * @param type the network type
+     * @return the limit in bytes per second, or 0 if there is none
+     */
+    public static long getLimit(NetworkType type){
+        return networkBuckets.get(type).getRate();
+    }
+
+    /**
+     * Report the type of network the device is connected to, for example from a receiver of
+     * {@code ConnectivityManager.CONNECTIVITY_ACTION}. Transfers that are already running switch to the limit of the new network.
+     * @param type the current network type
+     */
+    public static void setNetworkType(NetworkType type){
+        networkType = type != null ? type : NetworkType.OTHER;
+    }
+
+    /**
+     * Get the type of network the device was last reported to be connected to.
+     * @return the current network type, {@link NetworkType#OTHER} by default
+     */
+    public static NetworkType getNetworkType(){
+        return networkType;
+    }
+
+    /**
+     * Remove all limits.
+     */
+    public static void reset(){
+        globalBucket.setRate(0);
+        for(TokenBucket bucket : priorityBuckets.values()){
+            bucket.setRate(0);
+        }
+        for(TokenBucket bucket : networkBuckets.values()){
+            bucket.setRate(0);
+        }
+        updateLimited();
+    }
+
+    private static void updateLimited(){
+        boolean anyLimit = globalBucket.getRate() > 0;
+        for(TokenBucket bucket : priorityBuckets.values()){
+            anyLimit |= bucket.getRate() > 0;
+        }
+        for(TokenBucket bucket : networkBuckets.values()){
+            anyLimit |= bucket.getRate() > 0;
+        }
+        limited = anyLimit;
+    }
+
+    /**
+     * Get how many bytes a transfer should move before calling {@link #consume(Priority, long)}, so each pause is short
+     * and limit changes take effect quickly.
+     * @param priority the priority of the transfer
+     * @param length the number of bytes the transfer would like to move
+     * @return the number of bytes to move, between 1 and length
+     */
+    static int chunkSize(Priority priority, int length){
+        if(!limited){
+            return length;
+        }
+
+        long rate = minRate(globalBucket.getRate(), priorityBuckets.get(priority).getRate(), networkBuckets.get(networkType).getRate());
+        if(rate <= 0){
+            return length;
+        }
+
+        return (int) Math.max(1, Math.min(length, rate / 10));
+    }
+
+    /**
+     * Take the given number of bytes from every bucket that applies, and wait until they are all within their limit.
+     * @param priority the priority of the transfer
+     * @param bytes the number of bytes transferred
+     * @throws InterruptedIOException if the thread was interrupted while waiting
+     */
+    static void consume(Priority priority, long bytes) throws InterruptedIOException {
+        if(!limited || bytes <= 0){
+            return;
+        }
+
+        long now = System.nanoTime();
+        long waitNanos = Math.max(globalBucket.take(bytes, now),
+                Math.max(priorityBuckets.get(priority).take(bytes, now), networkBuckets.get(networkType).take(bytes, now)));
+
+        if(waitNanos <= 0){
+            return;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the bandwidth limit.");
+        }
+    }
+
+    private static long minRate(long... rates){
+        long min = 0;
+        for(long rate : rates){
+            if(rate > 0 && (min == 0 || rate < min)){
+                min = rate;
+            }
+        }
+        return min;
+    }
+
+    /**
+     * A token bucket that may go into debt: bytes are taken after they are transferred, and the transfer waits until the
+     * debt is paid off. The bucket holds at most a quarter second of tokens, which bounds the burst after an idle period.
+     */
+    private static class TokenBucket {
+        private long rate = 0;
+        private double tokens = 0;
+        private long lastRefillNanos = System.nanoTime();
+
+        synchronized void setRate(long bytesPerSecond){
+            rate = Math.max(0, bytesPerSecond);
+            tokens = Math.min(tokens, rate / 4.0);
+            lastRefillNanos = System.nanoTime();
+        }
+
+        synchronized long getRate(){
+            return rate;
+        }
+
+        /**
+         * @return how long to wait before the bucket is out of debt, in nanoseconds
+         */
+        synchronized long take(long bytes, long now){
+            if(rate <= 0){
+                return 0;
+            }
+
+            tokens = Math.min(rate / 4.0, tokens + (now - lastRefillNanos) * rate / 1e9);
+            lastRefillNanos = now;
+            tokens -= bytes;
+
+            return tokens >= 0 ? 0 : (long) (-tokens * 1e9 / rate);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import java.util.ArrayDeque;
+
+/**
+ * A pool of byte arrays used for transfer buffers and for {@link ObjectStoragePooledBuffer}s, so steady transfers do not
+ * keep allocating large arrays. Arrays come in power of two size classes from {@link #MIN_BUFFER_SIZE} to
+ * {@link #MAX_BUFFER_SIZE}; larger requests are allocated and dropped as usual. Released arrays are kept for reuse
+ * until they add up to {@link #getMaxRetainedBytes()}.
+ */
+public final class ObjectStorageBufferPool {
+    public static final int MIN_BUFFER_SIZE = 4 * 1024;
+    public static final int MAX_BUFFER_SIZE = 4 * 1024 * 1024;
+    public static final long DEFAULT_MAX_RETAINED_BYTES = 8 * 1024 * 1024;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    private static final int CLASS_COUNT = Integer.numberOfTrailingZeros(MAX_BUFFER_SIZE) - MIN_SHIFT + 1;
+
+    private static final ArrayDeque<byte[]>[] freeBuffers = newFreeLists();
+
+    private static long maxRetainedBytes = DEFAULT_MAX_RETAINED_BYTES;
+    private static long retainedBytes = 0;
+
+    private static long hits = 0;
+    private static long misses = 0;
+
+    private ObjectStorageBufferPool(){
+    }
+
+    /**
+     * Set how much memory the pool keeps for reuse. Lowering the limit frees retained arrays right away.
+     * @param bytes the limit in bytes, or 0 to disable pooling
+     */
+    public static synchronized void setMaxRetainedBytes(long bytes){
+        maxRetainedBytes = Math.max(0, bytes);
+        trim(maxRetainedBytes);
+    }
+
+    /**
+     * Get how much memory the pool keeps for reuse.
+     * @return the limit in bytes
+     */
+    public static synchronized long getMaxRetainedBytes(){
+        return maxRetainedBytes;
+    }
+
+    /**
+     * Get the size of the arrays that are currently kept for reuse.
+     * @return the retained memory in bytes
+     */
+    public static synchronized long getRetainedBytes(){
+        return retainedBytes;
+    }
+
+    /**
+     * Get the number of requests that were served with a reused array.
+     * @return the number of hits
+     */
+    public static synchronized long getHitCount(){
+        return hits;
+    }
+
+    /**
+     * Get the number of requests that needed a new array.
+     * @return the number of misses
+     */
+    public static synchronized long getMissCount(){
+        return misses;
+    }
+
+    /**
+     * Drop all retained arrays, for example when the application is told to trim its memory.
+     */
+    public static synchronized void clear(){
+        trim(0);
+    }
+
+    /**
+     * Get an array of at least the given size. Arrays up to {@link #MAX_BUFFER_SIZE} have the size of their size class.
+     */
+    static byte[] acquire(int size){
+        int sizeClass = sizeClass(size);
+        if(sizeClass < 0){
+            return new byte[size];
+        }
+
+        synchronized (ObjectStorageBufferPool.class){
+            byte[] buffer = freeBuffers[sizeClass].pollLast();
+            if(buffer != null){
+                retainedBytes -= buffer.length;
+                hits++;
+                return buffer;
+            }
+            misses++;
+        }
+
+        return new byte[MIN_BUFFER_SIZE << sizeClass];
+    }
+
+    /**
+     * Return an array from {@link #acquire(int)} to the pool. The caller must not use it afterwards.
+     */
+    static void release(byte[] buffer){
+        if(buffer == null){
+            return;
+        }
+
+        int sizeClass = sizeClass(buffer.length);
+        if(sizeClass < 0 || buffer.length != MIN_BUFFER_SIZE << sizeClass){
+            return;
+        }
+
+        synchronized (ObjectStorageBufferPool.class){
+            if(retainedBytes + buffer.length > maxRetainedBytes){
+                return;
+            }
+            freeBuffers[sizeClass].addLast(buffer);
+            retainedBytes += buffer.length;
+        }
+    }
+
+    private static int sizeClass(int size){
+        if(size > MAX_BUFFER_SIZE){
+            return -1;
+        }
+        if(size <= MIN_BUFFER_SIZE){
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    private static void trim(long bytes){
+        //Largest arrays first, since they free the most memory.
+        for(int i = CLASS_COUNT - 1; i >= 0 && retainedBytes > bytes; i--){
+            while(retainedBytes > bytes && !freeBuffers[i].isEmpty()){
+                retainedBytes -= freeBuffers[i].pollLast().length;
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ArrayDeque<byte[]>[] newFreeLists(){
+        ArrayDeque<byte[]>[] lists = new ArrayDeque[CLASS_COUNT];
+        for(int i = 0; i < CLASS_COUNT; i++){
+            lists[i] = new ArrayDeque<>();
+        }
+        return lists;
+    }
+}
@@ -15,9 +15,20 @@ import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Response;
 import com.ibm.mobilefirstplatform.clientsdk.android.core.api.ResponseListener;
 import com.ibm.mobilefirstplatform.clientsdk.android.logger.api.Logger;
 
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +39,47 @@ import java.util.Map;
 public class ObjectStorageContainer {
     public static final String METADATA_PREFIX = "X-Container-Meta-";
 
+    /**
+     * The name prefix under which {@link StoreMode#CONTENT_ADDRESSED} stores data blobs.
+     */
+    public static final String CONTENT_ADDRESSED_PREFIX = ".blobs/";
+
+    /**
+     * Controls what {@link #storeObject(String, byte[], StoreMode, ObjectStorageResponseListener)} does with data that is already stored.
+     */
+    public enum StoreMode {
+        /**
+         * Always upload the data.
+         */
+        ALWAYS,
+        /**
+         * Skip the upload if an object with the same name and the same content is already stored.
+         */
+        SKIP_UNCHANGED,
+        /**
+         * Store the data under its content hash, and store the object as a small pointer to it. Identical data is only uploaded once per container.
+         */
+        CONTENT_ADDRESSED
+    }
+
+    protected static final String MANIFEST_HEADER = "X-Object-Manifest";
+    protected static final String CONTENT_HASH_HEADER = ObjectStorageObject.METADATA_PREFIX + "Content-Hash";
+
+    private static final int ETAG_CACHE_SIZE = 1024;
+
+    public static final int MAX_CONCURRENT_COPIES = 8;
+
+    //Large enough to keep the connection busy, small enough not to matter on a phone.
+    protected static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    //Last known ETag of each object URL, used to skip unchanged uploads.
+    private static final Map<String, String> etagCache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > ETAG_CACHE_SIZE;
+        }
+    };
+
     public static Logger logger = Logger.getLogger(Logger.INTERNAL_PREFIX + ObjectStorageObject.class.getName());
 
     protected String name;
@@ -59,12 +111,335 @@ public class ObjectStorageContainer {
      * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the object that was stored.
      */
     public void storeObject(final String objectName, final byte[] objectData, final ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        putObject(objectName, objectData, null, userResponseListener);
+    }
+
+    /**
+     * Store the data read from the given stream as an object with the given name inside this container. The data is
+     * streamed to Object Storage through the {@link ObjectStorageTransport}, so it is never held in memory as a whole.
+     * The stream is closed once the upload completes.
+     * @param objectName the name of the object to be stored
+     * @param objectData the stream to read the object's data from
+     * @param length the number of bytes to read from the stream, or -1 to read until the end of the stream
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the object that was stored, which has no cached data.
+     * @return the upload request, which may be canceled
+     */
+    public ObjectStorageHttpRequest storeObject(final String objectName, final InputStream objectData, final long length, final ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        return storeObject(objectName, objectData, length, null, userResponseListener);
+    }
+
+    /**
+     * Store the data read from the given stream as an object with the given name inside this container, reporting progress
+     * and detecting stalls as set in the given options. A stalled upload can only be retried if the stream is a
+     * {@link FileInputStream} or a {@link ByteArrayInputStream}, since other streams cannot be read again.
+     * The stream is closed once the upload completes.
+     * @param objectName the name of the object to be stored
+     * @param objectData the stream to read the object's data from
+     * @param length the number of bytes to read from the stream, or -1 to read until the end of the stream
+     * @param options the progress and stall detection options, or null for the defaults
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the object that was stored, which has no cached data.
+     * @return the upload request, which may be canceled
+     */
+    public ObjectStorageHttpRequest storeObject(final String objectName, final InputStream objectData, final long length, ObjectStorageTransferOptions options, final ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        final ObjectStorageContainer container = this;
+        final String objectURL = url + "/" + objectName;
+
+        ObjectStorageHttpRequest storeRequest = new ObjectStorageHttpRequest(objectURL, Request.PUT, new InputStreamBody(objectData, length));
+
+        storeRequest.setHeader(Request.CONTENT_TYPE, "application/octet-stream");
+
+        ObjectStorageTransfer.send("storeObject", storeRequest, options, new ObjectStorageTransfer.ResponseHandler<ObjectStorageObject>() {
+            @Override
+            public ObjectStorageObject onResponse(ObjectStorageHttpResponse response, InputStream body) {
+                logger.debug("Successfully stored object: " + objectName);
+
+                cacheETag(objectURL, ObjectStorageUtils.getETag(response.getHeaders()));
+
+                return new ObjectStorageObject(objectName, container, null);
+            }
+        }, userResponseListener);
+
+        return storeRequest;
+    }
+
+    /**
+     * Store the contents of the given file as an object with the given name inside this container. The file is memory mapped
+     * and copied to the connection through a pooled transfer buffer, so it is never read into a byte array of its own size.
+     * Files larger than {@link ObjectStorageTransferOptions#DEFAULT_SEGMENT_SIZE} are stored as a static large object.
+     * @param objectName the name of the object to be stored
+     * @param file the file to read the object's data from
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the object that was stored, which has no cached data.
+     * @return the upload request, which may be canceled
+     */
+    public ObjectStorageHttpRequest storeObject(final String objectName, final File file, final ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        return storeObject(objectName, file, null, userResponseListener);
+    }
+
+    /**
+     * Store the contents of the given file as an object with the given name inside this container, using the given options.
+     * A file larger than the segment size of the options is split into segments that are each mapped and uploaded in parallel,
+     * then joined by a static large object manifest. The segments are stored in this container under ".segments/", and
+     * are deleted again if the upload fails.
+     * @param objectName the name of the object to be stored
+     * @param file the file to read the object's data from
+     * @param options the progress, stall detection and segment size options, or null for the defaults
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the object that was stored, which has no cached data.
+     * @return the upload request, which may be canceled
+     */
+    public ObjectStorageHttpRequest storeObject(final String objectName, final File file, ObjectStorageTransferOptions options, final ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        logger.debug("Storing file " + file + " as object: " + objectName);
+
+        return new ObjectStorageFileUpload(this, objectName, options, userResponseListener).start(file);
+    }
+
+    /**
+     * Store the given data as an object with the given name inside this container, using the given {@link StoreMode}.
+     * With {@link StoreMode#SKIP_UNCHANGED}, the data is hashed and compared with the ETag of the stored object, or with the content hash
+     * of a content-addressed object, and the upload is skipped if they match. With {@link StoreMode#CONTENT_ADDRESSED}, the data is stored once under its hash and the object is a small pointer to it.
+     * @param objectName the name of the object to be stored
+     * @param objectData the data of the object that will be stored in Object Storage
+     * @param storeMode how to deal with data that is already stored. If null, {@link StoreMode#ALWAYS} is used.
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the object that was stored.
+     */
+    public void storeObject(final String objectName, final byte[] objectData, StoreMode storeMode, final ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        if(storeMode == null || storeMode == StoreMode.ALWAYS){
+            storeObject(objectName, objectData, userResponseListener);
+            return;
+        }
+
+        final String contentHash = ObjectStorageUtils.md5Hex(objectData);
+
+        if(storeMode == StoreMode.CONTENT_ADDRESSED){
+            storeContentAddressedObject(objectName, objectData, contentHash, userResponseListener);
+            return;
+        }
+
+        final ObjectStorageContainer container = this;
+
+        ifStored(objectName, contentHash, true, new ObjectStorageResponseListener<Boolean>() {
+            @Override
+            public void onSuccess(Boolean alreadyStored) {
+                if(alreadyStored){
+                    logger.debug("Object " + objectName + " is unchanged. Skipped upload.");
+                    if(userResponseListener != null){
+                        userResponseListener.onSuccess(new ObjectStorageObject(objectName, container, objectData));
+                    }
+                    return;
+                }
+
+                putObject(objectName, objectData, contentHash, userResponseListener);
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                if(userResponseListener != null){
+                    userResponseListener.onFailure(response, t, extendedInfo);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stores the data once under {@link #CONTENT_ADDRESSED_PREFIX} followed by its hash, then writes the object as a
+     * static large object manifest with the blob as its only segment, so reading the object returns the blob's data.
+     * Unlike a dynamic manifest, which finds its segments through the eventually consistent container listing, the
+     * static manifest names the blob directly, so a read fails instead of returning no data when the blob is missing.
+     */
+    private void storeContentAddressedObject(final String objectName, final byte[] objectData, final String contentHash, final ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        final String blobName = CONTENT_ADDRESSED_PREFIX + contentHash;
+        final ObjectStorageContainer container = this;
+
+        final ObjectStorageResponseListener<ObjectStorageObject> blobListener = new ObjectStorageResponseListener<ObjectStorageObject>() {
+            @Override
+            public void onSuccess(ObjectStorageObject blob) {
+                putPointer(objectName, blobName, contentHash, objectData, userResponseListener);
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                if(userResponseListener != null){
+                    userResponseListener.onFailure(response, t, extendedInfo);
+                }
+            }
+        };
+
+        //Another client may have deleted the blob, so its existence is always checked with the server.
+        ifStored(blobName, contentHash, false, new ObjectStorageResponseListener<Boolean>() {
+            @Override
+            public void onSuccess(Boolean alreadyStored) {
+                if(alreadyStored){
+                    logger.debug("Content " + contentHash + " is already stored. Skipped upload.");
+                    blobListener.onSuccess(null);
+                    return;
+                }
+
+                putObject(blobName, objectData, contentHash, blobListener);
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                blobListener.onFailure(response, t, extendedInfo);
+            }
+        });
+    }
+
+    /**
+     * Writes the object as a static large object manifest whose only segment is the given blob.
+     */
+    private void putPointer(final String objectName, String blobName, final String contentHash, final byte[] objectData, final ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        JSONArray manifest = new JSONArray();
+
+        try {
+            JSONObject segment = new JSONObject();
+            segment.put("path", "/" + name + "/" + blobName);
+            segment.put("etag", contentHash);
+            segment.put("size_bytes", objectData.length);
+            manifest.put(segment);
+        } catch (JSONException e) {
+            //Just creating JSONObject; no exceptions will occur.
+        }
+
+        final byte[] manifestData = manifest.toString().getBytes();
+
         //This container is used to create the object to be returned.
         final ObjectStorageContainer container = this;
 
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("storeObject");
+
+        ObjectStorage.refreshAuthToken(new ObjectStorageResponseListener<String>() {
+            @Override
+            public void onSuccess(String authToken) {
+                metrics.authenticated();
+
+                Request pointerRequest = new Request(url + "/" + objectName + "?multipart-manifest=put", Request.PUT);
+
+                pointerRequest.addHeader(ObjectStorage.AUTH_HEADER, authToken);
+
+                pointerRequest.addHeader(Request.CONTENT_TYPE, "application/octet-stream");
+                pointerRequest.addHeader("Content-Length", "" + manifestData.length);
+                pointerRequest.addHeader(CONTENT_HASH_HEADER, contentHash);
+
+                metrics.requestSent(manifestData.length);
+
+                pointerRequest.send(null, manifestData, new ResponseListener() {
+                    @Override
+                    public void onSuccess(Response response) {
+                        metrics.succeeded(response, true);
+
+                        logger.debug("Successfully stored object: " + objectName);
+
+                        cacheETag(url + "/" + objectName, ObjectStorageUtils.getETag(response.getHeaders()));
+
+                        if(userResponseListener != null){
+                            userResponseListener.onSuccess(new ObjectStorageObject(objectName, container, objectData));
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
+                        logger.error("Failed to store object: " + objectName);
+                        if(userResponseListener != null){
+                            userResponseListener.onFailure(response, t, extendedInfo);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
+                logger.error("Could not authenticate to Object Storage. Call ObjectStorage.connect() in order to do so.");
+                if(userResponseListener != null){
+                    userResponseListener.onFailure(response, t, extendedInfo);
+                }
+            }
+        });
+    }
+
+    /**
+     * Checks whether the object with the given name is already stored with the given content hash, either as its ETag or,
+     * for a content-addressed pointer, as its content hash metadata. A missing object is reported as not stored.
+     * @param trustCache whether a matching cached ETag is enough; otherwise the ETag is always fetched with a HEAD request
+     */
+    private void ifStored(final String objectName, final String contentHash, boolean trustCache, final ObjectStorageResponseListener<Boolean> storedListener){
+        final String objectURL = url + "/" + objectName;
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("checkStoredObject");
+
+        if(trustCache && contentHash.equals(getCachedETag(objectURL))){
+            metrics.cacheHit();
+            metrics.completed(true, 0, 0);
+            storedListener.onSuccess(true);
+            return;
+        }
+
+        metrics.cacheMiss();
+
+        ObjectStorage.refreshAuthToken(new ObjectStorageResponseListener<String>() {
+            @Override
+            public void onSuccess(String authToken) {
+                metrics.authenticated();
+
+                Request headRequest = new Request(objectURL, Request.HEAD);
+
+                headRequest.addHeader(ObjectStorage.AUTH_HEADER, authToken);
+
+                metrics.requestSent(0);
+
+                headRequest.send(null, new ResponseListener() {
+                    @Override
+                    public void onSuccess(Response response) {
+                        metrics.succeeded(response, false);
+
+                        String etag = ObjectStorageUtils.getETag(response.getHeaders());
+
+                        cacheETag(objectURL, etag);
+
+                        //The ETag of a content-addressed pointer is that of its manifest, so its content hash is kept in its metadata.
+                        String storedHash = ObjectStorageUtils.getHeader(response.getHeaders(), CONTENT_HASH_HEADER);
+
+                        storedListener.onSuccess(contentHash.equals(etag) || contentHash.equalsIgnoreCase(storedHash));
+                    }
+
+                    @Override
+                    public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        if(response != null && response.getStatus() == 404){
+                            metrics.succeeded(response, false);
+                            storedListener.onSuccess(false);
+                            return;
+                        }
+
+                        metrics.failed(response);
+
+                        logger.error("Failed to check stored object: " + objectName);
+                        storedListener.onFailure(response, t, extendedInfo);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
+                logger.error("Could not authenticate to Object Storage. Call ObjectStorage.connect() in order to do so.");
+                storedListener.onFailure(response, t, extendedInfo);
+            }
+        });
+    }
+
+    private void putObject(final String objectName, final byte[] objectData, final String contentHash, final ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        //This container is used to create the object to be returned.
+        final ObjectStorageContainer container = this;
+
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("storeObject");
+
         ObjectStorage.refreshAuthToken(new ObjectStorageResponseListener<String>() {
             @Override
             public void onSuccess(String authToken) {
+                metrics.authenticated();
+
                 Request storeRequest = new Request(url + "/" + objectName, Request.PUT);
 
                 storeRequest.addHeader(ObjectStorage.AUTH_HEADER, authToken);
@@ -72,18 +447,34 @@ public class ObjectStorageContainer {
                 storeRequest.addHeader(Request.CONTENT_TYPE, "application/octet-stream");
                 storeRequest.addHeader("Content-Length", "" + objectData.length);
 
+                //Object Storage verifies the data against the given ETag and rejects corrupted uploads.
+                if(contentHash != null){
+                    storeRequest.addHeader(ObjectStorageUtils.ETAG_HEADER, contentHash);
+                }
+
+                metrics.requestSent(objectData.length);
+
                 storeRequest.send(null, objectData, new ResponseListener() {
                     @Override
                     public void onSuccess(Response response) {
+                        metrics.succeeded(response, true);
+
                         logger.debug("Successfully stored object: " + objectName);
 
+                        String etag = ObjectStorageUtils.getETag(response.getHeaders());
+                        cacheETag(url + "/" + objectName, etag != null ? etag : contentHash);
+
                         ObjectStorageObject object = new ObjectStorageObject(objectName, container, objectData);
 
-                        userResponseListener.onSuccess(object);
+                        if(userResponseListener != null){
+                            userResponseListener.onSuccess(object);
+                        }
                     }
 
                     @Override
                     public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
                         logger.error("Failed to store object: " + objectName);
                         if(userResponseListener != null){
                             userResponseListener.onFailure(response, t, extendedInfo);
@@ -94,6 +485,8 @@ public class ObjectStorageContainer {
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
                 logger.error("Could not authenticate to Object Storage. Call ObjectStorage.connect() in order to do so.");
                 if(userResponseListener != null){
                     userResponseListener.onFailure(response, t, extendedInfo);
@@ -114,51 +507,160 @@ public class ObjectStorageContainer {
             if(userResponseListener != null){
                 userResponseListener.onFailure(null, new Throwable("Failed to get object. Object name cannot be null."), null);
             }
+            return;
         }
 
         //Used to pass container reference to created object.
         final ObjectStorageContainer container = this;
 
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("getObject");
+
+        byte[] cachedBytes = ObjectStorageObjectCache.get(url + "/" + objectName);
+        if(cachedBytes != null){
+            metrics.cacheHit();
+            metrics.completed(true, 0, 0);
+
+            logger.debug("Retrieved object from cache: " + objectName);
+            if(userResponseListener != null){
+                userResponseListener.onSuccess(new ObjectStorageObject(objectName, container, cachedBytes));
+            }
+            return;
+        }
+
+        metrics.cacheMiss();
+
+        final ObjectStorageSingleFlight.Flight<ObjectStorageObject> flight = ObjectStorageSingleFlight.join(Request.GET + " " + url + "/" + objectName + " object", userResponseListener, metrics, null);
+        if(flight == null){
+            return;
+        }
+
         ObjectStorage.refreshAuthToken(new ObjectStorageResponseListener<String>() {
             @Override
             public void onSuccess(String authToken) {
+                metrics.authenticated();
+
                 Request containerRequest = new Request(url + "/" + objectName, Request.GET);
 
                 containerRequest.addHeader(ObjectStorage.AUTH_HEADER, authToken);
 
+                metrics.requestSent(0);
+
                 containerRequest.send(null, new ResponseListener() {
                     @Override
                     public void onSuccess(final Response response) {
+                        metrics.succeeded(response, true);
+
                         logger.debug("Successfully retrieved object.");
 
                         byte[] objectBytes = response.getResponseBytes();
 
+                        cacheETag(url + "/" + objectName, ObjectStorageUtils.getETag(response.getHeaders()));
+
                         ObjectStorageObject object = new ObjectStorageObject(objectName, container, objectBytes);
 
-                        if(userResponseListener != null){
-                            userResponseListener.onSuccess(object);
-                        }
+                        flight.onSuccess(object);
                     }
 
                     @Override
                     public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
                         logger.error("Failed to retrieve object: " + objectName);
 
-                        if(userResponseListener != null){
-                            userResponseListener.onFailure(response, t, extendedInfo);
-                        }
+                        flight.onFailure(response, t, extendedInfo);
                     }
                 });
             }
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
                 logger.error("Could not authenticate to Object Storage. Call ObjectStorage.connect() in order to do so.");
+                flight.onFailure(response, t, extendedInfo);
+            }
+        });
+    }
+
+    /**
+     * Get the object with the given name from this container through the {@link ObjectStorageTransport}, reporting
+     * progress and detecting stalls as set in the given options. If the server responds with an error, onFailure is
+     * called with a null response and an {@link ObjectStorageHttpException}.
+     * @param objectName the name of the object to be retrieved
+     * @param options the progress and stall detection options, or null for the defaults
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the requested object.
+     * @return the download request, which may be canceled
+     */
+    public ObjectStorageHttpRequest getObject(final String objectName, ObjectStorageTransferOptions options, final ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        final String objectURL = url + "/" + objectName;
+        ObjectStorageHttpRequest objectRequest = new ObjectStorageHttpRequest(objectURL, Request.GET);
+
+        if(objectName == null){
+            logger.error("Object name cannot be null.");
+
+            if(userResponseListener != null){
+                userResponseListener.onFailure(null, new Throwable("Failed to get object. Object name cannot be null."), null);
+            }
+            return objectRequest;
+        }
+
+        //Used to pass container reference to created object.
+        final ObjectStorageContainer container = this;
+
+        ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("getObject");
+
+        byte[] cachedBytes = ObjectStorageObjectCache.get(objectURL);
+        if(cachedBytes != null){
+            metrics.cacheHit();
+            metrics.completed(true, 0, 0);
+
+            logger.debug("Retrieved object from cache: " + objectName);
+            if(userResponseListener != null){
+                userResponseListener.onSuccess(new ObjectStorageObject(objectName, container, cachedBytes));
+            }
+            return objectRequest;
+        }
+
+        metrics.cacheMiss();
+
+        //Shares the download with loads of the same object. Joining callers cancel with their own request; the shared
+        //download is only canceled once all of them have.
+        ObjectStorageSingleFlight.Flight<byte[]> flight = ObjectStorageSingleFlight.join(Request.GET + " " + objectURL + ObjectStorageSingleFlight.TRANSFER, new ObjectStorageResponseListener<byte[]>() {
+            @Override
+            public void onSuccess(byte[] objectBytes) {
+                if(userResponseListener != null){
+                    userResponseListener.onSuccess(new ObjectStorageObject(objectName, container, objectBytes));
+                }
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
                 if(userResponseListener != null){
                     userResponseListener.onFailure(response, t, extendedInfo);
                 }
             }
-        });
+        }, metrics, objectRequest);
+        if(flight == null){
+            return objectRequest;
+        }
+
+        ObjectStorageHttpRequest sharedRequest = new ObjectStorageHttpRequest(objectURL, Request.GET);
+        flight.setRequest(sharedRequest);
+
+        ObjectStorageTransfer.send(metrics, sharedRequest, options, new ObjectStorageTransfer.ResponseHandler<byte[]>() {
+            @Override
+            public byte[] onResponse(ObjectStorageHttpResponse response, InputStream body) throws IOException {
+                byte[] objectBytes = body != null ? ObjectStorageUtils.readBytes(body, response.getContentLength()) : new byte[0];
+
+                logger.debug("Successfully retrieved object.");
+
+                cacheETag(objectURL, ObjectStorageUtils.getETag(response.getHeaders()));
+
+                return objectBytes;
+            }
+        }, flight);
+
+        return objectRequest;
     }
 
     /**
@@ -169,27 +671,26 @@ public class ObjectStorageContainer {
         //Used to pass container reference to created objects.
         final ObjectStorageContainer container = this;
 
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("getObjectList");
+
         ObjectStorage.refreshAuthToken(new ObjectStorageResponseListener<String>() {
             @Override
             public void onSuccess(String authToken) {
+                metrics.authenticated();
+
                 Request objectListRequest = new Request(url, Request.GET);
 
                 objectListRequest.addHeader(ObjectStorage.AUTH_HEADER, authToken);
 
+                metrics.requestSent(0);
+
                 objectListRequest.send(null, new ResponseListener() {
                     @Override
                     public void onSuccess(Response response) {
-                        logger.debug("Successfully retrieved object list for " + name + ".");
-                        List<ObjectStorageObject> objectList = new ArrayList<>();
+                        metrics.succeeded(response, true);
 
-                        String responseBody = response.getResponseText();
-                        String[] objectNameList = responseBody.split("\n");
-
-                        for(String objectName : objectNameList){
-                            if(objectName != null && objectName.length() > 0){
-                                objectList.add(new ObjectStorageObject(objectName, container, null));
-                            }
-                        }
+                        logger.debug("Successfully retrieved object list for " + name + ".");
+                        List<ObjectStorageObject> objectList = parseObjectList(response.getResponseText(), container);
 
                         if(userResponseListener != null){
                             userResponseListener.onSuccess(objectList);
@@ -198,6 +699,8 @@ public class ObjectStorageContainer {
 
                     @Override
                     public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
                         logger.error("Failed to retrieve object list for container: " + name);
                         if(userResponseListener != null){
                             userResponseListener.onFailure(response, t, extendedInfo);
@@ -208,6 +711,8 @@ public class ObjectStorageContainer {
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
                 logger.error("Could not authenticate to Object Storage. Call ObjectStorage.connect() in order to do so.");
                 if(userResponseListener != null){
                     userResponseListener.onFailure(response, t, extendedInfo);
@@ -216,24 +721,118 @@ public class ObjectStorageContainer {
         });
     }
 
+    /**
+     * Get a page of the objects stored inside this container, in the order Object Storage lists them.
+     * Containers with more objects than Object Storage returns in one listing can be listed completely by passing the
+     * name of the last object of each page as the marker for the next one.
+     * @param marker the name after which the page starts, or null to start at the first object
+     * @param limit the maximum number of objects in the page
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the objects in the page, which has less than limit objects once the end of the container is reached.
+     */
+    public void getObjectList(String marker, int limit, final ObjectStorageResponseListener<List<ObjectStorageObject>> userResponseListener){
+        //Used to pass container reference to created objects.
+        final ObjectStorageContainer container = this;
+
+        String pageURL = url + "?limit=" + limit;
+        if(marker != null){
+            pageURL += "&marker=" + ObjectStorageUtils.encodeQueryValue(marker);
+        }
+
+        ObjectStorageTransfer.send("getObjectList", new ObjectStorageHttpRequest(pageURL, Request.GET), new ObjectStorageTransfer.ResponseHandler<List<ObjectStorageObject>>() {
+            @Override
+            public List<ObjectStorageObject> onResponse(ObjectStorageHttpResponse response, InputStream body) throws IOException {
+                if(body == null){
+                    return new ArrayList<>();
+                }
+                return parseObjectList(new String(ObjectStorageUtils.readBytes(body, response.getContentLength()), "UTF-8"), container);
+            }
+        }, userResponseListener);
+    }
+
+    /**
+     * Watch this container for objects that are added, modified or removed, for example by other devices.
+     * The container is polled until {@link ObjectStorageContainerWatcher#stop()} is called.
+     * @param listener the listener the changes are reported to
+     * @return the watcher, which has already been started
+     */
+    public ObjectStorageContainerWatcher watch(ObjectStorageContainerWatcherListener listener){
+        ObjectStorageContainerWatcher watcher = new ObjectStorageContainerWatcher(this, listener);
+        watcher.start();
+        return watcher;
+    }
+
+    protected static List<ObjectStorageObject> parseObjectList(String responseBody, ObjectStorageContainer container){
+        int length = responseBody.length();
+
+        //Counting the lines first sizes the list once, instead of growing it while parsing.
+        int lineCount = 1;
+        for(int i = 0; i < length; i++){
+            if(responseBody.charAt(i) == '\n'){
+                lineCount++;
+            }
+        }
+
+        List<ObjectStorageObject> objectList = new ArrayList<>(lineCount);
+
+        //Scans for line breaks instead of splitting, so no intermediate array of names is created.
+        int start = 0;
+
+        while(start < length){
+            int end = responseBody.indexOf('\n', start);
+            if(end < 0){
+                end = length;
+            }
+
+            if(end > start){
+                objectList.add(new ObjectStorageObject(responseBody.substring(start, end), container, null));
+            }
+
+            start = end + 1;
+        }
+
+        return objectList;
+    }
+
+    /**
+     * Copy the given objects of this container to another container on the server, keeping their names and metadata.
+     * Up to {@link #MAX_CONCURRENT_COPIES} copies run at the same time.
+     * @param objectNames the names of the objects to be copied
+     * @param destinationContainerName the name of the container to copy the objects to
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If all copies succeed, onSuccess will be called with the copies, in the order of the given names.
+     *                             Otherwise onFailure is called once all copies have completed, with the names of the objects that could not be copied in the failedObjects array of the extended info.
+     */
+    public void copyObjects(final List<String> objectNames, final String destinationContainerName, final ObjectStorageResponseListener<List<ObjectStorageObject>> userResponseListener){
+        new BatchCopy(this, objectNames, destinationContainerName, userResponseListener).start();
+    }
+
     /**
      * Delete an object with the given name from this container.
      * @param objectName the name of the object to be deleted
      * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with null parameters.
      */
     public void deleteObject(final String objectName, final ObjectStorageResponseListener<Void> userResponseListener){
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("deleteObject");
+
         ObjectStorage.refreshAuthToken(new ObjectStorageResponseListener<String>() {
             @Override
             public void onSuccess(String authToken) {
+                metrics.authenticated();
+
                 Request objectRequest = new Request(url + "/" + objectName, Request.DELETE);
 
                 objectRequest.addHeader(ObjectStorage.AUTH_HEADER, authToken);
 
+                metrics.requestSent(0);
+
                 objectRequest.send(null, new ResponseListener() {
                     @Override
                     public void onSuccess(Response response) {
+                        metrics.succeeded(response, true);
+
                         logger.debug("Successfully deleted object: " + objectName);
 
+                        cacheETag(url + "/" + objectName, null);
+
                         if(userResponseListener != null){
                             userResponseListener.onSuccess(null);
                         }
@@ -241,6 +840,8 @@ public class ObjectStorageContainer {
 
                     @Override
                     public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
                         logger.error("Failed to delete object: " + objectName);
                         if(userResponseListener != null){
                             userResponseListener.onFailure(response, t, extendedInfo);
@@ -251,6 +852,8 @@ public class ObjectStorageContainer {
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
                 logger.error("Could not authenticate to Object Storage. Call ObjectStorage.connect() in order to do so.");
                 if(userResponseListener != null){
                     userResponseListener.onFailure(response, t, extendedInfo);
@@ -267,6 +870,28 @@ public class ObjectStorageContainer {
         ObjectStorage.deleteContainer(name, userResponseListener);
     }
 
+    /**
+     * Get the container metadata as an ObjectStorageContainerMetadata, whose standard fields are parsed only when they are read.
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the container metadata.
+     */
+    public void getTypedMetadata(final ObjectStorageResponseListener<ObjectStorageContainerMetadata> userResponseListener){
+        getMetadata(new ObjectStorageResponseListener<Map<String, List<String>>>() {
+            @Override
+            public void onSuccess(Map<String, List<String>> headers) {
+                if(userResponseListener != null){
+                    userResponseListener.onSuccess(new ObjectStorageContainerMetadata(headers));
+                }
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                if(userResponseListener != null){
+                    userResponseListener.onFailure(response, t, extendedInfo);
+                }
+            }
+        });
+    }
+
     /**
      * Get a map of all the container metadata.
      * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with a map of the container metadata.
@@ -277,16 +902,24 @@ public class ObjectStorageContainer {
             return;
         }
 
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("getContainerMetadata");
+
         ObjectStorage.refreshAuthToken(new ObjectStorageResponseListener<String>() {
             @Override
             public void onSuccess(String authToken) {
+                metrics.authenticated();
+
                 Request containerRequest = new Request(url, Request.HEAD);
 
                 containerRequest.addHeader(ObjectStorage.AUTH_HEADER, authToken);
 
+                metrics.requestSent(0);
+
                 containerRequest.send(null, new ResponseListener() {
                     @Override
                     public void onSuccess(Response response) {
+                        metrics.succeeded(response, false);
+
                         Map<String, List<String>> metadataMap = response.getHeaders();
 
                         logger.debug("Successfully retrieved container metadata.");
@@ -298,6 +931,8 @@ public class ObjectStorageContainer {
 
                     @Override
                     public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
                         logger.error("Failed to retrieve container metadata.");
                         if(userResponseListener != null){
                             userResponseListener.onFailure(response, t, extendedInfo);
@@ -308,6 +943,8 @@ public class ObjectStorageContainer {
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
                 logger.error("Could not authenticate to Object Storage. Call ObjectStorage.connect() in order to do so.");
                 if(userResponseListener != null){
                     userResponseListener.onFailure(response, t, extendedInfo);
@@ -328,9 +965,13 @@ public class ObjectStorageContainer {
             return;
         }
 
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("updateContainerMetadata");
+
         ObjectStorage.refreshAuthToken(new ObjectStorageResponseListener<String>() {
             @Override
             public void onSuccess(String authToken) {
+                metrics.authenticated();
+
                 Request containerRequest = new Request(url, Request.POST);
 
                 containerRequest.addHeader(ObjectStorage.AUTH_HEADER, authToken);
@@ -341,9 +982,13 @@ public class ObjectStorageContainer {
 
                 String body = "";
 
+                metrics.requestSent(body.length());
+
                 containerRequest.send(null, body, new ResponseListener() {
                     @Override
                     public void onSuccess(Response response) {
+                        metrics.succeeded(response, true);
+
                         logger.debug("Object metadata successfully updated.");
                         if(userResponseListener != null){
                             userResponseListener.onSuccess(null);
@@ -352,6 +997,8 @@ public class ObjectStorageContainer {
 
                     @Override
                     public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
                         logger.error("Failed to update object metadata.");
                         if(userResponseListener != null){
                             userResponseListener.onFailure(response, t, extendedInfo);
@@ -362,6 +1009,8 @@ public class ObjectStorageContainer {
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
                 logger.error("Could not authenticate to Object Storage. Call ObjectStorage.connect() in order to do so.");
                 if(userResponseListener != null){
                     userResponseListener.onFailure(response, t, extendedInfo);
@@ -370,8 +1019,197 @@ public class ObjectStorageContainer {
         });
     }
 
+    protected static void cacheETag(String objectURL, String etag){
+        ObjectStorageObjectCache.invalidate(objectURL, etag);
+
+        synchronized (etagCache){
+            if(etag == null){
+                etagCache.remove(objectURL);
+            }
+            else{
+                etagCache.put(objectURL, etag);
+            }
+        }
+    }
+
+    protected static String getCachedETag(String objectURL){
+        synchronized (etagCache){
+            return etagCache.get(objectURL);
+        }
+    }
+
     @Override
     public String toString(){
         return name;
     }
+
+    /**
+     * Streams an upload from an input stream. Streams whose position can be restored are read again if the upload is retried.
+     */
+    private static class InputStreamBody extends ObjectStorageRequestBody {
+        private final InputStream data;
+        private final long length;
+        private long startPosition = -1;
+
+        InputStreamBody(InputStream data, long length){
+            this.data = data;
+            this.length = length;
+
+            if(data instanceof ByteArrayInputStream){
+                data.mark(0);
+            }
+            else if(data instanceof FileInputStream){
+                try {
+                    startPosition = ((FileInputStream) data).getChannel().position();
+                } catch (IOException e) {
+                    startPosition = -1;
+                }
+            }
+        }
+
+        @Override
+        public long getContentLength() {
+            return length;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return data instanceof ByteArrayInputStream || startPosition >= 0;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            if(data instanceof ByteArrayInputStream){
+                data.reset();
+            }
+            else if(startPosition >= 0){
+                ((FileInputStream) data).getChannel().position(startPosition);
+            }
+
+            byte[] buffer = ObjectStorageBufferPool.acquire(TRANSFER_BUFFER_SIZE);
+            long remaining = length < 0 ? Long.MAX_VALUE : length;
+            int read;
+
+            try {
+                while(remaining > 0 && (read = data.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1){
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            } finally {
+                ObjectStorageBufferPool.release(buffer);
+            }
+
+            if(length >= 0 && remaining > 0){
+                throw new EOFException("The stream ended " + remaining + " bytes before the given length.");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+
+    /**
+     * Runs a batch of server-side copies, starting the next one whenever one completes.
+     */
+    private static class BatchCopy {
+        private final ObjectStorageContainer source;
+        private final List<String> objectNames;
+        private final String destinationContainerName;
+        private final ObjectStorageResponseListener<List<ObjectStorageObject>> userResponseListener;
+
+        private final ObjectStorageObject[] copies;
+        private final JSONArray failedObjects = new JSONArray();
+        private int next = 0;
+        private int remaining;
+        private Response lastFailedResponse = null;
+        private Throwable lastFailure = null;
+
+        BatchCopy(ObjectStorageContainer source, List<String> objectNames, String destinationContainerName, ObjectStorageResponseListener<List<ObjectStorageObject>> userResponseListener){
+            this.source = source;
+            this.objectNames = new ArrayList<>(objectNames);
+            this.destinationContainerName = destinationContainerName;
+            this.userResponseListener = userResponseListener;
+            this.copies = new ObjectStorageObject[this.objectNames.size()];
+            this.remaining = this.objectNames.size();
+        }
+
+        void start(){
+            if(objectNames.isEmpty()){
+                finish();
+                return;
+            }
+
+            for(int i = 0; i < MAX_CONCURRENT_COPIES; i++){
+                copyNext();
+            }
+        }
+
+        private void copyNext(){
+            final int index;
+            synchronized (this){
+                if(next >= objectNames.size()){
+                    return;
+                }
+                index = next++;
+            }
+
+            final String objectName = objectNames.get(index);
+            new ObjectStorageObject(objectName, source, null).copyTo(destinationContainerName, objectName, new ObjectStorageResponseListener<ObjectStorageObject>() {
+                @Override
+                public void onSuccess(ObjectStorageObject copy) {
+                    completed(index, copy, null, null);
+                }
+
+                @Override
+                public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                    completed(index, null, response, t);
+                }
+            });
+        }
+
+        private void completed(int index, ObjectStorageObject copy, Response response, Throwable t){
+            boolean done;
+            synchronized (this){
+                if(copy != null){
+                    copies[index] = copy;
+                }
+                else{
+                    failedObjects.put(objectNames.get(index));
+                    lastFailedResponse = response;
+                    lastFailure = t;
+                }
+                done = --remaining == 0;
+            }
+
+            if(done){
+                finish();
+            }
+            else{
+                copyNext();
+            }
+        }
+
+        private void finish(){
+            if(failedObjects.length() == 0){
+                logger.debug("Successfully copied " + copies.length + " objects to " + destinationContainerName);
+                if(userResponseListener != null){
+                    userResponseListener.onSuccess(Arrays.asList(copies));
+                }
+                return;
+            }
+
+            logger.error("Failed to copy " + failedObjects.length() + " of " + copies.length + " objects to " + destinationContainerName);
+            if(userResponseListener != null){
+                JSONObject extendedInfo = new JSONObject();
+                try {
+                    extendedInfo.put("failedObjects", failedObjects);
+                } catch (JSONException e) {
+                    //Just creating JSONObject; no exceptions will occur.
+                }
+                userResponseListener.onFailure(lastFailedResponse, lastFailure, extendedInfo);
+            }
+        }
+    }
 }
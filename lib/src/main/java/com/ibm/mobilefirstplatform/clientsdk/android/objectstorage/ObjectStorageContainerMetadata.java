@@ -0,0 +1,74 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The metadata of a container, as returned by {@link ObjectStorageContainer#getTypedMetadata(ObjectStorageResponseListener)}.
+ */
+public class ObjectStorageContainerMetadata extends ObjectStorageMetadata {
+    private static final String OBJECT_COUNT_HEADER = "X-Container-Object-Count";
+    private static final String BYTES_USED_HEADER = "X-Container-Bytes-Used";
+    private static final String READ_ACL_HEADER = "X-Container-Read";
+    private static final String WRITE_ACL_HEADER = "X-Container-Write";
+
+    private long objectCount = UNPARSED;
+    private long bytesUsed = UNPARSED;
+
+    /**
+     * Create the metadata of a container from the headers of a HEAD response.
+     * @param headers the response headers
+     */
+    public ObjectStorageContainerMetadata(Map<String, List<String>> headers){
+        super(headers, ObjectStorageContainer.METADATA_PREFIX);
+    }
+
+    /**
+     * Get the number of objects in the container.
+     * @return the number of objects, or -1 if it is not known
+     */
+    public synchronized long getObjectCount(){
+        if(objectCount == UNPARSED){
+            objectCount = parseLong(OBJECT_COUNT_HEADER);
+        }
+        return objectCount;
+    }
+
+    /**
+     * Get the number of bytes stored in the container.
+     * @return the number of bytes, or -1 if it is not known
+     */
+    public synchronized long getBytesUsed(){
+        if(bytesUsed == UNPARSED){
+            bytesUsed = parseLong(BYTES_USED_HEADER);
+        }
+        return bytesUsed;
+    }
+
+    /**
+     * Get the access control list for reading the container.
+     * @return the read ACL, or null if none is set
+     */
+    public String getReadACL(){
+        return getHeader(READ_ACL_HEADER);
+    }
+
+    /**
+     * Get the access control list for writing to the container.
+     * @return the write ACL, or null if none is set
+     */
+    public String getWriteACL(){
+        return getHeader(WRITE_ACL_HEADER);
+    }
+}
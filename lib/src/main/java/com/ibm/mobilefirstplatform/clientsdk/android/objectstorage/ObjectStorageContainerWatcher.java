@@ -0,0 +1,409 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Request;
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Response;
+import com.ibm.mobilefirstplatform.clientsdk.android.logger.api.Logger;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls a container and reports the objects that were added, modified or removed since the last poll, for example by
+ * other devices. Create one with {@link ObjectStorageContainer#watch(ObjectStorageContainerWatcherListener)}.
+ *
+ * Each poll first requests the container's headers, and only lists the container when its object count, size or
+ * timestamps changed. The listing is requested in pages and compared page by page with a snapshot of the names and
+ * ETags of the previous listing, so the watcher never holds more than one page of the listing besides the snapshot.
+ * Since an object replaced by one of the same size may not change the headers, every {@link #FULL_LISTING_INTERVAL}th
+ * poll lists the container regardless.
+ *
+ * The first poll only takes the snapshot and reports no changes. Polls start at the minimum interval, which doubles
+ * after every poll that finds no changes, up to the maximum interval, and drops back to the minimum once a change is found.
+ */
+public class ObjectStorageContainerWatcher {
+    public static final long DEFAULT_MIN_POLL_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+    public static final long DEFAULT_MAX_POLL_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+    public static final int FULL_LISTING_INTERVAL = 10;
+
+    protected static final int LISTING_PAGE_SIZE = 1000;
+
+    //The container headers that change when objects are added, replaced or removed.
+    private static final String[] CONTAINER_STATE_HEADERS = {"X-Container-Object-Count", "X-Container-Bytes-Used", "X-Put-Timestamp", "Last-Modified"};
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ObjectStorageTransfer.DaemonThreadFactory("ObjectStorage-watcher-"));
+
+    public static Logger logger = Logger.getLogger(Logger.INTERNAL_PREFIX + ObjectStorageContainerWatcher.class.getName());
+
+    private final ObjectStorageContainer container;
+    private final ObjectStorageContainerWatcherListener listener;
+
+    private long minPollInterval = DEFAULT_MIN_POLL_INTERVAL;
+    private long maxPollInterval = DEFAULT_MAX_POLL_INTERVAL;
+    private long pollInterval = DEFAULT_MIN_POLL_INTERVAL;
+
+    private boolean running = false;
+    private boolean polling = false;
+    private ScheduledFuture<?> scheduledPoll = null;
+
+    private Snapshot snapshot = null;
+    private String containerState = null;
+    private int pollsWithoutListing = 0;
+
+    /**
+     * Create a watcher for the given container. It starts polling once {@link #start()} is called.
+     * @param container the container to be watched
+     * @param listener the listener the changes are reported to
+     */
+    public ObjectStorageContainerWatcher(ObjectStorageContainer container, ObjectStorageContainerWatcherListener listener){
+        this.container = container;
+        this.listener = listener;
+    }
+
+    /**
+     * Set how often the container is polled. The interval starts at the minimum and doubles while nothing changes.
+     * @param minMillis the time between polls after a change was found, in milliseconds
+     * @param maxMillis the longest time between polls, in milliseconds
+     */
+    public synchronized void setPollInterval(long minMillis, long maxMillis){
+        minPollInterval = Math.max(1, minMillis);
+        maxPollInterval = Math.max(minPollInterval, maxMillis);
+        pollInterval = minPollInterval;
+        if(running && !polling){
+            schedulePoll(pollInterval);
+        }
+    }
+
+    /**
+     * Get the time until the next poll, as adapted to how often the container changes.
+     * @return the current poll interval in milliseconds
+     */
+    public synchronized long getPollInterval(){
+        return pollInterval;
+    }
+
+    /**
+     * Start polling the container. The first poll is made right away.
+     */
+    public synchronized void start(){
+        if(running){
+            return;
+        }
+        running = true;
+        pollInterval = minPollInterval;
+        schedulePoll(0);
+    }
+
+    /**
+     * Stop polling the container. A poll that is in progress completes, but its changes are not reported.
+     * The snapshot is kept, so after {@link #start()} the changes made in the meantime are reported.
+     */
+    public synchronized void stop(){
+        running = false;
+        if(scheduledPoll != null){
+            scheduledPoll.cancel(false);
+            scheduledPoll = null;
+        }
+    }
+
+    /**
+     * Check whether the container is being polled.
+     * @return true between {@link #start()} and {@link #stop()}
+     */
+    public synchronized boolean isRunning(){
+        return running;
+    }
+
+    /**
+     * Poll the container right away, for example when the application returns to the foreground, and go back to
+     * the minimum poll interval.
+     */
+    public synchronized void pollNow(){
+        pollInterval = minPollInterval;
+        if(running && !polling){
+            schedulePoll(0);
+        }
+    }
+
+    /**
+     * Get the number of objects in the container as of the last listing.
+     * @return the number of objects, or -1 if the container has not been listed yet
+     */
+    public synchronized int getObjectCount(){
+        return snapshot == null ? -1 : snapshot.size;
+    }
+
+    private void schedulePoll(long delay){
+        if(scheduledPoll != null){
+            scheduledPoll.cancel(false);
+        }
+        scheduledPoll = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                poll();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll(){
+        final boolean forceListing;
+        synchronized (this){
+            if(!running || polling){
+                return;
+            }
+            polling = true;
+            scheduledPoll = null;
+            forceListing = snapshot == null || pollsWithoutListing >= FULL_LISTING_INTERVAL - 1;
+        }
+
+        ObjectStorageHttpRequest request = new ObjectStorageHttpRequest(container.url, Request.HEAD);
+        ObjectStorageTransfer.send("watchContainer", request, new ObjectStorageTransfer.ResponseHandler<String>() {
+            @Override
+            public String onResponse(ObjectStorageHttpResponse response, InputStream body) {
+                StringBuilder state = new StringBuilder();
+                for(String header : CONTAINER_STATE_HEADERS){
+                    state.append(response.getHeader(header)).append('\n');
+                }
+                return state.toString();
+            }
+        }, new ObjectStorageResponseListener<String>() {
+            @Override
+            public void onSuccess(String state) {
+                boolean unchanged;
+                synchronized (ObjectStorageContainerWatcher.this){
+                    unchanged = !forceListing && state.equals(containerState);
+                    if(unchanged){
+                        pollsWithoutListing++;
+                    }
+                }
+
+                if(unchanged){
+                    finished(false);
+                }
+                else{
+                    new Listing(state).requestPage(null);
+                }
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                failed(t);
+            }
+        });
+    }
+
+    private void finished(boolean changed){
+        synchronized (this){
+            polling = false;
+            pollInterval = changed ? minPollInterval : Math.min(maxPollInterval, pollInterval * 2);
+            if(running){
+                schedulePoll(pollInterval);
+            }
+        }
+    }
+
+    private void failed(Throwable t){
+        logger.error("Failed to poll container " + container.getName() + ": " + t);
+
+        boolean report;
+        synchronized (this){
+            report = running;
+        }
+        if(report && listener != null){
+            listener.onFailure(t);
+        }
+
+        finished(false);
+    }
+
+    /**
+     * A 64 bit FNV-1a hash of what identifies the data of an object in a listing, stored instead of the strings themselves.
+     */
+    private static long fingerprint(JSONObject entry){
+        String identity = entry.optString("hash") + '\n' + entry.optLong("bytes") + '\n' + entry.optString("last_modified");
+
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < identity.length(); i++){
+            hash ^= identity.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * The names of the objects in a container, in the order of the listing, each with the fingerprint of its data.
+     */
+    private static class Snapshot {
+        String[] names;
+        long[] fingerprints;
+        int size = 0;
+
+        Snapshot(int capacity){
+            names = new String[Math.max(16, capacity)];
+            fingerprints = new long[names.length];
+        }
+
+        void add(String name, long fingerprint){
+            if(size == names.length){
+                names = Arrays.copyOf(names, size * 2);
+                fingerprints = Arrays.copyOf(fingerprints, size * 2);
+            }
+            names[size] = name;
+            fingerprints[size] = fingerprint;
+            size++;
+        }
+    }
+
+    /**
+     * A paged listing of the container, merged page by page with the previous snapshot into the next one.
+     */
+    private class Listing {
+        private final String state;
+        private final Snapshot previous;
+        private final Snapshot next;
+        private int previousIndex = 0;
+
+        private final List<ObjectStorageObject> added = new ArrayList<>();
+        private final List<ObjectStorageObject> modified = new ArrayList<>();
+        private final List<String> removed = new ArrayList<>();
+
+        Listing(String state){
+            this.state = state;
+            synchronized (ObjectStorageContainerWatcher.this){
+                previous = snapshot;
+            }
+            next = new Snapshot(previous != null ? previous.size : 0);
+        }
+
+        void requestPage(String marker){
+            String url = container.url + "?format=json&limit=" + LISTING_PAGE_SIZE;
+            if(marker != null){
+                url += "&marker=" + ObjectStorageUtils.encodeQueryValue(marker);
+            }
+
+            ObjectStorageTransfer.send("watchContainer", new ObjectStorageHttpRequest(url, Request.GET), new ObjectStorageTransfer.ResponseHandler<JSONArray>() {
+                @Override
+                public JSONArray onResponse(ObjectStorageHttpResponse response, InputStream body) throws IOException {
+                    if(body == null || response.getStatus() == 204){
+                        return new JSONArray();
+                    }
+                    try {
+                        return new JSONArray(new String(ObjectStorageUtils.readBytes(body, response.getContentLength()), "UTF-8"));
+                    } catch (JSONException e) {
+                        throw new IOException("Failed to parse the listing of container " + container.getName() + ".", e);
+                    }
+                }
+            }, new ObjectStorageResponseListener<JSONArray>() {
+                @Override
+                public void onSuccess(JSONArray page) {
+                    String lastName = merge(page);
+                    if(page.length() >= LISTING_PAGE_SIZE && lastName != null){
+                        requestPage(lastName);
+                    }
+                    else{
+                        complete();
+                    }
+                }
+
+                @Override
+                public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                    failed(t);
+                }
+            });
+        }
+
+        /**
+         * Merges a page of the listing with the previous snapshot, which is in the same order.
+         * @return the name of the last object on the page
+         */
+        private String merge(JSONArray page){
+            String lastName = null;
+
+            for(int i = 0; i < page.length(); i++){
+                JSONObject entry = page.optJSONObject(i);
+                String name = entry != null ? entry.optString("name", null) : null;
+                if(name == null){
+                    continue;
+                }
+                lastName = name;
+                long fingerprint = fingerprint(entry);
+
+                while(previous != null && previousIndex < previous.size && ObjectStorageUtils.compareObjectNames(previous.names[previousIndex], name) < 0){
+                    removed.add(previous.names[previousIndex++]);
+                }
+
+                if(previous != null && previousIndex < previous.size && previous.names[previousIndex].equals(name)){
+                    //Keep the name from the snapshot, so the strings of unchanged objects are not duplicated.
+                    name = previous.names[previousIndex];
+                    if(previous.fingerprints[previousIndex] != fingerprint){
+                        modified.add(new ObjectStorageObject(name, container, null));
+                    }
+                    previousIndex++;
+                }
+                else if(previous != null){
+                    added.add(new ObjectStorageObject(name, container, null));
+                }
+
+                next.add(name, fingerprint);
+            }
+
+            return lastName;
+        }
+
+        private void complete(){
+            while(previous != null && previousIndex < previous.size){
+                removed.add(previous.names[previousIndex++]);
+            }
+
+            boolean report;
+            synchronized (ObjectStorageContainerWatcher.this){
+                //A stopped watcher keeps its snapshot, so the changes are reported once it is started again.
+                report = running;
+                if(report){
+                    snapshot = next;
+                    containerState = state;
+                    pollsWithoutListing = 0;
+                }
+            }
+
+            boolean changed = !added.isEmpty() || !modified.isEmpty() || !removed.isEmpty();
+            if(changed){
+                logger.debug("Container " + container.getName() + " changed: " + added.size() + " added, " + modified.size() + " modified, " + removed.size() + " removed.");
+            }
+
+            if(report && listener != null){
+                for(ObjectStorageObject object : added){
+                    listener.onObjectAdded(object);
+                }
+                for(ObjectStorageObject object : modified){
+                    listener.onObjectModified(object);
+                }
+                for(String objectName : removed){
+                    listener.onObjectRemoved(objectName);
+                }
+            }
+
+            finished(changed);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+/**
+ * Receives the changes an {@link ObjectStorageContainerWatcher} finds in a container. Callbacks are made on background
+ * threads. The changes found by one poll are all reported before the next poll starts.
+ */
+public interface ObjectStorageContainerWatcherListener {
+
+    /**
+     * Called when an object was added to the container.
+     * @param object the new object, without its data
+     */
+    void onObjectAdded(ObjectStorageObject object);
+
+    /**
+     * Called when the data of an object in the container was replaced.
+     * @param object the changed object, without its data
+     */
+    void onObjectModified(ObjectStorageObject object);
+
+    /**
+     * Called when an object was deleted from the container.
+     * @param objectName the name of the deleted object
+     */
+    void onObjectRemoved(String objectName);
+
+    /**
+     * Called when a poll failed. The watcher keeps polling, less often, until a poll succeeds.
+     * @param t the cause of the failure, an {@link ObjectStorageHttpException} if the service returned an error
+     */
+    void onFailure(Throwable t);
+}
@@ -0,0 +1,384 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Request;
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Response;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Uploads a file from memory mapped regions, so the file is never read into a byte array of its own size. Transports
+ * take request bodies as an {@link OutputStream}, so the mapped pages are copied to the connection through one pooled
+ * transfer buffer rather than handed to the socket directly. A file that fits in one segment is stored with a single PUT. A larger file is split into segments that are uploaded in parallel
+ * under {@link #SEGMENT_PREFIX}, followed by a static large object manifest that joins them.
+ */
+class ObjectStorageFileUpload {
+    static final String SEGMENT_PREFIX = ".segments/";
+    static final int MAX_CONCURRENT_SEGMENT_UPLOADS = 4;
+
+    private final ObjectStorageContainer container;
+    private final String objectName;
+    private final String objectURL;
+    private final ObjectStorageTransferOptions options;
+    private final ObjectStorageResponseListener<ObjectStorageObject> userResponseListener;
+    private final ObjectStorageHttpRequest upload;
+
+    private FileChannel channel;
+    private long length;
+    private long segmentSize;
+    private String segmentPrefix;
+
+    private String[] segmentETags;
+    private long[] segmentProgress;
+    private int nextSegment = 0;
+    private int remainingSegments;
+    private boolean failed = false;
+
+    private long lastReportedBytes = 0;
+    private long lastReportNanos = System.nanoTime();
+
+    ObjectStorageFileUpload(ObjectStorageContainer container, String objectName, ObjectStorageTransferOptions options, ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        this.container = container;
+        this.objectName = objectName;
+        this.objectURL = container.url + "/" + objectName;
+        this.options = options != null ? options : new ObjectStorageTransferOptions();
+        this.userResponseListener = userResponseListener;
+        this.upload = new ObjectStorageHttpRequest(objectURL, Request.PUT);
+    }
+
+    /**
+     * Starts uploading the file.
+     * @return a request standing for the whole upload, which cancels every part of it when canceled
+     */
+    ObjectStorageHttpRequest start(File file){
+        try {
+            channel = new FileInputStream(file).getChannel();
+            length = channel.size();
+        } catch (IOException e) {
+            ObjectStorageContainer.logger.error("Could not open file " + file + " for object " + objectName);
+            fail(null, e);
+            return upload;
+        }
+
+        segmentSize = Math.min(options.getSegmentSize(), Integer.MAX_VALUE);
+
+        if(length <= segmentSize){
+            storeWhole();
+        }
+        else{
+            storeSegments();
+        }
+
+        return upload;
+    }
+
+    private void storeWhole(){
+        ObjectStorageHttpRequest storeRequest = new ObjectStorageHttpRequest(objectURL, Request.PUT, new MappedRegionBody(channel, 0, length));
+        storeRequest.setHeader(Request.CONTENT_TYPE, "application/octet-stream");
+        linkCancel(storeRequest);
+
+        ObjectStorageTransfer.send("storeObject", storeRequest, options, new ObjectStorageTransfer.ResponseHandler<ObjectStorageObject>() {
+            @Override
+            public ObjectStorageObject onResponse(ObjectStorageHttpResponse response, InputStream body) {
+                ObjectStorageContainer.logger.debug("Successfully stored object: " + objectName);
+
+                ObjectStorageContainer.cacheETag(objectURL, ObjectStorageUtils.getETag(response.getHeaders()));
+
+                return new ObjectStorageObject(objectName, container, null);
+            }
+        }, new ObjectStorageResponseListener<ObjectStorageObject>() {
+            @Override
+            public void onSuccess(ObjectStorageObject object) {
+                closeChannel();
+                if(userResponseListener != null){
+                    userResponseListener.onSuccess(object);
+                }
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                fail(response, t);
+            }
+        });
+    }
+
+    private void storeSegments(){
+        int segmentCount = (int) ((length + segmentSize - 1) / segmentSize);
+
+        segmentPrefix = SEGMENT_PREFIX + objectName + "/" + Long.toHexString(System.currentTimeMillis()) + "/";
+        segmentETags = new String[segmentCount];
+        segmentProgress = new long[segmentCount];
+        remainingSegments = segmentCount;
+
+        ObjectStorageContainer.logger.debug("Storing object " + objectName + " as " + segmentCount + " segments.");
+
+        for(int i = 0; i < MAX_CONCURRENT_SEGMENT_UPLOADS; i++){
+            storeNextSegment();
+        }
+    }
+
+    private void storeNextSegment(){
+        final int index;
+        synchronized (this){
+            if(failed || nextSegment >= segmentETags.length){
+                return;
+            }
+            index = nextSegment++;
+        }
+
+        long offset = index * segmentSize;
+        long size = Math.min(segmentSize, length - offset);
+
+        ObjectStorageHttpRequest segmentRequest = new ObjectStorageHttpRequest(container.url + "/" + segmentName(index), Request.PUT, new MappedRegionBody(channel, offset, size));
+        segmentRequest.setHeader(Request.CONTENT_TYPE, "application/octet-stream");
+        linkCancel(segmentRequest);
+
+        ObjectStorageTransfer.send("storeObjectSegment", segmentRequest, segmentOptions(index), new ObjectStorageTransfer.ResponseHandler<String>() {
+            @Override
+            public String onResponse(ObjectStorageHttpResponse response, InputStream body) {
+                return ObjectStorageUtils.getETag(response.getHeaders());
+            }
+        }, new ObjectStorageResponseListener<String>() {
+            @Override
+            public void onSuccess(String etag) {
+                boolean orphaned;
+                boolean done;
+                synchronized (ObjectStorageFileUpload.this){
+                    orphaned = failed;
+                    if(!orphaned){
+                        segmentETags[index] = etag;
+                    }
+                    done = --remainingSegments == 0;
+                }
+
+                if(orphaned){
+                    //The upload failed while this segment was being stored, after the stored segments were deleted.
+                    container.deleteObject(segmentName(index), null);
+                }
+                else if(done){
+                    closeChannel();
+                    storeManifest();
+                }
+                else{
+                    storeNextSegment();
+                }
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                ObjectStorageContainer.logger.error("Failed to store segment " + index + " of object " + objectName);
+                fail(response, t);
+            }
+        });
+    }
+
+    private void storeManifest(){
+        JSONArray manifest = new JSONArray();
+        long offset = 0;
+
+        try {
+            for(int i = 0; i < segmentETags.length; i++){
+                long size = Math.min(segmentSize, length - offset);
+                offset += size;
+
+                JSONObject segment = new JSONObject();
+                segment.put("path", "/" + container.getName() + "/" + segmentName(i));
+                segment.put("etag", segmentETags[i]);
+                segment.put("size_bytes", size);
+                manifest.put(segment);
+            }
+        } catch (JSONException e) {
+            //Just creating JSONObject; no exceptions will occur.
+        }
+
+        ObjectStorageHttpRequest manifestRequest = new ObjectStorageHttpRequest(objectURL + "?multipart-manifest=put", Request.PUT,
+                ObjectStorageRequestBody.create(manifest.toString().getBytes()));
+        manifestRequest.setHeader(Request.CONTENT_TYPE, "application/octet-stream");
+        linkCancel(manifestRequest);
+
+        ObjectStorageTransfer.send("storeObjectManifest", manifestRequest, new ObjectStorageTransfer.ResponseHandler<ObjectStorageObject>() {
+            @Override
+            public ObjectStorageObject onResponse(ObjectStorageHttpResponse response, InputStream body) {
+                ObjectStorageContainer.logger.debug("Successfully stored object: " + objectName);
+
+                ObjectStorageContainer.cacheETag(objectURL, ObjectStorageUtils.getETag(response.getHeaders()));
+
+                return new ObjectStorageObject(objectName, container, null);
+            }
+        }, new ObjectStorageResponseListener<ObjectStorageObject>() {
+            @Override
+            public void onSuccess(ObjectStorageObject object) {
+                if(userResponseListener != null){
+                    userResponseListener.onSuccess(object);
+                }
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                ObjectStorageContainer.logger.error("Failed to store the manifest of object " + objectName);
+                fail(response, t);
+            }
+        });
+    }
+
+    /**
+     * Fails the upload once: cancels the parts still running, deletes the segments that were stored and calls the listener.
+     */
+    private void fail(Response response, Throwable t){
+        List<String> storedSegments = new ArrayList<>();
+        synchronized (this){
+            if(failed){
+                return;
+            }
+            failed = true;
+
+            //Segments that complete from now on delete themselves.
+            for(int i = 0; segmentETags != null && i < segmentETags.length; i++){
+                if(segmentETags[i] != null){
+                    storedSegments.add(segmentName(i));
+                }
+            }
+        }
+
+        upload.cancel();
+        closeChannel();
+
+        for(String segment : storedSegments){
+            container.deleteObject(segment, null);
+        }
+
+        ObjectStorageContainer.logger.error("Failed to store object: " + objectName);
+        if(userResponseListener != null){
+            userResponseListener.onFailure(response, t, null);
+        }
+    }
+
+    private void linkCancel(final ObjectStorageHttpRequest part){
+        upload.onCancel(new Runnable() {
+            @Override
+            public void run() {
+                part.cancel();
+            }
+        });
+    }
+
+    /**
+     * The options for one segment: the user's options, with progress reported for the whole file instead.
+     */
+    private ObjectStorageTransferOptions segmentOptions(final int index){
+        ObjectStorageTransferOptions segmentOptions = new ObjectStorageTransferOptions();
+        segmentOptions.setStallTimeout(options.getStallTimeout());
+        segmentOptions.setMaxRetries(options.getMaxRetries());
+        segmentOptions.setPriority(options.getPriority());
+
+        final ObjectStorageProgressListener progressListener = options.getProgressListener();
+        if(progressListener != null){
+            segmentOptions.setProgressInterval(options.getProgressIntervalMillis(), options.getProgressIntervalBytes());
+            segmentOptions.setProgressListener(new ObjectStorageProgressListener() {
+                @Override
+                public void onProgress(long bytesTransferred, long totalBytes, double bytesPerSecond) {
+                    long transferred;
+                    double rate;
+                    synchronized (ObjectStorageFileUpload.this){
+                        segmentProgress[index] = bytesTransferred;
+
+                        transferred = 0;
+                        for(long segmentBytes : segmentProgress){
+                            transferred += segmentBytes;
+                        }
+
+                        long now = System.nanoTime();
+                        long elapsedMillis = (now - lastReportNanos) / 1000000;
+                        if(transferred < length && elapsedMillis < options.getProgressIntervalMillis()){
+                            return;
+                        }
+
+                        rate = elapsedMillis > 0 ? (transferred - lastReportedBytes) * 1000.0 / elapsedMillis : 0;
+                        lastReportedBytes = transferred;
+                        lastReportNanos = now;
+                    }
+
+                    progressListener.onProgress(transferred, length, rate);
+                }
+            });
+        }
+
+        return segmentOptions;
+    }
+
+    private String segmentName(int index){
+        return segmentPrefix + String.format(Locale.US, "%08d", index);
+    }
+
+    private synchronized void closeChannel(){
+        if(channel == null){
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            ObjectStorageContainer.logger.debug("Could not close file of object " + objectName);
+        }
+        channel = null;
+    }
+
+    /**
+     * A request body that maps a region of a file when it is written. The mapped pages are copied to the connection
+     * through one transfer buffer, so the heap use is the same whatever the size of the region.
+     */
+    private static class MappedRegionBody extends ObjectStorageRequestBody {
+        private final FileChannel channel;
+        private final long offset;
+        private final long size;
+
+        MappedRegionBody(FileChannel channel, long offset, long size){
+            this.channel = channel;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public long getContentLength() {
+            return size;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+
+            byte[] buffer = ObjectStorageBufferPool.acquire(ObjectStorageContainer.TRANSFER_BUFFER_SIZE);
+            try {
+                while(region.hasRemaining()){
+                    int count = Math.min(buffer.length, region.remaining());
+                    region.get(buffer, 0, count);
+                    out.write(buffer, 0, count);
+                }
+            } finally {
+                ObjectStorageBufferPool.release(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe latency histogram. Values are kept in power of two buckets of microseconds, so recording
+ * a value never allocates and percentiles are accurate to within a factor of two.
+ */
+public class ObjectStorageHistogram {
+    private static final int BUCKET_COUNT = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Record a single latency value.
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos){
+        long micros = Math.max(0, nanos / 1000);
+
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        buckets.incrementAndGet(Math.min(bucket, BUCKET_COUNT - 1));
+
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+
+        long max = maxMicros.get();
+        while(micros > max && !maxMicros.compareAndSet(max, micros)){
+            max = maxMicros.get();
+        }
+    }
+
+    /**
+     * Get the number of recorded values.
+     * @return the number of recorded values
+     */
+    public long getCount(){
+        return count.get();
+    }
+
+    /**
+     * Get the mean of the recorded values.
+     * @return the mean latency in milliseconds, or 0 if nothing has been recorded
+     */
+    public double getMeanMillis(){
+        long recorded = count.get();
+        return recorded == 0 ? 0 : totalMicros.get() / 1000.0 / recorded;
+    }
+
+    /**
+     * Get the largest recorded value.
+     * @return the largest latency in milliseconds
+     */
+    public double getMaxMillis(){
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * Get an estimate of the given percentile. The estimate is the upper bound of the bucket the percentile falls in.
+     * @param percentile the percentile, between 0 and 100
+     * @return the estimated latency in milliseconds, or 0 if nothing has been recorded
+     */
+    public double getPercentileMillis(double percentile){
+        long recorded = count.get();
+        if(recorded == 0){
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(recorded * Math.min(100, Math.max(0, percentile)) / 100.0);
+        long seen = 0;
+
+        for(int i = 0; i < BUCKET_COUNT; i++){
+            seen += buckets.get(i);
+            if(seen >= rank && seen > 0){
+                long upperBoundMicros = i == 0 ? 0 : (1L << i) - 1;
+                return Math.min(upperBoundMicros, maxMicros.get()) / 1000.0;
+            }
+        }
+
+        return getMaxMillis();
+    }
+
+    /**
+     * Clear all recorded values.
+     */
+    public void reset(){
+        for(int i = 0; i < BUCKET_COUNT; i++){
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    /**
+     * Get a summary of this histogram as JSON, with the count, mean, max and the 50th, 90th and 99th percentiles.
+     * @return the summary as a JSON object
+     */
+    public JSONObject toJSON(){
+        JSONObject json = new JSONObject();
+
+        try {
+            json.put("count", getCount());
+            json.put("meanMillis", getMeanMillis());
+            json.put("p50Millis", getPercentileMillis(50));
+            json.put("p90Millis", getPercentileMillis(90));
+            json.put("p99Millis", getPercentileMillis(99));
+            json.put("maxMillis", getMaxMillis());
+        } catch (JSONException e) {
+            //Just creating JSONObject; no exceptions will occur.
+        }
+
+        return json;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reported to {@link ObjectStorageResponseListener#onFailure} when a streaming transfer receives an error response.
+ * It carries the status code and headers that would otherwise be available from the response.
+ */
+public class ObjectStorageHttpException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final Map<String, List<String>> headers;
+
+    /**
+     * Create an exception for an error response.
+     * @param message the error message
+     * @param statusCode the HTTP status code
+     * @param headers the response headers
+     */
+    public ObjectStorageHttpException(String message, int statusCode, Map<String, List<String>> headers){
+        super(message);
+        this.statusCode = statusCode;
+        this.headers = headers != null ? headers : Collections.<String, List<String>>emptyMap();
+    }
+
+    /**
+     * Get the HTTP status code of the error response.
+     * @return the status code
+     */
+    public int getStatusCode(){
+        return statusCode;
+    }
+
+    /**
+     * Get the headers of the error response.
+     * @return the response headers
+     */
+    public Map<String, List<String>> getHeaders(){
+        return headers;
+    }
+}
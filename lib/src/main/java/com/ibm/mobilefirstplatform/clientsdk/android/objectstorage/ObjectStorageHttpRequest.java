@@ -0,0 +1,147 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A request sent through an {@link ObjectStorageTransport}.
+ */
+public class ObjectStorageHttpRequest {
+    private final String url;
+    private final String method;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private final ObjectStorageRequestBody body;
+
+    private final List<Runnable> cancelActions = new ArrayList<>();
+    private boolean canceled = false;
+
+    /**
+     * Create a request without a body.
+     * @param url the full URL of the request
+     * @param method the HTTP method, such as GET or HEAD
+     */
+    public ObjectStorageHttpRequest(String url, String method){
+        this(url, method, null);
+    }
+
+    /**
+     * Create a request with a body.
+     * @param url the full URL of the request
+     * @param method the HTTP method, such as PUT or POST
+     * @param body the request body, or null if there is none
+     */
+    public ObjectStorageHttpRequest(String url, String method, ObjectStorageRequestBody body){
+        this.url = url;
+        this.method = method;
+        this.body = body;
+    }
+
+    /**
+     * Get the URL of this request.
+     * @return the full URL
+     */
+    public String getUrl(){
+        return url;
+    }
+
+    /**
+     * Get the HTTP method of this request.
+     * @return the HTTP method
+     */
+    public String getMethod(){
+        return method;
+    }
+
+    /**
+     * Get the body of this request.
+     * @return the request body, or null if there is none
+     */
+    public ObjectStorageRequestBody getBody(){
+        return body;
+    }
+
+    /**
+     * Set a header, replacing any previous value.
+     * @param name the header name
+     * @param value the header value
+     */
+    public synchronized void setHeader(String name, String value){
+        headers.put(name, value);
+    }
+
+    /**
+     * Get the value of a header.
+     * @param name the header name
+     * @return the header value, or null if it is not set
+     */
+    public synchronized String getHeader(String name){
+        return headers.get(name);
+    }
+
+    /**
+     * Get all headers of this request.
+     * @return an unmodifiable copy of the headers
+     */
+    public synchronized Map<String, String> getHeaders(){
+        return Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+    }
+
+    /**
+     * Cancel this request. A request in flight is aborted, and the response listener is called with a failure.
+     */
+    public void cancel(){
+        List<Runnable> actions;
+        synchronized (this){
+            if(canceled){
+                return;
+            }
+            canceled = true;
+            actions = new ArrayList<>(cancelActions);
+        }
+        for(Runnable action : actions){
+            action.run();
+        }
+    }
+
+    /**
+     * Check whether this request was canceled.
+     * @return true if {@link #cancel()} was called
+     */
+    public synchronized boolean isCanceled(){
+        return canceled;
+    }
+
+    /**
+     * Register an action that aborts this request. Transports call this when they start the request.
+     * If the request is already canceled, the action runs immediately.
+     * @param action the action that aborts the request
+     */
+    public void onCancel(Runnable action){
+        synchronized (this){
+            if(!canceled){
+                cancelActions.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    @Override
+    public String toString(){
+        return method + " " + url;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A response received through an {@link ObjectStorageTransport}. The body is streamed from the connection,
+ * and the connection is only released once the response is closed.
+ */
+public class ObjectStorageHttpResponse implements Closeable {
+    private final int status;
+    private final Map<String, List<String>> headers;
+    private final InputStream body;
+    private final long contentLength;
+
+    /**
+     * Create a response.
+     * @param status the HTTP status code
+     * @param headers the response headers
+     * @param body the response body stream, or null if there is no body
+     * @param contentLength the length of the body, or -1 if it is not known
+     */
+    public ObjectStorageHttpResponse(int status, Map<String, List<String>> headers, InputStream body, long contentLength){
+        this.status = status;
+        this.headers = headers != null ? headers : Collections.<String, List<String>>emptyMap();
+        this.body = body;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Get the HTTP status code.
+     * @return the status code
+     */
+    public int getStatus(){
+        return status;
+    }
+
+    /**
+     * Check whether the status code is in the 2xx range.
+     * @return true if the request succeeded
+     */
+    public boolean isSuccessful(){
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * Get all response headers.
+     * @return the response headers
+     */
+    public Map<String, List<String>> getHeaders(){
+        return headers;
+    }
+
+    /**
+     * Get the first value of a header. Header names are matched case-insensitively.
+     * @param name the header name
+     * @return the header value, or null if it is not present
+     */
+    public String getHeader(String name){
+        return ObjectStorageUtils.getHeader(headers, name);
+    }
+
+    /**
+     * Get the response body stream.
+     * @return the body stream, or null if there is no body
+     */
+    public InputStream getBody(){
+        return body;
+    }
+
+    /**
+     * Get the length of the response body.
+     * @return the body length, or -1 if it is not known
+     */
+    public long getContentLength(){
+        return contentLength;
+    }
+
+    /**
+     * Read the whole response body into memory.
+     * @return the body, or an empty array if there is no body
+     * @throws IOException if the body could not be read
+     */
+    public byte[] readBytes() throws IOException {
+        if(body == null){
+            return new byte[0];
+        }
+
+        return ObjectStorageUtils.readBytes(body, contentLength);
+    }
+
+    @Override
+    public void close(){
+        if(body == null){
+            return;
+        }
+        try {
+            body.close();
+        } catch (IOException e) {
+            //Closing only releases the connection; nothing else to do.
+        }
+    }
+}
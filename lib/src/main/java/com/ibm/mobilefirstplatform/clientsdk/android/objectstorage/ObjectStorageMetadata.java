@@ -0,0 +1,164 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * The metadata of an account, container or object, read from the headers of a HEAD response. Standard fields are parsed
+ * from their headers the first time they are asked for, so reading one field does not pay for parsing the others.
+ * User metadata is available with the metadata prefix removed from its names.
+ */
+public abstract class ObjectStorageMetadata {
+    //Marks a numeric field that has not been parsed yet.
+    protected static final long UNPARSED = Long.MIN_VALUE;
+
+    private static final String TIMESTAMP_HEADER = "X-Timestamp";
+    private static final String TRANS_ID_HEADER = "X-Trans-Id";
+
+    private final Map<String, List<String>> headers;
+    private final String metadataPrefix;
+
+    private Map<String, String> userMetadata = null;
+    private long timestamp = UNPARSED;
+
+    ObjectStorageMetadata(Map<String, List<String>> headers, String metadataPrefix){
+        this.headers = headers != null ? headers : Collections.<String, List<String>>emptyMap();
+        this.metadataPrefix = metadataPrefix;
+    }
+
+    /**
+     * Get the response headers this metadata was read from.
+     * @return the raw headers
+     */
+    public Map<String, List<String>> getHeaders(){
+        return headers;
+    }
+
+    /**
+     * Get the first value of the given header. Header names are matched case-insensitively.
+     * @param headerName the name of the header
+     * @return the value of the header, or null if it is not present
+     */
+    public String getHeader(String headerName){
+        return ObjectStorageUtils.getHeader(headers, headerName);
+    }
+
+    /**
+     * Get the user metadata, with the metadata prefix removed from the names. For example, the value of the
+     * X-Object-Meta-Color header of an object is returned under Color.
+     * @return an unmodifiable map of the user metadata
+     */
+    public synchronized Map<String, String> getUserMetadata(){
+        if(userMetadata == null){
+            Map<String, String> metadata = new HashMap<>();
+            int prefixLength = metadataPrefix.length();
+
+            for(Map.Entry<String, List<String>> header : headers.entrySet()){
+                String name = header.getKey();
+                if(name != null && name.length() > prefixLength && name.regionMatches(true, 0, metadataPrefix, 0, prefixLength)
+                        && header.getValue() != null && !header.getValue().isEmpty()){
+                    metadata.put(name.substring(prefixLength), header.getValue().get(0));
+                }
+            }
+
+            userMetadata = Collections.unmodifiableMap(metadata);
+        }
+
+        return userMetadata;
+    }
+
+    /**
+     * Get a single user metadata value. The name is given without the metadata prefix and is matched case-insensitively.
+     * @param name the name of the metadata
+     * @return the value, or null if it is not set
+     */
+    public String getUserMetadata(String name){
+        return getHeader(metadataPrefix + name);
+    }
+
+    /**
+     * Get the time the account, container or object was created or last changed, as reported by X-Timestamp.
+     * @return the time in milliseconds since the epoch, or -1 if it is not known
+     */
+    public synchronized long getTimestamp(){
+        if(timestamp == UNPARSED){
+            String value = getHeader(TIMESTAMP_HEADER);
+            timestamp = -1;
+            if(value != null){
+                try {
+                    timestamp = (long) (Double.parseDouble(value.trim()) * 1000);
+                } catch (NumberFormatException e) {
+                    //Leave the timestamp unknown.
+                }
+            }
+        }
+        return timestamp;
+    }
+
+    /**
+     * Get the transaction id Object Storage assigned to the request, which identifies it in Object Storage's logs.
+     * @return the transaction id, or null if it is not present
+     */
+    public String getTransactionId(){
+        return getHeader(TRANS_ID_HEADER);
+    }
+
+    /**
+     * Parse the given header as a number.
+     * @param headerName the name of the header
+     * @return the value, or -1 if the header is missing or not a number
+     */
+    protected long parseLong(String headerName){
+        String value = getHeader(headerName);
+        if(value == null){
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parse the given header as an HTTP date.
+     * @param headerName the name of the header
+     * @return the time in milliseconds since the epoch, or -1 if the header is missing or not a date
+     */
+    protected long parseDate(String headerName){
+        String value = getHeader(headerName);
+        if(value == null){
+            return -1;
+        }
+
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return format.parse(value.trim()).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString(){
+        return headers.toString();
+    }
+}
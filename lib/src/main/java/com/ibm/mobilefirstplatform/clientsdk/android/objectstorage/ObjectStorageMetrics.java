@@ -0,0 +1,319 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects latency, throughput and authentication metrics for all Object Storage operations.
+ *
+ * Metrics are disabled by default. While both metrics and {@link ObjectStorageTracer} are disabled, operations share
+ * a single no-op recorder, so the instrumentation costs two volatile reads per operation. Once enabled with {@link #setEnabled(boolean)},
+ * every operation is timed and aggregated into per operation histograms, and registered
+ * {@link ObjectStorageMetricsListener}s are notified of every completed operation.
+ */
+public final class ObjectStorageMetrics {
+
+    /**
+     * The phases an operation's latency is split into.
+     */
+    public enum Phase {TOTAL, AUTH_WAIT, QUEUE, TIME_TO_FIRST_BYTE, TRANSFER}
+
+    private static volatile boolean enabled = false;
+
+    private static final CopyOnWriteArrayList<ObjectStorageMetricsListener> listeners = new CopyOnWriteArrayList<>();
+    private static final ConcurrentHashMap<String, OperationStatistics> statistics = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicLong tokenRefreshes = new AtomicLong();
+    private static final AtomicLong cacheHits = new AtomicLong();
+    private static final AtomicLong cacheMisses = new AtomicLong();
+    private static final AtomicLong coalescedRequests = new AtomicLong();
+    private static final AtomicLong bytesSent = new AtomicLong();
+    private static final AtomicLong bytesReceived = new AtomicLong();
+    private static final AtomicLong retries = new AtomicLong();
+
+    private ObjectStorageMetrics(){
+    }
+
+    /**
+     * Enable or disable metrics collection. Operations that are already running keep their current setting.
+     * @param enableMetrics true to start collecting metrics
+     */
+    public static void setEnabled(boolean enableMetrics){
+        enabled = enableMetrics;
+    }
+
+    /**
+     * Check whether metrics are being collected.
+     * @return true if metrics collection is enabled
+     */
+    public static boolean isEnabled(){
+        return enabled;
+    }
+
+    /**
+     * Register a listener to be notified of every completed operation while metrics are enabled.
+     * @param listener the listener to be added
+     */
+    public static void addListener(ObjectStorageMetricsListener listener){
+        if(listener != null){
+            listeners.addIfAbsent(listener);
+        }
+    }
+
+    /**
+     * Unregister a listener that was added with {@link #addListener(ObjectStorageMetricsListener)}.
+     * @param listener the listener to be removed
+     */
+    public static void removeListener(ObjectStorageMetricsListener listener){
+        listeners.remove(listener);
+    }
+
+    /**
+     * Get the names of all operations that metrics have been recorded for.
+     * @return the set of operation names
+     */
+    public static Set<String> getOperations(){
+        return Collections.unmodifiableSet(new HashSet<>(statistics.keySet()));
+    }
+
+    /**
+     * Get the latency histogram of the given operation and phase.
+     * @param operation the operation name, which is the name of the SDK method
+     * @param phase the phase of the operation
+     * @return the histogram, or null if nothing has been recorded for the operation
+     */
+    public static ObjectStorageHistogram getHistogram(String operation, Phase phase){
+        OperationStatistics operationStatistics = statistics.get(operation);
+        return operationStatistics == null ? null : operationStatistics.histograms[phase.ordinal()];
+    }
+
+    /**
+     * Get the number of failures recorded for the given operation.
+     * @param operation the operation name, which is the name of the SDK method
+     * @return the number of failed operations
+     */
+    public static long getFailureCount(String operation){
+        OperationStatistics operationStatistics = statistics.get(operation);
+        return operationStatistics == null ? 0 : operationStatistics.failures.get();
+    }
+
+    /**
+     * Get the number of operations that have started but not yet completed.
+     * @return the number of operations in flight
+     */
+    public static int getInFlightCount(){
+        return inFlight.get();
+    }
+
+    /**
+     * Get the number of times a new authentication token was requested.
+     * @return the number of token refreshes
+     */
+    public static long getTokenRefreshCount(){
+        return tokenRefreshes.get();
+    }
+
+    /**
+     * Get the number of times an operation was answered from a local cache.
+     * @return the number of cache hits
+     */
+    public static long getCacheHitCount(){
+        return cacheHits.get();
+    }
+
+    /**
+     * Get the number of times a local cache was consulted without success.
+     * @return the number of cache misses
+     */
+    public static long getCacheMissCount(){
+        return cacheMisses.get();
+    }
+
+    /**
+     * Get the number of operations that joined an identical request already in flight, instead of sending their own.
+     * @return the number of coalesced operations
+     */
+    public static long getCoalescedCount(){
+        return coalescedRequests.get();
+    }
+
+    /**
+     * Get the total number of request body bytes sent.
+     * @return the number of bytes sent
+     */
+    public static long getBytesSent(){
+        return bytesSent.get();
+    }
+
+    /**
+     * Get the total number of response body bytes received.
+     * @return the number of bytes received
+     */
+    public static long getBytesReceived(){
+        return bytesReceived.get();
+    }
+
+    /**
+     * Get the total number of retried requests.
+     * @return the number of retries
+     */
+    public static long getRetryCount(){
+        return retries.get();
+    }
+
+    /**
+     * Clear all collected metrics. The in flight count is not affected.
+     */
+    public static void reset(){
+        statistics.clear();
+        tokenRefreshes.set(0);
+        cacheHits.set(0);
+        cacheMisses.set(0);
+        coalescedRequests.set(0);
+        bytesSent.set(0);
+        bytesReceived.set(0);
+        retries.set(0);
+    }
+
+    /**
+     * Get all collected metrics as JSON, with a summary of every histogram and the global counters.
+     * @return the metrics as a JSON object
+     */
+    public static JSONObject toJSON(){
+        JSONObject json = new JSONObject();
+
+        try {
+            json.put("inFlight", getInFlightCount());
+            json.put("tokenRefreshes", getTokenRefreshCount());
+            json.put("cacheHits", getCacheHitCount());
+            json.put("cacheMisses", getCacheMissCount());
+            json.put("coalesced", getCoalescedCount());
+            json.put("bytesSent", getBytesSent());
+            json.put("bytesReceived", getBytesReceived());
+            json.put("retries", getRetryCount());
+
+            JSONObject operationsJSON = new JSONObject();
+            for(Map.Entry<String, OperationStatistics> entry : statistics.entrySet()){
+                JSONObject operationJSON = new JSONObject();
+                operationJSON.put("failures", entry.getValue().failures.get());
+                for(Phase phase : Phase.values()){
+                    operationJSON.put(phase.name(), entry.getValue().histograms[phase.ordinal()].toJSON());
+                }
+                operationsJSON.put(entry.getKey(), operationJSON);
+            }
+            json.put("operations", operationsJSON);
+        } catch (JSONException e) {
+            //Just creating JSONObject; no exceptions will occur.
+        }
+
+        return json;
+    }
+
+    /**
+     * Start recording a new operation. When metrics are disabled, a shared recorder that ignores everything is returned.
+     */
+    static ObjectStorageOperationMetrics start(String operation){
+        boolean aggregated = enabled;
+        boolean traced = ObjectStorageTracer.isEnabled();
+        if(!aggregated && !traced){
+            return ObjectStorageOperationMetrics.DISABLED;
+        }
+
+        if(aggregated){
+            inFlight.incrementAndGet();
+        }
+        return new ObjectStorageOperationMetrics(operation, aggregated, traced, tokenRefreshes.get());
+    }
+
+    static void tokenRefreshed(){
+        if(enabled || ObjectStorageTracer.isEnabled()){
+            tokenRefreshes.incrementAndGet();
+        }
+    }
+
+    static void cacheHit(){
+        cacheHits.incrementAndGet();
+    }
+
+    static void cacheMiss(){
+        cacheMisses.incrementAndGet();
+    }
+
+    static void coalesced(){
+        coalescedRequests.incrementAndGet();
+    }
+
+    static void completed(ObjectStorageOperationMetrics metrics){
+        if(metrics.isTraced()){
+            ObjectStorageTracer.completed(metrics);
+        }
+        if(!metrics.isAggregated()){
+            return;
+        }
+
+        inFlight.decrementAndGet();
+
+        OperationStatistics operationStatistics = statistics.get(metrics.getOperation());
+        if(operationStatistics == null){
+            operationStatistics = new OperationStatistics();
+            OperationStatistics existing = statistics.putIfAbsent(metrics.getOperation(), operationStatistics);
+            if(existing != null){
+                operationStatistics = existing;
+            }
+        }
+
+        operationStatistics.histograms[Phase.TOTAL.ordinal()].record(metrics.getTotalNanos());
+        operationStatistics.histograms[Phase.AUTH_WAIT.ordinal()].record(metrics.getAuthWaitNanos());
+        operationStatistics.histograms[Phase.QUEUE.ordinal()].record(metrics.getQueueNanos());
+        operationStatistics.histograms[Phase.TIME_TO_FIRST_BYTE.ordinal()].record(metrics.getTimeToFirstByteNanos());
+        operationStatistics.histograms[Phase.TRANSFER.ordinal()].record(metrics.getTransferNanos());
+
+        if(!metrics.isSuccessful()){
+            operationStatistics.failures.incrementAndGet();
+        }
+
+        bytesSent.addAndGet(metrics.getBytesSent());
+        bytesReceived.addAndGet(metrics.getBytesReceived());
+        retries.addAndGet(metrics.getRetries());
+
+        for(ObjectStorageMetricsListener listener : listeners){
+            try {
+                listener.onOperationCompleted(metrics);
+            } catch (RuntimeException e) {
+                ObjectStorage.logger.error("Metrics listener failed.", e);
+            }
+        }
+    }
+
+    private static class OperationStatistics {
+        final ObjectStorageHistogram[] histograms = new ObjectStorageHistogram[Phase.values().length];
+        final AtomicLong failures = new AtomicLong();
+
+        OperationStatistics(){
+            for(int i = 0; i < histograms.length; i++){
+                histograms[i] = new ObjectStorageHistogram();
+            }
+        }
+    }
+}
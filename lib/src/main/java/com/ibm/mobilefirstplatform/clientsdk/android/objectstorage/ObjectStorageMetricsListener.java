@@ -0,0 +1,26 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+/**
+ * Listener interface for receiving the metrics of every completed Object Storage operation.
+ * Register it with {@link ObjectStorageMetrics#addListener(ObjectStorageMetricsListener)}.
+ */
+public interface ObjectStorageMetricsListener {
+
+    /**
+     * Called once an operation has completed, successfully or not. This is called on the thread that completed
+     * the operation, so implementations should return quickly.
+     * @param metrics the metrics recorded for the operation
+     */
+    void onOperationCompleted(ObjectStorageOperationMetrics metrics);
+}
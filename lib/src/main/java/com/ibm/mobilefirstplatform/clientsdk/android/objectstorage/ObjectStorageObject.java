@@ -17,7 +17,13 @@ import com.ibm.mobilefirstplatform.clientsdk.android.logger.api.Logger;
 
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -27,6 +33,9 @@ import java.util.Map;
 public class ObjectStorageObject {
     public static final String METADATA_PREFIX = "X-Object-Meta-";
 
+    protected static final String COPY_FROM_HEADER = "X-Copy-From";
+    protected static final String FRESH_METADATA_HEADER = "X-Fresh-Metadata";
+
     public static Logger logger = Logger.getLogger(Logger.INTERNAL_PREFIX + ObjectStorageObject.class.getName());
 
     protected String name = null;
@@ -65,32 +74,354 @@ public class ObjectStorageObject {
      */
     public void load(final boolean shouldCache, final ObjectStorageResponseListener<byte[]> userResponseListener){
         logger.debug("Loading object: " + name);
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("loadObject");
+
+        byte[] cachedBytes = loadFromCache(metrics, shouldCache);
+        if(cachedBytes != null){
+            if(userResponseListener != null){
+                userResponseListener.onSuccess(cachedBytes);
+            }
+            return;
+        }
+
+        final ObjectStorageSingleFlight.Flight<byte[]> flight = ObjectStorageSingleFlight.join(Request.GET + " " + url, cachingListener(shouldCache, userResponseListener), metrics, null);
+        if(flight == null){
+            return;
+        }
+
         ObjectStorage.refreshAuthToken(new ObjectStorageResponseListener<String>() {
             @Override
             public void onSuccess(String authToken) {
+                metrics.authenticated();
+
                 Request loadRequest = new Request(url, Request.GET);
 
                 loadRequest.addHeader(ObjectStorage.AUTH_HEADER, authToken);
 
+                metrics.requestSent(0);
+
                 loadRequest.send(null, new ResponseListener() {
                     @Override
                     public void onSuccess(Response response) {
+                        metrics.succeeded(response, true);
+
                         logger.debug("Successfully loaded object: " + name);
 
                         byte[] data = response.getResponseBytes();
 
-                        if(shouldCache){
-                            bytes = data;
-                        }
+                        ObjectStorageContainer.cacheETag(url, ObjectStorageUtils.getETag(response.getHeaders()));
+
+                        flight.onSuccess(data);
+                    }
+
+                    @Override
+                    public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
+                        logger.error("Failed to load object: " + name);
+                        flight.onFailure(response, t, extendedInfo);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
+                logger.error("Could not authenticate to Object Storage. Call ObjectStorage.connect() in order to do so.");
+                flight.onFailure(response, t, extendedInfo);
+            }
+        });
+    }
+
+    /**
+     * Load the given object's data from Object Storage into the given stream. The data is streamed through the
+     * {@link ObjectStorageTransport} as it arrives, so large objects can be written to a file without being held in memory.
+     * The stream is not closed.
+     * @param destination the stream the object's data is written to
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the number of bytes written.
+     * @return the download request, which may be canceled
+     */
+    public ObjectStorageHttpRequest load(final OutputStream destination, final ObjectStorageResponseListener<Long> userResponseListener){
+        return load(destination, null, userResponseListener);
+    }
+
+    /**
+     * Load the given object's data from Object Storage into the given stream, reporting progress and detecting stalls as
+     * set in the given options. A stalled download resumes where it stopped, so nothing is written to the stream twice.
+     * The stream is not closed.
+     * @param destination the stream the object's data is written to
+     * @param options the progress and stall detection options, or null for the defaults
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the number of bytes written.
+     * @return the download request, which may be canceled
+     */
+    public ObjectStorageHttpRequest load(final OutputStream destination, ObjectStorageTransferOptions options, final ObjectStorageResponseListener<Long> userResponseListener){
+        logger.debug("Loading object: " + name);
+
+        ObjectStorageHttpRequest loadRequest = new ObjectStorageHttpRequest(url, Request.GET);
+
+        ObjectStorageTransfer.send("loadObject", loadRequest, options, new ObjectStorageTransfer.ResponseHandler<Long>() {
+            @Override
+            public Long onResponse(ObjectStorageHttpResponse response, InputStream body) throws IOException {
+                long written = ObjectStorageUtils.copy(body, destination);
+
+                logger.debug("Successfully loaded object: " + name);
+
+                ObjectStorageContainer.cacheETag(url, ObjectStorageUtils.getETag(response.getHeaders()));
+
+                return written;
+            }
+        }, userResponseListener);
+
+        return loadRequest;
+    }
+
+    /**
+     * Load the given object's data from Object Storage as a byte array, reporting progress and detecting stalls as set in the given options.
+     * @param shouldCache specify whether this object's data should be cached in memory, which can be accessed with {@link #getCachedData()}
+     * @param options the progress and stall detection options, or null for the defaults
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the object's data as a byte array.
+     * @return the download request, which may be canceled
+     */
+    public ObjectStorageHttpRequest load(final boolean shouldCache, ObjectStorageTransferOptions options, final ObjectStorageResponseListener<byte[]> userResponseListener){
+        logger.debug("Loading object: " + name);
+
+        ObjectStorageHttpRequest loadRequest = new ObjectStorageHttpRequest(url, Request.GET);
+
+        ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("loadObject");
+        byte[] cachedBytes = loadFromCache(metrics, shouldCache);
+        if(cachedBytes != null){
+            if(userResponseListener != null){
+                userResponseListener.onSuccess(cachedBytes);
+            }
+            return loadRequest;
+        }
+
+        //Joining callers cancel with their own request; the shared download is only canceled once all of them have.
+        ObjectStorageSingleFlight.Flight<byte[]> flight = ObjectStorageSingleFlight.join(Request.GET + " " + url + ObjectStorageSingleFlight.TRANSFER, cachingListener(shouldCache, userResponseListener), metrics, loadRequest);
+        if(flight == null){
+            return loadRequest;
+        }
+
+        ObjectStorageHttpRequest sharedRequest = new ObjectStorageHttpRequest(url, Request.GET);
+        flight.setRequest(sharedRequest);
+
+        ObjectStorageTransfer.send(metrics, sharedRequest, options, new ObjectStorageTransfer.ResponseHandler<byte[]>() {
+            @Override
+            public byte[] onResponse(ObjectStorageHttpResponse response, InputStream body) throws IOException {
+                byte[] data = ObjectStorageUtils.readBytes(body, response.getContentLength());
+
+                logger.debug("Successfully loaded object: " + name);
+
+                ObjectStorageContainer.cacheETag(url, ObjectStorageUtils.getETag(response.getHeaders()));
+
+                return data;
+            }
+        }, flight);
+
+        return loadRequest;
+    }
+
+    /**
+     * Load the given object's data from Object Storage into an array lent from the {@link ObjectStorageBufferPool}, so
+     * repeated downloads reuse the same memory instead of allocating a new array each time. The caller must call
+     * {@link ObjectStoragePooledBuffer#release()} once it is done with the data.
+     * @param options the progress and stall detection options, or null for the defaults
+     * @param userResponseListener a response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the object's data in a pooled buffer.
+     * @return the download request, which may be canceled
+     */
+    public ObjectStorageHttpRequest loadPooled(ObjectStorageTransferOptions options, final ObjectStorageResponseListener<ObjectStoragePooledBuffer> userResponseListener){
+        logger.debug("Loading object: " + name);
+
+        ObjectStorageHttpRequest loadRequest = new ObjectStorageHttpRequest(url, Request.GET);
+
+        ObjectStorageTransfer.send("loadObject", loadRequest, options, new ObjectStorageTransfer.ResponseHandler<ObjectStoragePooledBuffer>() {
+            @Override
+            public ObjectStoragePooledBuffer onResponse(ObjectStorageHttpResponse response, InputStream body) throws IOException {
+                ObjectStoragePooledBuffer data = ObjectStorageUtils.readPooled(body, response.getContentLength());
+
+                logger.debug("Successfully loaded object: " + name);
+
+                ObjectStorageContainer.cacheETag(url, ObjectStorageUtils.getETag(response.getHeaders()));
+
+                return data;
+            }
+        }, userResponseListener);
+
+        return loadRequest;
+    }
+
+    /**
+     * Wraps the listener so the loaded data is cached in this object. When identical loads are coalesced, the data is
+     * loaded by another caller, which may be another instance of this object.
+     */
+    private ObjectStorageResponseListener<byte[]> cachingListener(final boolean shouldCache, final ObjectStorageResponseListener<byte[]> userResponseListener){
+        return new ObjectStorageResponseListener<byte[]>() {
+            @Override
+            public void onSuccess(byte[] data) {
+                if(shouldCache){
+                    bytes = data;
+                }
+                if(userResponseListener != null){
+                    userResponseListener.onSuccess(data);
+                }
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                if(userResponseListener != null){
+                    userResponseListener.onFailure(response, t, extendedInfo);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns this object's data from the {@link ObjectStorageObjectCache}, or null if it is not cached.
+     * The given metrics are completed on a cache hit.
+     */
+    private byte[] loadFromCache(ObjectStorageOperationMetrics metrics, boolean shouldCache){
+        byte[] cachedBytes = ObjectStorageObjectCache.get(url);
+        if(cachedBytes == null){
+            metrics.cacheMiss();
+            return null;
+        }
+
+        metrics.cacheHit();
+        metrics.completed(true, 0, 0);
+
+        logger.debug("Loaded object from cache: " + name);
+
+        if(shouldCache){
+            bytes = cachedBytes;
+        }
+
+        return cachedBytes;
+    }
+
+    /**
+     * Open a read only channel over this object's data, which reads the parts it is asked for with Range requests instead
+     * of downloading the whole object. The channel blocks while it reads, so it must not be used on the main thread.
+     * Requires Android 7.0 (API level 24).
+     * @return a channel that reads the object in blocks of {@link ObjectStorageObjectChannel#DEFAULT_BLOCK_SIZE} bytes
+     */
+    public ObjectStorageObjectChannel openChannel(){
+        return openChannel(ObjectStorageObjectChannel.DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Open a read only channel over this object's data that reads the object in blocks of the given size. Small blocks
+     * suit scattered small reads, large blocks suit reading long stretches of the object.
+     * Requires Android 7.0 (API level 24).
+     * @param blockSize the size of the blocks the object is read and cached in, in bytes
+     * @return a channel that reads the object with Range requests
+     */
+    public ObjectStorageObjectChannel openChannel(int blockSize){
+        return new ObjectStorageObjectChannel(url, blockSize, ObjectStorageObjectChannel.DEFAULT_CACHED_BLOCKS);
+    }
+
+    /**
+     * Get a temporary URL for this object that can be used without authenticating, for example by an image loader or a
+     * media player. The URL is signed locally with the account's TempURL key, so no request is made. The key must have been
+     * set with {@link ObjectStorage#updateAccountMetadata(Map, ObjectStorageResponseListener)} or {@link ObjectStorage#setTempURLKey(String)}.
+     * A URL signed for GET or PUT can also be used for HEAD.
+     * @param method the HTTP method the URL may be used with, such as GET or PUT
+     * @param ttlSeconds how long the URL is valid, in seconds
+     * @return the temporary URL, or null if no TempURL key is known
+     */
+    public String getTempURL(String method, long ttlSeconds){
+        String key = ObjectStorage.getTempURLKey();
+        if(key == null){
+            logger.error("No TempURL key is known. Set " + ObjectStorage.TEMP_URL_KEY_HEADER + " with ObjectStorage.updateAccountMetadata() or call ObjectStorage.setTempURLKey() first.");
+            return null;
+        }
+
+        String path;
+        try {
+            path = new URL(url).getPath();
+        } catch (MalformedURLException e) {
+            logger.error("Cannot create a TempURL for " + url + ": " + e.getMessage());
+            return null;
+        }
+
+        long expires = System.currentTimeMillis() / 1000 + ttlSeconds;
+        String signature = ObjectStorageUtils.hmacSHA1Hex(key, method.toUpperCase(Locale.US) + "\n" + expires + "\n" + path);
+
+        return url + "?temp_url_sig=" + signature + "&temp_url_expires=" + expires;
+    }
+
+    /**
+     * Copy this object to the given container and name on the server, without downloading it. The copy keeps this object's metadata.
+     * @param containerName the name of the container to copy the object to, which may be this object's container
+     * @param objectName the name of the copy
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the copy, which has no cached data.
+     */
+    public void copyTo(String containerName, String objectName, ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        copyTo(containerName, objectName, null, false, userResponseListener);
+    }
+
+    /**
+     * Copy this object to the given container and name on the server, without downloading it. Large objects are copied by
+     * copying their manifest, so the copy shares the segments of this object and no data is copied.
+     * @param containerName the name of the container to copy the object to, which may be this object's container
+     * @param objectName the name of the copy
+     * @param metadataUpdates the metadata to set on the copy, with keys such as X-Object-Meta-Author, or null for none
+     * @param freshMetadata if false, the given metadata replaces the matching keys of this object's metadata; if true, the copy only has the given metadata
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the copy, which has no cached data.
+     */
+    public void copyTo(final String containerName, final String objectName, final Map<String, String> metadataUpdates, final boolean freshMetadata, final ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        if(url == null){
+            logger.error("You have not yet authenticated to Object Storage. Call ObjectStorage.connect() first.");
+            return;
+        }
+
+        final String destinationURL = ObjectStorage.objectStorageURL + "/" + containerName + "/" + objectName;
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("copyObject");
+
+        ObjectStorage.refreshAuthToken(new ObjectStorageResponseListener<String>() {
+            @Override
+            public void onSuccess(String authToken) {
+                metrics.authenticated();
+
+                //With multipart-manifest=get the manifest of a large object is copied instead of its assembled data.
+                Request copyRequest = new Request(destinationURL + "?multipart-manifest=get", Request.PUT);
+
+                copyRequest.addHeader(ObjectStorage.AUTH_HEADER, authToken);
+                copyRequest.addHeader(COPY_FROM_HEADER, "/" + container.getName() + "/" + name);
+
+                if(freshMetadata){
+                    copyRequest.addHeader(FRESH_METADATA_HEADER, "true");
+                }
+
+                if(metadataUpdates != null){
+                    for(Map.Entry<String, String> metadata : metadataUpdates.entrySet()){
+                        copyRequest.addHeader(metadata.getKey(), metadata.getValue());
+                    }
+                }
+
+                String body = "";
+
+                metrics.requestSent(body.length());
+
+                copyRequest.send(null, body, new ResponseListener() {
+                    @Override
+                    public void onSuccess(Response response) {
+                        metrics.succeeded(response, false);
+
+                        logger.debug("Successfully copied object " + name + " to " + containerName + "/" + objectName);
+
+                        ObjectStorageContainer.cacheETag(destinationURL, ObjectStorageUtils.getETag(response.getHeaders()));
 
                         if(userResponseListener != null){
-                            userResponseListener.onSuccess(data);
+                            userResponseListener.onSuccess(new ObjectStorageObject(objectName, new ObjectStorageContainer(containerName), null));
                         }
                     }
 
                     @Override
                     public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
-                        logger.error("Failed to load object: " + name);
+                        metrics.failed(response);
+
+                        logger.error("Failed to copy object " + name + " to " + containerName + "/" + objectName);
                         if(userResponseListener != null){
                             userResponseListener.onFailure(response, t, extendedInfo);
                         }
@@ -100,6 +431,8 @@ public class ObjectStorageObject {
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
                 logger.error("Could not authenticate to Object Storage. Call ObjectStorage.connect() in order to do so.");
                 if(userResponseListener != null){
                     userResponseListener.onFailure(response, t, extendedInfo);
@@ -108,6 +441,70 @@ public class ObjectStorageObject {
         });
     }
 
+    /**
+     * Move this object to the given container and name on the server, without downloading it. Object Storage has no rename,
+     * so the object is copied with its metadata and then deleted. If the delete fails, onFailure is called and both objects exist.
+     * @param containerName the name of the container to move the object to, which may be this object's container
+     * @param objectName the new name of the object
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the moved object, which has no cached data.
+     */
+    public void moveTo(String containerName, String objectName, ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        moveTo(containerName, objectName, null, false, userResponseListener);
+    }
+
+    /**
+     * Move this object to the given container and name on the server, changing its metadata on the way, as with
+     * {@link #copyTo(String, String, Map, boolean, ObjectStorageResponseListener)}. Moving an object onto itself never deletes it;
+     * only its metadata is updated, if any updates are given.
+     * @param containerName the name of the container to move the object to, which may be this object's container
+     * @param objectName the new name of the object
+     * @param metadataUpdates optional metadata headers to set on the moved object, e.g. X-Object-Meta-Name or Content-Type
+     * @param freshMetadata if true, the moved object only keeps the metadata in metadataUpdates instead of this object's metadata
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the moved object, which has no cached data.
+     */
+    public void moveTo(final String containerName, final String objectName, Map<String, String> metadataUpdates, boolean freshMetadata, final ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        if(containerName.equals(container.getName()) && objectName.equals(name)){
+            //Deleting after the copy would delete the only copy of the object.
+            if(freshMetadata || (metadataUpdates != null && !metadataUpdates.isEmpty())){
+                copyTo(containerName, objectName, metadataUpdates, freshMetadata, userResponseListener);
+            }
+            else if(userResponseListener != null){
+                userResponseListener.onSuccess(new ObjectStorageObject(objectName, container, null));
+            }
+            return;
+        }
+
+        copyTo(containerName, objectName, metadataUpdates, freshMetadata, new ObjectStorageResponseListener<ObjectStorageObject>() {
+            @Override
+            public void onSuccess(final ObjectStorageObject copy) {
+                delete(new ObjectStorageResponseListener<Void>() {
+                    @Override
+                    public void onSuccess(Void returnValue) {
+                        logger.debug("Successfully moved object " + name + " to " + containerName + "/" + objectName);
+                        if(userResponseListener != null){
+                            userResponseListener.onSuccess(copy);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        logger.error("Copied object " + name + " to " + containerName + "/" + objectName + " but failed to delete the original.");
+                        if(userResponseListener != null){
+                            userResponseListener.onFailure(response, t, extendedInfo);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                if(userResponseListener != null){
+                    userResponseListener.onFailure(response, t, extendedInfo);
+                }
+            }
+        });
+    }
+
     /**
      * Delete this object from Object Storage. It only deletes the object from the container from which it was retrieved.
      * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with null parameters.
@@ -116,6 +513,28 @@ public class ObjectStorageObject {
         container.deleteObject(name, userResponseListener);
     }
 
+    /**
+     * Get the object metadata as an ObjectStorageObjectMetadata, whose standard fields are parsed only when they are read.
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the object metadata.
+     */
+    public void getTypedMetadata(final ObjectStorageResponseListener<ObjectStorageObjectMetadata> userResponseListener){
+        getMetadata(new ObjectStorageResponseListener<Map<String, List<String>>>() {
+            @Override
+            public void onSuccess(Map<String, List<String>> headers) {
+                if(userResponseListener != null){
+                    userResponseListener.onSuccess(new ObjectStorageObjectMetadata(headers));
+                }
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                if(userResponseListener != null){
+                    userResponseListener.onFailure(response, t, extendedInfo);
+                }
+            }
+        });
+    }
+
     /**
      * Get a map of the metadata associated with this object.
      * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with a map of the object's metadata.
@@ -125,46 +544,95 @@ public class ObjectStorageObject {
             logger.error("You have not yet authenticated to Object Storage. Call ObjectStorage.connect() first.");
             return;
         }
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("getObjectMetadata");
+
+        final ObjectStorageSingleFlight.Flight<Map<String, List<String>>> flight = ObjectStorageSingleFlight.join(Request.HEAD + " " + url, userResponseListener, metrics, null);
+        if(flight == null){
+            return;
+        }
+
         ObjectStorage.refreshAuthToken(new ObjectStorageResponseListener<String>() {
             @Override
             public void onSuccess(String authToken) {
+                metrics.authenticated();
+
                 Request containerRequest = new Request(url, Request.HEAD);
 
                 containerRequest.addHeader(ObjectStorage.AUTH_HEADER, authToken);
 
+                metrics.requestSent(0);
+
                 containerRequest.send(null, new ResponseListener() {
                     @Override
                     public void onSuccess(Response response) {
+                        metrics.succeeded(response, false);
+
                         Map<String, List<String>> metadataMap = response.getHeaders();
 
                         logger.debug("Successfully retrieved object metadata.");
 
-                        if(userResponseListener != null){
-                            userResponseListener.onSuccess(metadataMap);
-                        }
+                        flight.onSuccess(metadataMap);
                     }
 
                     @Override
                     public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
                         logger.error("Failed to retrieve object metadata.");
-                        if(userResponseListener != null){
-                            userResponseListener.onFailure(response, t, extendedInfo);
-                        }
+                        flight.onFailure(response, t, extendedInfo);
                     }
                 });
             }
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
                 logger.error("Could not authenticate to Object Storage. Call ObjectStorage.connect() in order to do so.");
-                if(userResponseListener != null){
-                    userResponseListener.onFailure(response, t, extendedInfo);
-                }
+                flight.onFailure(response, t, extendedInfo);
             }
         });
 
     }
 
+    /**
+     * Get a map of the metadata associated with this object through the {@link ObjectStorageTransport}, detecting stalls
+     * as set in the given options. If the server responds with an error, onFailure is called with a null response and an
+     * {@link ObjectStorageHttpException}.
+     * @param options the stall detection options, or null for the defaults
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with a map of the object's metadata.
+     * @return the metadata request, which may be canceled
+     */
+    public ObjectStorageHttpRequest getMetadata(ObjectStorageTransferOptions options, ObjectStorageResponseListener<Map<String, List<String>>> userResponseListener){
+        ObjectStorageHttpRequest metadataRequest = new ObjectStorageHttpRequest(url, Request.HEAD);
+
+        if(url == null){
+            logger.error("You have not yet authenticated to Object Storage. Call ObjectStorage.connect() first.");
+            return metadataRequest;
+        }
+        ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("getObjectMetadata");
+
+        //Joining callers cancel with their own request; the shared request is only canceled once all of them have.
+        ObjectStorageSingleFlight.Flight<Map<String, List<String>>> flight = ObjectStorageSingleFlight.join(Request.HEAD + " " + url + ObjectStorageSingleFlight.TRANSFER, userResponseListener, metrics, metadataRequest);
+        if(flight == null){
+            return metadataRequest;
+        }
+
+        ObjectStorageHttpRequest sharedRequest = new ObjectStorageHttpRequest(url, Request.HEAD);
+        flight.setRequest(sharedRequest);
+
+        ObjectStorageTransfer.send(metrics, sharedRequest, options, new ObjectStorageTransfer.ResponseHandler<Map<String, List<String>>>() {
+            @Override
+            public Map<String, List<String>> onResponse(ObjectStorageHttpResponse response, InputStream body) {
+                logger.debug("Successfully retrieved object metadata.");
+
+                return response.getHeaders();
+            }
+        }, flight);
+
+        return metadataRequest;
+    }
+
     /**
      * Update this object's metadata with the given map of metadata values. In order to do so, prefix all metadata names with {@link #METADATA_PREFIX};
      * @param metadataUpdates a map of the metadata to be added to this object
@@ -176,9 +644,13 @@ public class ObjectStorageObject {
             return;
         }
 
+        final ObjectStorageOperationMetrics metrics = ObjectStorageMetrics.start("updateObjectMetadata");
+
         ObjectStorage.refreshAuthToken(new ObjectStorageResponseListener<String>() {
             @Override
             public void onSuccess(String authToken) {
+                metrics.authenticated();
+
                 Request containerRequest = new Request(url, Request.POST);
 
                 containerRequest.addHeader(ObjectStorage.AUTH_HEADER, authToken);
@@ -189,9 +661,13 @@ public class ObjectStorageObject {
 
                 String body = "";
 
+                metrics.requestSent(body.length());
+
                 containerRequest.send(null, body, new ResponseListener() {
                     @Override
                     public void onSuccess(Response response) {
+                        metrics.succeeded(response, true);
+
                         logger.debug("Object metadata successfully updated.");
                         if(userResponseListener != null){
                             userResponseListener.onSuccess(null);
@@ -200,6 +676,8 @@ public class ObjectStorageObject {
 
                     @Override
                     public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        metrics.failed(response);
+
                         logger.error("Failed to update object metadata.");
                         if(userResponseListener != null){
                             userResponseListener.onFailure(response, t, extendedInfo);
@@ -210,6 +688,8 @@ public class ObjectStorageObject {
 
             @Override
             public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+
                 logger.error("Could not authenticate to Object Storage. Call ObjectStorage.connect() in order to do so.");
                 if(userResponseListener != null){
                     userResponseListener.onFailure(response, t, extendedInfo);
@@ -0,0 +1,194 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-memory cache of object data shared by all containers, filled by the {@link ObjectStoragePrefetcher}.
+ * {@link ObjectStorageContainer#getObject(String, ObjectStorageResponseListener)} and
+ * {@link ObjectStorageObject#load(boolean, ObjectStorageResponseListener)} answer from the cache when they can.
+ *
+ * Entries are evicted least recently used first once the cache grows beyond {@link #getMaxBytes()}, and expire after
+ * {@link #getMaxAge()} milliseconds. Storing, copying over or deleting an object through this SDK removes it from the cache.
+ */
+public final class ObjectStorageObjectCache {
+    public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+    public static final long DEFAULT_MAX_AGE = TimeUnit.MINUTES.toMillis(1);
+
+    private static final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static long maxBytes = DEFAULT_MAX_BYTES;
+    private static long maxAge = DEFAULT_MAX_AGE;
+    private static long size = 0;
+
+    private ObjectStorageObjectCache(){
+    }
+
+    /**
+     * Set the largest amount of object data kept in the cache.
+     * @param bytes the size limit in bytes, or 0 to disable the cache
+     */
+    public static void setMaxBytes(long bytes){
+        synchronized (entries){
+            maxBytes = Math.max(0, bytes);
+            trim(maxBytes);
+        }
+    }
+
+    /**
+     * Get the largest amount of object data kept in the cache.
+     * @return the size limit in bytes
+     */
+    public static long getMaxBytes(){
+        synchronized (entries){
+            return maxBytes;
+        }
+    }
+
+    /**
+     * Set how long cached data may be used. Objects changed by other clients are seen after at most this long.
+     * @param millis the maximum age of an entry in milliseconds
+     */
+    public static void setMaxAge(long millis){
+        synchronized (entries){
+            maxAge = Math.max(0, millis);
+        }
+    }
+
+    /**
+     * Get how long cached data may be used.
+     * @return the maximum age of an entry in milliseconds
+     */
+    public static long getMaxAge(){
+        synchronized (entries){
+            return maxAge;
+        }
+    }
+
+    /**
+     * Get the amount of object data currently in the cache.
+     * @return the size of the cache in bytes
+     */
+    public static long getSize(){
+        synchronized (entries){
+            return size;
+        }
+    }
+
+    /**
+     * Evict the least recently used entries until the cache is no larger than the given size, for example when the
+     * application is told to trim its memory.
+     * @param bytes the size to trim the cache to
+     */
+    public static void trimToSize(long bytes){
+        synchronized (entries){
+            trim(bytes);
+        }
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public static void clear(){
+        synchronized (entries){
+            entries.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * Returns a copy of the cached data of the given object, or null if it is not cached. Every caller gets its own copy,
+     * so a caller that modifies the data does not change what other callers get.
+     */
+    static byte[] get(String objectURL){
+        byte[] data = lookup(objectURL);
+        return data != null ? data.clone() : null;
+    }
+
+    static boolean contains(String objectURL){
+        return lookup(objectURL) != null;
+    }
+
+    private static byte[] lookup(String objectURL){
+        synchronized (entries){
+            Entry entry = entries.get(objectURL);
+            if(entry == null){
+                return null;
+            }
+
+            if(System.currentTimeMillis() - entry.createdMillis > maxAge){
+                remove(objectURL);
+                return null;
+            }
+
+            return entry.data;
+        }
+    }
+
+    static void put(String objectURL, byte[] data, String etag){
+        synchronized (entries){
+            if(data == null || data.length > maxBytes){
+                return;
+            }
+
+            remove(objectURL);
+            entries.put(objectURL, new Entry(data, etag));
+            size += data.length;
+            trim(maxBytes);
+        }
+    }
+
+    /**
+     * Drops the cached data of an object unless it has the given ETag, which is the object's latest known ETag or null
+     * if the object was deleted.
+     */
+    static void invalidate(String objectURL, String etag){
+        synchronized (entries){
+            Entry entry = entries.get(objectURL);
+            if(entry != null && (etag == null || !etag.equals(entry.etag))){
+                remove(objectURL);
+            }
+        }
+    }
+
+    static void remove(String objectURL){
+        synchronized (entries){
+            Entry entry = entries.remove(objectURL);
+            if(entry != null){
+                size -= entry.data.length;
+            }
+        }
+    }
+
+    private static void trim(long bytes){
+        Iterator<Entry> iterator = entries.values().iterator();
+        while(size > bytes && iterator.hasNext()){
+            size -= iterator.next().data.length;
+            iterator.remove();
+        }
+    }
+
+    private static class Entry {
+        final byte[] data;
+        final String etag;
+        final long createdMillis = System.currentTimeMillis();
+
+        Entry(byte[] data, String etag){
+            this.data = data;
+            this.etag = etag;
+        }
+    }
+}
@@ -0,0 +1,497 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Request;
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Response;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A read only channel over an object's data, for reading parts of large objects without downloading them.
+ * The object is read in blocks with HTTP Range requests and recently read blocks are cached, so small reads close to
+ * each other cost one request. Missing blocks next to each other are fetched with a single request, and sequential
+ * reads fetch a growing number of blocks ahead of the position.
+ *
+ * Every request after the first one asks for the ETag the object had then, so a channel never mixes the data of two
+ * versions of the object; reading from an object that was replaced fails with an {@link ObjectStorageHttpException}
+ * with status 412.
+ *
+ * Reads block the calling thread, so the channel must not be used on the main thread. {@link SeekableByteChannel} is
+ * only available from Android 7.0 (API level 24).
+ */
+@TargetApi(Build.VERSION_CODES.N)
+public class ObjectStorageObjectChannel implements SeekableByteChannel {
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    public static final int DEFAULT_CACHED_BLOCKS = 32;
+
+    private static final String RANGE_HEADER = "Range";
+    private static final String CONTENT_RANGE_HEADER = "Content-Range";
+    private static final String IF_MATCH_HEADER = "If-Match";
+
+    private static final int RANGE_NOT_SATISFIABLE = 416;
+
+    private final String url;
+    private final int blockSize;
+    private final int maxFetchBlocks;
+    private final LinkedHashMap<Long, byte[]> blocks;
+
+    private boolean open = true;
+    private long position = 0;
+    private long size = -1;
+    private String etag = null;
+
+    private long sequentialPosition = 0;
+    private int readAheadBlocks = 0;
+    private int requestCount = 0;
+
+    ObjectStorageObjectChannel(String url, int blockSize, final int cachedBlocks){
+        if(blockSize <= 0){
+            throw new IllegalArgumentException("The block size must be positive.");
+        }
+        if(cachedBlocks < 2){
+            throw new IllegalArgumentException("At least two blocks must be cached.");
+        }
+
+        this.url = url;
+        this.blockSize = blockSize;
+        //A single read never fetches more than half the cache, so it does not evict the blocks it is about to copy.
+        this.maxFetchBlocks = cachedBlocks / 2;
+        this.blocks = new LinkedHashMap<Long, byte[]>(cachedBlocks, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                if(size() <= cachedBlocks){
+                    return false;
+                }
+                ObjectStorageBufferPool.release(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Read bytes from the object at the current position. A read may return fewer bytes than the buffer has room for,
+     * but always returns at least one byte before the end of the object.
+     * @param destination the buffer the bytes are read into
+     * @return the number of bytes read, or -1 at the end of the object
+     * @throws IOException if a request failed, or {@link InterruptedIOException} if the thread was interrupted while waiting for one
+     */
+    @Override
+    public synchronized int read(ByteBuffer destination) throws IOException {
+        ensureOpen();
+
+        if(!destination.hasRemaining()){
+            return 0;
+        }
+        if(size >= 0 && position >= size){
+            return -1;
+        }
+
+        long firstBlock = position / blockSize;
+        long lastBlock = (position + destination.remaining() - 1) / blockSize;
+        lastBlock = Math.min(lastBlock, firstBlock + maxFetchBlocks - 1);
+
+        //Sequential reads double the read-ahead up to the fetch limit, anything else resets it.
+        if(position == sequentialPosition){
+            readAheadBlocks = Math.max(1, Math.min(readAheadBlocks * 2, maxFetchBlocks));
+        }
+        else{
+            readAheadBlocks = 0;
+        }
+        long readAheadEnd = Math.min(lastBlock + readAheadBlocks, firstBlock + maxFetchBlocks - 1);
+        if(size >= 0){
+            readAheadEnd = Math.min(readAheadEnd, (size - 1) / blockSize);
+        }
+
+        fetchMissing(firstBlock, lastBlock, readAheadEnd);
+
+        if(size >= 0 && position >= size){
+            return -1;
+        }
+
+        int read = 0;
+        while(destination.hasRemaining() && (size < 0 || position < size)){
+            long index = position / blockSize;
+            byte[] block = blocks.get(index);
+            if(block == null){
+                break;
+            }
+            int offset = (int) (position - index * blockSize);
+            int length = Math.min(blockLength(index) - offset, destination.remaining());
+            if(length <= 0){
+                break;
+            }
+            destination.put(block, offset, length);
+            position += length;
+            read += length;
+        }
+
+        sequentialPosition = position;
+        return read;
+    }
+
+    /**
+     * Fetch the missing blocks between the first and last block, with one request for each run of missing blocks.
+     * The run that reaches the last block continues up to the read-ahead end while blocks are missing.
+     */
+    private void fetchMissing(long firstBlock, long lastBlock, long readAheadEnd) throws IOException {
+        long runStart = -1;
+
+        for(long index = firstBlock; index <= lastBlock; index++){
+            if(blocks.containsKey(index)){
+                if(runStart >= 0){
+                    fetch(runStart, index - 1);
+                    runStart = -1;
+                }
+            }
+            else if(runStart < 0){
+                runStart = index;
+            }
+        }
+
+        if(runStart >= 0){
+            long runEnd = lastBlock;
+            while(runEnd < readAheadEnd && !blocks.containsKey(runEnd + 1)){
+                runEnd++;
+            }
+            fetch(runStart, runEnd);
+        }
+    }
+
+    /**
+     * Fetch the given blocks with a single Range request and add them to the cache.
+     */
+    private void fetch(final long firstBlock, final long lastBlock) throws IOException {
+        final long start = firstBlock * blockSize;
+        final long end = (lastBlock + 1) * blockSize - 1;
+
+        ObjectStorageHttpRequest request = new ObjectStorageHttpRequest(url, Request.GET);
+        request.setHeader(RANGE_HEADER, "bytes=" + start + "-" + end);
+        if(etag != null){
+            request.setHeader(IF_MATCH_HEADER, etag);
+        }
+
+        final Result<List<byte[]>> result = new Result<>();
+
+        ObjectStorageTransfer.send("readObjectRange", request, new ObjectStorageTransfer.ResponseHandler<List<byte[]>>() {
+            @Override
+            public List<byte[]> onResponse(ObjectStorageHttpResponse response, InputStream body) throws IOException {
+                result.headersReceived(response);
+
+                if(response.getStatus() != 206 && body != null){
+                    //The server ignored the range and sent the whole object.
+                    skipFully(body, start);
+                }
+
+                List<byte[]> fetched = new ArrayList<>();
+                for(long index = firstBlock; index <= lastBlock && body != null; index++){
+                    byte[] block = ObjectStorageBufferPool.acquire(blockSize);
+                    int length = readFully(body, block, blockSize);
+                    result.received += length;
+                    if(length == 0){
+                        ObjectStorageBufferPool.release(block);
+                        break;
+                    }
+                    fetched.add(block);
+                    if(length < blockSize){
+                        break;
+                    }
+                }
+                return fetched;
+            }
+        }, result);
+
+        requestCount++;
+        List<byte[]> fetched;
+        try {
+            fetched = result.await(request);
+            headersReceived(result);
+        } catch (ObjectStorageHttpException e) {
+            if(e.getStatusCode() != RANGE_NOT_SATISFIABLE){
+                throw e;
+            }
+            //The range starts at or past the end of the object.
+            long total = parseTotalLength(ObjectStorageUtils.getHeader(e.getHeaders(), CONTENT_RANGE_HEADER));
+            if(size < 0){
+                size = total >= 0 ? total : start;
+            }
+            return;
+        }
+
+        for(int i = 0; i < fetched.size(); i++){
+            byte[] previous = blocks.put(firstBlock + i, fetched.get(i));
+            if(previous != null){
+                ObjectStorageBufferPool.release(previous);
+            }
+        }
+        if(size < 0 && result.received < end - start + 1){
+            //The object ended inside the range without the server reporting its length.
+            size = start + result.received;
+        }
+    }
+
+    /**
+     * Take the object's length and ETag from the first response.
+     */
+    private void headersReceived(Result<?> result){
+        if(etag == null){
+            etag = result.etag;
+        }
+        if(size >= 0){
+            return;
+        }
+        if(result.status == 206){
+            size = parseTotalLength(result.contentRange);
+        }
+        else{
+            size = result.contentLength;
+        }
+    }
+
+    /**
+     * Parse the total length from a Content-Range header, such as "bytes 0-99/1000" or "bytes &#42;/1000".
+     * @return the total length, or -1 if it is unknown
+     */
+    private static long parseTotalLength(String contentRange){
+        if(contentRange == null){
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        if(slash == -1){
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        int total = 0;
+        while(total < length){
+            int read = in.read(buffer, total, length - total);
+            if(read == -1){
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        long skipped = 0;
+        while(skipped < count){
+            long skip = in.skip(count - skipped);
+            if(skip <= 0){
+                if(in.read() == -1){
+                    return;
+                }
+                skip = 1;
+            }
+            skipped += skip;
+        }
+    }
+
+    private int blockLength(long index){
+        return size < 0 ? blockSize : (int) Math.min(blockSize, size - index * blockSize);
+    }
+
+    /**
+     * Channels are not writable.
+     * @throws NonWritableChannelException always
+     */
+    @Override
+    public int write(ByteBuffer source) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    /**
+     * Set the position of the next read. A position past the end of the object is allowed, reads there return -1.
+     * @param newPosition the new position
+     * @return this channel
+     */
+    @Override
+    public synchronized ObjectStorageObjectChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if(newPosition < 0){
+            throw new IllegalArgumentException("The position must not be negative.");
+        }
+        position = newPosition;
+        return this;
+    }
+
+    /**
+     * Get the length of the object. If nothing has been read yet, the length is requested with a HEAD request.
+     * @return the length of the object in bytes
+     */
+    @Override
+    public synchronized long size() throws IOException {
+        ensureOpen();
+        if(size >= 0){
+            return size;
+        }
+
+        ObjectStorageHttpRequest request = new ObjectStorageHttpRequest(url, Request.HEAD);
+        if(etag != null){
+            request.setHeader(IF_MATCH_HEADER, etag);
+        }
+
+        final Result<Void> result = new Result<>();
+
+        ObjectStorageTransfer.send("getObjectSize", request, new ObjectStorageTransfer.ResponseHandler<Void>() {
+            @Override
+            public Void onResponse(ObjectStorageHttpResponse response, InputStream body) {
+                result.headersReceived(response);
+                return null;
+            }
+        }, result);
+
+        requestCount++;
+        result.await(request);
+        headersReceived(result);
+        return size;
+    }
+
+    /**
+     * Channels are not writable.
+     * @throws NonWritableChannelException always
+     */
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Close the channel and return its cached blocks to the {@link ObjectStorageBufferPool}.
+     */
+    @Override
+    public synchronized void close() {
+        if(!open){
+            return;
+        }
+        open = false;
+
+        Iterator<byte[]> iterator = blocks.values().iterator();
+        while(iterator.hasNext()){
+            ObjectStorageBufferPool.release(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Get the size of the blocks the object is read in.
+     * @return the block size in bytes
+     */
+    public int getBlockSize(){
+        return blockSize;
+    }
+
+    /**
+     * Get the number of requests this channel has sent, to check how well reads are served from the cache.
+     * @return the number of requests
+     */
+    public synchronized int getRequestCount(){
+        return requestCount;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if(!open){
+            throw new ClosedChannelException();
+        }
+    }
+
+    /**
+     * Waits for the result of a request sent on the transfer threads. The response headers the channel needs are kept
+     * here and applied by the reading thread, which holds the channel's lock while it waits.
+     */
+    private class Result<T> implements ObjectStorageResponseListener<T> {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private T value;
+        private boolean failed;
+        private Throwable error;
+        private Response errorResponse;
+
+        private int status;
+        private String etag;
+        private String contentRange;
+        private long contentLength = -1;
+        private long received = 0;
+
+        void headersReceived(ObjectStorageHttpResponse response){
+            status = response.getStatus();
+            etag = response.getHeader(ObjectStorageUtils.ETAG_HEADER);
+            contentRange = response.getHeader(CONTENT_RANGE_HEADER);
+            contentLength = response.getContentLength();
+        }
+
+        @Override
+        public void onSuccess(T value) {
+            this.value = value;
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+            this.failed = true;
+            this.error = t;
+            this.errorResponse = response;
+            done.countDown();
+        }
+
+        T await(ObjectStorageHttpRequest request) throws IOException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                request.cancel();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading " + url);
+            }
+
+            if(error instanceof IOException){
+                throw (IOException) error;
+            }
+            if(failed){
+                String reason = error != null ? error.getMessage() : errorResponse != null ? "status " + errorResponse.getStatus() : "authentication failed";
+                throw new IOException("Could not read " + url + ": " + reason, error);
+            }
+            return value;
+        }
+    }
+}
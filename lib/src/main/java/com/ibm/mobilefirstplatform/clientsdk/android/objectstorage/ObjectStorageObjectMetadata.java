@@ -0,0 +1,91 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The metadata of an object, as returned by {@link ObjectStorageObject#getTypedMetadata(ObjectStorageResponseListener)}.
+ */
+public class ObjectStorageObjectMetadata extends ObjectStorageMetadata {
+    private static final String CONTENT_LENGTH_HEADER = "Content-Length";
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+    private static final String LAST_MODIFIED_HEADER = "Last-Modified";
+    private static final String STATIC_LARGE_OBJECT_HEADER = "X-Static-Large-Object";
+
+    private long contentLength = UNPARSED;
+    private long lastModified = UNPARSED;
+
+    /**
+     * Create the metadata of an object from the headers of a HEAD response.
+     * @param headers the response headers
+     */
+    public ObjectStorageObjectMetadata(Map<String, List<String>> headers){
+        super(headers, ObjectStorageObject.METADATA_PREFIX);
+    }
+
+    /**
+     * Get the size of the object's data. For a large object, this is the combined size of its segments.
+     * @return the size in bytes, or -1 if it is not known
+     */
+    public synchronized long getContentLength(){
+        if(contentLength == UNPARSED){
+            contentLength = parseLong(CONTENT_LENGTH_HEADER);
+        }
+        return contentLength;
+    }
+
+    /**
+     * Get the content type of the object.
+     * @return the content type, or null if it is not known
+     */
+    public String getContentType(){
+        return getHeader(CONTENT_TYPE_HEADER);
+    }
+
+    /**
+     * Get the ETag of the object, without surrounding quotes. For an object that is not a large object, this is the
+     * MD5 hash of its data.
+     * @return the ETag in lower case, or null if it is not known
+     */
+    public String getETag(){
+        return ObjectStorageUtils.getETag(getHeaders());
+    }
+
+    /**
+     * Get the time the object was last changed.
+     * @return the time in milliseconds since the epoch, or -1 if it is not known
+     */
+    public synchronized long getLastModified(){
+        if(lastModified == UNPARSED){
+            lastModified = parseDate(LAST_MODIFIED_HEADER);
+        }
+        return lastModified;
+    }
+
+    /**
+     * Get the manifest of a dynamic large object, which is the container and name prefix of its segments.
+     * @return the manifest, or null if the object is not a dynamic large object
+     */
+    public String getManifest(){
+        return getHeader(ObjectStorageContainer.MANIFEST_HEADER);
+    }
+
+    /**
+     * Check whether the object is a large object, made of segments that are stored as separate objects.
+     * @return true if the object is a static or dynamic large object
+     */
+    public boolean isLargeObject(){
+        return getManifest() != null || "true".equalsIgnoreCase(getHeader(STATIC_LARGE_OBJECT_HEADER));
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.SocketFactory;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+
+/**
+ * The default {@link ObjectStorageTransport}, built on OkHttp. All requests share one connection pool, so
+ * connections and TLS sessions are reused across operations, and HTTP/2 is negotiated where the server supports it
+ * so concurrent transfers are multiplexed over a single connection.
+ *
+ * The settings may be changed at any time; they apply to requests sent after the change.
+ */
+public class ObjectStorageOkHttpTransport implements ObjectStorageTransport {
+    /** The default number of idle connections kept in the pool. */
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+    /** The default time an idle connection is kept in the pool, in milliseconds. */
+    public static final long DEFAULT_KEEP_ALIVE = 5 * 60 * 1000;
+    /** The default connect, read and write timeout, in milliseconds. */
+    public static final int DEFAULT_TIMEOUT = 60 * 1000;
+
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    private ConnectionPool connectionPool = new ConnectionPool(DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE, TimeUnit.MILLISECONDS);
+    private int connectTimeout = DEFAULT_TIMEOUT;
+    private int readTimeout = DEFAULT_TIMEOUT;
+    private int writeTimeout = DEFAULT_TIMEOUT;
+    private int sendBufferSize = 0;
+    private int receiveBufferSize = 0;
+    private boolean http2Enabled = true;
+
+    private OkHttpClient client = null;
+
+    /**
+     * Set the size of the connection pool. Existing idle connections are closed.
+     * @param maxIdleConnections the number of idle connections kept for reuse
+     * @param keepAliveMillis how long an idle connection is kept, in milliseconds
+     */
+    public synchronized void setConnectionPool(int maxIdleConnections, long keepAliveMillis){
+        connectionPool.evictAll();
+        connectionPool = new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS);
+        client = null;
+    }
+
+    /**
+     * Set the timeouts for new requests.
+     * @param connectMillis the connect timeout in milliseconds, or 0 for no timeout
+     * @param readMillis the read timeout in milliseconds, or 0 for no timeout
+     * @param writeMillis the write timeout in milliseconds, or 0 for no timeout
+     */
+    public synchronized void setTimeouts(int connectMillis, int readMillis, int writeMillis){
+        connectTimeout = connectMillis;
+        readTimeout = readMillis;
+        writeTimeout = writeMillis;
+        client = null;
+    }
+
+    /**
+     * Set the socket buffer sizes for new connections. Larger buffers help large transfers over high latency links.
+     * @param sendBytes the send buffer size in bytes, or 0 for the system default
+     * @param receiveBytes the receive buffer size in bytes, or 0 for the system default
+     */
+    public synchronized void setSocketBufferSizes(int sendBytes, int receiveBytes){
+        sendBufferSize = sendBytes;
+        receiveBufferSize = receiveBytes;
+        client = null;
+    }
+
+    /**
+     * Enable or disable HTTP/2. When disabled, only HTTP/1.1 is used. HTTP/2 is enabled by default.
+     * @param enabled true to negotiate HTTP/2 where the server supports it
+     */
+    public synchronized void setHTTP2Enabled(boolean enabled){
+        http2Enabled = enabled;
+        client = null;
+    }
+
+    /**
+     * Close all idle connections in the pool.
+     */
+    public synchronized void evictConnections(){
+        connectionPool.evictAll();
+    }
+
+    @Override
+    public ObjectStorageHttpResponse execute(final ObjectStorageHttpRequest request) throws IOException {
+        Request.Builder builder = new Request.Builder().url(request.getUrl());
+
+        for(Map.Entry<String, String> header : request.getHeaders().entrySet()){
+            builder.header(header.getKey(), header.getValue());
+        }
+
+        builder.method(request.getMethod(), toRequestBody(request));
+
+        final Call call = getClient().newCall(builder.build());
+        request.onCancel(new Runnable() {
+            @Override
+            public void run() {
+                call.cancel();
+            }
+        });
+
+        Response response = call.execute();
+        ResponseBody body = response.body();
+
+        return new ObjectStorageHttpResponse(response.code(), response.headers().toMultimap(), body.byteStream(), body.contentLength());
+    }
+
+    protected synchronized OkHttpClient getClient(){
+        if(client == null){
+            OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                    .connectionPool(connectionPool)
+                    .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                    .readTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                    .writeTimeout(writeTimeout, TimeUnit.MILLISECONDS)
+                    .protocols(http2Enabled ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1) : Arrays.asList(Protocol.HTTP_1_1));
+
+            if(sendBufferSize > 0 || receiveBufferSize > 0){
+                builder.socketFactory(new BufferedSocketFactory(SocketFactory.getDefault(), sendBufferSize, receiveBufferSize));
+            }
+
+            client = builder.build();
+        }
+
+        return client;
+    }
+
+    private static RequestBody toRequestBody(ObjectStorageHttpRequest request){
+        final ObjectStorageRequestBody body = request.getBody();
+        String contentType = request.getHeader("Content-Type");
+        final MediaType mediaType = contentType != null ? MediaType.parse(contentType) : OCTET_STREAM;
+
+        if(body == null){
+            String method = request.getMethod();
+            //OkHttp requires a body for these methods, even when it is empty.
+            if(method.equals("PUT") || method.equals("POST")){
+                return RequestBody.create(mediaType, new byte[0]);
+            }
+            return null;
+        }
+
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return mediaType;
+            }
+
+            @Override
+            public long contentLength() {
+                return body.getContentLength();
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                body.writeTo(sink.outputStream());
+            }
+        };
+    }
+
+    /**
+     * Applies the configured buffer sizes to every socket before it is connected, which is required for the
+     * receive buffer to affect the TCP window.
+     */
+    private static class BufferedSocketFactory extends SocketFactory {
+        private final SocketFactory delegate;
+        private final int sendBufferSize;
+        private final int receiveBufferSize;
+
+        BufferedSocketFactory(SocketFactory delegate, int sendBufferSize, int receiveBufferSize){
+            this.delegate = delegate;
+            this.sendBufferSize = sendBufferSize;
+            this.receiveBufferSize = receiveBufferSize;
+        }
+
+        private Socket configure(Socket socket) throws SocketException {
+            if(sendBufferSize > 0){
+                socket.setSendBufferSize(sendBufferSize);
+            }
+            if(receiveBufferSize > 0){
+                socket.setReceiveBufferSize(receiveBufferSize);
+            }
+            return socket;
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return configure(delegate.createSocket());
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            Socket socket = configure(delegate.createSocket());
+            socket.connect(new InetSocketAddress(host, port));
+            return socket;
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            Socket socket = configure(delegate.createSocket());
+            socket.bind(new InetSocketAddress(localHost, localPort));
+            socket.connect(new InetSocketAddress(host, port));
+            return socket;
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            Socket socket = configure(delegate.createSocket());
+            socket.connect(new InetSocketAddress(host, port));
+            return socket;
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            Socket socket = configure(delegate.createSocket());
+            socket.bind(new InetSocketAddress(localAddress, localPort));
+            socket.connect(new InetSocketAddress(address, port));
+            return socket;
+        }
+    }
+}
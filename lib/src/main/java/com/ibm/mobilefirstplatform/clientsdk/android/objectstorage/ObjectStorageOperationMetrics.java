@@ -0,0 +1,429 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Response;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The metrics recorded for a single Object Storage operation, such as storing or loading an object.
+ * The operation's latency is split into the time spent waiting for authentication, waiting in the queue
+ * of the HTTP client, waiting for the first byte of the response and transferring the response.
+ *
+ * Instances are handed to {@link ObjectStorageMetricsListener}s once the operation completes, and kept by
+ * {@link ObjectStorageTracer} as trace spans of slow and failed operations.
+ */
+public class ObjectStorageOperationMetrics {
+    static final ObjectStorageOperationMetrics DISABLED = new ObjectStorageOperationMetrics(null, false, false, 0);
+
+    //Swift reports its transaction ID in X-Trans-Id; deployments behind other OpenStack services may use X-Openstack-Request-Id.
+    private static final String[] TRANSACTION_ID_HEADERS = {"X-Trans-Id", "X-Openstack-Request-Id"};
+
+    private final String operation;
+    private final boolean recording;
+    private final boolean aggregated;
+    private final boolean traced;
+    private final long tokenRefreshCountAtStart;
+
+    private final long startTimeMillis;
+    private final long startNanos;
+    private long authenticatedNanos;
+    private long sentNanos;
+    private long dispatchedNanos;
+    private long firstByteNanos;
+    private long completedNanos;
+
+    private long bytesSent;
+    private long bytesReceived;
+    private int retries;
+    private boolean tokenRefreshed;
+    private boolean cacheHit;
+    private boolean coalesced;
+
+    private int statusCode;
+    private boolean successful;
+    private boolean completed;
+    private String transactionId;
+
+    /**
+     * @param aggregated whether the operation is added to the metrics of {@link ObjectStorageMetrics}
+     * @param traced whether the operation is passed to {@link ObjectStorageTracer}
+     */
+    ObjectStorageOperationMetrics(String operation, boolean aggregated, boolean traced, long tokenRefreshCountAtStart){
+        this.operation = operation;
+        this.aggregated = aggregated;
+        this.traced = traced;
+        this.recording = aggregated || traced;
+        this.tokenRefreshCountAtStart = tokenRefreshCountAtStart;
+        this.startTimeMillis = recording ? System.currentTimeMillis() : 0;
+        this.startNanos = recording ? System.nanoTime() : 0;
+    }
+
+    synchronized void authenticated(){
+        if(!recording || authenticatedNanos != 0){
+            return;
+        }
+        authenticatedNanos = System.nanoTime();
+        tokenRefreshed = ObjectStorageMetrics.getTokenRefreshCount() > tokenRefreshCountAtStart;
+    }
+
+    synchronized void requestSent(long bodyLength){
+        if(!recording){
+            return;
+        }
+        sentNanos = System.nanoTime();
+        bytesSent += bodyLength;
+    }
+
+    /**
+     * Marks the point where the HTTP client actually started the request, for clients that queue requests.
+     */
+    synchronized void requestDispatched(){
+        if(!recording){
+            return;
+        }
+        dispatchedNanos = System.nanoTime();
+    }
+
+    synchronized void firstByteReceived(){
+        if(!recording || firstByteNanos != 0){
+            return;
+        }
+        firstByteNanos = System.nanoTime();
+    }
+
+    synchronized void bytesReceived(long count){
+        if(!recording){
+            return;
+        }
+        bytesReceived += count;
+    }
+
+    synchronized void retried(){
+        if(!recording){
+            return;
+        }
+        retries++;
+    }
+
+    void cacheHit(){
+        if(!recording){
+            return;
+        }
+        synchronized (this){
+            cacheHit = true;
+        }
+        if(aggregated){
+            ObjectStorageMetrics.cacheHit();
+        }
+    }
+
+    void cacheMiss(){
+        if(!aggregated){
+            return;
+        }
+        ObjectStorageMetrics.cacheMiss();
+    }
+
+    /**
+     * Marks the operation as answered by an identical request that was already in flight.
+     */
+    void coalesced(){
+        if(!recording){
+            return;
+        }
+        synchronized (this){
+            coalesced = true;
+        }
+        if(aggregated){
+            ObjectStorageMetrics.coalesced();
+        }
+    }
+
+    /**
+     * Takes the server's transaction ID from the response headers, to correlate the operation with the server logs.
+     */
+    void responseReceived(Map<String, List<String>> headers){
+        if(!recording || headers == null){
+            return;
+        }
+        for(String header : TRANSACTION_ID_HEADERS){
+            String value = ObjectStorageUtils.getHeader(headers, header);
+            if(value != null){
+                synchronized (this){
+                    transactionId = value;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Completes the operation successfully. The received byte count is taken from the Content-Length of the response,
+     * unless the response has no body, as is the case for HEAD requests.
+     */
+    void succeeded(Response response, boolean hasBody){
+        if(!recording){
+            return;
+        }
+        long length = 0;
+        if(response != null){
+            responseReceived(response.getHeaders());
+            if(hasBody){
+                length = parseContentLength(response.getHeaders());
+            }
+        }
+        completed(true, response != null ? response.getStatus() : 0, length);
+    }
+
+    void failed(Response response){
+        if(!recording){
+            return;
+        }
+        if(response != null){
+            responseReceived(response.getHeaders());
+        }
+        completed(false, response != null ? response.getStatus() : 0, 0);
+    }
+
+    void completed(boolean success, int status, long receivedLength){
+        if(!recording){
+            return;
+        }
+
+        synchronized (this){
+            if(completed){
+                return;
+            }
+            completed = true;
+            completedNanos = System.nanoTime();
+            successful = success;
+            statusCode = status;
+            bytesReceived += receivedLength;
+            if(authenticatedNanos == 0){
+                authenticatedNanos = completedNanos;
+            }
+        }
+
+        ObjectStorageMetrics.completed(this);
+    }
+
+    private static long parseContentLength(Map<String, List<String>> headers){
+        String contentLength = ObjectStorageUtils.getHeader(headers, "Content-Length");
+        if(contentLength == null){
+            return 0;
+        }
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    boolean isRecording(){
+        return recording;
+    }
+
+    boolean isAggregated(){
+        return aggregated;
+    }
+
+    boolean isTraced(){
+        return traced;
+    }
+
+    /**
+     * Get the name of the operation, which is the name of the SDK method that was called.
+     * @return the name of the operation
+     */
+    public String getOperation(){
+        return operation;
+    }
+
+    /**
+     * Get the time the operation started.
+     * @return the start time in milliseconds since the epoch
+     */
+    public long getStartTime(){
+        return startTimeMillis;
+    }
+
+    /**
+     * Get the total time the operation took, from the call to the SDK until the response listener was called.
+     * @return the total time in nanoseconds
+     */
+    public synchronized long getTotalNanos(){
+        return completedNanos - startNanos;
+    }
+
+    /**
+     * Get the time spent waiting for a valid authentication token.
+     * @return the authentication wait time in nanoseconds
+     */
+    public synchronized long getAuthWaitNanos(){
+        return authenticatedNanos - startNanos;
+    }
+
+    /**
+     * Get the time the request spent queued inside the HTTP client before it was started.
+     * This is 0 when the HTTP client does not report when it starts requests.
+     * @return the queue time in nanoseconds
+     */
+    public synchronized long getQueueNanos(){
+        if(sentNanos == 0 || dispatchedNanos == 0){
+            return 0;
+        }
+        return dispatchedNanos - sentNanos;
+    }
+
+    /**
+     * Get the time from starting the request until the first byte of the response arrived. When the HTTP client
+     * only reports complete responses, this includes the time spent transferring the response.
+     * @return the time to first byte in nanoseconds
+     */
+    public synchronized long getTimeToFirstByteNanos(){
+        long requestStart = dispatchedNanos != 0 ? dispatchedNanos : sentNanos;
+        if(requestStart == 0){
+            return 0;
+        }
+        return (firstByteNanos != 0 ? firstByteNanos : completedNanos) - requestStart;
+    }
+
+    /**
+     * Get the time spent transferring the response body after the first byte arrived.
+     * This is 0 when the HTTP client only reports complete responses.
+     * @return the transfer time in nanoseconds
+     */
+    public synchronized long getTransferNanos(){
+        if(firstByteNanos == 0){
+            return 0;
+        }
+        return completedNanos - firstByteNanos;
+    }
+
+    /**
+     * Get the number of request body bytes that were sent.
+     * @return the number of bytes sent
+     */
+    public synchronized long getBytesSent(){
+        return bytesSent;
+    }
+
+    /**
+     * Get the number of response body bytes that were received.
+     * @return the number of bytes received
+     */
+    public synchronized long getBytesReceived(){
+        return bytesReceived;
+    }
+
+    /**
+     * Get the number of times the request was retried.
+     * @return the number of retries
+     */
+    public synchronized int getRetries(){
+        return retries;
+    }
+
+    /**
+     * Check whether the authentication token had to be refreshed for this operation.
+     * @return true if a new token was requested while this operation waited for authentication
+     */
+    public synchronized boolean isTokenRefreshed(){
+        return tokenRefreshed;
+    }
+
+    /**
+     * Check whether the operation was answered from a local cache, fully or in part.
+     * @return true if a cache was hit
+     */
+    public synchronized boolean isCacheHit(){
+        return cacheHit;
+    }
+
+    /**
+     * Check whether the operation joined an identical request that was already in flight, instead of sending its own.
+     * @return true if the operation shared the response of another operation
+     */
+    public synchronized boolean isCoalesced(){
+        return coalesced;
+    }
+
+    /**
+     * Get the HTTP status code of the response.
+     * @return the status code, or 0 if no response was received
+     */
+    public synchronized int getStatusCode(){
+        return statusCode;
+    }
+
+    /**
+     * Check whether the operation succeeded.
+     * @return true if the operation succeeded
+     */
+    public synchronized boolean isSuccessful(){
+        return successful;
+    }
+
+    /**
+     * Get the transaction ID the server assigned to the request, which identifies it in the server logs.
+     * When the request was retried, this is the transaction ID of the last attempt.
+     * @return the value of the X-Trans-Id or X-Openstack-Request-Id response header, or null if no response was received
+     */
+    public synchronized String getTransactionId(){
+        return transactionId;
+    }
+
+    /**
+     * Get this operation as a trace span in JSON, with its timings in milliseconds.
+     * @return the operation as a JSON object
+     */
+    public synchronized JSONObject toJSON(){
+        JSONObject json = new JSONObject();
+
+        try {
+            json.put("operation", operation);
+            json.put("startTime", startTimeMillis);
+            json.put("totalMillis", getTotalNanos() / 1000000.0);
+            json.put("authWaitMillis", getAuthWaitNanos() / 1000000.0);
+            json.put("queueMillis", getQueueNanos() / 1000000.0);
+            json.put("timeToFirstByteMillis", getTimeToFirstByteNanos() / 1000000.0);
+            json.put("transferMillis", getTransferNanos() / 1000000.0);
+            json.put("statusCode", statusCode);
+            json.put("successful", successful);
+            json.put("bytesSent", bytesSent);
+            json.put("bytesReceived", bytesReceived);
+            json.put("retries", retries);
+            json.put("tokenRefreshed", tokenRefreshed);
+            json.put("cacheHit", cacheHit);
+            json.put("coalesced", coalesced);
+            if(transactionId != null){
+                json.put("transactionId", transactionId);
+            }
+        } catch (JSONException e) {
+            //Just creating JSONObject; no exceptions will occur.
+        }
+
+        return json;
+    }
+
+    @Override
+    public String toString(){
+        String id = getTransactionId();
+        return operation + " " + (getTotalNanos() / 1000000) + "ms" + (id != null ? " " + id : "");
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import java.nio.ByteBuffer;
+
+/**
+ * Object data held in an array lent from the {@link ObjectStorageBufferPool}, as returned by
+ * {@link ObjectStorageObject#loadPooled(ObjectStorageTransferOptions, ObjectStorageResponseListener)}.
+ * The array may be larger than the data; only the first {@link #getLength()} bytes are valid.
+ *
+ * Call {@link #release()} once the data is no longer needed, so the array can be reused by the next download.
+ * Neither the array nor a buffer from {@link #asByteBuffer()} may be used after that.
+ */
+public final class ObjectStoragePooledBuffer {
+    private byte[] array;
+    private final int length;
+
+    ObjectStoragePooledBuffer(byte[] array, int length){
+        this.array = array;
+        this.length = length;
+    }
+
+    /**
+     * Get the array holding the data.
+     * @return the array, of which the first {@link #getLength()} bytes are valid
+     * @throws IllegalStateException if the buffer was released
+     */
+    public synchronized byte[] getArray(){
+        if(array == null){
+            throw new IllegalStateException("The buffer has been released.");
+        }
+        return array;
+    }
+
+    /**
+     * Get the length of the data.
+     * @return the number of valid bytes
+     */
+    public int getLength(){
+        return length;
+    }
+
+    /**
+     * Get a read only view of the data.
+     * @return a buffer positioned at the start of the data, with its limit at the end of the data
+     * @throws IllegalStateException if the buffer was released
+     */
+    public ByteBuffer asByteBuffer(){
+        return ByteBuffer.wrap(getArray(), 0, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * Return the array to the pool. Calling this more than once has no effect.
+     */
+    public void release(){
+        byte[] released;
+        synchronized (this){
+            released = array;
+            array = null;
+        }
+        ObjectStorageBufferPool.release(released);
+    }
+
+    /**
+     * Check whether the buffer was released.
+     * @return true if {@link #release()} was called
+     */
+    public synchronized boolean isReleased(){
+        return array == null;
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Request;
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Response;
+import com.ibm.mobilefirstplatform.clientsdk.android.logger.api.Logger;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads objects of a container into the {@link ObjectStorageObjectCache} before they are needed, so showing them does not
+ * wait for the network. Which objects are loaded is predicted from:
+ * <ul>
+ *     <li>the order of the objects in a listing, given with {@link #setObjectList(List)},</li>
+ *     <li>the objects currently on screen and the direction the user is scrolling in, given with {@link #setViewport(int, int)},</li>
+ *     <li>the order in which objects were used before, reported with {@link #objectAccessed(String)}.</li>
+ * </ul>
+ *
+ * Prefetches are sent with {@link ObjectStorageBandwidthLimiter.Priority#BACKGROUND} priority. They are canceled when the
+ * user changes scrolling direction, when the objects they load are no longer predicted, and when memory gets tight.
+ */
+public class ObjectStoragePrefetcher {
+    public static final int DEFAULT_PREFETCH_DEPTH = 4;
+    public static final long DEFAULT_BYTE_BUDGET = 4 * 1024 * 1024;
+    public static final int MAX_CONCURRENT_PREFETCHES = 2;
+
+    //Number of objects whose successors are remembered.
+    private static final int ACCESS_HISTORY_SIZE = 256;
+
+    //Prefetching stops while less than this fraction of the heap is free.
+    private static final double MIN_FREE_HEAP_FRACTION = 0.1;
+
+    public static Logger logger = Logger.getLogger(Logger.INTERNAL_PREFIX + ObjectStoragePrefetcher.class.getName());
+
+    private final ObjectStorageContainer container;
+
+    private List<String> objectNames = Collections.emptyList();
+    private int firstVisible = -1;
+    private int lastVisible = -1;
+    private boolean forward = true;
+
+    private int prefetchDepth = DEFAULT_PREFETCH_DEPTH;
+    private long byteBudget = DEFAULT_BYTE_BUDGET;
+
+    //For each object, how often each other object was accessed right after it.
+    private final Map<String, Map<String, Integer>> successors = new LinkedHashMap<String, Map<String, Integer>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, Integer>> eldest) {
+            return size() > ACCESS_HISTORY_SIZE;
+        }
+    };
+    private String lastAccessed = null;
+
+    private final Map<String, ObjectStorageHttpRequest> inFlight = new HashMap<>();
+    //Objects that were prefetched but not used yet, with their sizes. These count against the byte budget.
+    private final Map<String, Long> prefetched = new LinkedHashMap<>();
+    private long prefetchedBytes = 0;
+    private final Set<String> failed = new HashSet<>();
+
+    private long completedCount = 0;
+    private long completedBytes = 0;
+
+    /**
+     * Create a prefetcher for the objects of the given container.
+     * @param container the container the objects are loaded from
+     */
+    public ObjectStoragePrefetcher(ObjectStorageContainer container){
+        this.container = container;
+    }
+
+    /**
+     * Set how many objects are loaded ahead of the viewport and after an accessed object.
+     * @param depth the number of objects to load ahead
+     */
+    public synchronized void setPrefetchDepth(int depth){
+        prefetchDepth = Math.max(0, depth);
+        schedule();
+    }
+
+    /**
+     * Get how many objects are loaded ahead of the viewport.
+     * @return the number of objects to load ahead
+     */
+    public synchronized int getPrefetchDepth(){
+        return prefetchDepth;
+    }
+
+    /**
+     * Set the largest amount of prefetched data that may be waiting to be used. No new prefetches are started while
+     * the objects that were prefetched but not yet used add up to more than this.
+     * @param bytes the budget in bytes
+     */
+    public synchronized void setByteBudget(long bytes){
+        byteBudget = Math.max(0, bytes);
+        schedule();
+    }
+
+    /**
+     * Get the largest amount of prefetched data that may be waiting to be used.
+     * @return the budget in bytes
+     */
+    public synchronized long getByteBudget(){
+        return byteBudget;
+    }
+
+    /**
+     * Set the objects in the order they are shown, usually the result of
+     * {@link ObjectStorageContainer#getObjectList(ObjectStorageResponseListener)}.
+     * @param objects the objects in the order they are shown
+     */
+    public synchronized void setObjectList(List<ObjectStorageObject> objects){
+        List<String> names = new ArrayList<>(objects.size());
+        for(ObjectStorageObject object : objects){
+            names.add(object.getName());
+        }
+
+        objectNames = names;
+        failed.clear();
+        schedule();
+    }
+
+    /**
+     * Report which objects of the list given to {@link #setObjectList(List)} are on screen. The objects following the
+     * viewport in the scrolling direction are prefetched. When the direction changes, running prefetches are canceled.
+     * @param first the position of the first visible object
+     * @param last the position of the last visible object
+     */
+    public synchronized void setViewport(int first, int last){
+        if(firstVisible >= 0 && first != firstVisible){
+            boolean movingForward = first > firstVisible;
+            if(movingForward != forward){
+                logger.debug("Scrolling direction changed. Canceling prefetches.");
+                forward = movingForward;
+                cancelAll();
+                forgetPrefetched();
+            }
+        }
+
+        firstVisible = first;
+        lastVisible = Math.max(first, last);
+        schedule();
+    }
+
+    /**
+     * Report that the object with the given name is being used, for example opened in a detail view. The objects that
+     * were used after it in the past are prefetched.
+     * @param objectName the name of the object
+     */
+    public synchronized void objectAccessed(String objectName){
+        if(lastAccessed != null && !lastAccessed.equals(objectName)){
+            Map<String, Integer> next = successors.get(lastAccessed);
+            if(next == null){
+                next = new HashMap<>();
+                successors.put(lastAccessed, next);
+            }
+            Integer count = next.get(objectName);
+            next.put(objectName, count == null ? 1 : count + 1);
+        }
+        lastAccessed = objectName;
+
+        Long size = prefetched.remove(objectName);
+        if(size != null){
+            prefetchedBytes -= size;
+        }
+
+        schedule();
+    }
+
+    /**
+     * Cancel all running prefetches. Prefetching resumes with the next call to {@link #setViewport(int, int)} or
+     * {@link #objectAccessed(String)}.
+     */
+    public synchronized void cancel(){
+        cancelAll();
+    }
+
+    /**
+     * Cancel all running prefetches and drop the prefetched objects that were not used from the cache.
+     * Call this from {@code ComponentCallbacks2.onTrimMemory()} or {@code onLowMemory()}.
+     */
+    public synchronized void onLowMemory(){
+        cancelAll();
+        for(String objectName : prefetched.keySet()){
+            ObjectStorageObjectCache.remove(objectURL(objectName));
+        }
+        forgetPrefetched();
+    }
+
+    /**
+     * Get the number of objects this prefetcher has loaded.
+     * @return the number of prefetched objects
+     */
+    public synchronized long getPrefetchedCount(){
+        return completedCount;
+    }
+
+    /**
+     * Get the number of bytes this prefetcher has loaded.
+     * @return the number of prefetched bytes
+     */
+    public synchronized long getPrefetchedBytes(){
+        return completedBytes;
+    }
+
+    private void schedule(){
+        Set<String> wanted = predict();
+
+        //Objects that are no longer predicted are not worth the bandwidth.
+        Iterator<Map.Entry<String, ObjectStorageHttpRequest>> iterator = inFlight.entrySet().iterator();
+        while(iterator.hasNext()){
+            Map.Entry<String, ObjectStorageHttpRequest> entry = iterator.next();
+            if(!wanted.contains(entry.getKey())){
+                entry.getValue().cancel();
+                iterator.remove();
+            }
+        }
+
+        if(isMemoryLow()){
+            logger.debug("Memory is low. Not prefetching.");
+            cancelAll();
+            return;
+        }
+
+        for(String objectName : wanted){
+            if(inFlight.size() >= MAX_CONCURRENT_PREFETCHES || prefetchedBytes + inFlight.size() * averageSize() >= byteBudget){
+                return;
+            }
+
+            if(!inFlight.containsKey(objectName) && !failed.contains(objectName) && !ObjectStorageObjectCache.contains(objectURL(objectName))){
+                prefetch(objectName);
+            }
+        }
+    }
+
+    /**
+     * The objects to prefetch, most likely first: the usual successors of the last accessed object, then the objects
+     * ahead of the viewport.
+     */
+    private Set<String> predict(){
+        Set<String> wanted = new LinkedHashSet<>();
+
+        if(lastAccessed != null){
+            Map<String, Integer> next = successors.get(lastAccessed);
+            if(next != null){
+                List<Map.Entry<String, Integer>> ranked = new ArrayList<>(next.entrySet());
+                Collections.sort(ranked, new Comparator<Map.Entry<String, Integer>>() {
+                    @Override
+                    public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b) {
+                        return b.getValue().compareTo(a.getValue());
+                    }
+                });
+                for(int i = 0; i < ranked.size() && i < prefetchDepth; i++){
+                    wanted.add(ranked.get(i).getKey());
+                }
+            }
+        }
+
+        if(firstVisible >= 0){
+            for(int i = 1; i <= prefetchDepth; i++){
+                int position = forward ? lastVisible + i : firstVisible - i;
+                if(position >= 0 && position < objectNames.size()){
+                    wanted.add(objectNames.get(position));
+                }
+            }
+        }
+
+        return wanted;
+    }
+
+    private void prefetch(final String objectName){
+        final String objectURL = objectURL(objectName);
+        final ObjectStorageHttpRequest request = new ObjectStorageHttpRequest(objectURL, Request.GET);
+
+        ObjectStorageTransferOptions options = new ObjectStorageTransferOptions();
+        options.setPriority(ObjectStorageBandwidthLimiter.Priority.BACKGROUND);
+
+        inFlight.put(objectName, request);
+
+        logger.debug("Prefetching object: " + objectName);
+
+        ObjectStorageTransfer.send("prefetchObject", request, options, new ObjectStorageTransfer.ResponseHandler<byte[]>() {
+            @Override
+            public byte[] onResponse(ObjectStorageHttpResponse response, InputStream body) throws IOException {
+                byte[] bytes = ObjectStorageUtils.readBytes(body, response.getContentLength());
+                String etag = ObjectStorageUtils.getETag(response.getHeaders());
+
+                ObjectStorageContainer.cacheETag(objectURL, etag);
+                if(!request.isCanceled()){
+                    ObjectStorageObjectCache.put(objectURL, bytes, etag);
+                }
+
+                return bytes;
+            }
+        }, new ObjectStorageResponseListener<byte[]>() {
+            @Override
+            public void onSuccess(byte[] data) {
+                synchronized (ObjectStoragePrefetcher.this){
+                    if(inFlight.get(objectName) != request){
+                        return;
+                    }
+                    inFlight.remove(objectName);
+
+                    completedCount++;
+                    completedBytes += data.length;
+
+                    if(!prefetched.containsKey(objectName)){
+                        prefetched.put(objectName, (long) data.length);
+                        prefetchedBytes += data.length;
+                    }
+
+                    logger.debug("Prefetched object: " + objectName);
+                    schedule();
+                }
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                synchronized (ObjectStoragePrefetcher.this){
+                    if(inFlight.get(objectName) != request){
+                        return;
+                    }
+                    inFlight.remove(objectName);
+
+                    //Not retried until the list is set again, so a missing object is not requested over and over.
+                    failed.add(objectName);
+
+                    logger.debug("Failed to prefetch object: " + objectName);
+                    schedule();
+                }
+            }
+        });
+    }
+
+    private void cancelAll(){
+        for(ObjectStorageHttpRequest request : inFlight.values()){
+            request.cancel();
+        }
+        inFlight.clear();
+    }
+
+    private void forgetPrefetched(){
+        prefetched.clear();
+        prefetchedBytes = 0;
+    }
+
+    private long averageSize(){
+        return completedCount == 0 ? 0 : completedBytes / completedCount;
+    }
+
+    private String objectURL(String objectName){
+        return ObjectStorage.objectStorageURL + "/" + container.getName() + "/" + objectName;
+    }
+
+    private static boolean isMemoryLow(){
+        Runtime runtime = Runtime.getRuntime();
+        long free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return free < runtime.maxMemory() * MIN_FREE_HEAP_FRACTION;
+    }
+}
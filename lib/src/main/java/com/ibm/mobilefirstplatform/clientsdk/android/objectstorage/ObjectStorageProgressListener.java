@@ -0,0 +1,27 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+/**
+ * Receives the progress of an upload or download. Callbacks are made on the transfer thread, at most once per progress
+ * interval set in {@link ObjectStorageTransferOptions}, and once more when the transfer completes.
+ */
+public interface ObjectStorageProgressListener {
+
+    /**
+     * Called as data is transferred. If a stalled upload is retried, the transferred byte count starts again from zero.
+     * @param bytesTransferred the number of bytes transferred so far
+     * @param totalBytes the total number of bytes to be transferred, or -1 if it is not known
+     * @param bytesPerSecond the transfer rate since the previous callback
+     */
+    void onProgress(long bytesTransferred, long totalBytes, double bytesPerSecond);
+}
@@ -0,0 +1,84 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+/**
+ * An Object Storage region, given by its authentication and API endpoints. Regions other than the Bluemix regions of
+ * {@link ObjectStorage.BluemixRegion} can be created with {@link #ObjectStorageRegion(String, String, String)}, for
+ * example to route reads to replicas with an {@link ObjectStorageRegionRouter}.
+ */
+public class ObjectStorageRegion {
+    public static final ObjectStorageRegion DALLAS = new ObjectStorageRegion("DALLAS", ObjectStorage.AUTH_URL, ObjectStorage.DALLAS_API_URL);
+    public static final ObjectStorageRegion LONDON = new ObjectStorageRegion("LONDON", ObjectStorage.AUTH_URL, ObjectStorage.LONDON_API_URL);
+
+    private final String name;
+    private final String authURL;
+    private final String apiURL;
+
+    /**
+     * Create a region with the given endpoints.
+     * @param name a name for the region, used in logs
+     * @param authenticationURL the Keystone v3 token URL, such as https://identity.example.com/v3/auth/tokens
+     * @param objectStorageAPIURL the Swift API URL up to the project ID, such as https://objectstorage.example.com/v1/AUTH_
+     */
+    public ObjectStorageRegion(String name, String authenticationURL, String objectStorageAPIURL){
+        this.name = name;
+        this.authURL = authenticationURL;
+        this.apiURL = objectStorageAPIURL;
+    }
+
+    /**
+     * Get the region matching the given Bluemix region.
+     * @param bluemixRegion the Bluemix region, or null for Dallas
+     * @return the region
+     */
+    public static ObjectStorageRegion fromBluemixRegion(ObjectStorage.BluemixRegion bluemixRegion){
+        return bluemixRegion == ObjectStorage.BluemixRegion.LONDON ? LONDON : DALLAS;
+    }
+
+    /**
+     * Get the name of this region.
+     * @return the name
+     */
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * Get the Keystone token URL of this region.
+     * @return the authentication URL
+     */
+    public String getAuthURL(){
+        return authURL;
+    }
+
+    /**
+     * Get the Swift API URL of this region, up to the project ID.
+     * @return the API URL
+     */
+    public String getAPIURL(){
+        return apiURL;
+    }
+
+    /**
+     * Get the storage URL of the given project in this region, which is the URL of the account.
+     * @param projectID the project ID
+     * @return the storage URL
+     */
+    public String getStorageURL(String projectID){
+        return apiURL + projectID;
+    }
+
+    @Override
+    public String toString(){
+        return name;
+    }
+}
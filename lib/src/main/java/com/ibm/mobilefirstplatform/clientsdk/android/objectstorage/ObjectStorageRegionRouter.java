@@ -0,0 +1,469 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Request;
+import com.ibm.mobilefirstplatform.clientsdk.android.logger.api.Logger;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A transport that sends reads to the fastest healthy of several regions holding replicas of the same data, and fails
+ * over to the next region when a read fails. Set it with {@link ObjectStorage#setTransport(ObjectStorageTransport)}:
+ * <pre>
+ *     ObjectStorage.initialize(ObjectStorageRegion.DALLAS);
+ *     ObjectStorage.setTransport(new ObjectStorageRegionRouter(ObjectStorageRegion.DALLAS, ObjectStorageRegion.LONDON));
+ * </pre>
+ *
+ * Only GET and HEAD requests for the account the SDK is connected to are routed; writes always go to the region given
+ * to {@link ObjectStorage#initialize(ObjectStorageRegion)}. Each region's latency and health are probed in the background
+ * and updated from every routed request. A region that fails is skipped until a probe finds it healthy again.
+ * Replicas are updated asynchronously, so a 404 or 412 from another region is only returned after the initialized
+ * region has confirmed it.
+ * Regions with their own authentication endpoint get their own token, requested with the credentials given to
+ * {@link ObjectStorage#connect(String, String, String, ObjectStorageResponseListener)}.
+ *
+ * Requests made through the core SDK, such as {@link ObjectStorageObject#load(boolean, ObjectStorageResponseListener)},
+ * do not go through a transport and always use the initialized region.
+ */
+public class ObjectStorageRegionRouter implements ObjectStorageTransport {
+    public static final long DEFAULT_PROBE_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+
+    //Weight of a new latency sample in the moving average.
+    private static final double LATENCY_SMOOTHING = 0.3;
+
+    private static final ScheduledExecutorService prober = Executors.newSingleThreadScheduledExecutor(new ObjectStorageTransfer.DaemonThreadFactory("ObjectStorage-region-probe-"));
+
+    public static Logger logger = Logger.getLogger(Logger.INTERNAL_PREFIX + ObjectStorageRegionRouter.class.getName());
+
+    private final ObjectStorageTransport delegate;
+    private final List<RegionState> regions = new ArrayList<>();
+
+    private long probeInterval = DEFAULT_PROBE_INTERVAL;
+    private ScheduledFuture<?> probes = null;
+
+    /**
+     * Create a router between the given regions, sending requests through a new {@link ObjectStorageOkHttpTransport}.
+     * @param regions the regions holding the data, including the one the SDK is initialized with
+     */
+    public ObjectStorageRegionRouter(ObjectStorageRegion... regions){
+        this(new ObjectStorageOkHttpTransport(), Arrays.asList(regions));
+    }
+
+    /**
+     * Create a router between the given regions, sending requests through the given transport.
+     * @param delegate the transport that sends the requests
+     * @param regions the regions holding the data, including the one the SDK is initialized with
+     */
+    public ObjectStorageRegionRouter(ObjectStorageTransport delegate, List<ObjectStorageRegion> regions){
+        this.delegate = delegate;
+        for(ObjectStorageRegion region : regions){
+            this.regions.add(new RegionState(region));
+        }
+        scheduleProbes();
+    }
+
+    /**
+     * Set how often the regions are probed.
+     * @param millis the time between probes in milliseconds, or 0 to only learn from routed requests
+     */
+    public synchronized void setProbeInterval(long millis){
+        probeInterval = Math.max(0, millis);
+        scheduleProbes();
+    }
+
+    /**
+     * Get how often the regions are probed.
+     * @return the time between probes in milliseconds
+     */
+    public synchronized long getProbeInterval(){
+        return probeInterval;
+    }
+
+    /**
+     * Get the regions this router chooses from.
+     * @return the regions
+     */
+    public List<ObjectStorageRegion> getRegions(){
+        List<ObjectStorageRegion> result = new ArrayList<>();
+        for(RegionState state : regions){
+            result.add(state.region);
+        }
+        return result;
+    }
+
+    /**
+     * Get the region reads are currently sent to first.
+     * @return the fastest healthy region
+     */
+    public ObjectStorageRegion getPreferredRegion(){
+        return rankRegions().get(0).region;
+    }
+
+    /**
+     * Get the measured latency of the given region.
+     * @param region one of the regions of this router
+     * @return the moving average of the latency in milliseconds, or -1 if it has not been measured
+     */
+    public double getLatencyMillis(ObjectStorageRegion region){
+        RegionState state = stateOf(region);
+        synchronized (state){
+            return state.latencyNanos < 0 ? -1 : state.latencyNanos / 1000000.0;
+        }
+    }
+
+    /**
+     * Check whether the given region is considered healthy.
+     * @param region one of the regions of this router
+     * @return false if the last request to the region failed
+     */
+    public boolean isHealthy(ObjectStorageRegion region){
+        RegionState state = stateOf(region);
+        synchronized (state){
+            return state.healthy;
+        }
+    }
+
+    /**
+     * Probe all regions right away, instead of waiting for the next scheduled probe.
+     */
+    public void probe(){
+        for(RegionState state : regions){
+            probe(state);
+        }
+    }
+
+    /**
+     * Stop probing the regions.
+     */
+    public synchronized void close(){
+        if(probes != null){
+            probes.cancel(false);
+            probes = null;
+        }
+    }
+
+    @Override
+    public ObjectStorageHttpResponse execute(ObjectStorageHttpRequest request) throws IOException {
+        String homeURL = ObjectStorage.objectStorageURL;
+        String method = request.getMethod();
+
+        if(homeURL == null || !(Request.GET.equals(method) || Request.HEAD.equals(method)) || !request.getUrl().startsWith(homeURL)){
+            return delegate.execute(request);
+        }
+
+        String path = request.getUrl().substring(homeURL.length());
+        List<RegionState> candidates = rankRegions();
+        RegionState home = homeOf(homeURL);
+        IOException lastFailure = null;
+
+        for(int i = 0; i < candidates.size() && !request.isCanceled(); i++){
+            RegionState state = candidates.get(i);
+
+            ObjectStorageHttpResponse response;
+            long latencyNanos;
+            try {
+                ObjectStorageHttpRequest regionRequest = routed(request, state, path);
+
+                //Timed once the region's token is known, so authentication does not count against the region.
+                long start = System.nanoTime();
+                response = delegate.execute(regionRequest);
+                latencyNanos = System.nanoTime() - start;
+            } catch (IOException e) {
+                if(request.isCanceled()){
+                    throw e;
+                }
+                failed(state, e);
+                lastFailure = e;
+                continue;
+            }
+
+            int status = response.getStatus();
+            if(status < 500){
+                succeeded(state, latencyNanos);
+
+                //A replica may not have an object written to the home region yet, so the home region has the last word.
+                if((status == 404 || status == 412) && home != null && candidates.indexOf(home) > i){
+                    response.close();
+                    candidates.remove(home);
+                    candidates.add(i + 1, home);
+                    continue;
+                }
+                return response;
+            }
+
+            failed(state, new ObjectStorageHttpException("Region " + state.region + " responded with status " + response.getStatus() + ".", response.getStatus(), response.getHeaders()));
+            if(i == candidates.size() - 1){
+                //No region left to fail over to, so let the caller handle the error response
+                return response;
+            }
+            response.close();
+        }
+
+        throw lastFailure != null ? lastFailure : new IOException("Canceled");
+    }
+
+    /**
+     * Copies the request for the given region, with the region's URL and token.
+     */
+    private ObjectStorageHttpRequest routed(ObjectStorageHttpRequest request, RegionState state, String path) throws IOException {
+        String projectID = ObjectStorage.getProjectID();
+        final ObjectStorageHttpRequest routed = new ObjectStorageHttpRequest(state.region.getStorageURL(projectID) + path, request.getMethod(), request.getBody());
+
+        for(Map.Entry<String, String> header : request.getHeaders().entrySet()){
+            routed.setHeader(header.getKey(), header.getValue());
+        }
+
+        String token = tokenFor(state);
+        if(token != null){
+            routed.setHeader(ObjectStorage.AUTH_HEADER, token);
+        }
+
+        request.onCancel(new Runnable() {
+            @Override
+            public void run() {
+                routed.cancel();
+            }
+        });
+
+        return routed;
+    }
+
+    /**
+     * Get the token for the given region, or null if the region shares the authentication endpoint of the SDK, in which
+     * case the token already on the request is used.
+     */
+    private String tokenFor(final RegionState state) throws IOException {
+        if(state.region.getAuthURL().equals(ObjectStorage.getAuthenticationURL())){
+            return null;
+        }
+
+        FutureTask<String> tokenRequest;
+        boolean started = false;
+        synchronized (state){
+            if(state.token != null && state.tokenExpiration - ObjectStorage.TOKEN_EXPIRATION_MARGIN > System.currentTimeMillis()){
+                return state.token;
+            }
+            if(state.tokenRequest == null){
+                state.tokenRequest = new FutureTask<>(new Callable<String>() {
+                    @Override
+                    public String call() throws IOException {
+                        return requestToken(state);
+                    }
+                });
+                started = true;
+            }
+            tokenRequest = state.tokenRequest;
+        }
+
+        //The token is requested without holding the region's lock, so a slow authentication endpoint does not hold up
+        //routing. Requests that need the token in the meantime wait for the same token request.
+        if(started){
+            tokenRequest.run();
+        }
+
+        try {
+            return tokenRequest.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while authenticating with region " + state.region + ".");
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException){
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to authenticate with region " + state.region + ".", e.getCause());
+        }
+    }
+
+    /**
+     * Request a new token for the given region and keep it in the region's state.
+     */
+    private String requestToken(RegionState state) throws IOException {
+        try {
+            ObjectStorageHttpRequest tokenRequest = new ObjectStorageHttpRequest(state.region.getAuthURL(), Request.POST,
+                    ObjectStorageRequestBody.create(ObjectStorage.getAuthenticationRequestBody().toString().getBytes()));
+            tokenRequest.setHeader("Content-Type", "application/json");
+
+            ObjectStorageHttpResponse response = delegate.execute(tokenRequest);
+            try {
+                if(!response.isSuccessful()){
+                    throw new ObjectStorageHttpException("Failed to authenticate with region " + state.region + ".", response.getStatus(), response.getHeaders());
+                }
+
+                String token = response.getHeader("X-Subject-Token");
+                JSONObject tokenJSON = new JSONObject(new String(response.readBytes(), "UTF-8")).optJSONObject("token");
+                if(token == null || tokenJSON == null){
+                    throw new IOException("Failed to authenticate with region " + state.region + ".");
+                }
+
+                long expiration = ObjectStorage.parseExpirationDate(tokenJSON.optString("expires_at", ""));
+                synchronized (state){
+                    state.token = token;
+                    state.tokenExpiration = expiration;
+                }
+                logger.debug("Authenticated with region " + state.region);
+                return token;
+            } catch (JSONException e) {
+                throw new IOException("Failed to authenticate with region " + state.region + ".", e);
+            } finally {
+                response.close();
+            }
+        } finally {
+            synchronized (state){
+                state.tokenRequest = null;
+            }
+        }
+    }
+
+    /**
+     * The region the SDK is initialized with, or null if it is not one of the routed regions.
+     */
+    private RegionState homeOf(String homeURL){
+        String projectID = ObjectStorage.getProjectID();
+        for(RegionState state : regions){
+            if(state.region.getStorageURL(projectID).equals(homeURL)){
+                return state;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The regions ordered for routing: healthy regions by latency, then unhealthy ones as a last resort.
+     * Regions that have not been measured yet come after measured ones, in the order they were given.
+     */
+    private List<RegionState> rankRegions(){
+        List<RegionState> ranked = new ArrayList<>(regions);
+        final Map<RegionState, long[]> snapshot = new IdentityHashMap<>();
+        for(RegionState state : ranked){
+            synchronized (state){
+                snapshot.put(state, new long[]{state.healthy ? 0 : 1, state.latencyNanos < 0 ? Long.MAX_VALUE : state.latencyNanos});
+            }
+        }
+
+        Collections.sort(ranked, new Comparator<RegionState>() {
+            @Override
+            public int compare(RegionState a, RegionState b) {
+                long[] first = snapshot.get(a);
+                long[] second = snapshot.get(b);
+                if(first[0] != second[0]){
+                    return first[0] < second[0] ? -1 : 1;
+                }
+                return first[1] < second[1] ? -1 : (first[1] == second[1] ? 0 : 1);
+            }
+        });
+
+        return ranked;
+    }
+
+    private void probe(RegionState state){
+        String projectID = ObjectStorage.getProjectID();
+        if(ObjectStorage.objectStorageURL == null || projectID == null){
+            return;
+        }
+
+        ObjectStorageHttpRequest probeRequest = new ObjectStorageHttpRequest(state.region.getStorageURL(projectID), Request.HEAD);
+        try {
+            String token = tokenFor(state);
+            probeRequest.setHeader(ObjectStorage.AUTH_HEADER, token != null ? token : ObjectStorage.getAuthToken());
+
+            long start = System.nanoTime();
+            ObjectStorageHttpResponse response = delegate.execute(probeRequest);
+            response.close();
+
+            if(response.getStatus() < 500){
+                succeeded(state, System.nanoTime() - start);
+            }
+            else{
+                failed(state, new ObjectStorageHttpException("Region " + state.region + " responded with status " + response.getStatus() + ".", response.getStatus(), response.getHeaders()));
+            }
+        } catch (IOException e) {
+            failed(state, e);
+        }
+    }
+
+    private synchronized void scheduleProbes(){
+        if(probes != null){
+            probes.cancel(false);
+            probes = null;
+        }
+
+        if(probeInterval > 0){
+            probes = prober.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    probe();
+                }
+            }, 0, probeInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void succeeded(RegionState state, long latencyNanos){
+        synchronized (state){
+            state.latencyNanos = state.latencyNanos < 0 ? latencyNanos : (long) (state.latencyNanos * (1 - LATENCY_SMOOTHING) + latencyNanos * LATENCY_SMOOTHING);
+            if(!state.healthy){
+                logger.info("Region " + state.region + " is healthy again.");
+            }
+            state.healthy = true;
+        }
+    }
+
+    private void failed(RegionState state, IOException e){
+        synchronized (state){
+            if(state.healthy){
+                logger.warn("Region " + state.region + " failed, failing over: " + e);
+            }
+            state.healthy = false;
+        }
+    }
+
+    private RegionState stateOf(ObjectStorageRegion region){
+        for(RegionState state : regions){
+            if(state.region == region){
+                return state;
+            }
+        }
+        throw new IllegalArgumentException("Region " + region + " is not routed by this router.");
+    }
+
+    private static class RegionState {
+        final ObjectStorageRegion region;
+
+        long latencyNanos = -1;
+        boolean healthy = true;
+
+        String token = null;
+        long tokenExpiration = 0;
+        FutureTask<String> tokenRequest = null;
+
+        RegionState(ObjectStorageRegion region){
+            this.region = region;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The body of an {@link ObjectStorageHttpRequest}. The body is written straight to the connection when the request
+ * is sent, so it never has to be held in memory as a whole.
+ */
+public abstract class ObjectStorageRequestBody {
+
+    /**
+     * Get the number of bytes that {@link #writeTo(OutputStream)} will write.
+     * @return the body length, or -1 if it is not known in advance
+     */
+    public abstract long getContentLength();
+
+    /**
+     * Write the body to the connection. This is called again if a stalled upload is retried.
+     * @param out the stream to write the body to
+     * @throws IOException if the body could not be written
+     */
+    public abstract void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * Check whether {@link #writeTo(OutputStream)} writes the same data when called again, which allows a stalled
+     * upload to be retried.
+     * @return true if the body can be written more than once
+     */
+    public boolean isRepeatable(){
+        return true;
+    }
+
+    /**
+     * Release any resources held by this body. Called once the transfer has completed or failed.
+     * @throws IOException if the resources could not be released
+     */
+    public void close() throws IOException {
+    }
+
+    /**
+     * Create a body from the given data.
+     * @param data the data to be sent
+     * @return the request body
+     */
+    public static ObjectStorageRequestBody create(final byte[] data){
+        return new ObjectStorageRequestBody() {
+            @Override
+            public long getContentLength() {
+                return data.length;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(data);
+            }
+        };
+    }
+}
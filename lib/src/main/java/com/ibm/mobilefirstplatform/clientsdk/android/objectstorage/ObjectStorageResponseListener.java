@@ -32,6 +32,9 @@ public interface ObjectStorageResponseListener<T> {
     /**
      * This is the failure callback. Any of the three parameters may be null, depending on what error occured.
      *
+     * Streaming transfers, which go through the {@link ObjectStorageTransport}, report a null response and an
+     * {@link ObjectStorageHttpException} with the status code and headers when the server returns an error.
+     *
      * @param response the {@link com.ibm.mobilefirstplatform.clientsdk.android.core.api.Response} object that represents the response from the server. Can get status code, headers and body, if available.
      * @param t The exception/throwable that caused the failure, if applicable.
      * @param extendedInfo Any additional information regarding the failure. It is null in most cases.
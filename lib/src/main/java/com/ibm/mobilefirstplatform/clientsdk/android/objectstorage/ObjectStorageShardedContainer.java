@@ -0,0 +1,831 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Response;
+import com.ibm.mobilefirstplatform.clientsdk.android.logger.api.Logger;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A container that spreads its objects over several Object Storage containers, its shards, so that no single container
+ * database limits the rate of writes or the number of objects. Each object name is assigned to a shard with rendezvous
+ * hashing, which only moves about one in every (n + 1) objects when a shard is added with {@link #reshard(int, ObjectStorageResponseListener)}.
+ *
+ * The shards are named after the sharded container with the shard number appended, such as "telemetry-0" to "telemetry-7".
+ * The number of shards is kept in the metadata of the first shard, so an existing sharded container can be opened with
+ * {@link #open(String, ObjectStorageResponseListener)}.
+ *
+ * The objects passed to listeners belong to the shard they are stored in, so they can be loaded, updated and deleted
+ * like any other object.
+ */
+public class ObjectStorageShardedContainer {
+    public static final String SHARD_COUNT_HEADER = ObjectStorageContainer.METADATA_PREFIX + "Shard-Count";
+    public static final String PREVIOUS_SHARD_COUNT_HEADER = ObjectStorageContainer.METADATA_PREFIX + "Shard-Previous-Count";
+    public static final int MAX_CONCURRENT_MOVES = ObjectStorageContainer.MAX_CONCURRENT_COPIES;
+
+    //The largest listing Object Storage returns in one request.
+    protected static final int LISTING_PAGE_SIZE = 10000;
+
+    public static Logger logger = Logger.getLogger(Logger.INTERNAL_PREFIX + ObjectStorageShardedContainer.class.getName());
+
+    private final String name;
+    private int shardCount;
+    //The number of shards before a reshard that has not completed yet, or 0. Objects not found in their shard are looked up there.
+    private int previousShardCount = 0;
+    private boolean resharding = false;
+
+    /**
+     * Create a sharded container with the given name and number of shards. Call {@link #create(ObjectStorageResponseListener)}
+     * to create the shards in Object Storage, or use {@link #open(String, ObjectStorageResponseListener)} for a sharded
+     * container that already exists.
+     * @param name the name of the sharded container
+     * @param shardCount the number of shards
+     */
+    public ObjectStorageShardedContainer(String name, int shardCount){
+        if(shardCount < 1){
+            throw new IllegalArgumentException("A sharded container needs at least one shard.");
+        }
+        this.name = name;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Open a sharded container that was created before, with the number of shards stored in its metadata.
+     * @param name the name of the sharded container
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the sharded container.
+     */
+    public static void open(final String name, final ObjectStorageResponseListener<ObjectStorageShardedContainer> userResponseListener){
+        new ObjectStorageContainer(shardName(name, 0)).getTypedMetadata(new ObjectStorageResponseListener<ObjectStorageContainerMetadata>() {
+            @Override
+            public void onSuccess(ObjectStorageContainerMetadata metadata) {
+                int count = parseCount(metadata.getHeader(SHARD_COUNT_HEADER));
+                if(count < 1){
+                    logger.error("Container " + name + " is not a sharded container.");
+                    if(userResponseListener != null){
+                        userResponseListener.onFailure(null, new IllegalStateException("Container " + name + " is not a sharded container."), null);
+                    }
+                    return;
+                }
+
+                ObjectStorageShardedContainer container = new ObjectStorageShardedContainer(name, count);
+                container.previousShardCount = Math.max(0, parseCount(metadata.getHeader(PREVIOUS_SHARD_COUNT_HEADER)));
+                if(userResponseListener != null){
+                    userResponseListener.onSuccess(container);
+                }
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                logger.error("Failed to open sharded container " + name);
+                if(userResponseListener != null){
+                    userResponseListener.onFailure(response, t, extendedInfo);
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the name of this sharded container.
+     * @return the name
+     */
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * Get the number of shards the objects are spread over.
+     * @return the number of shards
+     */
+    public synchronized int getShardCount(){
+        return shardCount;
+    }
+
+    /**
+     * Check whether a reshard was started but has not completed. Until it completes, objects that are not found in
+     * their shard are looked up in the shard they were assigned to before.
+     * @return true if objects may still be stored in their previous shard
+     */
+    public synchronized boolean isResharding(){
+        return previousShardCount > 0;
+    }
+
+    /**
+     * Get the given shard.
+     * @param index the number of the shard, from 0 to the number of shards minus 1
+     * @return the container of the shard
+     */
+    public ObjectStorageContainer getShard(int index){
+        return new ObjectStorageContainer(shardName(name, index));
+    }
+
+    /**
+     * Get the shard the given object is stored in.
+     * @param objectName the name of the object
+     * @return the container of the shard
+     */
+    public ObjectStorageContainer getShardFor(String objectName){
+        return getShard(shardIndex(objectName, getShardCount()));
+    }
+
+    /**
+     * Create the shards in Object Storage and record the number of shards. Shards that already exist are kept.
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with this sharded container.
+     */
+    public void create(final ObjectStorageResponseListener<ObjectStorageShardedContainer> userResponseListener){
+        final int count = getShardCount();
+        createShards(0, count, new ObjectStorageResponseListener<Void>() {
+            @Override
+            public void onSuccess(Void returnValue) {
+                recordShardCount(count, 0, new ObjectStorageResponseListener<Void>() {
+                    @Override
+                    public void onSuccess(Void returnValue) {
+                        logger.debug("Successfully created sharded container " + name + " with " + count + " shards.");
+                        if(userResponseListener != null){
+                            userResponseListener.onSuccess(ObjectStorageShardedContainer.this);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        if(userResponseListener != null){
+                            userResponseListener.onFailure(response, t, extendedInfo);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                logger.error("Failed to create sharded container " + name);
+                if(userResponseListener != null){
+                    userResponseListener.onFailure(response, t, extendedInfo);
+                }
+            }
+        });
+    }
+
+    /**
+     * Delete all shards from Object Storage. Like any container, the shards must be empty to be deleted.
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with null parameters.
+     */
+    public void delete(final ObjectStorageResponseListener<Void> userResponseListener){
+        int count;
+        synchronized (this){
+            count = Math.max(shardCount, previousShardCount);
+        }
+        deleteShards(0, count, userResponseListener);
+    }
+
+    /**
+     * Store an object in its shard.
+     * @param objectName the name of the object
+     * @param objectData the data of the object
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the stored object.
+     */
+    public void storeObject(String objectName, byte[] objectData, ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        getShardFor(objectName).storeObject(objectName, objectData, userResponseListener);
+    }
+
+    /**
+     * Stream an object to its shard.
+     * @see ObjectStorageContainer#storeObject(String, InputStream, long, ObjectStorageResponseListener)
+     */
+    public ObjectStorageHttpRequest storeObject(String objectName, InputStream objectData, long length, ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        return getShardFor(objectName).storeObject(objectName, objectData, length, userResponseListener);
+    }
+
+    /**
+     * Store a file as an object in its shard.
+     * @see ObjectStorageContainer#storeObject(String, File, ObjectStorageResponseListener)
+     */
+    public ObjectStorageHttpRequest storeObject(String objectName, File file, ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        return getShardFor(objectName).storeObject(objectName, file, userResponseListener);
+    }
+
+    /**
+     * Retrieve an object from its shard.
+     * @param objectName the name of the object
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the object and its data.
+     */
+    public void getObject(final String objectName, final ObjectStorageResponseListener<ObjectStorageObject> userResponseListener){
+        final ObjectStorageContainer previousShard = getPreviousShardFor(objectName);
+
+        getShardFor(objectName).getObject(objectName, new ObjectStorageResponseListener<ObjectStorageObject>() {
+            @Override
+            public void onSuccess(ObjectStorageObject object) {
+                if(userResponseListener != null){
+                    userResponseListener.onSuccess(object);
+                }
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                if(previousShard != null && response != null && response.getStatus() == 404){
+                    previousShard.getObject(objectName, userResponseListener);
+                }
+                else if(userResponseListener != null){
+                    userResponseListener.onFailure(response, t, extendedInfo);
+                }
+            }
+        });
+    }
+
+    /**
+     * Delete an object from its shard.
+     * @param objectName the name of the object
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with null parameters.
+     */
+    public void deleteObject(final String objectName, final ObjectStorageResponseListener<Void> userResponseListener){
+        final ObjectStorageContainer previousShard = getPreviousShardFor(objectName);
+
+        getShardFor(objectName).deleteObject(objectName, new ObjectStorageResponseListener<Void>() {
+            @Override
+            public void onSuccess(Void returnValue) {
+                if(userResponseListener != null){
+                    userResponseListener.onSuccess(returnValue);
+                }
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                if(previousShard != null && response != null && response.getStatus() == 404){
+                    previousShard.deleteObject(objectName, userResponseListener);
+                }
+                else if(userResponseListener != null){
+                    userResponseListener.onFailure(response, t, extendedInfo);
+                }
+            }
+        });
+    }
+
+    /**
+     * Get a list of all objects in all shards, in the order Object Storage lists them. The shards are listed in parallel.
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the list of objects.
+     */
+    public void getObjectList(final ObjectStorageResponseListener<List<ObjectStorageObject>> userResponseListener){
+        int count;
+        synchronized (this){
+            count = Math.max(shardCount, previousShardCount);
+        }
+
+        new ShardListing(count, new ObjectStorageResponseListener<List<List<ObjectStorageObject>>>() {
+            @Override
+            public void onSuccess(List<List<ObjectStorageObject>> shards) {
+                if(userResponseListener != null){
+                    userResponseListener.onSuccess(merge(shards));
+                }
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                logger.error("Failed to retrieve object list for sharded container: " + name);
+                if(userResponseListener != null){
+                    userResponseListener.onFailure(response, t, extendedInfo);
+                }
+            }
+        }).start();
+    }
+
+    /**
+     * Change the number of shards, moving the objects that are assigned to another shard with server-side copies.
+     * Objects can be stored and retrieved while the objects are moved. Shards that are no longer needed are deleted
+     * once they are empty. An object that is already in its new shard, because it was stored there after the reshard
+     * started, is kept and only its old copy is deleted. A store that completes in the short time between that check
+     * and the copy can still be replaced by the old copy.
+     *
+     * If some objects could not be moved, reshard again with the same number of shards to retry them.
+     * @param newShardCount the new number of shards
+     * @param userResponseListener an optional response listener with onSuccess and onFailure callbacks. If successful, onSuccess will be called with the number of objects moved.
+     *                             Otherwise the names of the objects that could not be moved are in the failedObjects array of the extended info.
+     */
+    public void reshard(final int newShardCount, final ObjectStorageResponseListener<Integer> userResponseListener){
+        if(newShardCount < 1){
+            throw new IllegalArgumentException("A sharded container needs at least one shard.");
+        }
+
+        final int oldShardCount;
+        synchronized (this){
+            if(resharding){
+                logger.error("Sharded container " + name + " is already being resharded.");
+                if(userResponseListener != null){
+                    userResponseListener.onFailure(null, new IllegalStateException("Sharded container " + name + " is already being resharded."), null);
+                }
+                return;
+            }
+            resharding = true;
+
+            //A reshard that did not complete still has objects in the shards before it.
+            if(previousShardCount == 0){
+                previousShardCount = shardCount;
+            }
+            oldShardCount = previousShardCount;
+            shardCount = newShardCount;
+        }
+
+        logger.debug("Resharding " + name + " from " + oldShardCount + " to " + newShardCount + " shards.");
+
+        final ObjectStorageResponseListener<Integer> reshardListener = new ObjectStorageResponseListener<Integer>() {
+            @Override
+            public void onSuccess(Integer movedCount) {
+                synchronized (ObjectStorageShardedContainer.this){
+                    resharding = false;
+                    previousShardCount = 0;
+                }
+                logger.debug("Successfully resharded " + name + " to " + newShardCount + " shards, moving " + movedCount + " objects.");
+                if(userResponseListener != null){
+                    userResponseListener.onSuccess(movedCount);
+                }
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                synchronized (ObjectStorageShardedContainer.this){
+                    resharding = false;
+                }
+                logger.error("Failed to reshard " + name + " to " + newShardCount + " shards.");
+                if(userResponseListener != null){
+                    userResponseListener.onFailure(response, t, extendedInfo);
+                }
+            }
+        };
+
+        createShards(0, newShardCount, new ObjectStorageResponseListener<Void>() {
+            @Override
+            public void onSuccess(Void returnValue) {
+                recordShardCount(newShardCount, oldShardCount, new ObjectStorageResponseListener<Void>() {
+                    @Override
+                    public void onSuccess(Void returnValue) {
+                        moveObjects(oldShardCount, newShardCount, reshardListener);
+                    }
+
+                    @Override
+                    public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        reshardListener.onFailure(response, t, extendedInfo);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                reshardListener.onFailure(response, t, extendedInfo);
+            }
+        });
+    }
+
+    private void moveObjects(final int oldShardCount, final int newShardCount, final ObjectStorageResponseListener<Integer> reshardListener){
+        new ShardListing(Math.max(oldShardCount, newShardCount), new ObjectStorageResponseListener<List<List<ObjectStorageObject>>>() {
+            @Override
+            public void onSuccess(List<List<ObjectStorageObject>> shards) {
+                List<ObjectStorageObject> objects = new ArrayList<>();
+                List<String> destinations = new ArrayList<>();
+
+                for(int index = 0; index < shards.size(); index++){
+                    for(ObjectStorageObject object : shards.get(index)){
+                        int destination = shardIndex(object.getName(), newShardCount);
+                        if(destination != index){
+                            objects.add(object);
+                            destinations.add(shardName(name, destination));
+                        }
+                    }
+                }
+
+                new BatchMove(objects, destinations, new ObjectStorageResponseListener<Integer>() {
+                    @Override
+                    public void onSuccess(final Integer movedCount) {
+                        finishReshard(oldShardCount, newShardCount, movedCount, reshardListener);
+                    }
+
+                    @Override
+                    public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                        reshardListener.onFailure(response, t, extendedInfo);
+                    }
+                }).start();
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                reshardListener.onFailure(response, t, extendedInfo);
+            }
+        }).start();
+    }
+
+    private void finishReshard(final int oldShardCount, final int newShardCount, final int movedCount, final ObjectStorageResponseListener<Integer> reshardListener){
+        final ObjectStorageResponseListener<Void> recordListener = new ObjectStorageResponseListener<Void>() {
+            @Override
+            public void onSuccess(Void returnValue) {
+                reshardListener.onSuccess(movedCount);
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                reshardListener.onFailure(response, t, extendedInfo);
+            }
+        };
+
+        if(oldShardCount <= newShardCount){
+            recordShardCount(newShardCount, 0, recordListener);
+            return;
+        }
+
+        deleteShards(newShardCount, oldShardCount, new ObjectStorageResponseListener<Void>() {
+            @Override
+            public void onSuccess(Void returnValue) {
+                recordShardCount(newShardCount, 0, recordListener);
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                reshardListener.onFailure(response, t, extendedInfo);
+            }
+        });
+    }
+
+    private ObjectStorageContainer getPreviousShardFor(String objectName){
+        int current;
+        int previous;
+        synchronized (this){
+            current = shardCount;
+            previous = previousShardCount;
+        }
+        if(previous == 0){
+            return null;
+        }
+
+        int previousIndex = shardIndex(objectName, previous);
+        return previousIndex == shardIndex(objectName, current) ? null : getShard(previousIndex);
+    }
+
+    private void recordShardCount(int count, int previousCount, ObjectStorageResponseListener<Void> listener){
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put(SHARD_COUNT_HEADER, "" + count);
+        metadata.put(PREVIOUS_SHARD_COUNT_HEADER, "" + previousCount);
+        getShard(0).updateMetadata(metadata, listener);
+    }
+
+    private void createShards(int first, int end, final ObjectStorageResponseListener<Void> listener){
+        final ParallelShards parallel = new ParallelShards(end - first, listener);
+        for(int index = first; index < end; index++){
+            ObjectStorage.createContainer(shardName(name, index), new ObjectStorageResponseListener<ObjectStorageContainer>() {
+                @Override
+                public void onSuccess(ObjectStorageContainer container) {
+                    parallel.completed(null, null);
+                }
+
+                @Override
+                public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                    parallel.completed(response, t != null ? t : new IllegalStateException("Failed to create shard."));
+                }
+            });
+        }
+    }
+
+    private void deleteShards(int first, int end, ObjectStorageResponseListener<Void> listener){
+        final ParallelShards parallel = new ParallelShards(end - first, listener);
+        for(int index = first; index < end; index++){
+            ObjectStorage.deleteContainer(shardName(name, index), new ObjectStorageResponseListener<Void>() {
+                @Override
+                public void onSuccess(Void returnValue) {
+                    parallel.completed(null, null);
+                }
+
+                @Override
+                public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                    //A shard that no longer exists does not need to be deleted.
+                    boolean missing = response != null && response.getStatus() == 404;
+                    parallel.completed(missing ? null : response, missing ? null : (t != null ? t : new IllegalStateException("Failed to delete shard.")));
+                }
+            });
+        }
+    }
+
+    protected static String shardName(String name, int index){
+        return name + "-" + index;
+    }
+
+    /**
+     * Assign an object name to one of the given number of shards with rendezvous hashing: every shard gets a weight
+     * derived from the name and the shard number, and the shard with the highest weight wins. The weight of a shard does
+     * not depend on the number of shards, so adding a shard only moves the objects that the new shard wins.
+     */
+    protected static int shardIndex(String objectName, int shardCount){
+        //64 bit FNV-1a hash of the name
+        long nameHash = 0xcbf29ce484222325L;
+        for(int i = 0; i < objectName.length(); i++){
+            nameHash ^= objectName.charAt(i);
+            nameHash *= 0x100000001b3L;
+        }
+
+        int best = 0;
+        long bestWeight = Long.MIN_VALUE;
+        for(int index = 0; index < shardCount; index++){
+            long weight = mix(nameHash + (index + 1) * 0x9e3779b97f4a7c15L);
+            if(weight > bestWeight){
+                bestWeight = weight;
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    //The finalizer of SplitMix64, which spreads every input bit over the whole weight.
+    private static long mix(long value){
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Merges the listings of the shards, which are each in listing order. An object that is listed by two shards,
+     * because it is being moved between them, is only included once.
+     */
+    private static List<ObjectStorageObject> merge(final List<List<ObjectStorageObject>> shards){
+        int total = 0;
+        for(List<ObjectStorageObject> shard : shards){
+            total += shard.size();
+        }
+        List<ObjectStorageObject> merged = new ArrayList<>(total);
+
+        final int[] positions = new int[shards.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(1, shards.size()), new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                return ObjectStorageUtils.compareObjectNames(shards.get(first).get(positions[first]).getName(), shards.get(second).get(positions[second]).getName());
+            }
+        });
+        for(int index = 0; index < shards.size(); index++){
+            if(!shards.get(index).isEmpty()){
+                heads.add(index);
+            }
+        }
+
+        while(!heads.isEmpty()){
+            int index = heads.poll();
+            ObjectStorageObject object = shards.get(index).get(positions[index]++);
+            if(merged.isEmpty() || !merged.get(merged.size() - 1).getName().equals(object.getName())){
+                merged.add(object);
+            }
+            if(positions[index] < shards.get(index).size()){
+                heads.add(index);
+            }
+        }
+
+        return merged;
+    }
+
+    private static int parseCount(String value){
+        if(value == null){
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Completes the listener once an operation on every shard has completed, failing it if any of them failed.
+     */
+    private static class ParallelShards {
+        private final ObjectStorageResponseListener<Void> listener;
+        private int remaining;
+        private Response failedResponse = null;
+        private Throwable failure = null;
+
+        ParallelShards(int count, ObjectStorageResponseListener<Void> listener){
+            this.listener = listener;
+            this.remaining = count;
+            if(count == 0){
+                listener.onSuccess(null);
+            }
+        }
+
+        void completed(Response response, Throwable t){
+            synchronized (this){
+                if(t != null){
+                    failedResponse = response;
+                    failure = t;
+                }
+                if(--remaining > 0){
+                    return;
+                }
+            }
+
+            if(failure == null){
+                listener.onSuccess(null);
+            }
+            else{
+                listener.onFailure(failedResponse, failure, null);
+            }
+        }
+    }
+
+    /**
+     * Lists every shard completely, page by page, with all shards listed in parallel.
+     */
+    private class ShardListing {
+        private final List<List<ObjectStorageObject>> shards;
+        private final ObjectStorageResponseListener<List<List<ObjectStorageObject>>> listener;
+        private int remaining;
+        private Response failedResponse = null;
+        private Throwable failure = null;
+
+        ShardListing(int count, ObjectStorageResponseListener<List<List<ObjectStorageObject>>> listener){
+            this.listener = listener;
+            this.remaining = count;
+            this.shards = new ArrayList<>(count);
+            for(int index = 0; index < count; index++){
+                shards.add(new ArrayList<ObjectStorageObject>());
+            }
+        }
+
+        void start(){
+            for(int index = 0; index < shards.size(); index++){
+                listPage(index, null);
+            }
+        }
+
+        private void listPage(final int index, String marker){
+            getShard(index).getObjectList(marker, LISTING_PAGE_SIZE, new ObjectStorageResponseListener<List<ObjectStorageObject>>() {
+                @Override
+                public void onSuccess(List<ObjectStorageObject> page) {
+                    shards.get(index).addAll(page);
+                    if(page.size() >= LISTING_PAGE_SIZE){
+                        listPage(index, page.get(page.size() - 1).getName());
+                    }
+                    else{
+                        completed(null, null);
+                    }
+                }
+
+                @Override
+                public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                    //A shard that has not been created yet has no objects.
+                    boolean missing = t instanceof ObjectStorageHttpException && ((ObjectStorageHttpException) t).getStatusCode() == 404;
+                    completed(missing ? null : response, missing ? null : (t != null ? t : new IllegalStateException("Failed to list shard.")));
+                }
+            });
+        }
+
+        private void completed(Response response, Throwable t){
+            synchronized (this){
+                if(t != null){
+                    failedResponse = response;
+                    failure = t;
+                }
+                if(--remaining > 0){
+                    return;
+                }
+            }
+
+            if(failure == null){
+                listener.onSuccess(Collections.unmodifiableList(shards));
+            }
+            else{
+                listener.onFailure(failedResponse, failure, null);
+            }
+        }
+    }
+
+    /**
+     * Moves objects to other shards, up to {@link #MAX_CONCURRENT_MOVES} at a time.
+     */
+    private static class BatchMove {
+        private final List<ObjectStorageObject> objects;
+        private final List<String> destinations;
+        private final ObjectStorageResponseListener<Integer> listener;
+
+        private final JSONArray failedObjects = new JSONArray();
+        private int next = 0;
+        private int remaining;
+        private Response lastFailedResponse = null;
+        private Throwable lastFailure = null;
+
+        BatchMove(List<ObjectStorageObject> objects, List<String> destinations, ObjectStorageResponseListener<Integer> listener){
+            this.objects = objects;
+            this.destinations = destinations;
+            this.listener = listener;
+            this.remaining = objects.size();
+        }
+
+        void start(){
+            if(objects.isEmpty()){
+                finish();
+                return;
+            }
+
+            for(int i = 0; i < MAX_CONCURRENT_MOVES; i++){
+                moveNext();
+            }
+        }
+
+        private void moveNext(){
+            final int index;
+            synchronized (this){
+                if(next >= objects.size()){
+                    return;
+                }
+                index = next++;
+            }
+
+            final ObjectStorageObject object = objects.get(index);
+            final String destination = destinations.get(index);
+
+            //An object stored in its new shard after the reshard started is newer than the one being moved.
+            new ObjectStorageObject(object.getName(), new ObjectStorageContainer(destination), null).getMetadata(new ObjectStorageResponseListener<Map<String, List<String>>>() {
+                @Override
+                public void onSuccess(Map<String, List<String>> headers) {
+                    object.delete(new ObjectStorageResponseListener<Void>() {
+                        @Override
+                        public void onSuccess(Void returnValue) {
+                            completed(index, null, null);
+                        }
+
+                        @Override
+                        public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                            //Deleted by someone else in the meantime.
+                            boolean missing = response != null && response.getStatus() == 404;
+                            completed(index, missing ? null : response, missing ? null : (t != null ? t : new IllegalStateException("Failed to delete object.")));
+                        }
+                    });
+                }
+
+                @Override
+                public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                    if(response == null || response.getStatus() != 404){
+                        completed(index, response, t != null ? t : new IllegalStateException("Failed to check the new shard."));
+                        return;
+                    }
+
+                    object.moveTo(destination, object.getName(), new ObjectStorageResponseListener<ObjectStorageObject>() {
+                        @Override
+                        public void onSuccess(ObjectStorageObject moved) {
+                            completed(index, null, null);
+                        }
+
+                        @Override
+                        public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                            completed(index, response, t != null ? t : new IllegalStateException("Failed to move object."));
+                        }
+                    });
+                }
+            });
+        }
+
+        private void completed(int index, Response response, Throwable t){
+            boolean done;
+            synchronized (this){
+                if(t != null){
+                    failedObjects.put(objects.get(index).getName());
+                    lastFailedResponse = response;
+                    lastFailure = t;
+                }
+                done = --remaining == 0;
+            }
+
+            if(done){
+                finish();
+            }
+            else{
+                moveNext();
+            }
+        }
+
+        private void finish(){
+            if(failedObjects.length() == 0){
+                listener.onSuccess(objects.size());
+                return;
+            }
+
+            logger.error("Failed to move " + failedObjects.length() + " of " + objects.size() + " objects to their new shards.");
+            JSONObject extendedInfo = new JSONObject();
+            try {
+                extendedInfo.put("failedObjects", failedObjects);
+            } catch (JSONException e) {
+                //Just creating JSONObject; no exceptions will occur.
+            }
+            listener.onFailure(lastFailedResponse, lastFailure, extendedInfo);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Response;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces identical requests that are in flight at the same time, such as a thumbnail grid and a detail view loading the
+ * same object, or many operations waiting for a new authentication token. The first caller sends the request; callers
+ * that ask for the same thing before it completes wait for the same response, and all of them get its result.
+ *
+ * Callers with a cancelable handle can leave a flight on their own. The request itself is only canceled once the last
+ * caller has left.
+ *
+ * Every caller gets its own copy of loaded data, so a caller that modifies the array it receives does not change what
+ * the other callers see. Other results, such as metadata maps, are shared and must not be modified.
+ *
+ * Requests sent through the {@link ObjectStorageTransport} report error responses differently from requests sent through
+ * the core SDK, so their keys end with {@link #TRANSFER} and the two never share a flight.
+ */
+final class ObjectStorageSingleFlight {
+    static final String TRANSFER = " transfer";
+
+    private static final Map<String, Flight<?>> flights = new HashMap<>();
+
+    private ObjectStorageSingleFlight(){
+    }
+
+    /**
+     * Join the flight with the given key, or start it if there is none.
+     * @param key identifies the request: its method, URL, conditions and the kind of result it produces
+     * @param listener called with the result of the flight
+     * @param metrics the metrics of the caller, completed when a joined flight completes
+     * @param handle the caller's handle on the request, whose cancellation makes the caller leave the flight, or null
+     * @return the new flight, which the caller must send the request for and pass the result to, or null if the caller joined a flight in progress
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Flight<T> join(String key, ObjectStorageResponseListener<T> listener, ObjectStorageOperationMetrics metrics, ObjectStorageHttpRequest handle){
+        Flight<T> flight;
+        boolean started = false;
+
+        synchronized (flights){
+            flight = (Flight<T>) flights.get(key);
+            if(flight == null){
+                flight = new Flight<>(key);
+                flights.put(key, flight);
+                started = true;
+            }
+        }
+
+        final Waiter<T> waiter = new Waiter<>(listener, started ? null : metrics);
+        if(!flight.add(waiter)){
+            //The flight completed while this caller was joining it, so the caller starts a new one.
+            synchronized (flights){
+                if(flights.get(key) == flight){
+                    flights.remove(key);
+                }
+            }
+            return join(key, listener, metrics, handle);
+        }
+
+        if(handle != null){
+            final Flight<T> joinedFlight = flight;
+            handle.onCancel(new Runnable() {
+                @Override
+                public void run() {
+                    joinedFlight.leave(waiter);
+                }
+            });
+        }
+
+        if(!started){
+            if(metrics != null){
+                metrics.coalesced();
+            }
+            ObjectStorage.logger.debug("Joined request in flight: " + key);
+            return null;
+        }
+
+        return flight;
+    }
+
+    /**
+     * A request in flight and the callers waiting for it. The caller that started the flight passes the result to it
+     * as its response listener.
+     */
+    static class Flight<T> implements ObjectStorageResponseListener<T> {
+        private final String key;
+        private final List<Waiter<T>> waiters = new ArrayList<>();
+        private ObjectStorageHttpRequest request = null;
+        private boolean done = false;
+
+        Flight(String key){
+            this.key = key;
+        }
+
+        /**
+         * Set the request sent for this flight, so it can be canceled once every caller has left.
+         */
+        void setRequest(ObjectStorageHttpRequest sentRequest){
+            boolean abandoned;
+            synchronized (this){
+                request = sentRequest;
+                abandoned = done;
+            }
+            if(abandoned){
+                sentRequest.cancel();
+            }
+        }
+
+        private synchronized boolean add(Waiter<T> waiter){
+            if(done){
+                return false;
+            }
+            waiters.add(waiter);
+            return true;
+        }
+
+        private void leave(Waiter<T> waiter){
+            boolean abandoned;
+            ObjectStorageHttpRequest abandonedRequest;
+            synchronized (this){
+                if(done || !waiters.remove(waiter)){
+                    return;
+                }
+                abandoned = waiters.isEmpty();
+                done = abandoned;
+                abandonedRequest = request;
+            }
+
+            if(abandoned){
+                finish();
+                if(abandonedRequest != null){
+                    abandonedRequest.cancel();
+                }
+            }
+
+            waiter.failed(null, new IOException("Canceled"), null);
+        }
+
+        @Override
+        public void onSuccess(T result) {
+            List<Waiter<T>> completed = complete();
+            for(int i = 0; i < completed.size(); i++){
+                completed.get(i).succeeded(i == 0 ? result : copy(result));
+            }
+        }
+
+        @Override
+        public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+            for(Waiter<T> waiter : complete()){
+                waiter.failed(response, t, extendedInfo);
+            }
+        }
+
+        private List<Waiter<T>> complete(){
+            List<Waiter<T>> completed;
+            synchronized (this){
+                done = true;
+                completed = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+            finish();
+            return completed;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T copy(T result){
+            if(result instanceof byte[]){
+                return (T) ((byte[]) result).clone();
+            }
+            return result;
+        }
+
+        private void finish(){
+            synchronized (flights){
+                if(flights.get(key) == this){
+                    flights.remove(key);
+                }
+            }
+        }
+    }
+
+    private static class Waiter<T> {
+        private final ObjectStorageResponseListener<T> listener;
+        private final ObjectStorageOperationMetrics metrics;
+
+        Waiter(ObjectStorageResponseListener<T> listener, ObjectStorageOperationMetrics metrics){
+            this.listener = listener;
+            this.metrics = metrics;
+        }
+
+        void succeeded(T result){
+            if(metrics != null){
+                metrics.completed(true, 0, 0);
+            }
+            if(listener != null){
+                listener.onSuccess(result);
+            }
+        }
+
+        void failed(Response response, Throwable t, JSONObject extendedInfo){
+            if(metrics != null){
+                metrics.failed(response);
+            }
+            if(listener != null){
+                listener.onFailure(response, t, extendedInfo);
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.logger.api.Logger;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps trace spans of the slowest and the failed Object Storage operations, to find out why an operation was slow
+ * in the field. Each span is an {@link ObjectStorageOperationMetrics} with the time spent waiting for authentication,
+ * queued in the HTTP client, waiting for the first byte and transferring the response, and the transaction ID the
+ * server logged the request with.
+ *
+ * Tracing is disabled by default. Once enabled with {@link #setEnabled(boolean)}, every operation is timed, which costs
+ * a few clock reads per operation. Failed operations are always kept; of the successful ones, only a sample set with
+ * {@link #setSampleRate(double)} competes for a place among the slowest. Both are kept in buffers of bounded size,
+ * which drop the oldest failure and the fastest span when full.
+ */
+public final class ObjectStorageTracer {
+    public static final int DEFAULT_CAPACITY = 32;
+    public static final double DEFAULT_SAMPLE_RATE = 0.1;
+    public static final long DEFAULT_SLOW_THRESHOLD = 5000;
+
+    private static final Comparator<ObjectStorageOperationMetrics> FASTEST_FIRST = new Comparator<ObjectStorageOperationMetrics>() {
+        @Override
+        public int compare(ObjectStorageOperationMetrics first, ObjectStorageOperationMetrics second) {
+            long a = first.getTotalNanos();
+            long b = second.getTotalNanos();
+            return a < b ? -1 : (a == b ? 0 : 1);
+        }
+    };
+
+    public static Logger logger = Logger.getLogger(Logger.INTERNAL_PREFIX + ObjectStorageTracer.class.getName());
+
+    private static volatile boolean enabled = false;
+    private static volatile long sampleInterval = Math.round(1 / DEFAULT_SAMPLE_RATE);
+    private static volatile long slowThresholdNanos = DEFAULT_SLOW_THRESHOLD * 1000000;
+
+    private static final AtomicLong completedCount = new AtomicLong();
+
+    private static int capacity = DEFAULT_CAPACITY;
+    private static final PriorityQueue<ObjectStorageOperationMetrics> slowest = new PriorityQueue<>(DEFAULT_CAPACITY, FASTEST_FIRST);
+    private static final ArrayDeque<ObjectStorageOperationMetrics> failed = new ArrayDeque<>(DEFAULT_CAPACITY);
+
+    private ObjectStorageTracer(){
+    }
+
+    /**
+     * Enable or disable tracing. Operations that are already running keep their current setting.
+     * @param enableTracing true to start tracing operations
+     */
+    public static void setEnabled(boolean enableTracing){
+        enabled = enableTracing;
+    }
+
+    /**
+     * Check whether operations are being traced.
+     * @return true if tracing is enabled
+     */
+    public static boolean isEnabled(){
+        return enabled;
+    }
+
+    /**
+     * Set the fraction of successful operations that are considered for the slowest spans. Failed operations are
+     * always kept.
+     * @param rate the fraction, between 0 and 1; 1 considers every operation
+     */
+    public static void setSampleRate(double rate){
+        double boundedRate = Math.min(1, Math.max(0, rate));
+        sampleInterval = boundedRate == 0 ? 0 : Math.max(1, Math.round(1 / boundedRate));
+    }
+
+    /**
+     * Get the fraction of successful operations that are considered for the slowest spans.
+     * @return the sample rate, between 0 and 1
+     */
+    public static double getSampleRate(){
+        long interval = sampleInterval;
+        return interval == 0 ? 0 : 1.0 / interval;
+    }
+
+    /**
+     * Set the duration above which an operation is logged as slow, with its timings and transaction ID.
+     * @param millis the threshold in milliseconds, or 0 to not log slow operations
+     */
+    public static void setSlowThreshold(long millis){
+        slowThresholdNanos = Math.max(0, millis) * 1000000;
+    }
+
+    /**
+     * Get the duration above which an operation is logged as slow.
+     * @return the threshold in milliseconds
+     */
+    public static long getSlowThreshold(){
+        return slowThresholdNanos / 1000000;
+    }
+
+    /**
+     * Set how many of the slowest operations, and how many of the most recent failed operations, are kept.
+     * @param maxSpans the number of spans kept of each
+     */
+    public static synchronized void setCapacity(int maxSpans){
+        capacity = Math.max(1, maxSpans);
+        while(slowest.size() > capacity){
+            slowest.poll();
+        }
+        while(failed.size() > capacity){
+            failed.pollFirst();
+        }
+    }
+
+    /**
+     * Get how many of the slowest and of the failed operations are kept.
+     * @return the number of spans kept of each
+     */
+    public static synchronized int getCapacity(){
+        return capacity;
+    }
+
+    /**
+     * Get the slowest traced operations that succeeded.
+     * @return the spans, slowest first
+     */
+    public static synchronized List<ObjectStorageOperationMetrics> getSlowestSpans(){
+        List<ObjectStorageOperationMetrics> spans = new ArrayList<>(slowest);
+        Collections.sort(spans, Collections.reverseOrder(FASTEST_FIRST));
+        return spans;
+    }
+
+    /**
+     * Get the most recent failed operations.
+     * @return the spans, most recent first
+     */
+    public static synchronized List<ObjectStorageOperationMetrics> getFailedSpans(){
+        List<ObjectStorageOperationMetrics> spans = new ArrayList<>(failed);
+        Collections.reverse(spans);
+        return spans;
+    }
+
+    /**
+     * Drop all kept spans.
+     */
+    public static synchronized void clear(){
+        slowest.clear();
+        failed.clear();
+    }
+
+    /**
+     * Get the kept spans as JSON, with the slowest operations under "slowest" and the failed ones under "failed".
+     * @return the spans as a JSON object
+     */
+    public static JSONObject toJSON(){
+        JSONObject json = new JSONObject();
+
+        try {
+            json.put("sampleRate", getSampleRate());
+            json.put("slowest", toJSON(getSlowestSpans()));
+            json.put("failed", toJSON(getFailedSpans()));
+        } catch (JSONException e) {
+            //Just creating JSONObject; no exceptions will occur.
+        }
+
+        return json;
+    }
+
+    private static JSONArray toJSON(List<ObjectStorageOperationMetrics> spans){
+        JSONArray array = new JSONArray();
+        for(ObjectStorageOperationMetrics span : spans){
+            array.put(span.toJSON());
+        }
+        return array;
+    }
+
+    static void completed(ObjectStorageOperationMetrics metrics){
+        long totalNanos = metrics.getTotalNanos();
+        long threshold = slowThresholdNanos;
+        if(threshold > 0 && totalNanos > threshold){
+            logger.warn("Slow operation: " + metrics.toJSON());
+        }
+
+        if(!metrics.isSuccessful()){
+            synchronized (ObjectStorageTracer.class){
+                if(failed.size() >= capacity){
+                    failed.pollFirst();
+                }
+                failed.addLast(metrics);
+            }
+            return;
+        }
+
+        long interval = sampleInterval;
+        if(interval == 0 || completedCount.incrementAndGet() % interval != 0){
+            return;
+        }
+
+        synchronized (ObjectStorageTracer.class){
+            if(slowest.size() < capacity){
+                slowest.offer(metrics);
+            }
+            else if(totalNanos > slowest.peek().getTotalNanos()){
+                slowest.poll();
+                slowest.offer(metrics);
+            }
+        }
+    }
+}
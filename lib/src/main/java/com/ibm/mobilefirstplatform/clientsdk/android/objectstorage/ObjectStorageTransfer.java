@@ -0,0 +1,538 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Response;
+
+import org.json.JSONObject;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends streaming requests through the configured {@link ObjectStorageTransport}. Requests are authenticated the same
+ * way as every other operation, run on a shared pool of background threads and are recorded in the metrics.
+ * Progress is reported and stalled connections are aborted and retried as set in the {@link ObjectStorageTransferOptions},
+ * and the data is held to the {@link ObjectStorageBandwidthLimiter} limits.
+ */
+final class ObjectStorageTransfer {
+
+    /**
+     * Consumes a successful response on the transfer thread. The response is closed once the handler returns.
+     */
+    interface ResponseHandler<T> {
+        T onResponse(ObjectStorageHttpResponse response, InputStream body) throws IOException;
+    }
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new DaemonThreadFactory("ObjectStorage-transfer-"));
+
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("ObjectStorage-watchdog-"));
+
+    private static final ObjectStorageTransferOptions DEFAULT_OPTIONS = new ObjectStorageTransferOptions();
+
+    private ObjectStorageTransfer(){
+    }
+
+    /**
+     * Authenticate and send the request with the default options, then pass the response to the handler.
+     * @see #send(String, ObjectStorageHttpRequest, ObjectStorageTransferOptions, ResponseHandler, ObjectStorageResponseListener)
+     */
+    static <T> void send(String operation, ObjectStorageHttpRequest request, ResponseHandler<T> handler, ObjectStorageResponseListener<T> userResponseListener){
+        send(operation, request, null, handler, userResponseListener);
+    }
+
+    /**
+     * Authenticate and send the request, then pass the response to the handler.
+     * @param operation the operation name used in the metrics
+     * @param request the request, without the authentication header
+     * @param options the progress and stall detection options, or null for the defaults
+     * @param handler consumes the response body if the request succeeds
+     * @param userResponseListener called with the result of the handler, or with an {@link ObjectStorageHttpException} for an error response
+     */
+    static <T> void send(String operation, ObjectStorageHttpRequest request, ObjectStorageTransferOptions options, ResponseHandler<T> handler, ObjectStorageResponseListener<T> userResponseListener){
+        send(ObjectStorageMetrics.start(operation), request, options, handler, userResponseListener);
+    }
+
+    /**
+     * Authenticate and send the request, recording it in metrics the caller already started, for example to record a cache miss.
+     * @see #send(String, ObjectStorageHttpRequest, ObjectStorageTransferOptions, ResponseHandler, ObjectStorageResponseListener)
+     */
+    static <T> void send(final ObjectStorageOperationMetrics metrics, final ObjectStorageHttpRequest request, ObjectStorageTransferOptions options, final ResponseHandler<T> handler, final ObjectStorageResponseListener<T> userResponseListener){
+        final TransferProgress progress = new TransferProgress(options != null ? options : DEFAULT_OPTIONS);
+
+        ObjectStorage.refreshAuthToken(new ObjectStorageResponseListener<String>() {
+            @Override
+            public void onSuccess(String authToken) {
+                metrics.authenticated();
+
+                request.setHeader(ObjectStorage.AUTH_HEADER, authToken);
+                ObjectStorageRequestBody body = request.getBody();
+                metrics.requestSent(body != null ? Math.max(0, body.getContentLength()) : 0);
+
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        execute(request, progress, handler, metrics, userResponseListener);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                metrics.failed(response);
+                closeBody(request);
+
+                ObjectStorage.logger.error("Could not authenticate with Object Storage. Call ObjectStorage.connect() in order to do so.");
+                if(userResponseListener != null){
+                    userResponseListener.onFailure(response, t, extendedInfo);
+                }
+            }
+        });
+    }
+
+    private static <T> void execute(ObjectStorageHttpRequest request, TransferProgress progress, ResponseHandler<T> handler, ObjectStorageOperationMetrics metrics, ObjectStorageResponseListener<T> userResponseListener){
+        metrics.requestDispatched();
+
+        int status = 0;
+        T result;
+        ResumableInputStream body = null;
+
+        try {
+            if(request.isCanceled()){
+                throw new IOException("Canceled");
+            }
+
+            ObjectStorageHttpResponse response = open(request, progress, metrics, 0, -1, null);
+            status = response.getStatus();
+            metrics.responseReceived(response.getHeaders());
+
+            if(!response.isSuccessful()){
+                response.close();
+                throw new ObjectStorageHttpException("The request failed with status " + status, status, response.getHeaders());
+            }
+
+            if(request.getBody() == null){
+                progress.setTotal(response.getContentLength());
+            }
+
+            body = new ResumableInputStream(request, response, progress, metrics);
+            result = handler.onResponse(response, response.getBody() != null ? body : null);
+            progress.finished();
+        } catch (Exception e) {
+            metrics.completed(false, status, 0);
+
+            ObjectStorage.logger.error("Transfer failed: " + request + ": " + e.getMessage());
+            if(userResponseListener != null){
+                userResponseListener.onFailure(null, e, null);
+            }
+            return;
+        } finally {
+            progress.stop();
+            if(body != null){
+                body.release();
+            }
+            closeBody(request);
+        }
+
+        metrics.completed(true, status, 0);
+
+        if(userResponseListener != null){
+            userResponseListener.onSuccess(result);
+        }
+    }
+
+    /**
+     * Send the request and wait for the response headers, retrying if the connection stalls.
+     * @param rangeStart the offset to resume a download at, or 0 to send the request as it is
+     * @param rangeEnd the last byte of the range to resume, or -1 for the rest of the object
+     * @param etag the ETag the resumed object must still have, or null
+     */
+    private static ObjectStorageHttpResponse open(ObjectStorageHttpRequest request, TransferProgress progress, ObjectStorageOperationMetrics metrics, long rangeStart, long rangeEnd, String etag) throws IOException {
+        while(true){
+            final ObjectStorageHttpRequest attempt = new ObjectStorageHttpRequest(request.getUrl(), request.getMethod(), progress.track(request.getBody()));
+
+            for(Map.Entry<String, String> header : request.getHeaders().entrySet()){
+                attempt.setHeader(header.getKey(), header.getValue());
+            }
+            if(rangeStart > 0){
+                attempt.setHeader("Range", "bytes=" + rangeStart + "-" + (rangeEnd >= 0 ? rangeEnd : ""));
+                if(etag != null){
+                    attempt.setHeader("If-Match", etag);
+                }
+            }
+
+            request.onCancel(new Runnable() {
+                @Override
+                public void run() {
+                    attempt.cancel();
+                }
+            });
+            progress.watch(attempt);
+
+            try {
+                ObjectStorageHttpResponse response = ObjectStorage.getTransport().execute(attempt);
+                metrics.firstByteReceived();
+                return response;
+            } catch (IOException e) {
+                boolean repeatable = request.getBody() == null || request.getBody().isRepeatable();
+                if(!progress.retryAfterStall(request, e, repeatable)){
+                    throw progress.toStallException(e);
+                }
+                metrics.retried();
+                ObjectStorage.logger.debug("Retrying stalled transfer: " + request);
+            }
+        }
+    }
+
+    private static void closeBody(ObjectStorageHttpRequest request){
+        if(request.getBody() == null){
+            return;
+        }
+        try {
+            request.getBody().close();
+        } catch (IOException e) {
+            ObjectStorage.logger.error("Failed to close the request body: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The response body seen by the handler. If the connection stalls, the download resumes where it stopped with a Range
+     * request, so the handler reads one uninterrupted stream. A request that already asked for a range resumes within that range.
+     */
+    private static class ResumableInputStream extends InputStream {
+        private final ObjectStorageHttpRequest request;
+        private final TransferProgress progress;
+        private final ObjectStorageOperationMetrics metrics;
+        private final String etag;
+        private final long rangeStart;
+        private final long rangeEnd;
+
+        private ObjectStorageHttpResponse response;
+        private long position = 0;
+
+        ResumableInputStream(ObjectStorageHttpRequest request, ObjectStorageHttpResponse response, TransferProgress progress, ObjectStorageOperationMetrics metrics){
+            this.request = request;
+            this.response = response;
+            this.progress = progress;
+            this.metrics = metrics;
+            this.etag = response.getHeader(ObjectStorageUtils.ETAG_HEADER);
+
+            //A server that ignores the range sends the whole object, which resumes like any other download.
+            long[] range = parseRange(response.getStatus() == 206 ? request.getHeaders().get("Range") : null);
+            this.rangeStart = range[0];
+            this.rangeEnd = range[1];
+        }
+
+        /**
+         * Parse a single "bytes=first-last" range, where the last byte may be left out.
+         * @return the first and last byte, or 0 and -1 if there is no range
+         */
+        private static long[] parseRange(String range){
+            long[] parsed = {0, -1};
+            if(range == null || !range.startsWith("bytes=") || range.indexOf(',') != -1){
+                return parsed;
+            }
+            int dash = range.indexOf('-');
+            try {
+                if(dash > 6){
+                    parsed[0] = Long.parseLong(range.substring(6, dash).trim());
+                    String last = range.substring(dash + 1).trim();
+                    parsed[1] = last.isEmpty() ? -1 : Long.parseLong(last);
+                }
+            } catch (NumberFormatException e) {
+                parsed[0] = 0;
+                parsed[1] = -1;
+            }
+            return parsed;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            while(true){
+                int read;
+                try {
+                    read = response.getBody().read(buffer, offset, ObjectStorageBandwidthLimiter.chunkSize(progress.priority, length));
+                } catch (IOException e) {
+                    if(!progress.retryAfterStall(request, e, true)){
+                        throw progress.toStallException(e);
+                    }
+                    resume();
+                    continue;
+                }
+
+                if(read > 0){
+                    position += read;
+                    metrics.bytesReceived(read);
+                    if(request.getBody() == null){
+                        progress.transferred(read);
+                    }
+                    progress.throttle(read);
+                }
+                return read;
+            }
+        }
+
+        private void resume() throws IOException {
+            response.close();
+            metrics.retried();
+            ObjectStorage.logger.debug("Resuming stalled download at " + position + ": " + request);
+
+            response = open(request, progress, metrics, rangeStart + position, rangeEnd, etag);
+
+            if(response.getStatus() == 200){
+                //The server ignored the range, so skip what has already been read.
+                long skip = rangeStart + position;
+                long skipped = 0;
+                while(skipped < skip){
+                    long count = response.getBody().skip(skip - skipped);
+                    if(count <= 0){
+                        throw new IOException("The object is shorter than before.");
+                    }
+                    skipped += count;
+                }
+            }
+            else if(response.getStatus() != 206){
+                throw new ObjectStorageHttpException("Could not resume the download, the request failed with status " + response.getStatus(), response.getStatus(), response.getHeaders());
+            }
+        }
+
+        void release(){
+            response.close();
+        }
+
+        @Override
+        public void close(){
+            release();
+        }
+    }
+
+    /**
+     * Counts the bytes of one transfer, makes the throttled progress callbacks and aborts the connection when it stalls.
+     * Time spent waiting for the bandwidth limit counts as activity, since the connection is not at fault.
+     */
+    private static class TransferProgress implements Runnable {
+        private final ObjectStorageProgressListener listener;
+        private final long intervalNanos;
+        private final long intervalBytes;
+        private final long stallTimeoutNanos;
+        private final int maxRetries;
+        private final ObjectStorageBandwidthLimiter.Priority priority;
+
+        private volatile long lastActivityNanos = System.nanoTime();
+        private volatile ObjectStorageHttpRequest currentAttempt = null;
+        private volatile boolean stalled = false;
+        private volatile boolean throttling = false;
+        private ScheduledFuture<?> watch = null;
+        private int retries = 0;
+
+        private long total = -1;
+        private long transferred = 0;
+        private long reportedBytes = 0;
+        private long reportedNanos = System.nanoTime();
+
+        TransferProgress(ObjectStorageTransferOptions options){
+            listener = options.getProgressListener();
+            intervalNanos = TimeUnit.MILLISECONDS.toNanos(options.getProgressIntervalMillis());
+            intervalBytes = options.getProgressIntervalBytes();
+            stallTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(options.getStallTimeout());
+            maxRetries = options.getMaxRetries();
+            priority = options.getPriority();
+        }
+
+        void setTotal(long totalBytes){
+            if(total < 0){
+                total = totalBytes;
+            }
+        }
+
+        /**
+         * Wrap the request body so the bytes written to the connection are counted.
+         */
+        ObjectStorageRequestBody track(final ObjectStorageRequestBody body){
+            if(body == null){
+                return null;
+            }
+
+            setTotal(body.getContentLength());
+
+            return new ObjectStorageRequestBody() {
+                @Override
+                public long getContentLength() {
+                    return body.getContentLength();
+                }
+
+                @Override
+                public boolean isRepeatable() {
+                    return body.isRepeatable();
+                }
+
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    transferred = 0;
+                    body.writeTo(new FilterOutputStream(out) {
+                        @Override
+                        public void write(int b) throws IOException {
+                            out.write(b);
+                            transferred(1);
+                            throttle(1);
+                        }
+
+                        @Override
+                        public void write(byte[] buffer, int offset, int length) throws IOException {
+                            while(length > 0){
+                                int chunk = ObjectStorageBandwidthLimiter.chunkSize(priority, length);
+                                out.write(buffer, offset, chunk);
+                                transferred(chunk);
+                                throttle(chunk);
+                                offset += chunk;
+                                length -= chunk;
+                            }
+                        }
+                    });
+                }
+            };
+        }
+
+        void transferred(long count){
+            lastActivityNanos = System.nanoTime();
+            transferred += count;
+
+            if(listener == null){
+                return;
+            }
+
+            long now = lastActivityNanos;
+            if((intervalNanos > 0 && now - reportedNanos >= intervalNanos) || (intervalBytes > 0 && transferred - reportedBytes >= intervalBytes)){
+                report(now);
+            }
+        }
+
+        /**
+         * Wait for the bandwidth limit after moving the given number of bytes.
+         */
+        void throttle(long count) throws IOException {
+            throttling = true;
+            try {
+                ObjectStorageBandwidthLimiter.consume(priority, count);
+            } finally {
+                throttling = false;
+                lastActivityNanos = System.nanoTime();
+            }
+        }
+
+        void finished(){
+            if(listener != null && (transferred != reportedBytes || transferred == 0)){
+                report(System.nanoTime());
+            }
+        }
+
+        private void report(long now){
+            double seconds = Math.max(1, now - reportedNanos) / 1e9;
+            double rate = Math.max(0, transferred - reportedBytes) / seconds;
+
+            reportedBytes = transferred;
+            reportedNanos = now;
+
+            listener.onProgress(transferred, total, rate);
+        }
+
+        /**
+         * Start watching the given attempt for stalls.
+         */
+        synchronized void watch(ObjectStorageHttpRequest attempt){
+            if(currentAttempt == null){
+                reportedNanos = System.nanoTime();
+            }
+            currentAttempt = attempt;
+            lastActivityNanos = System.nanoTime();
+
+            if(stallTimeoutNanos > 0 && watch == null){
+                long period = Math.max(50, TimeUnit.NANOSECONDS.toMillis(stallTimeoutNanos) / 4);
+                watch = watchdog.scheduleAtFixedRate(this, period, period, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void stop(){
+            if(watch != null){
+                watch.cancel(false);
+                watch = null;
+            }
+        }
+
+        @Override
+        public void run(){
+            ObjectStorageHttpRequest attempt = currentAttempt;
+            if(attempt != null && !stalled && !throttling && System.nanoTime() - lastActivityNanos > stallTimeoutNanos){
+                stalled = true;
+                attempt.cancel();
+            }
+        }
+
+        /**
+         * Decide whether a failed attempt is retried: only when the watchdog aborted it, the transfer was not canceled by
+         * the user and retries are left.
+         */
+        boolean retryAfterStall(ObjectStorageHttpRequest request, IOException e, boolean repeatable){
+            if(!stalled || request.isCanceled() || !repeatable || retries >= maxRetries){
+                return false;
+            }
+
+            stalled = false;
+            retries++;
+            return true;
+        }
+
+        IOException toStallException(IOException e){
+            if(!stalled){
+                return e;
+            }
+
+            SocketTimeoutException timeout = new SocketTimeoutException("The transfer stalled for more than " + TimeUnit.NANOSECONDS.toMillis(stallTimeoutNanos) + " ms.");
+            timeout.initCause(e);
+            return timeout;
+        }
+    }
+
+    static class DaemonThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix){
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+/**
+ * Options for a single upload or download: progress reporting, stall detection and the bandwidth priority.
+ */
+public class ObjectStorageTransferOptions {
+    /** The default minimum time between progress callbacks, in milliseconds. */
+    public static final long DEFAULT_PROGRESS_INTERVAL = 250;
+    /** The default number of times a stalled transfer is retried. */
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    /** The default size of the segments a file upload is split into, in bytes. */
+    public static final long DEFAULT_SEGMENT_SIZE = 32 * 1024 * 1024;
+
+    private ObjectStorageProgressListener progressListener = null;
+    private long progressIntervalMillis = DEFAULT_PROGRESS_INTERVAL;
+    private long progressIntervalBytes = 0;
+    private long stallTimeout = 0;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private ObjectStorageBandwidthLimiter.Priority priority = ObjectStorageBandwidthLimiter.Priority.NORMAL;
+    private long segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    /**
+     * Set the listener that receives the progress of the transfer.
+     * @param listener the progress listener, or null for none
+     */
+    public void setProgressListener(ObjectStorageProgressListener listener){
+        progressListener = listener;
+    }
+
+    /**
+     * Get the listener that receives the progress of the transfer.
+     * @return the progress listener, or null if there is none
+     */
+    public ObjectStorageProgressListener getProgressListener(){
+        return progressListener;
+    }
+
+    /**
+     * Set how often progress is reported. A callback is made once either interval has passed since the previous one,
+     * so on fast links callbacks never take a noticeable share of the CPU. An interval of 0 is not used.
+     * @param millis the time between callbacks in milliseconds, {@link #DEFAULT_PROGRESS_INTERVAL} by default
+     * @param bytes the number of bytes between callbacks, 0 by default
+     */
+    public void setProgressInterval(long millis, long bytes){
+        progressIntervalMillis = Math.max(0, millis);
+        progressIntervalBytes = Math.max(0, bytes);
+    }
+
+    /**
+     * Get the minimum time between progress callbacks.
+     * @return the interval in milliseconds, or 0 if it is not used
+     */
+    public long getProgressIntervalMillis(){
+        return progressIntervalMillis;
+    }
+
+    /**
+     * Get the number of bytes between progress callbacks.
+     * @return the interval in bytes, or 0 if it is not used
+     */
+    public long getProgressIntervalBytes(){
+        return progressIntervalBytes;
+    }
+
+    /**
+     * Set how long a transfer may go without moving any data before its connection is aborted. A stalled download
+     * resumes where it stopped; a stalled upload starts over if its data can be read again. Stall detection is disabled by default.
+     * @param millis the stall timeout in milliseconds, or 0 to disable stall detection
+     */
+    public void setStallTimeout(long millis){
+        stallTimeout = Math.max(0, millis);
+    }
+
+    /**
+     * Get how long a transfer may go without moving any data.
+     * @return the stall timeout in milliseconds, or 0 if stall detection is disabled
+     */
+    public long getStallTimeout(){
+        return stallTimeout;
+    }
+
+    /**
+     * Set how many times a stalled transfer is retried before it fails.
+     * @param retries the maximum number of retries, {@link #DEFAULT_MAX_RETRIES} by default
+     */
+    public void setMaxRetries(int retries){
+        maxRetries = Math.max(0, retries);
+    }
+
+    /**
+     * Get how many times a stalled transfer is retried.
+     * @return the maximum number of retries
+     */
+    public int getMaxRetries(){
+        return maxRetries;
+    }
+
+    /**
+     * Set the priority class of the transfer, which decides which {@link ObjectStorageBandwidthLimiter} limits apply to it.
+     * @param transferPriority the priority, {@link ObjectStorageBandwidthLimiter.Priority#NORMAL} by default
+     */
+    public void setPriority(ObjectStorageBandwidthLimiter.Priority transferPriority){
+        priority = transferPriority != null ? transferPriority : ObjectStorageBandwidthLimiter.Priority.NORMAL;
+    }
+
+    /**
+     * Get the priority class of the transfer.
+     * @return the priority
+     */
+    public ObjectStorageBandwidthLimiter.Priority getPriority(){
+        return priority;
+    }
+
+    /**
+     * Set the size of the segments a file upload is split into. Files larger than this are uploaded as a static large
+     * object, with several segments in parallel. Only used by {@link ObjectStorageContainer#storeObject(String, java.io.File, ObjectStorageTransferOptions, ObjectStorageResponseListener)}.
+     * @param bytes the segment size in bytes, {@link #DEFAULT_SEGMENT_SIZE} by default
+     */
+    public void setSegmentSize(long bytes){
+        segmentSize = bytes > 0 ? bytes : DEFAULT_SEGMENT_SIZE;
+    }
+
+    /**
+     * Get the size of the segments a file upload is split into.
+     * @return the segment size in bytes
+     */
+    public long getSegmentSize(){
+        return segmentSize;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import java.io.IOException;
+
+/**
+ * The HTTP transport used for the SDK's streaming transfers. The default transport,
+ * {@link ObjectStorageOkHttpTransport}, keeps a shared connection pool and uses HTTP/2 where the server supports it.
+ * Implement this interface to tune or replace how requests are sent, and install it with
+ * {@link ObjectStorage#setTransport(ObjectStorageTransport)}.
+ *
+ * Implementations must be thread safe. {@link #execute(ObjectStorageHttpRequest)} is always called on a background thread.
+ */
+public interface ObjectStorageTransport {
+
+    /**
+     * Send the request and wait for the response headers. The response body is not read; it is streamed from
+     * {@link ObjectStorageHttpResponse#getBody()} and the caller closes the response when done.
+     * Implementations should abort the request when {@link ObjectStorageHttpRequest#cancel()} is called.
+     *
+     * @param request the request to be sent
+     * @return the response, with any status code
+     * @throws IOException if the request could not be sent or was canceled
+     */
+    ObjectStorageHttpResponse execute(ObjectStorageHttpRequest request) throws IOException;
+}
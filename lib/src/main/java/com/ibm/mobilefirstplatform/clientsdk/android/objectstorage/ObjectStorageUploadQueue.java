@@ -0,0 +1,764 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Request;
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Response;
+import com.ibm.mobilefirstplatform.clientsdk.android.logger.api.Logger;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent write-behind queue for object mutations. Stores, metadata updates and deletes are written to a journal
+ * in the given directory and sent in the background, so they survive periods without connectivity and restarts of the app.
+ *
+ * Operations on the same object are merged before they are sent: a store replaces any earlier operation, a metadata update
+ * is sent along with a pending store, and a delete replaces a pending store, whose data is then never uploaded. The queue
+ * sends at most {@link #setMaxConcurrentRequests(int) a few} requests at a time. When the network or the service is unavailable,
+ * it backs off and retries; call {@link #drain()} when connectivity returns to retry right away. Operations are sent with
+ * the {@link ObjectStorageBandwidthLimiter.Priority#BACKGROUND} priority.
+ *
+ * {@link ObjectStorage#connect(String, String, String, ObjectStorageResponseListener)} must have been called before operations can be sent.
+ */
+public class ObjectStorageUploadQueue {
+    public enum Operation {STORE, UPDATE_METADATA, DELETE}
+
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 2;
+
+    protected static final String JOURNAL_FILE = "journal";
+    protected static final String PAYLOAD_SUFFIX = ".data";
+
+    private static final String REMOVE = "REMOVE";
+
+    private static final long MIN_RETRY_DELAY = 1000;
+    private static final long MAX_RETRY_DELAY = 5 * 60 * 1000;
+
+    //The journal is rewritten once it holds this many records of completed operations.
+    private static final int COMPACTION_THRESHOLD = 256;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ObjectStorage-upload-queue");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public static Logger logger = Logger.getLogger(Logger.INTERNAL_PREFIX + ObjectStorageUploadQueue.class.getName());
+
+    private final File directory;
+    private final File journalFile;
+    private FileOutputStream journal;
+
+    //At most one pending and one in flight operation per object; a pending operation waits for the one in flight.
+    private final LinkedHashMap<String, Entry> pending = new LinkedHashMap<>();
+    private final Map<String, Entry> inFlight = new HashMap<>();
+
+    private long nextSequence = 1;
+    private int removedRecords = 0;
+    private int completedCount = 0;
+    private int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+
+    private boolean paused = false;
+    private boolean closed = false;
+    private long retryDelay = 0;
+    private ScheduledFuture<?> scheduledRetry = null;
+
+    private ObjectStorageUploadQueueListener listener = null;
+
+    private final ObjectStorageTransferOptions transferOptions = new ObjectStorageTransferOptions();
+
+    /**
+     * Open the queue stored in the given directory, creating it if needed. Operations left from a previous session are
+     * restored, and sending them starts right away.
+     * @param directory a directory used only by this queue, such as a subdirectory of {@code Context.getFilesDir()}
+     * @throws IOException if the directory or the journal could not be created or read
+     */
+    public ObjectStorageUploadQueue(File directory) throws IOException {
+        this.directory = directory;
+        this.journalFile = new File(directory, JOURNAL_FILE);
+
+        transferOptions.setPriority(ObjectStorageBandwidthLimiter.Priority.BACKGROUND);
+
+        if(!directory.isDirectory() && !directory.mkdirs()){
+            throw new IOException("Could not create the upload queue directory " + directory);
+        }
+
+        synchronized (this){
+            restore();
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Queue storing the given data as an object. The data is written to disk before this method returns.
+     * @param containerName the name of the container to store the object in
+     * @param objectName the name of the object to be stored
+     * @param objectData the data of the object
+     * @throws IOException if the operation could not be written to disk
+     */
+    public void storeObject(String containerName, String objectName, byte[] objectData) throws IOException {
+        long sequence = nextSequence();
+        String payloadName = sequence + PAYLOAD_SUFFIX;
+        File payload = new File(directory, payloadName);
+
+        FileOutputStream out = new FileOutputStream(payload);
+        try {
+            out.write(objectData);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        try {
+            enqueue(new Entry(sequence, Operation.STORE, containerName, objectName, payloadName, objectData.length, null));
+        } catch (IOException e) {
+            payload.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Queue a metadata update for an object. As with {@link ObjectStorageObject#updateMetadata(Map, ObjectStorageResponseListener)},
+     * the keys are full header names such as X-Object-Meta-Author.
+     * @param containerName the name of the container the object is stored in
+     * @param objectName the name of the object
+     * @param metadata the metadata to set on the object
+     * @throws IOException if the operation could not be written to disk
+     */
+    public void updateMetadata(String containerName, String objectName, Map<String, String> metadata) throws IOException {
+        enqueue(new Entry(nextSequence(), Operation.UPDATE_METADATA, containerName, objectName, null, 0, new LinkedHashMap<>(metadata)));
+    }
+
+    /**
+     * Queue deleting an object. Deleting an object that does not exist counts as success.
+     * @param containerName the name of the container the object is stored in
+     * @param objectName the name of the object to be deleted
+     * @throws IOException if the operation could not be written to disk
+     */
+    public void deleteObject(String containerName, String objectName) throws IOException {
+        enqueue(new Entry(nextSequence(), Operation.DELETE, containerName, objectName, null, 0, null));
+    }
+
+    /**
+     * Start sending queued operations right away, without waiting for the current retry delay. Call this when
+     * connectivity returns.
+     */
+    public void drain(){
+        synchronized (this){
+            paused = false;
+            retryDelay = 0;
+            if(scheduledRetry != null){
+                scheduledRetry.cancel(false);
+                scheduledRetry = null;
+            }
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Set how many operations are sent at the same time.
+     * @param maxRequests the maximum number of concurrent requests, at least 1
+     */
+    public void setMaxConcurrentRequests(int maxRequests){
+        synchronized (this){
+            maxConcurrentRequests = Math.max(1, maxRequests);
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Set the listener that receives progress and failures.
+     * @param queueListener the listener, or null to remove it
+     */
+    public synchronized void setListener(ObjectStorageUploadQueueListener queueListener){
+        listener = queueListener;
+    }
+
+    /**
+     * Get the number of operations waiting to be sent, including those in flight.
+     * @return the backlog size
+     */
+    public synchronized int getBacklogSize(){
+        return pending.size() + inFlight.size();
+    }
+
+    /**
+     * Get the number of object bytes waiting to be uploaded, including those in flight.
+     * @return the backlog size in bytes
+     */
+    public synchronized long getBacklogBytes(){
+        long bytes = 0;
+        for(Entry entry : pending.values()){
+            bytes += entry.length;
+        }
+        for(Entry entry : inFlight.values()){
+            bytes += entry.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the number of operations completed since this queue was opened, including those merged into a later operation.
+     * @return the completed operation count
+     */
+    public synchronized int getCompletedCount(){
+        return completedCount;
+    }
+
+    /**
+     * Stop sending operations and close the journal. Operations still queued are sent the next time the queue is opened.
+     */
+    public synchronized void close(){
+        if(closed){
+            return;
+        }
+        closed = true;
+
+        if(scheduledRetry != null){
+            scheduledRetry.cancel(false);
+        }
+
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.error("Failed to close the upload queue journal: " + e.getMessage());
+        }
+    }
+
+    private synchronized long nextSequence(){
+        return nextSequence++;
+    }
+
+    private void enqueue(Entry entry) throws IOException {
+        synchronized (this){
+            if(closed){
+                throw new IOException("The upload queue is closed.");
+            }
+
+            String key = entry.getKey();
+            Entry existing = pending.get(key);
+            Entry merged = coalesce(existing, entry);
+
+            if(merged == existing){
+                logger.debug("Dropped " + entry.operation + " of " + key + ", the object is going to be deleted.");
+                return;
+            }
+
+            appendRecord(merged.toJSON());
+            pending.put(key, merged);
+
+            if(existing != null){
+                remove(existing, merged);
+                completedCount++;
+            }
+
+            //The result of an upload or delete in flight no longer matters once a newer one replaces it.
+            Entry running = inFlight.get(key);
+            if(running != null && running.request != null && merged.operation != Operation.UPDATE_METADATA){
+                running.request.cancel();
+            }
+        }
+
+        notifyProgress();
+        dispatch();
+    }
+
+    /**
+     * Merge two operations on the same object into the one that has the same effect.
+     * @return the newer operation, the older one, or a store combined with the newer metadata
+     */
+    private static Entry coalesce(Entry older, Entry newer){
+        if(older == null || newer.operation != Operation.UPDATE_METADATA){
+            return newer;
+        }
+
+        switch(older.operation){
+            case STORE:
+                return new Entry(newer.sequence, Operation.STORE, older.containerName, older.objectName, older.payloadName, older.length, newer.metadata);
+            case DELETE:
+                return older;
+            default:
+                return newer;
+        }
+    }
+
+    private void dispatch(){
+        List<Entry> entries = new ArrayList<>();
+
+        synchronized (this){
+            if(closed || paused){
+                return;
+            }
+
+            Iterator<Entry> iterator = pending.values().iterator();
+            while(iterator.hasNext() && inFlight.size() < maxConcurrentRequests){
+                Entry entry = iterator.next();
+                if(inFlight.containsKey(entry.getKey())){
+                    continue;
+                }
+                iterator.remove();
+                inFlight.put(entry.getKey(), entry);
+                entries.add(entry);
+            }
+        }
+
+        for(Entry entry : entries){
+            send(entry);
+        }
+    }
+
+    private void send(final Entry entry){
+        String baseURL = ObjectStorage.objectStorageURL;
+        if(baseURL == null){
+            completed(entry, new IOException("You have not yet authenticated to Object Storage. Call ObjectStorage.connect() first."));
+            return;
+        }
+
+        String url = baseURL + "/" + entry.containerName + "/" + entry.objectName;
+        ObjectStorageHttpRequest request;
+        String operationName;
+
+        switch(entry.operation){
+            case STORE:
+                final File payload = new File(directory, entry.payloadName);
+                request = new ObjectStorageHttpRequest(url, Request.PUT, new ObjectStorageRequestBody() {
+                    @Override
+                    public long getContentLength() {
+                        return entry.length;
+                    }
+
+                    @Override
+                    public void writeTo(OutputStream out) throws IOException {
+                        InputStream in = new FileInputStream(payload);
+                        try {
+                            ObjectStorageUtils.copy(in, out);
+                        } finally {
+                            in.close();
+                        }
+                    }
+                });
+                request.setHeader(Request.CONTENT_TYPE, "application/octet-stream");
+                operationName = "storeObject";
+                break;
+            case UPDATE_METADATA:
+                request = new ObjectStorageHttpRequest(url, Request.POST);
+                operationName = "updateObjectMetadata";
+                break;
+            default:
+                request = new ObjectStorageHttpRequest(url, Request.DELETE);
+                operationName = "deleteObject";
+                break;
+        }
+
+        if(entry.metadata != null){
+            for(Map.Entry<String, String> metadata : entry.metadata.entrySet()){
+                request.setHeader(metadata.getKey(), metadata.getValue());
+            }
+        }
+
+        synchronized (this){
+            entry.request = request;
+        }
+
+        ObjectStorageTransfer.send(operationName, request, transferOptions, new ObjectStorageTransfer.ResponseHandler<Void>() {
+            @Override
+            public Void onResponse(ObjectStorageHttpResponse response, InputStream body) {
+                return null;
+            }
+        }, new ObjectStorageResponseListener<Void>() {
+            @Override
+            public void onSuccess(Void returnValue) {
+                completed(entry, null);
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                if(t == null){
+                    t = new IOException("Request failed with status " + (response != null ? response.getStatus() : 0));
+                }
+                completed(entry, t);
+            }
+        });
+    }
+
+    private void completed(Entry entry, Throwable failure){
+        ObjectStorageUploadQueueListener failureListener = null;
+
+        synchronized (this){
+            String key = entry.getKey();
+            inFlight.remove(key);
+            String authToken = entry.request != null ? entry.request.getHeader(ObjectStorage.AUTH_HEADER) : null;
+            entry.request = null;
+
+            if(closed){
+                //Whatever happened, the journal still has the operation and it will be sent again.
+                return;
+            }
+
+            Entry newer = pending.get(key);
+
+            if(failure == null || isIgnorable(entry, failure)){
+                logger.debug("Sent " + entry.operation + " of " + key);
+                remove(entry, newer);
+                completedCount++;
+                retryDelay = 0;
+            }
+            else if(newer != null && newer.operation != Operation.UPDATE_METADATA){
+                //Replaced while in flight, so the failure does not matter.
+                remove(entry, newer);
+                completedCount++;
+            }
+            else if(isUnauthorized(failure) && !entry.reauthenticated){
+                //The token may have been revoked before it expired, so the operation is sent once more with a new one.
+                logger.error("Object Storage rejected the token for " + entry.operation + " of " + key + ", will authenticate again.");
+                ObjectStorage.invalidateAuthToken(authToken);
+                requeue(entry, newer);
+                pending.get(key).reauthenticated = true;
+            }
+            else if(isRetryable(failure)){
+                logger.error("Failed to send " + entry.operation + " of " + key + ", will retry: " + failure.getMessage());
+                requeue(entry, newer);
+                pause();
+            }
+            else{
+                logger.error("Object Storage rejected " + entry.operation + " of " + key + ": " + failure.getMessage());
+                remove(entry, newer);
+                failureListener = listener;
+            }
+        }
+
+        if(failureListener != null){
+            failureListener.onOperationFailed(entry.containerName, entry.objectName, entry.operation, failure);
+        }
+
+        notifyProgress();
+        dispatch();
+    }
+
+    private void requeue(Entry failed, Entry newer){
+        Entry merged = newer == null ? failed : coalesce(failed, newer);
+
+        if(merged != failed && merged != newer){
+            try {
+                appendRecord(merged.toJSON());
+            } catch (IOException e) {
+                //Keep both records; restoring the journal merges them the same way.
+                logger.error("Failed to write to the upload queue journal: " + e.getMessage());
+                pending.put(failed.getKey(), merged);
+                return;
+            }
+        }
+
+        if(merged != failed){
+            remove(failed, merged);
+        }
+        if(newer != null && merged != newer){
+            remove(newer, merged);
+        }
+
+        pending.put(failed.getKey(), merged);
+    }
+
+    private void pause(){
+        paused = true;
+        retryDelay = retryDelay == 0 ? MIN_RETRY_DELAY : Math.min(retryDelay * 2, MAX_RETRY_DELAY);
+
+        if(scheduledRetry != null){
+            scheduledRetry.cancel(false);
+        }
+
+        scheduledRetry = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (ObjectStorageUploadQueue.this){
+                    paused = false;
+                    scheduledRetry = null;
+                }
+                dispatch();
+            }
+        }, retryDelay, TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean isIgnorable(Entry entry, Throwable failure){
+        return entry.operation == Operation.DELETE && failure instanceof ObjectStorageHttpException
+                && ((ObjectStorageHttpException) failure).getStatusCode() == 404;
+    }
+
+    private static boolean isRetryable(Throwable failure){
+        if(!(failure instanceof ObjectStorageHttpException)){
+            return true;
+        }
+
+        int status = ((ObjectStorageHttpException) failure).getStatusCode();
+        return status == 408 || status == 429 || status >= 500;
+    }
+
+    private static boolean isUnauthorized(Throwable failure){
+        return failure instanceof ObjectStorageHttpException && ((ObjectStorageHttpException) failure).getStatusCode() == 401;
+    }
+
+    private void notifyProgress(){
+        ObjectStorageUploadQueueListener progressListener;
+        int completed;
+        int backlogSize;
+        long backlogBytes;
+
+        synchronized (this){
+            progressListener = listener;
+            completed = completedCount;
+            backlogSize = getBacklogSize();
+            backlogBytes = getBacklogBytes();
+        }
+
+        if(progressListener != null){
+            progressListener.onProgress(completed, backlogSize, backlogBytes);
+        }
+    }
+
+    /**
+     * Record that an operation is done, and delete its data unless the operation replacing it still uses it.
+     */
+    private void remove(Entry entry, Entry replacement){
+        if(entry.payloadName != null && (replacement == null || !entry.payloadName.equals(replacement.payloadName))){
+            new File(directory, entry.payloadName).delete();
+        }
+
+        try {
+            JSONObject record = new JSONObject();
+            record.put("seq", entry.sequence);
+            record.put("op", REMOVE);
+            appendRecord(record);
+        } catch (JSONException e) {
+            //Just creating JSONObject; no exceptions will occur.
+        } catch (IOException e) {
+            //The operation will be sent again after a restart, which is harmless.
+            logger.error("Failed to write to the upload queue journal: " + e.getMessage());
+        }
+
+        if(++removedRecords >= COMPACTION_THRESHOLD){
+            try {
+                compact();
+            } catch (IOException e) {
+                logger.error("Failed to compact the upload queue journal: " + e.getMessage());
+            }
+        }
+    }
+
+    private void appendRecord(JSONObject record) throws IOException {
+        journal.write((record.toString() + "\n").getBytes("UTF-8"));
+        journal.getFD().sync();
+    }
+
+    /**
+     * Rewrite the journal with only the operations that are still queued. The new journal replaces the old one atomically.
+     */
+    private void compact() throws IOException {
+        List<Entry> live = new ArrayList<>(pending.values());
+        live.addAll(inFlight.values());
+        Collections.sort(live);
+
+        File compacted = new File(directory, JOURNAL_FILE + ".tmp");
+        FileOutputStream out = new FileOutputStream(compacted);
+        try {
+            for(Entry entry : live){
+                out.write((entry.toJSON().toString() + "\n").getBytes("UTF-8"));
+            }
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        if(journal != null){
+            journal.close();
+        }
+
+        if(!compacted.renameTo(journalFile)){
+            journal = new FileOutputStream(journalFile, true);
+            throw new IOException("Could not replace the upload queue journal.");
+        }
+
+        journal = new FileOutputStream(journalFile, true);
+        removedRecords = 0;
+    }
+
+    private void restore() throws IOException {
+        TreeMap<Long, Entry> entries = new TreeMap<>();
+        long lastSequence = 0;
+
+        if(journalFile.exists()){
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), "UTF-8"));
+            try {
+                String line;
+                while((line = reader.readLine()) != null){
+                    try {
+                        JSONObject record = new JSONObject(line);
+                        long sequence = record.getLong("seq");
+                        lastSequence = Math.max(lastSequence, sequence);
+
+                        if(REMOVE.equals(record.getString("op"))){
+                            entries.remove(sequence);
+                        }
+                        else{
+                            entries.put(sequence, Entry.fromJSON(record));
+                        }
+                    } catch (JSONException e) {
+                        //Most likely the last record, cut short when the app was killed while writing it.
+                        logger.error("Skipped a corrupt upload queue journal record.");
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        for(Entry entry : entries.values()){
+            if(entry.payloadName != null && new File(directory, entry.payloadName).length() != entry.length){
+                logger.error("Dropped " + entry.operation + " of " + entry.getKey() + ", its data is missing.");
+                continue;
+            }
+            pending.put(entry.getKey(), coalesce(pending.get(entry.getKey()), entry));
+        }
+
+        Set<String> payloads = new HashSet<>();
+        for(Entry entry : pending.values()){
+            if(entry.payloadName != null){
+                payloads.add(entry.payloadName);
+            }
+        }
+
+        File[] files = directory.listFiles();
+        if(files != null){
+            for(File file : files){
+                if(file.getName().endsWith(PAYLOAD_SUFFIX) && !payloads.contains(file.getName())){
+                    file.delete();
+                }
+            }
+        }
+
+        nextSequence = lastSequence + 1;
+        compact();
+
+        if(!pending.isEmpty()){
+            logger.debug("Restored " + pending.size() + " queued operations.");
+        }
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        final long sequence;
+        final Operation operation;
+        final String containerName;
+        final String objectName;
+        final String payloadName;
+        final long length;
+        final Map<String, String> metadata;
+
+        ObjectStorageHttpRequest request = null;
+
+        //Whether the operation was already sent again with a new token after being rejected with a 401.
+        boolean reauthenticated = false;
+
+        Entry(long sequence, Operation operation, String containerName, String objectName, String payloadName, long length, Map<String, String> metadata){
+            this.sequence = sequence;
+            this.operation = operation;
+            this.containerName = containerName;
+            this.objectName = objectName;
+            this.payloadName = payloadName;
+            this.length = length;
+            this.metadata = metadata;
+        }
+
+        String getKey(){
+            return containerName + "/" + objectName;
+        }
+
+        JSONObject toJSON(){
+            JSONObject json = new JSONObject();
+
+            try {
+                json.put("seq", sequence);
+                json.put("op", operation.name());
+                json.put("container", containerName);
+                json.put("object", objectName);
+                if(payloadName != null){
+                    json.put("payload", payloadName);
+                    json.put("length", length);
+                }
+                if(metadata != null){
+                    json.put("metadata", new JSONObject(metadata));
+                }
+            } catch (JSONException e) {
+                //Just creating JSONObject; no exceptions will occur.
+            }
+
+            return json;
+        }
+
+        static Entry fromJSON(JSONObject json) throws JSONException {
+            Map<String, String> metadata = null;
+            JSONObject metadataJSON = json.optJSONObject("metadata");
+
+            if(metadataJSON != null){
+                metadata = new LinkedHashMap<>();
+                Iterator<String> keys = metadataJSON.keys();
+                while(keys.hasNext()){
+                    String key = keys.next();
+                    metadata.put(key, metadataJSON.getString(key));
+                }
+            }
+
+            Operation operation;
+            try {
+                operation = Operation.valueOf(json.getString("op"));
+            } catch (IllegalArgumentException e) {
+                throw new JSONException("Unknown operation " + json.optString("op"));
+            }
+
+            return new Entry(json.getLong("seq"), operation, json.getString("container"), json.getString("object"),
+                    json.optString("payload", null), json.optLong("length", 0), metadata);
+        }
+
+        @Override
+        public int compareTo(Entry other){
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
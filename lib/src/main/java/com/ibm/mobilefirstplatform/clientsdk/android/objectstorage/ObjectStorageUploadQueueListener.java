@@ -0,0 +1,36 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+
+/**
+ * Receives progress and failures of an {@link ObjectStorageUploadQueue}. Callbacks are made on background threads.
+ */
+public interface ObjectStorageUploadQueueListener {
+
+    /**
+     * Called whenever a queued operation completes, or is merged with a newer one.
+     * @param completedCount the number of operations completed since the queue was opened
+     * @param backlogSize the number of operations still waiting to be sent, including those in flight
+     * @param backlogBytes the number of object bytes still waiting to be uploaded
+     */
+    void onProgress(int completedCount, int backlogSize, long backlogBytes);
+
+    /**
+     * Called when a queued operation was rejected by Object Storage and has been removed from the queue.
+     * Operations that fail because the network or the service is unavailable are kept and retried instead.
+     * @param containerName the container of the object
+     * @param objectName the name of the object
+     * @param operation the operation that failed
+     * @param t the cause of the failure, an {@link ObjectStorageHttpException} if the service returned an error
+     */
+    void onOperationFailed(String containerName, String objectName, ObjectStorageUploadQueue.Operation operation, Throwable t);
+}
@@ -0,0 +1,274 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Internal helpers shared by the Object Storage classes for reading response headers, hashing content and copying data.
+ */
+final class ObjectStorageUtils {
+    static final String ETAG_HEADER = "ETag";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private ObjectStorageUtils(){
+    }
+
+    /**
+     * Get the first value of the given header. Header names are matched case-insensitively, since the
+     * underlying HTTP client may or may not normalize them.
+     * @param headers the response headers, may be null
+     * @param headerName the name of the header to look up
+     * @return the first value of the header, or null if it is not present
+     */
+    static String getHeader(Map<String, List<String>> headers, String headerName){
+        if(headers == null){
+            return null;
+        }
+
+        List<String> values = headers.get(headerName);
+
+        if(values == null){
+            for(Map.Entry<String, List<String>> header : headers.entrySet()){
+                if(header.getKey() != null && header.getKey().equalsIgnoreCase(headerName)){
+                    values = header.getValue();
+                    break;
+                }
+            }
+        }
+
+        if(values == null || values.isEmpty()){
+            return null;
+        }
+
+        return values.get(0);
+    }
+
+    /**
+     * Get the ETag from the given response headers, without the surrounding quotes some proxies add.
+     * @param headers the response headers, may be null
+     * @return the ETag in lower case, or null if it is not present
+     */
+    static String getETag(Map<String, List<String>> headers){
+        String etag = getHeader(headers, ETAG_HEADER);
+
+        if(etag == null){
+            return null;
+        }
+
+        if(etag.length() >= 2 && etag.startsWith("\"") && etag.endsWith("\"")){
+            etag = etag.substring(1, etag.length() - 1);
+        }
+
+        return etag.toLowerCase();
+    }
+
+    /**
+     * Compute the MD5 hash of the given data as a lower case hex string, which is the format Object Storage uses for ETags.
+     * @param data the data to be hashed
+     * @return the hex encoded MD5 hash
+     */
+    static String md5Hex(byte[] data){
+        return toHex(newMD5().digest(data));
+    }
+
+    static MessageDigest newMD5(){
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            //MD5 is always available on Android.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compute the SHA-256 hash of the given text as a lower case hex string.
+     * @param text the text to be hashed, encoded as UTF-8
+     * @return the hex encoded SHA-256 hash
+     */
+    static String sha256Hex(String text){
+        try {
+            return toHex(MessageDigest.getInstance("SHA-256").digest(text.getBytes("UTF-8")));
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            //SHA-256 and UTF-8 are always available on Android.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compute the HMAC-SHA1 of the given message as a lower case hex string, which is the format of Swift TempURL signatures.
+     * @param key the secret key
+     * @param message the message to be signed
+     * @return the hex encoded signature
+     */
+    static String hmacSHA1Hex(String key, String message){
+        try {
+            Mac mac = Mac.getInstance("HmacSHA1");
+            mac.init(new SecretKeySpec(key.getBytes("UTF-8"), "HmacSHA1"));
+            return toHex(mac.doFinal(message.getBytes("UTF-8")));
+        } catch (GeneralSecurityException | UnsupportedEncodingException e) {
+            //HmacSHA1 and UTF-8 are always available on Android.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes){
+        char[] hex = new char[bytes.length * 2];
+
+        for(int i = 0; i < bytes.length; i++){
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+
+        return new String(hex);
+    }
+
+    /**
+     * Copy the stream to the given output through a transfer buffer from the {@link ObjectStorageBufferPool}.
+     * @param in the stream to read, may be null
+     * @param out the output to write to
+     * @return the number of bytes copied
+     * @throws IOException if reading or writing fails
+     */
+    static long copy(InputStream in, OutputStream out) throws IOException {
+        long written = 0;
+
+        if(in != null){
+            byte[] buffer = ObjectStorageBufferPool.acquire(ObjectStorageContainer.TRANSFER_BUFFER_SIZE);
+            try {
+                int read;
+                while((read = in.read(buffer)) != -1){
+                    out.write(buffer, 0, read);
+                    written += read;
+                }
+            } finally {
+                ObjectStorageBufferPool.release(buffer);
+            }
+        }
+
+        return written;
+    }
+
+    /**
+     * Read the whole stream into an array lent from the {@link ObjectStorageBufferPool}. The array is sized from the
+     * content length when it is known, and grows through the pool's size classes otherwise.
+     * @param in the stream to read, may be null
+     * @param contentLength the expected number of bytes, or -1 if it is not known
+     * @return the data, which the caller must release
+     * @throws IOException if reading fails, in which case the array is returned to the pool
+     */
+    static ObjectStoragePooledBuffer readPooled(InputStream in, long contentLength) throws IOException {
+        byte[] buffer = ObjectStorageBufferPool.acquire(contentLength > 0 && contentLength < Integer.MAX_VALUE ? (int) contentLength : ObjectStorageBufferPool.MIN_BUFFER_SIZE);
+        int length = 0;
+
+        try {
+            while(in != null){
+                if(length == buffer.length){
+                    //Only grow once there is more data, so a buffer sized from the content length is never doubled.
+                    int next = in.read();
+                    if(next == -1){
+                        break;
+                    }
+                    if(buffer.length == Integer.MAX_VALUE){
+                        throw new IOException("The response body is too large to be held in memory.");
+                    }
+                    byte[] larger = ObjectStorageBufferPool.acquire((int) Math.min(Integer.MAX_VALUE, buffer.length * 2L));
+                    System.arraycopy(buffer, 0, larger, 0, length);
+                    ObjectStorageBufferPool.release(buffer);
+                    buffer = larger;
+                    buffer[length++] = (byte) next;
+                }
+
+                int read = in.read(buffer, length, buffer.length - length);
+                if(read == -1){
+                    break;
+                }
+                length += read;
+            }
+        } catch (IOException e) {
+            ObjectStorageBufferPool.release(buffer);
+            throw e;
+        }
+
+        return new ObjectStoragePooledBuffer(buffer, length);
+    }
+
+    /**
+     * Read the whole stream into an array of exactly its length. The data is read into a pooled array first, so the only
+     * array allocated is the result.
+     * @param in the stream to read, may be null
+     * @param contentLength the expected number of bytes, or -1 if it is not known
+     * @return the data
+     * @throws IOException if reading fails
+     */
+    static byte[] readBytes(InputStream in, long contentLength) throws IOException {
+        ObjectStoragePooledBuffer pooled = readPooled(in, contentLength);
+        byte[] array = pooled.getArray();
+
+        if(array.length == pooled.getLength()){
+            //The array fits exactly, so it is handed out instead of being copied and is not returned to the pool.
+            return array;
+        }
+
+        byte[] data = Arrays.copyOf(array, pooled.getLength());
+        pooled.release();
+        return data;
+    }
+
+    /**
+     * Encode a value for the query string of a request URL.
+     * @param value the value to be encoded
+     * @return the percent-encoded UTF-8 bytes of the value
+     */
+    static String encodeQueryValue(String value){
+        try {
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            //UTF-8 is always supported.
+            return value;
+        }
+    }
+
+    /**
+     * Compare object names in the order Object Storage lists them, which is the order of their UTF-8 encoded bytes.
+     * For Java strings that is the order of their code points, which differs from {@link String#compareTo(String)}
+     * for characters outside the Basic Multilingual Plane.
+     * @return a negative number, zero or a positive number as the first name is listed before, with or after the second
+     */
+    static int compareObjectNames(String first, String second){
+        int i = 0;
+        int j = 0;
+        while(i < first.length() && j < second.length()){
+            int a = first.codePointAt(i);
+            int b = second.codePointAt(j);
+            if(a != b){
+                return a < b ? -1 : 1;
+            }
+            i += Character.charCount(a);
+            j += Character.charCount(b);
+        }
+        return (first.length() - i) - (second.length() - j);
+    }
+}
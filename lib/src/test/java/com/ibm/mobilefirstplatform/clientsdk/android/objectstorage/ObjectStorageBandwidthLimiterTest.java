@@ -0,0 +1,128 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ObjectStorageBandwidthLimiterTest {
+    private static final int OBJECT_SIZE = 200 * 1024;
+    private static final long SLOW_RATE = 40 * 1024;
+
+    private ObjectStorageStandIn standIn;
+    private ObjectStorageContainer container;
+    private byte[] data;
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = ObjectStorageTestSupport.startStandIn();
+        container = ObjectStorageTestSupport.createContainer("limited");
+
+        data = new byte[OBJECT_SIZE];
+        new Random(33).nextBytes(data);
+        ObjectStorageTestSupport.storeObject(container, "a", data);
+
+        //The first transfer of the test run sets up the connection pool, so it is not timed.
+        load(null, null).get();
+    }
+
+    @After
+    public void tearDown(){
+        ObjectStorageBandwidthLimiter.reset();
+        ObjectStorageBandwidthLimiter.setNetworkType(null);
+        standIn.stop();
+    }
+
+    @Test
+    public void appliesNewLimitToRunningTransfer() throws Exception {
+        ObjectStorageBandwidthLimiter.setLimit(SLOW_RATE);
+
+        final AtomicLong transferred = new AtomicLong();
+        long start = System.nanoTime();
+        ObjectStorageTestSupport.Result<byte[]> loaded = load(null, transferred);
+
+        Thread.sleep(1000);
+        assertTrue("Transferred " + transferred.get() + " bytes in a second", transferred.get() < 2 * SLOW_RATE);
+        ObjectStorageBandwidthLimiter.setLimit(0);
+
+        assertArrayEquals(data, loaded.get());
+        //At the slow rate, the rest of the object would have taken about four more seconds.
+        assertTrue(elapsedMillis(start) < 3000);
+    }
+
+    @Test
+    public void limitsOnlyTransfersOfLimitedPriority() throws Exception {
+        ObjectStorageBandwidthLimiter.setLimit(ObjectStorageBandwidthLimiter.Priority.BACKGROUND, SLOW_RATE);
+
+        long start = System.nanoTime();
+        assertArrayEquals(data, load(ObjectStorageBandwidthLimiter.Priority.INTERACTIVE, null).get());
+        long interactiveMillis = elapsedMillis(start);
+
+        start = System.nanoTime();
+        assertArrayEquals(data, load(ObjectStorageBandwidthLimiter.Priority.BACKGROUND, null).get());
+        long backgroundMillis = elapsedMillis(start);
+
+        //A quarter second of burst is allowed, so the limited transfer takes at least the rest of the object's time.
+        assertTrue(backgroundMillis >= (OBJECT_SIZE - SLOW_RATE / 4) * 1000 / SLOW_RATE - 100);
+        assertTrue(interactiveMillis < backgroundMillis / 4);
+    }
+
+    @Test
+    public void switchesLimitWithNetworkType() throws Exception {
+        ObjectStorageBandwidthLimiter.setLimit(ObjectStorageBandwidthLimiter.NetworkType.CELLULAR, SLOW_RATE);
+        ObjectStorageBandwidthLimiter.setNetworkType(ObjectStorageBandwidthLimiter.NetworkType.CELLULAR);
+
+        final AtomicLong transferred = new AtomicLong();
+        long start = System.nanoTime();
+        ObjectStorageTestSupport.Result<byte[]> loaded = load(null, transferred);
+
+        Thread.sleep(1000);
+        assertTrue("Transferred " + transferred.get() + " bytes in a second", transferred.get() < 2 * SLOW_RATE);
+        ObjectStorageBandwidthLimiter.setNetworkType(ObjectStorageBandwidthLimiter.NetworkType.WIFI);
+
+        assertArrayEquals(data, loaded.get());
+        assertTrue(elapsedMillis(start) < 3000);
+    }
+
+    private ObjectStorageTestSupport.Result<byte[]> load(ObjectStorageBandwidthLimiter.Priority priority, final AtomicLong transferred){
+        ObjectStorageTransferOptions options = new ObjectStorageTransferOptions();
+        if(priority != null){
+            options.setPriority(priority);
+        }
+        if(transferred != null){
+            options.setProgressInterval(50, 0);
+            options.setProgressListener(new ObjectStorageProgressListener() {
+                @Override
+                public void onProgress(long bytesTransferred, long totalBytes, double bytesPerSecond) {
+                    transferred.set(bytesTransferred);
+                }
+            });
+        }
+
+        ObjectStorageTestSupport.Result<byte[]> loaded = new ObjectStorageTestSupport.Result<>();
+        new ObjectStorageObject("a", container, null).load(false, options, loaded);
+        return loaded;
+    }
+
+    private static long elapsedMillis(long startNanos){
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ObjectStorageContainerTest {
+    private static final String CONTAINER = "dedup";
+
+    private ObjectStorageStandIn standIn;
+    private ObjectStorageContainer container;
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = ObjectStorageTestSupport.startStandIn();
+        container = ObjectStorageTestSupport.createContainer(CONTAINER);
+
+        ObjectStorageMetrics.setEnabled(true);
+        ObjectStorageMetrics.reset();
+    }
+
+    @After
+    public void tearDown(){
+        ObjectStorageMetrics.setEnabled(false);
+        standIn.stop();
+    }
+
+    @Test
+    public void skipUnchangedSkipsStoredData() throws Exception {
+        byte[] data = "unchanged".getBytes();
+
+        store("a", data, ObjectStorageContainer.StoreMode.SKIP_UNCHANGED);
+        store("a", data, ObjectStorageContainer.StoreMode.SKIP_UNCHANGED);
+        assertEquals(1, uploads());
+
+        //Without a cached ETag, the stored object is checked with the server.
+        forget("a");
+        store("a", data, ObjectStorageContainer.StoreMode.SKIP_UNCHANGED);
+        assertEquals(1, uploads());
+
+        store("a", "changed".getBytes(), ObjectStorageContainer.StoreMode.SKIP_UNCHANGED);
+        assertEquals(2, uploads());
+        assertArrayEquals("changed".getBytes(), ObjectStorageTestSupport.loadObject(container, "a"));
+    }
+
+    @Test
+    public void contentAddressedStoresDataOnce() throws Exception {
+        byte[] data = "shared".getBytes();
+
+        //The blob and the pointer.
+        store("a", data, ObjectStorageContainer.StoreMode.CONTENT_ADDRESSED);
+        assertEquals(2, uploads());
+
+        //Only the pointer, since the blob is already stored.
+        store("b", data, ObjectStorageContainer.StoreMode.CONTENT_ADDRESSED);
+        assertEquals(3, uploads());
+
+        assertArrayEquals(data, ObjectStorageTestSupport.loadObject(container, "a"));
+        assertArrayEquals(data, ObjectStorageTestSupport.loadObject(container, "b"));
+        assertArrayEquals(data, ObjectStorageTestSupport.loadObject(container,
+                ObjectStorageContainer.CONTENT_ADDRESSED_PREFIX + ObjectStorageUtils.md5Hex(data)));
+    }
+
+    @Test
+    public void skipUnchangedMatchesContentAddressedObject() throws Exception {
+        byte[] data = "pointed".getBytes();
+
+        store("a", data, ObjectStorageContainer.StoreMode.CONTENT_ADDRESSED);
+        assertEquals(2, uploads());
+
+        //The cached ETag is that of the manifest, so the content hash comes from the pointer's metadata.
+        store("a", data, ObjectStorageContainer.StoreMode.SKIP_UNCHANGED);
+        assertEquals(2, uploads());
+
+        forget("a");
+        store("a", data, ObjectStorageContainer.StoreMode.SKIP_UNCHANGED);
+        assertEquals(2, uploads());
+
+        store("a", "replaced".getBytes(), ObjectStorageContainer.StoreMode.SKIP_UNCHANGED);
+        assertEquals(3, uploads());
+        assertArrayEquals("replaced".getBytes(), ObjectStorageTestSupport.loadObject(container, "a"));
+    }
+
+    private void store(String objectName, byte[] data, ObjectStorageContainer.StoreMode storeMode) throws Exception {
+        ObjectStorageTestSupport.Result<ObjectStorageObject> stored = new ObjectStorageTestSupport.Result<>();
+        container.storeObject(objectName, data, storeMode, stored);
+        assertEquals(objectName, stored.get().getName());
+    }
+
+    private void forget(String objectName){
+        ObjectStorageContainer.cacheETag(container.url + "/" + objectName, null);
+    }
+
+    private static long uploads(){
+        ObjectStorageHistogram histogram = ObjectStorageMetrics.getHistogram("storeObject", ObjectStorageMetrics.Phase.TOTAL);
+        return histogram == null ? 0 : histogram.getCount();
+    }
+}
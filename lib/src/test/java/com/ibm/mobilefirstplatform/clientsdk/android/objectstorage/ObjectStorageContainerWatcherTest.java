@@ -0,0 +1,161 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ObjectStorageContainerWatcherTest {
+    //More than one page, so changes are found on both pages and at the boundary between them.
+    private static final int OBJECT_COUNT = ObjectStorageContainerWatcher.LISTING_PAGE_SIZE + 100;
+
+    private ObjectStorageStandIn standIn;
+    private ObjectStorageContainer container;
+    private ObjectStorageContainerWatcher watcher;
+
+    private final Set<String> added = Collections.synchronizedSet(new TreeSet<String>());
+    private final Set<String> modified = Collections.synchronizedSet(new TreeSet<String>());
+    private final Set<String> removed = Collections.synchronizedSet(new TreeSet<String>());
+    private final Set<String> failures = Collections.synchronizedSet(new HashSet<String>());
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = ObjectStorageTestSupport.startStandIn();
+        container = ObjectStorageTestSupport.createContainer("watched");
+
+        for(int i = 0; i < OBJECT_COUNT; i++){
+            ObjectStorageTestSupport.storeObject(container, name(i), ("data " + i).getBytes());
+        }
+
+        watcher = container.watch(new ObjectStorageContainerWatcherListener() {
+            @Override
+            public void onObjectAdded(ObjectStorageObject object) {
+                added.add(object.getName());
+            }
+
+            @Override
+            public void onObjectModified(ObjectStorageObject object) {
+                modified.add(object.getName());
+            }
+
+            @Override
+            public void onObjectRemoved(String objectName) {
+                removed.add(objectName);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                failures.add(t.toString());
+            }
+        });
+        watcher.setPollInterval(50, 50);
+    }
+
+    @After
+    public void tearDown(){
+        watcher.stop();
+        standIn.stop();
+    }
+
+    @Test
+    public void reportsChangesAcrossListingPages() throws Exception {
+        watcher.start();
+        awaitObjectCount(OBJECT_COUNT);
+        assertTrue("The first listing reports no changes", added.isEmpty() && modified.isEmpty() && removed.isEmpty());
+
+        int lastOnFirstPage = ObjectStorageContainerWatcher.LISTING_PAGE_SIZE - 1;
+        ObjectStorageTestSupport.storeObject(container, name(500) + "a", "added".getBytes());
+        ObjectStorageTestSupport.storeObject(container, name(OBJECT_COUNT - 50), "modified".getBytes());
+        delete(name(0));
+        delete(name(lastOnFirstPage));
+
+        awaitObjectCount(OBJECT_COUNT - 1);
+        awaitChanges(new String[]{name(500) + "a"}, new String[]{name(OBJECT_COUNT - 50)}, new String[]{name(0), name(lastOnFirstPage)});
+    }
+
+    @Test
+    public void reportsChangesMadeWhileStopped() throws Exception {
+        watcher.start();
+        awaitObjectCount(OBJECT_COUNT);
+        watcher.stop();
+
+        ObjectStorageTestSupport.storeObject(container, name(OBJECT_COUNT), "added".getBytes());
+        delete(name(1));
+
+        watcher.start();
+        awaitObjectCount(OBJECT_COUNT);
+        awaitChanges(new String[]{name(OBJECT_COUNT)}, new String[0], new String[]{name(1)});
+    }
+
+    private static String name(int index){
+        return String.format(Locale.US, "obj-%05d", index);
+    }
+
+    private void delete(String objectName) throws Exception {
+        ObjectStorageTestSupport.Result<Void> deleted = new ObjectStorageTestSupport.Result<>();
+        container.deleteObject(objectName, deleted);
+        deleted.get();
+    }
+
+    private void awaitObjectCount(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + ObjectStorageTestSupport.TIMEOUT_SECONDS * 1000;
+        while(watcher.getObjectCount() != count){
+            if(System.currentTimeMillis() > deadline){
+                fail("The watcher found " + watcher.getObjectCount() + " objects instead of " + count);
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Wait until exactly the given changes were reported. Changes made between two polls may be reported over both.
+     */
+    private void awaitChanges(String[] expectedAdded, String[] expectedModified, String[] expectedRemoved) throws InterruptedException {
+        Set<String> addedNames = new TreeSet<>(Arrays.asList(expectedAdded));
+        Set<String> modifiedNames = new TreeSet<>(Arrays.asList(expectedModified));
+        Set<String> removedNames = new TreeSet<>(Arrays.asList(expectedRemoved));
+
+        long deadline = System.currentTimeMillis() + ObjectStorageTestSupport.TIMEOUT_SECONDS * 1000;
+        while(!(copy(added).equals(addedNames) && copy(modified).equals(modifiedNames) && copy(removed).equals(removedNames))){
+            if(System.currentTimeMillis() > deadline){
+                fail("Reported added " + copy(added) + ", modified " + copy(modified) + ", removed " + copy(removed));
+            }
+            Thread.sleep(20);
+        }
+
+        //Nothing else is reported by later polls.
+        Thread.sleep(200);
+        assertEquals(addedNames, copy(added));
+        assertEquals(modifiedNames, copy(modified));
+        assertEquals(removedNames, copy(removed));
+        assertTrue(failures.toString(), failures.isEmpty());
+    }
+
+    private static Set<String> copy(Set<String> names){
+        synchronized (names){
+            return new TreeSet<>(names);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ObjectStorageFileUploadTest {
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    private ObjectStorageStandIn standIn;
+    private ObjectStorageContainer container;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = ObjectStorageTestSupport.startStandIn();
+        container = ObjectStorageTestSupport.createContainer("files");
+        file = File.createTempFile("upload", ".bin");
+    }
+
+    @After
+    public void tearDown(){
+        ObjectStorage.setTransport(null);
+        standIn.stop();
+        file.delete();
+    }
+
+    @Test
+    public void storesSmallFileInOneRequest() throws Exception {
+        byte[] data = write(SEGMENT_SIZE);
+
+        store(segmentOptions());
+
+        assertArrayEquals(data, ObjectStorageTestSupport.loadObject(container, "a"));
+        assertEquals(0, listSegments().size());
+    }
+
+    @Test
+    public void storesLargeFileAsSegmentsAndManifest() throws Exception {
+        byte[] data = write(5 * SEGMENT_SIZE + 100);
+
+        final long[] reported = new long[2];
+        ObjectStorageTransferOptions options = segmentOptions();
+        options.setProgressListener(new ObjectStorageProgressListener() {
+            @Override
+            public void onProgress(long bytesTransferred, long totalBytes, double bytesPerSecond) {
+                synchronized (reported){
+                    reported[0] = Math.max(reported[0], bytesTransferred);
+                    reported[1] = totalBytes;
+                }
+            }
+        });
+
+        store(options);
+
+        assertArrayEquals(data, ObjectStorageTestSupport.loadObject(container, "a"));
+        assertEquals(6, listSegments().size());
+        synchronized (reported){
+            assertEquals(data.length, reported[0]);
+            assertEquals(data.length, reported[1]);
+        }
+    }
+
+    @Test
+    public void deletesSegmentsOfFailedUpload() throws Exception {
+        write(6 * SEGMENT_SIZE);
+
+        final CountDownLatch firstStored = new CountDownLatch(1);
+        final CountDownLatch uploadFailed = new CountDownLatch(1);
+        final ObjectStorageTransport transport = new ObjectStorageOkHttpTransport();
+
+        //Segment 0 is stored before the upload fails, segment 1 fails, and segment 2 is stored only after the failure.
+        ObjectStorage.setTransport(new ObjectStorageTransport() {
+            @Override
+            public ObjectStorageHttpResponse execute(ObjectStorageHttpRequest request) throws IOException {
+                String url = request.getUrl();
+                try {
+                    if(url.endsWith("/00000001")){
+                        firstStored.await(ObjectStorageTestSupport.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                        Thread.sleep(100);
+                        throw new IOException("Injected failure");
+                    }
+
+                    ObjectStorageHttpResponse response = transport.execute(request);
+                    if(url.endsWith("/00000000")){
+                        firstStored.countDown();
+                    }
+                    else if(url.endsWith("/00000002")){
+                        uploadFailed.await(ObjectStorageTestSupport.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    }
+                    return response;
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        });
+
+        ObjectStorageTransferOptions options = segmentOptions();
+        options.setMaxRetries(0);
+
+        ObjectStorageTestSupport.Result<ObjectStorageObject> stored = new ObjectStorageTestSupport.Result<>();
+        container.storeObject("a", file, options, stored);
+        stored.getFailure();
+        uploadFailed.countDown();
+
+        long deadline = System.currentTimeMillis() + ObjectStorageTestSupport.TIMEOUT_SECONDS * 1000;
+        List<String> segments;
+        while(!(segments = listSegments()).isEmpty()){
+            if(System.currentTimeMillis() > deadline){
+                fail("Segments left behind: " + segments);
+            }
+            Thread.sleep(50);
+        }
+
+        ObjectStorageTestSupport.Result<byte[]> missing = new ObjectStorageTestSupport.Result<>();
+        new ObjectStorageObject("a", container, null).load(false, missing);
+        assertEquals(404, missing.getFailureStatus());
+    }
+
+    private static ObjectStorageTransferOptions segmentOptions(){
+        ObjectStorageTransferOptions options = new ObjectStorageTransferOptions();
+        options.setSegmentSize(SEGMENT_SIZE);
+        return options;
+    }
+
+    private byte[] write(int size) throws IOException {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return data;
+    }
+
+    private void store(ObjectStorageTransferOptions options) throws Exception {
+        ObjectStorageTestSupport.Result<ObjectStorageObject> stored = new ObjectStorageTestSupport.Result<>();
+        container.storeObject("a", file, options, stored);
+        assertEquals("a", stored.get().getName());
+    }
+
+    private List<String> listSegments() throws Exception {
+        ObjectStorageTestSupport.Result<List<ObjectStorageObject>> objects = new ObjectStorageTestSupport.Result<>();
+        container.getObjectList(objects);
+
+        List<String> segments = new ArrayList<>();
+        for(ObjectStorageObject object : objects.get()){
+            if(object.getName().startsWith(ObjectStorageFileUpload.SEGMENT_PREFIX)){
+                segments.add(object.getName());
+            }
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ObjectStorageObjectChannelTest {
+    private static final String CONTAINER = "channel";
+    private static final String OBJECT = "data";
+    private static final int BLOCK_SIZE = 1024;
+
+    private ObjectStorageStandIn standIn;
+    private ObjectStorageContainer container;
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = ObjectStorageTestSupport.startStandIn();
+        container = ObjectStorageTestSupport.createContainer(CONTAINER);
+    }
+
+    @After
+    public void tearDown(){
+        ObjectStorage.setTransport(null);
+        standIn.stop();
+    }
+
+    @Test
+    public void readsRangeFromWholeObjectWhenServerIgnoresRange() throws Exception {
+        byte[] data = storeData(10 * BLOCK_SIZE + 100);
+        ObjectStorage.setTransport(new RangeIgnoringTransport());
+
+        ObjectStorageObjectChannel channel = openChannel();
+        channel.position(3 * BLOCK_SIZE + 10);
+        assertArrayEquals(Arrays.copyOfRange(data, 3 * BLOCK_SIZE + 10, 3 * BLOCK_SIZE + 110), read(channel, 100));
+        assertEquals(data.length, channel.size());
+        assertEquals(1, channel.getRequestCount());
+
+        channel.position(data.length - 50);
+        assertArrayEquals(Arrays.copyOfRange(data, data.length - 50, data.length), read(channel, 50));
+        assertEquals(-1, channel.read(ByteBuffer.allocate(10)));
+        channel.close();
+    }
+
+    @Test
+    public void readsEndOfObjectWhenRangeIsNotSatisfiable() throws Exception {
+        byte[] data = storeData(4 * BLOCK_SIZE);
+
+        ObjectStorageObjectChannel channel = openChannel();
+        channel.position(data.length);
+        assertEquals(-1, channel.read(ByteBuffer.allocate(10)));
+        assertEquals(1, channel.getRequestCount());
+
+        //The 416 response reported the length, so no HEAD request is needed.
+        assertEquals(data.length, channel.size());
+        assertEquals(1, channel.getRequestCount());
+
+        channel.position(0);
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 10), read(channel, 10));
+        channel.close();
+    }
+
+    @Test
+    public void failsWith412WhenObjectIsReplaced() throws Exception {
+        storeData(16 * BLOCK_SIZE);
+
+        ObjectStorageObjectChannel channel = openChannel();
+        channel.position(0);
+        read(channel, 10);
+
+        storeData(16 * BLOCK_SIZE + 1);
+
+        channel.position(12 * BLOCK_SIZE);
+        try {
+            channel.read(ByteBuffer.allocate(10));
+            fail("Read the replaced object.");
+        } catch (ObjectStorageHttpException e) {
+            assertEquals(412, e.getStatusCode());
+        }
+        channel.close();
+    }
+
+    @Test
+    public void growsReadAheadOnSequentialReads() throws Exception {
+        byte[] data = storeData(64 * BLOCK_SIZE);
+
+        ObjectStorageObjectChannel channel = openChannel();
+        ByteBuffer all = ByteBuffer.allocate(data.length);
+        for(int block = 0; block < 64; block++){
+            all.put(read(channel, BLOCK_SIZE));
+        }
+        assertArrayEquals(data, all.array());
+
+        //The read-ahead doubles from 1 block up to half the cache: blocks 0-1, 2-6, 7-22, 23-38, 39-54, 55-63.
+        assertTrue("Sequential reads sent " + channel.getRequestCount() + " requests", channel.getRequestCount() <= 6);
+
+        //A read somewhere else resets the read-ahead, so the block after it is fetched on its own.
+        ObjectStorageObjectChannel scattered = openChannel();
+        scattered.position(40 * BLOCK_SIZE);
+        read(scattered, BLOCK_SIZE);
+        scattered.position(10 * BLOCK_SIZE);
+        read(scattered, BLOCK_SIZE);
+        assertEquals(2, scattered.getRequestCount());
+        read(scattered, BLOCK_SIZE);
+        assertEquals(3, scattered.getRequestCount());
+
+        channel.close();
+        scattered.close();
+    }
+
+    @Test
+    public void fetchesAdjacentMissingBlocksWithOneRequest() throws Exception {
+        byte[] data = storeData(16 * BLOCK_SIZE);
+
+        ObjectStorageObjectChannel channel = openChannel();
+        channel.position(6 * BLOCK_SIZE + 5);
+        assertArrayEquals(Arrays.copyOfRange(data, 6 * BLOCK_SIZE + 5, 10 * BLOCK_SIZE), read(channel, 4 * BLOCK_SIZE - 5));
+        assertEquals(1, channel.getRequestCount());
+
+        //Blocks 1 and 3 are cached, so blocks 0, 2 and 4 are fetched with one request each.
+        channel.position(BLOCK_SIZE);
+        read(channel, 1);
+        channel.position(3 * BLOCK_SIZE);
+        read(channel, 1);
+        assertEquals(3, channel.getRequestCount());
+
+        channel.position(0);
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 5 * BLOCK_SIZE), read(channel, 5 * BLOCK_SIZE));
+        assertEquals(6, channel.getRequestCount());
+
+        //Everything read so far is served from the cache.
+        channel.position(BLOCK_SIZE / 2);
+        read(channel, 2 * BLOCK_SIZE);
+        assertEquals(6, channel.getRequestCount());
+        channel.close();
+    }
+
+    private byte[] storeData(int length) throws Exception {
+        byte[] data = new byte[length];
+        for(int i = 0; i < length; i++){
+            data[i] = (byte) (i * 31 + length);
+        }
+        ObjectStorageTestSupport.storeObject(container, OBJECT, data);
+        return data;
+    }
+
+    private ObjectStorageObjectChannel openChannel(){
+        return new ObjectStorageObject(OBJECT, container, null).openChannel(BLOCK_SIZE);
+    }
+
+    /**
+     * Read exactly the given number of bytes, failing at the end of the object.
+     */
+    private static byte[] read(ObjectStorageObjectChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()){
+            if(channel.read(buffer) == -1){
+                throw new AssertionError("The object ended after " + buffer.position() + " of " + length + " bytes.");
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * A transport that drops the Range header, like a server or proxy that always sends the whole object.
+     */
+    private static class RangeIgnoringTransport implements ObjectStorageTransport {
+        private final ObjectStorageTransport transport = new ObjectStorageOkHttpTransport();
+
+        @Override
+        public ObjectStorageHttpResponse execute(ObjectStorageHttpRequest request) throws IOException {
+            final ObjectStorageHttpRequest withoutRange = new ObjectStorageHttpRequest(request.getUrl(), request.getMethod(), request.getBody());
+            for(Map.Entry<String, String> header : request.getHeaders().entrySet()){
+                if(!header.getKey().equalsIgnoreCase("Range")){
+                    withoutRange.setHeader(header.getKey(), header.getValue());
+                }
+            }
+            request.onCancel(new Runnable() {
+                @Override
+                public void run() {
+                    withoutRange.cancel();
+                }
+            });
+            return transport.execute(withoutRange);
+        }
+    }
+}
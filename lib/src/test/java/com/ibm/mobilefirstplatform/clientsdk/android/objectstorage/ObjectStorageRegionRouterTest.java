@@ -0,0 +1,185 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Request;
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ObjectStorageRegionRouterTest {
+    private static final String CONTAINER = "routed";
+
+    private ObjectStorageStandIn home;
+    private ObjectStorageStandIn replica;
+    private ObjectStorageRegion homeRegion;
+    private ObjectStorageRegion replicaRegion;
+    private ObjectStorageRegionRouter router;
+    private final AtomicInteger replicaTokenRequests = new AtomicInteger();
+    private volatile boolean replicaTokensBlocked = false;
+
+    @Before
+    public void setUp() throws Exception {
+        home = new ObjectStorageStandIn(0);
+        replica = new ObjectStorageStandIn(0);
+        homeRegion = new ObjectStorageRegion("home", home.getAuthURL(), home.getAPIURL());
+        replicaRegion = new ObjectStorageRegion("replica", replica.getAuthURL(), replica.getAPIURL());
+
+        //The replica is written first, so the SDK is left connected to the home region.
+        ObjectStorageTestSupport.connect(replica);
+        ObjectStorageContainer replicaContainer = ObjectStorageTestSupport.createContainer(CONTAINER);
+        ObjectStorageTestSupport.storeObject(replicaContainer, "replicated", "from replica".getBytes());
+
+        ObjectStorageTestSupport.connect(home);
+        ObjectStorageContainer homeContainer = ObjectStorageTestSupport.createContainer(CONTAINER);
+        ObjectStorageTestSupport.storeObject(homeContainer, "replicated", "from home".getBytes());
+        ObjectStorageTestSupport.storeObject(homeContainer, "unreplicated", "only at home".getBytes());
+    }
+
+    @After
+    public void tearDown(){
+        ObjectStorage.setTransport(null);
+        if(router != null){
+            router.close();
+        }
+        home.stop();
+        replica.stop();
+    }
+
+    @Test
+    public void routesReadsToFasterRegionAndFailsOver() throws Exception {
+        home.setLatency(100, 0);
+        startRouter(homeRegion, replicaRegion);
+        router.probe();
+
+        assertTrue(router.getLatencyMillis(homeRegion) > router.getLatencyMillis(replicaRegion));
+        assertSame(replicaRegion, router.getPreferredRegion());
+        assertEquals("from replica", load("replicated"));
+
+        replica.setErrorRate(1);
+        assertEquals("from home", load("replicated"));
+        assertFalse(router.isHealthy(replicaRegion));
+        assertSame(homeRegion, router.getPreferredRegion());
+
+        //A failed region is skipped until a probe finds it healthy again.
+        replica.setErrorRate(0);
+        assertEquals("from home", load("replicated"));
+        router.probe();
+        assertTrue(router.isHealthy(replicaRegion));
+        assertEquals("from replica", load("replicated"));
+    }
+
+    @Test
+    public void confirmsMissingObjectsWithHomeRegion() throws Exception {
+        home.setLatency(100, 0);
+        startRouter(homeRegion, replicaRegion);
+        router.probe();
+        assertSame(replicaRegion, router.getPreferredRegion());
+
+        assertEquals("only at home", load("unreplicated"));
+
+        ObjectStorageTestSupport.Result<byte[]> missing = new ObjectStorageTestSupport.Result<>();
+        object("missing").load(false, null, missing);
+        assertEquals(404, missing.getFailureStatus());
+
+        assertTrue("A 404 is not a failure of the region", router.isHealthy(replicaRegion));
+    }
+
+    @Test
+    public void requestsRegionTokenOnceWithoutHoldingRouter() throws Exception {
+        //The router probes as soon as it is created, so the replica's token is only handed out to the readers below.
+        replicaTokensBlocked = true;
+        startRouter(replicaRegion);
+        replica.setLatency(500, 0);
+        replicaTokensBlocked = false;
+
+        final String url = ObjectStorage.objectStorageURL + "/" + CONTAINER + "/replicated";
+        final List<Integer> statuses = Collections.synchronizedList(new ArrayList<Integer>());
+        int readers = 4;
+        final CountDownLatch done = new CountDownLatch(readers);
+
+        for(int i = 0; i < readers; i++){
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ObjectStorageHttpRequest request = new ObjectStorageHttpRequest(url, Request.GET);
+                        request.setHeader(ObjectStorage.AUTH_HEADER, ObjectStorage.getAuthToken());
+                        ObjectStorageHttpResponse response = router.execute(request);
+                        statuses.add(response.getStatus());
+                        response.close();
+                    } catch (IOException e) {
+                        statuses.add(-1);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        //While the token is requested, the region's state can still be read.
+        Thread.sleep(100);
+        long start = System.nanoTime();
+        router.isHealthy(replicaRegion);
+        router.getLatencyMillis(replicaRegion);
+        assertTrue("The region was locked while authenticating", System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(250));
+
+        assertTrue(done.await(ObjectStorageTestSupport.TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(200, 200, 200, 200), statuses);
+        assertEquals(1, replicaTokenRequests.get());
+    }
+
+    private void startRouter(ObjectStorageRegion... regions){
+        final ObjectStorageTransport transport = new ObjectStorageOkHttpTransport();
+        final String replicaAuthURL = replica.getAuthURL();
+
+        router = new ObjectStorageRegionRouter(new ObjectStorageTransport() {
+            @Override
+            public ObjectStorageHttpResponse execute(ObjectStorageHttpRequest request) throws IOException {
+                if(request.getUrl().equals(replicaAuthURL)){
+                    if(replicaTokensBlocked){
+                        throw new IOException("Token requests to the replica are blocked");
+                    }
+                    replicaTokenRequests.incrementAndGet();
+                }
+                return transport.execute(request);
+            }
+        }, Arrays.asList(regions));
+        router.setProbeInterval(0);
+        ObjectStorage.setTransport(router);
+    }
+
+    private ObjectStorageObject object(String objectName){
+        return new ObjectStorageObject(objectName, new ObjectStorageContainer(CONTAINER), null);
+    }
+
+    private String load(String objectName) throws Exception {
+        ObjectStorageTestSupport.Result<byte[]> data = new ObjectStorageTestSupport.Result<>();
+        object(objectName).load(false, null, data);
+        return new String(data.get(), "UTF-8");
+    }
+}
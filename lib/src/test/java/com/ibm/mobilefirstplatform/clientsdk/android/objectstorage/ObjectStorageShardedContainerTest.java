@@ -0,0 +1,197 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ObjectStorageShardedContainerTest {
+    private static final String CONTAINER = "sharded";
+
+    private ObjectStorageStandIn standIn;
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = ObjectStorageTestSupport.startStandIn();
+    }
+
+    @After
+    public void tearDown(){
+        standIn.stop();
+    }
+
+    @Test
+    public void addingShardMovesAboutOneShareOfNames(){
+        int nameCount = 10000;
+        for(int count = 1; count <= 16; count++){
+            int moved = 0;
+            for(int i = 0; i < nameCount; i++){
+                String name = "object-" + i;
+                int before = ObjectStorageShardedContainer.shardIndex(name, count);
+                int after = ObjectStorageShardedContainer.shardIndex(name, count + 1);
+                if(before != after){
+                    assertEquals("A name moved between old shards going to " + (count + 1) + " shards", count, after);
+                    moved++;
+                }
+            }
+
+            double expected = (double) nameCount / (count + 1);
+            assertTrue("Going to " + (count + 1) + " shards moved " + moved + " names instead of about " + (int) expected,
+                    moved > expected * 0.8 && moved < expected * 1.2);
+        }
+    }
+
+    @Test
+    public void mergesListingsInOrderWithoutDuplicates() throws Exception {
+        ObjectStorageShardedContainer sharded = createSharded(4);
+        ObjectStorageContainer single = ObjectStorageTestSupport.createContainer("single");
+
+        List<String> names = new ArrayList<>(Arrays.asList("a", "B", "a/b", "a.b", "a-b", "Z", "z", "10", "9", "\u00e9t\u00e9", "\u4e2d\u6587", "~"));
+        for(int i = 0; i < 40; i++){
+            names.add("object-" + i);
+        }
+        for(String name : names){
+            storeSharded(sharded, name, name.getBytes("UTF-8"));
+            ObjectStorageTestSupport.storeObject(single, name, name.getBytes("UTF-8"));
+        }
+
+        //A copy left in another shard, as during a reshard, is listed once.
+        String duplicate = "object-7";
+        int otherShard = (ObjectStorageShardedContainer.shardIndex(duplicate, 4) + 1) % 4;
+        ObjectStorageTestSupport.storeObject(sharded.getShard(otherShard), duplicate, duplicate.getBytes("UTF-8"));
+
+        ObjectStorageTestSupport.Result<List<ObjectStorageObject>> expected = new ObjectStorageTestSupport.Result<>();
+        single.getObjectList(expected);
+        ObjectStorageTestSupport.Result<List<ObjectStorageObject>> merged = new ObjectStorageTestSupport.Result<>();
+        sharded.getObjectList(merged);
+
+        assertEquals(getNames(expected.get()), getNames(merged.get()));
+    }
+
+    @Test
+    public void readsFallBackToPreviousShardDuringReshard() throws Exception {
+        ObjectStorageShardedContainer sharded = createSharded(2);
+        Map<String, byte[]> objects = new HashMap<>();
+        for(int i = 0; i < 30; i++){
+            String name = "object-" + i;
+            objects.put(name, name.getBytes("UTF-8"));
+            storeSharded(sharded, name, objects.get(name));
+        }
+
+        sharded = startInterruptedReshard(2, 3);
+        assertTrue(sharded.isResharding());
+
+        int fallbacks = 0;
+        for(Map.Entry<String, byte[]> object : objects.entrySet()){
+            if(ObjectStorageShardedContainer.shardIndex(object.getKey(), 3) != ObjectStorageShardedContainer.shardIndex(object.getKey(), 2)){
+                fallbacks++;
+            }
+
+            ObjectStorageTestSupport.Result<ObjectStorageObject> read = new ObjectStorageTestSupport.Result<>();
+            sharded.getObject(object.getKey(), read);
+            assertArrayEquals(object.getValue(), loadData(read.get()));
+        }
+        assertTrue("No object needed the previous shard", fallbacks > 0);
+    }
+
+    @Test
+    public void reshardKeepsObjectStoredInNewShard() throws Exception {
+        ObjectStorageShardedContainer sharded = createSharded(2);
+        String name = movingName(2, 3);
+        storeSharded(sharded, name, "old".getBytes("UTF-8"));
+
+        sharded = startInterruptedReshard(2, 3);
+        storeSharded(sharded, name, "new".getBytes("UTF-8"));
+
+        ObjectStorageTestSupport.Result<Integer> reshard = new ObjectStorageTestSupport.Result<>();
+        sharded.reshard(3, reshard);
+        reshard.get();
+        assertFalse(sharded.isResharding());
+
+        ObjectStorageTestSupport.Result<ObjectStorageObject> read = new ObjectStorageTestSupport.Result<>();
+        sharded.getObject(name, read);
+        assertArrayEquals("new".getBytes("UTF-8"), loadData(read.get()));
+
+        ObjectStorageTestSupport.Result<List<ObjectStorageObject>> listing = new ObjectStorageTestSupport.Result<>();
+        sharded.getObjectList(listing);
+        assertEquals(Arrays.asList(name), getNames(listing.get()));
+    }
+
+    private ObjectStorageShardedContainer createSharded(int shardCount) throws Exception {
+        ObjectStorageTestSupport.Result<ObjectStorageShardedContainer> created = new ObjectStorageTestSupport.Result<>();
+        new ObjectStorageShardedContainer(CONTAINER, shardCount).create(created);
+        return created.get();
+    }
+
+    /**
+     * Record a reshard that added the new shards but moved no objects yet, as if the app stopped during it, and open
+     * the sharded container again.
+     */
+    private ObjectStorageShardedContainer startInterruptedReshard(int oldShardCount, int newShardCount) throws Exception {
+        for(int index = oldShardCount; index < newShardCount; index++){
+            ObjectStorageTestSupport.createContainer(ObjectStorageShardedContainer.shardName(CONTAINER, index));
+        }
+
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put(ObjectStorageShardedContainer.SHARD_COUNT_HEADER, "" + newShardCount);
+        metadata.put(ObjectStorageShardedContainer.PREVIOUS_SHARD_COUNT_HEADER, "" + oldShardCount);
+        ObjectStorageTestSupport.Result<Void> updated = new ObjectStorageTestSupport.Result<>();
+        new ObjectStorageContainer(ObjectStorageShardedContainer.shardName(CONTAINER, 0)).updateMetadata(metadata, updated);
+        updated.get();
+
+        ObjectStorageTestSupport.Result<ObjectStorageShardedContainer> opened = new ObjectStorageTestSupport.Result<>();
+        ObjectStorageShardedContainer.open(CONTAINER, opened);
+        return opened.get();
+    }
+
+    private static String movingName(int oldShardCount, int newShardCount){
+        for(int i = 0; ; i++){
+            String name = "object-" + i;
+            if(ObjectStorageShardedContainer.shardIndex(name, oldShardCount) != ObjectStorageShardedContainer.shardIndex(name, newShardCount)){
+                return name;
+            }
+        }
+    }
+
+    private static void storeSharded(ObjectStorageShardedContainer sharded, String name, byte[] data) throws Exception {
+        ObjectStorageTestSupport.Result<ObjectStorageObject> stored = new ObjectStorageTestSupport.Result<>();
+        sharded.storeObject(name, data, stored);
+        stored.get();
+    }
+
+    private static byte[] loadData(ObjectStorageObject object) throws Exception {
+        ObjectStorageTestSupport.Result<byte[]> data = new ObjectStorageTestSupport.Result<>();
+        object.load(false, data);
+        return data.get();
+    }
+
+    private static List<String> getNames(List<ObjectStorageObject> objects){
+        List<String> names = new ArrayList<>();
+        for(ObjectStorageObject object : objects){
+            names.add(object.getName());
+        }
+        return names;
+    }
+}
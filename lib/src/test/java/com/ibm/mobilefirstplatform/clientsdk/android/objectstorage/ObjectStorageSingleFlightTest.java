@@ -0,0 +1,170 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ObjectStorageSingleFlightTest {
+    private static final String KEY = "GET http://localhost/flight";
+
+    private ObjectStorageStandIn standIn;
+    private ObjectStorageContainer container;
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = ObjectStorageTestSupport.startStandIn();
+        container = ObjectStorageTestSupport.createContainer("flights");
+
+        ObjectStorageMetrics.setEnabled(true);
+        ObjectStorageMetrics.reset();
+    }
+
+    @After
+    public void tearDown(){
+        ObjectStorageMetrics.setEnabled(false);
+        standIn.stop();
+    }
+
+    @Test
+    public void joinersGetTheirOwnCopyOfData() throws Exception {
+        ObjectStorageTestSupport.Result<byte[]> first = new ObjectStorageTestSupport.Result<>();
+        ObjectStorageTestSupport.Result<byte[]> second = new ObjectStorageTestSupport.Result<>();
+
+        ObjectStorageSingleFlight.Flight<byte[]> flight = ObjectStorageSingleFlight.join(KEY, first, null, null);
+        assertNotNull(flight);
+        assertNull("A caller asking for the same thing joins the flight", ObjectStorageSingleFlight.join(KEY, second, null, null));
+
+        byte[] data = "shared".getBytes();
+        flight.onSuccess(data);
+
+        assertSame(data, first.get());
+        assertNotSame(data, second.get());
+        assertArrayEquals(data, second.get());
+
+        ObjectStorageSingleFlight.Flight<byte[]> next = ObjectStorageSingleFlight.join(KEY, new ObjectStorageTestSupport.Result<byte[]>(), null, null);
+        assertNotNull("A completed flight is not joined", next);
+        next.onSuccess(new byte[0]);
+    }
+
+    @Test
+    public void leavingCallerDoesNotCancelRequest() throws Exception {
+        ObjectStorageTestSupport.Result<byte[]> staying = new ObjectStorageTestSupport.Result<>();
+        ObjectStorageTestSupport.Result<byte[]> leaving = new ObjectStorageTestSupport.Result<>();
+        ObjectStorageHttpRequest leavingHandle = new ObjectStorageHttpRequest(KEY, "GET");
+        ObjectStorageHttpRequest request = new ObjectStorageHttpRequest(KEY, "GET");
+
+        ObjectStorageSingleFlight.Flight<byte[]> flight = ObjectStorageSingleFlight.join(KEY, staying, null, new ObjectStorageHttpRequest(KEY, "GET"));
+        flight.setRequest(request);
+        assertNull(ObjectStorageSingleFlight.join(KEY, leaving, null, leavingHandle));
+
+        leavingHandle.cancel();
+
+        assertTrue(leaving.getFailure() instanceof IOException);
+        assertFalse(request.isCanceled());
+
+        flight.onSuccess("kept".getBytes());
+        assertArrayEquals("kept".getBytes(), staying.get());
+    }
+
+    @Test
+    public void lastCallerToLeaveCancelsRequest() throws Exception {
+        ObjectStorageHttpRequest firstHandle = new ObjectStorageHttpRequest(KEY, "GET");
+        ObjectStorageHttpRequest secondHandle = new ObjectStorageHttpRequest(KEY, "GET");
+        ObjectStorageHttpRequest request = new ObjectStorageHttpRequest(KEY, "GET");
+
+        ObjectStorageSingleFlight.Flight<byte[]> flight = ObjectStorageSingleFlight.join(KEY, new ObjectStorageTestSupport.Result<byte[]>(), null, firstHandle);
+        flight.setRequest(request);
+        assertNull(ObjectStorageSingleFlight.join(KEY, new ObjectStorageTestSupport.Result<byte[]>(), null, secondHandle));
+
+        firstHandle.cancel();
+        assertFalse(request.isCanceled());
+        secondHandle.cancel();
+        assertTrue(request.isCanceled());
+
+        ObjectStorageSingleFlight.Flight<byte[]> next = ObjectStorageSingleFlight.join(KEY, new ObjectStorageTestSupport.Result<byte[]>(), null, null);
+        assertNotNull("An abandoned flight is not joined", next);
+        next.onSuccess(new byte[0]);
+
+        //The request of an abandoned flight that is only set afterwards is canceled right away.
+        ObjectStorageHttpRequest lateHandle = new ObjectStorageHttpRequest(KEY, "GET");
+        ObjectStorageHttpRequest lateRequest = new ObjectStorageHttpRequest(KEY, "GET");
+        ObjectStorageSingleFlight.Flight<byte[]> late = ObjectStorageSingleFlight.join(KEY, new ObjectStorageTestSupport.Result<byte[]>(), null, lateHandle);
+        lateHandle.cancel();
+        late.setRequest(lateRequest);
+        assertTrue(lateRequest.isCanceled());
+    }
+
+    @Test
+    public void concurrentLoadsShareOneDownload() throws Exception {
+        byte[] data = "loaded once".getBytes();
+        ObjectStorageTestSupport.storeObject(container, "a", data);
+        standIn.setLatency(500, 0);
+
+        int callers = 4;
+        @SuppressWarnings("unchecked")
+        ObjectStorageTestSupport.Result<byte[]>[] results = new ObjectStorageTestSupport.Result[callers];
+        ObjectStorageHttpRequest canceled = null;
+        for(int i = 0; i < callers; i++){
+            results[i] = new ObjectStorageTestSupport.Result<>();
+            ObjectStorageHttpRequest handle = new ObjectStorageObject("a", container, null).load(false, null, results[i]);
+            if(i == 1){
+                canceled = handle;
+            }
+        }
+
+        canceled.cancel();
+
+        assertTrue(results[1].getFailure() instanceof IOException);
+        for(int i = 0; i < callers; i++){
+            if(i != 1){
+                assertArrayEquals(data, results[i].get());
+            }
+        }
+        assertNotSame(results[0].get(), results[2].get());
+        assertEquals(callers - 1, ObjectStorageMetrics.getCoalescedCount());
+    }
+
+    @Test
+    public void loadsAfterEveryCallerLeftStartNewDownload() throws Exception {
+        ObjectStorageTestSupport.storeObject(container, "a", "reloaded".getBytes());
+        standIn.setLatency(500, 0);
+
+        ObjectStorageTestSupport.Result<byte[]> first = new ObjectStorageTestSupport.Result<>();
+        ObjectStorageTestSupport.Result<byte[]> second = new ObjectStorageTestSupport.Result<>();
+        ObjectStorageHttpRequest firstHandle = new ObjectStorageObject("a", container, null).load(false, null, first);
+        ObjectStorageHttpRequest secondHandle = new ObjectStorageObject("a", container, null).load(false, null, second);
+
+        firstHandle.cancel();
+        secondHandle.cancel();
+        first.getFailure();
+        second.getFailure();
+
+        standIn.setLatency(0, 0);
+        ObjectStorageTestSupport.Result<byte[]> reloaded = new ObjectStorageTestSupport.Result<>();
+        new ObjectStorageObject("a", container, null).load(false, null, reloaded);
+        assertArrayEquals("reloaded".getBytes(), reloaded.get());
+    }
+}
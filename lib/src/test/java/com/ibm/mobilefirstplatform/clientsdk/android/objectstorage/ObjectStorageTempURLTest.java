@@ -0,0 +1,127 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ObjectStorageTempURLTest {
+    private static final String CONTAINER = "temp";
+    private static final String OBJECT = "photos/cat.jpg";
+    private static final String KEY = "secret";
+
+    private ObjectStorageStandIn standIn;
+    private ObjectStorageObject object;
+    private final byte[] data = "meow".getBytes();
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = ObjectStorageTestSupport.startStandIn();
+        ObjectStorageContainer container = ObjectStorageTestSupport.createContainer(CONTAINER);
+        object = ObjectStorageTestSupport.storeObject(container, OBJECT, data);
+
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put(ObjectStorage.TEMP_URL_KEY_HEADER, KEY);
+        ObjectStorageTestSupport.Result<Void> updated = new ObjectStorageTestSupport.Result<>();
+        ObjectStorage.updateAccountMetadata(metadata, updated);
+        updated.get();
+    }
+
+    @After
+    public void tearDown(){
+        ObjectStorage.setTempURLKey(null);
+        standIn.stop();
+    }
+
+    @Test
+    public void signsWithHmacSHA1(){
+        //RFC 2202, test case 2.
+        assertEquals("effcdf6ae5eb2fa2d27416d5f184df9c259a7c79", ObjectStorageUtils.hmacSHA1Hex("Jefe", "what do ya want for nothing?"));
+    }
+
+    @Test
+    public void signsMethodExpiryAndPath() throws Exception {
+        long before = System.currentTimeMillis() / 1000;
+        URL tempURL = new URL(object.getTempURL("get", 600));
+        long after = System.currentTimeMillis() / 1000;
+
+        Map<String, String> query = new HashMap<>();
+        for(String parameter : tempURL.getQuery().split("&")){
+            String[] pair = parameter.split("=", 2);
+            query.put(pair[0], pair[1]);
+        }
+        long expires = Long.parseLong(query.get("temp_url_expires"));
+        assertTrue(expires >= before + 600 && expires <= after + 600);
+
+        String path = new URL(standIn.getAPIURL()).getPath() + "project/" + CONTAINER + "/" + OBJECT;
+        assertEquals(path, tempURL.getPath());
+        assertEquals(ObjectStorageUtils.hmacSHA1Hex(KEY, "GET\n" + expires + "\n" + path), query.get("temp_url_sig"));
+    }
+
+    @Test
+    public void readsWithoutTokenUntilExpired() throws Exception {
+        String tempURL = object.getTempURL("GET", 600);
+
+        HttpURLConnection get = open(tempURL, "GET");
+        assertEquals(200, get.getResponseCode());
+        assertArrayEquals(data, readAll(get.getInputStream()));
+
+        assertEquals(200, open(tempURL, "HEAD").getResponseCode());
+        assertEquals(401, open(object.getTempURL("GET", -10), "GET").getResponseCode());
+    }
+
+    @Test
+    public void rejectsWrongMethodTamperingAndOtherKeys() throws Exception {
+        assertEquals(401, open(object.getTempURL("PUT", 600), "GET").getResponseCode());
+
+        String tempURL = object.getTempURL("GET", 600);
+        assertEquals(401, open(tempURL.replace("/" + CONTAINER + "/", "/other/"), "GET").getResponseCode());
+
+        ObjectStorage.setTempURLKey("another secret");
+        assertEquals(401, open(object.getTempURL("GET", 600), "GET").getResponseCode());
+
+        ObjectStorage.setTempURLKey(null);
+        assertNull(object.getTempURL("GET", 600));
+    }
+
+    private static HttpURLConnection open(String url, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        return connection;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while((read = in.read(buffer)) != -1){
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Response;
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts an {@link ObjectStorageStandIn} for a test and waits for the results of asynchronous operations.
+ */
+final class ObjectStorageTestSupport {
+    static final long TIMEOUT_SECONDS = 30;
+
+    private ObjectStorageTestSupport(){
+    }
+
+    /**
+     * Start a stand-in on a free port, and initialize and connect the SDK to it.
+     */
+    static ObjectStorageStandIn startStandIn() throws Exception {
+        ObjectStorageStandIn standIn = new ObjectStorageStandIn(0);
+        connect(standIn);
+        return standIn;
+    }
+
+    /**
+     * Initialize and connect the SDK to the given stand-in.
+     */
+    static void connect(ObjectStorageStandIn standIn) throws Exception {
+        ObjectStorage.initialize(standIn.getAuthURL(), standIn.getAPIURL());
+
+        Result<String> token = new Result<>();
+        ObjectStorage.connect("project", "user", "password", token);
+        token.get();
+    }
+
+    static ObjectStorageContainer createContainer(String containerName) throws Exception {
+        Result<ObjectStorageContainer> container = new Result<>();
+        ObjectStorage.createContainer(containerName, container);
+        return container.get();
+    }
+
+    static ObjectStorageObject storeObject(ObjectStorageContainer container, String objectName, byte[] data) throws Exception {
+        Result<ObjectStorageObject> object = new Result<>();
+        container.storeObject(objectName, data, object);
+        return object.get();
+    }
+
+    static byte[] loadObject(ObjectStorageContainer container, String objectName) throws Exception {
+        Result<byte[]> data = new Result<>();
+        new ObjectStorageObject(objectName, container, null).load(false, data);
+        return data.get();
+    }
+
+    /**
+     * A response listener that can be waited on.
+     */
+    static class Result<T> implements ObjectStorageResponseListener<T> {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private T value;
+        private Throwable failure;
+        private int status;
+
+        @Override
+        public void onSuccess(T returnValue) {
+            value = returnValue;
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+            //Requests made through the core SDK fail with the response, those made through the transport with an exception.
+            if(response != null){
+                status = response.getStatus();
+            }
+            else if(t instanceof ObjectStorageHttpException){
+                status = ((ObjectStorageHttpException) t).getStatusCode();
+            }
+            failure = t != null ? t : new IOException("Failed with status " + status);
+            done.countDown();
+        }
+
+        /**
+         * Wait for the operation and return its result.
+         * @throws Exception the failure of the operation
+         */
+        T get() throws Exception {
+            await();
+            if(failure != null){
+                throw new AssertionError("The operation failed: " + failure, failure);
+            }
+            return value;
+        }
+
+        /**
+         * Wait for the operation and return the failure it reported.
+         */
+        Throwable getFailure() throws Exception {
+            await();
+            if(failure == null){
+                throw new AssertionError("The operation succeeded unexpectedly.");
+            }
+            return failure;
+        }
+
+        /**
+         * Wait for the operation and return the status of the error response it failed with, or 0 if it failed without one.
+         */
+        int getFailureStatus() throws Exception {
+            getFailure();
+            return status;
+        }
+
+        private void await() throws InterruptedException {
+            if(!done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)){
+                throw new AssertionError("The operation did not complete.");
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ObjectStorageTransferTest {
+    private static final long STALL_MILLIS = 5000;
+
+    private ObjectStorageStandIn standIn;
+    private ObjectStorageContainer container;
+    private byte[] data;
+
+    //The headers of every request sent, and the number of leading requests whose response stalls.
+    private final List<Map<String, String>> requests = Collections.synchronizedList(new ArrayList<Map<String, String>>());
+    private volatile int stalledRequests = 0;
+    private volatile Runnable afterFirstResponse = null;
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = ObjectStorageTestSupport.startStandIn();
+        container = ObjectStorageTestSupport.createContainer("transfers");
+
+        data = new byte[256 * 1024];
+        new Random(32).nextBytes(data);
+        ObjectStorageTestSupport.storeObject(container, "a", data);
+
+        final ObjectStorageTransport transport = new ObjectStorageOkHttpTransport();
+        ObjectStorage.setTransport(new ObjectStorageTransport() {
+            @Override
+            public ObjectStorageHttpResponse execute(ObjectStorageHttpRequest request) throws IOException {
+                int index = requests.size();
+                requests.add(request.getHeaders());
+
+                //The stand-in decides whether to stall while it answers, so this request's stall is set before sending it.
+                standIn.setStallRate(index < stalledRequests ? 1 : 0, STALL_MILLIS);
+                ObjectStorageHttpResponse response = transport.execute(request);
+
+                if(index == 0 && afterFirstResponse != null){
+                    afterFirstResponse.run();
+                }
+                return response;
+            }
+        });
+    }
+
+    @After
+    public void tearDown(){
+        ObjectStorage.setTransport(null);
+        standIn.stop();
+    }
+
+    @Test
+    public void resumesStalledDownloadWithRange() throws Exception {
+        stalledRequests = 1;
+
+        ObjectStorageTestSupport.Result<byte[]> loaded = new ObjectStorageTestSupport.Result<>();
+        new ObjectStorageObject("a", container, null).load(false, stallOptions(2), loaded);
+
+        assertArrayEquals(data, loaded.get());
+        assertEquals(2, requests.size());
+        assertNull(requests.get(0).get("Range"));
+
+        String range = requests.get(1).get("Range");
+        assertTrue(range, range.matches("bytes=[1-9][0-9]*-"));
+        assertEquals(ObjectStorageUtils.md5Hex(data), ObjectStorageUtils.getETag(Collections.singletonMap(ObjectStorageUtils.ETAG_HEADER,
+                Collections.singletonList(requests.get(1).get("If-Match")))));
+    }
+
+    @Test
+    public void doesNotResumeChangedObject() throws Exception {
+        stalledRequests = 1;
+        afterFirstResponse = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ObjectStorageTestSupport.storeObject(container, "a", "replaced".getBytes());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+
+        ObjectStorageTestSupport.Result<byte[]> loaded = new ObjectStorageTestSupport.Result<>();
+        new ObjectStorageObject("a", container, null).load(false, stallOptions(2), loaded);
+
+        assertEquals(412, loaded.getFailureStatus());
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void failsAfterMaxRetries() throws Exception {
+        stalledRequests = Integer.MAX_VALUE;
+
+        ObjectStorageTestSupport.Result<byte[]> loaded = new ObjectStorageTestSupport.Result<>();
+        new ObjectStorageObject("a", container, null).load(false, stallOptions(1), loaded);
+
+        assertTrue(loaded.getFailure() instanceof SocketTimeoutException);
+        assertEquals(2, requests.size());
+    }
+
+    private static ObjectStorageTransferOptions stallOptions(int retries){
+        ObjectStorageTransferOptions options = new ObjectStorageTransferOptions();
+        //Long enough for the first connection of the test run to be set up without being taken for a stall.
+        options.setStallTimeout(1000);
+        options.setMaxRetries(retries);
+        return options;
+    }
+}
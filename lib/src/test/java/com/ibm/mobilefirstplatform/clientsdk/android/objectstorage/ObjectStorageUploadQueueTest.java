@@ -0,0 +1,337 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage;
+
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ObjectStorageUploadQueueTest {
+    private static final String CONTAINER = "queue";
+    private static final String COLOR_HEADER = ObjectStorageObject.METADATA_PREFIX + "Color";
+
+    private ObjectStorageStandIn standIn;
+    private ObjectStorageContainer container;
+    private File directory;
+    private ObjectStorageUploadQueue queue;
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = ObjectStorageTestSupport.startStandIn();
+        container = ObjectStorageTestSupport.createContainer(CONTAINER);
+
+        directory = File.createTempFile("upload-queue", "");
+        assertTrue(directory.delete() && directory.mkdir());
+    }
+
+    @After
+    public void tearDown(){
+        if(queue != null){
+            queue.close();
+        }
+        standIn.stop();
+
+        File[] files = directory.listFiles();
+        if(files != null){
+            for(File file : files){
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void restoresJournalWithTruncatedLastRecord() throws Exception {
+        write(new File(directory, "1" + ObjectStorageUploadQueue.PAYLOAD_SUFFIX), "restored");
+        write(new File(directory, "9" + ObjectStorageUploadQueue.PAYLOAD_SUFFIX), "orphaned");
+        write(new File(directory, ObjectStorageUploadQueue.JOURNAL_FILE),
+                "{\"seq\":1,\"op\":\"STORE\",\"container\":\"queue\",\"object\":\"a\",\"payload\":\"1.data\",\"length\":8}\n"
+                + "{\"seq\":2,\"op\":\"UPDATE_METADATA\",\"container\":\"queue\",\"object\":\"a\",\"metadata\":{\"X-Object-Meta-Color\":\"red\"}}\n"
+                + "{\"seq\":3,\"op\":\"DELETE\",\"container\":\"queue\",\"obj");
+
+        openQueue();
+
+        assertFalse("Data without a journal record is deleted", new File(directory, "9" + ObjectStorageUploadQueue.PAYLOAD_SUFFIX).exists());
+
+        awaitBacklog(0);
+
+        assertEquals("restored", load("a"));
+        assertEquals("red", getColor("a"));
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void mergesMetadataUpdateIntoPendingStore() throws Exception {
+        openBlockedQueue();
+
+        queue.storeObject(CONTAINER, "a", "stored".getBytes("UTF-8"));
+        queue.updateMetadata(CONTAINER, "a", Collections.singletonMap(COLOR_HEADER, "blue"));
+
+        assertEquals(2, queue.getBacklogSize());
+        assertEquals(1, queue.getCompletedCount());
+
+        unblock();
+        awaitBacklog(0);
+
+        assertEquals("stored", load("a"));
+        assertEquals("blue", getColor("a"));
+    }
+
+    @Test
+    public void storeReplacesPendingMetadataUpdate() throws Exception {
+        ObjectStorageTestSupport.storeObject(container, "a", "old".getBytes("UTF-8"));
+        openBlockedQueue();
+
+        queue.updateMetadata(CONTAINER, "a", Collections.singletonMap(COLOR_HEADER, "blue"));
+        queue.storeObject(CONTAINER, "a", "new".getBytes("UTF-8"));
+
+        assertEquals(2, queue.getBacklogSize());
+        assertEquals(1, queue.getCompletedCount());
+
+        unblock();
+        awaitBacklog(0);
+
+        assertEquals("new", load("a"));
+        assertNull(getColor("a"));
+    }
+
+    @Test
+    public void deleteReplacesPendingStoreAndDropsLaterMetadataUpdate() throws Exception {
+        ObjectStorageTestSupport.storeObject(container, "a", "old".getBytes("UTF-8"));
+        openBlockedQueue();
+        long blockerBytes = queue.getBacklogBytes();
+
+        queue.storeObject(CONTAINER, "a", "never uploaded".getBytes("UTF-8"));
+        queue.deleteObject(CONTAINER, "a");
+
+        assertEquals("The data of the replaced store is not uploaded", blockerBytes, queue.getBacklogBytes());
+        assertEquals(1, countPayloads());
+
+        queue.updateMetadata(CONTAINER, "a", Collections.singletonMap(COLOR_HEADER, "blue"));
+
+        assertEquals(2, queue.getBacklogSize());
+        assertEquals(1, queue.getCompletedCount());
+
+        unblock();
+        awaitBacklog(0);
+
+        ObjectStorageTestSupport.Result<byte[]> deleted = new ObjectStorageTestSupport.Result<>();
+        new ObjectStorageObject("a", container, null).load(false, deleted);
+        assertEquals(404, deleted.getFailureStatus());
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void requeuesFailedStoreWithNewerMetadataUpdate() throws Exception {
+        openQueue();
+        standIn.setLatency(300, 0);
+        standIn.setErrorRate(1);
+
+        queue.storeObject(CONTAINER, "a", "retried".getBytes("UTF-8"));
+        queue.updateMetadata(CONTAINER, "a", Collections.singletonMap(COLOR_HEADER, "green"));
+        assertEquals(2, queue.getBacklogSize());
+
+        //The failed store is requeued together with the metadata update that waited for it.
+        awaitBacklog(1);
+
+        standIn.setErrorRate(0);
+        standIn.setLatency(0, 0);
+        queue.drain();
+        awaitBacklog(0);
+
+        assertEquals("retried", load("a"));
+        assertEquals("green", getColor("a"));
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void dropsFailedStoreReplacedByNewerStore() throws Exception {
+        openQueue();
+        standIn.setLatency(300, 0);
+        standIn.setErrorRate(1);
+
+        queue.storeObject(CONTAINER, "a", "first".getBytes("UTF-8"));
+        queue.storeObject(CONTAINER, "a", "second".getBytes("UTF-8"));
+
+        standIn.setErrorRate(0);
+        standIn.setLatency(0, 0);
+        queue.drain();
+        awaitBacklog(0);
+
+        assertEquals("second", load("a"));
+        assertEquals(0, countPayloads());
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void authenticatesAgainAfterRevokedToken() throws Exception {
+        openQueue();
+        standIn.revokeTokens();
+
+        queue.storeObject(CONTAINER, "a", "reauthenticated".getBytes("UTF-8"));
+        awaitBacklog(0);
+
+        assertEquals("reauthenticated", load("a"));
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void reportsOperationRejectedAfterNewToken() throws Exception {
+        ObjectStorageMetrics.setEnabled(true);
+        ObjectStorageMetrics.reset();
+        try {
+            openQueue();
+            //Every token is issued already expired, so the new token is rejected as well.
+            standIn.setTokenLifetime(-60 * 60 * 1000);
+            standIn.revokeTokens();
+
+            queue.storeObject(CONTAINER, "a", "rejected".getBytes("UTF-8"));
+            awaitBacklog(0);
+
+            assertEquals(2, ObjectStorageMetrics.getFailureCount("storeObject"));
+            assertEquals(1, failures.size());
+            assertTrue(failures.get(0), failures.get(0).startsWith("STORE queue/a"));
+        } finally {
+            ObjectStorageMetrics.setEnabled(false);
+        }
+    }
+
+    @Test
+    public void compactsJournal() throws Exception {
+        openQueue();
+
+        int versions = 300;
+        for(int i = 0; i < versions; i++){
+            queue.storeObject(CONTAINER, "a", ("version " + i).getBytes("UTF-8"));
+        }
+
+        //Without compaction the journal would hold a record for every store and every completed operation.
+        assertTrue("The journal was not compacted", countJournalRecords() < versions);
+
+        awaitBacklog(0);
+
+        assertEquals("version " + (versions - 1), load("a"));
+        assertEquals(0, countPayloads());
+
+        queue.close();
+        openQueue();
+
+        assertEquals("A compacted journal restores no completed operations", 0, queue.getBacklogSize());
+        assertEquals(0, countJournalRecords());
+    }
+
+    private void openQueue() throws IOException {
+        queue = new ObjectStorageUploadQueue(directory);
+        queue.setListener(new ObjectStorageUploadQueueListener() {
+            @Override
+            public void onProgress(int completedCount, int backlogSize, long backlogBytes) {
+            }
+
+            @Override
+            public void onOperationFailed(String containerName, String objectName, ObjectStorageUploadQueue.Operation operation, Throwable t) {
+                failures.add(operation + " " + containerName + "/" + objectName + ": " + t);
+            }
+        });
+    }
+
+    /**
+     * Open the queue with a single slow request in flight, so the operations queued next stay pending until it completes.
+     * Requests are slow until {@link #unblock()} is called.
+     */
+    private void openBlockedQueue() throws IOException {
+        openQueue();
+        queue.setMaxConcurrentRequests(1);
+
+        standIn.setLatency(1000, 0);
+        queue.storeObject(CONTAINER, "blocker", "blocking".getBytes("UTF-8"));
+
+        assertEquals(1, queue.getBacklogSize());
+    }
+
+    /**
+     * Let the operations queued behind the slow request be sent without delay.
+     */
+    private void unblock(){
+        standIn.setLatency(0, 0);
+    }
+
+    private void awaitBacklog(int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + ObjectStorageTestSupport.TIMEOUT_SECONDS * 1000;
+        while(queue.getBacklogSize() != size){
+            if(System.currentTimeMillis() > deadline){
+                fail("The backlog has " + queue.getBacklogSize() + " operations instead of " + size);
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private String load(String objectName) throws Exception {
+        return new String(ObjectStorageTestSupport.loadObject(container, objectName), "UTF-8");
+    }
+
+    private String getColor(String objectName) throws Exception {
+        ObjectStorageTestSupport.Result<Map<String, List<String>>> metadata = new ObjectStorageTestSupport.Result<>();
+        new ObjectStorageObject(objectName, container, null).getMetadata(metadata);
+        return ObjectStorageUtils.getHeader(metadata.get(), COLOR_HEADER);
+    }
+
+    private int countPayloads(){
+        int count = 0;
+        for(File file : directory.listFiles()){
+            if(file.getName().endsWith(ObjectStorageUploadQueue.PAYLOAD_SUFFIX)){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int countJournalRecords() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(new File(directory, ObjectStorageUploadQueue.JOURNAL_FILE)), "UTF-8"));
+        try {
+            int count = 0;
+            while(reader.readLine() != null){
+                count++;
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.soak;
+
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Records the latencies and failures of one kind of operation. Percentiles come from a uniform random sample of a
+ * fixed size, so they stay exact for short runs and memory stays bounded for runs that last hours. The power of two
+ * buckets of the SDK's own histogram are too coarse to compare runs with.
+ */
+final class LatencyRecorder {
+    private static final int SAMPLE_SIZE = 10000;
+
+    private final long[] sample = new long[SAMPLE_SIZE];
+    private final Random random = new Random(0);
+
+    private long count = 0;
+    private long errors = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+
+    synchronized void record(long nanos, boolean success){
+        if(!success){
+            errors++;
+        }
+
+        //Reservoir sampling: every recorded value ends up in the sample with the same probability.
+        if(count < SAMPLE_SIZE){
+            sample[(int) count] = nanos;
+        }
+        else{
+            long slot = (long) (random.nextDouble() * (count + 1));
+            if(slot < SAMPLE_SIZE){
+                sample[(int) slot] = nanos;
+            }
+        }
+
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    synchronized long getCount(){
+        return count;
+    }
+
+    synchronized long getErrors(){
+        return errors;
+    }
+
+    synchronized double getMeanMillis(){
+        return count == 0 ? 0 : totalNanos / 1e6 / count;
+    }
+
+    /**
+     * Get the given percentiles, computed from a single sorted copy of the sample.
+     */
+    synchronized double[] getPercentilesMillis(double... percentiles){
+        double[] values = new double[percentiles.length];
+        int size = (int) Math.min(count, SAMPLE_SIZE);
+        if(size == 0){
+            return values;
+        }
+
+        long[] sorted = Arrays.copyOf(sample, size);
+        Arrays.sort(sorted);
+        for(int i = 0; i < percentiles.length; i++){
+            int rank = (int) Math.ceil(size * percentiles[i] / 100.0) - 1;
+            values[i] = sorted[Math.max(0, Math.min(size - 1, rank))] / 1e6;
+        }
+        return values;
+    }
+
+    synchronized void reset(){
+        count = 0;
+        errors = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    /**
+     * Get the count, errors, mean, max and the 50th, 90th and 99th percentiles as JSON.
+     */
+    synchronized JSONObject toJSON(){
+        JSONObject json = new JSONObject();
+        double[] percentiles = getPercentilesMillis(50, 90, 99);
+
+        try {
+            json.put("count", count);
+            json.put("errors", errors);
+            json.put("meanMillis", getMeanMillis());
+            json.put("p50Millis", percentiles[0]);
+            json.put("p90Millis", percentiles[1]);
+            json.put("p99Millis", percentiles[2]);
+            json.put("maxMillis", maxNanos / 1e6);
+        } catch (JSONException e) {
+            //Just creating JSONObject; no exceptions will occur.
+        }
+
+        return json;
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.soak;
+
+
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Response;
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.ObjectStorage;
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.ObjectStorageMetrics;
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.ObjectStorageResponseListener;
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin.ObjectStorageStandIn;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a workload against Object Storage through the SDK, either generated from a {@link WorkloadProfile} or replayed
+ * from a {@link WorkloadTrace}, and reports throughput, latency percentiles, the heap high-water mark and GC time for
+ * every interval and for the whole run. The report can be compared with the report of an earlier run to find
+ * regressions, for example between two versions of the SDK.
+ */
+public final class ObjectStorageSoak {
+    private static final int EXIT_FAILED = 1;
+    private static final int EXIT_REGRESSED = 2;
+
+    private static final double DEFAULT_TOLERANCE = 0.15;
+
+    private ObjectStorageSoak(){
+    }
+
+    /**
+     * Run a workload from the command line.
+     * <pre>
+     *     java ObjectStorageSoak [--profile profile.json | --trace trace.jsonl [--speed 1] [--concurrency 8] [--report-interval 10]]
+     *         [--duration seconds] [--warmup seconds]
+     *         [--auth-url url --api-url url] [--project id] [--user id] [--password password]
+     *         [--latency millis] [--jitter millis] [--bandwidth bytesPerSecond] [--error-rate 0.01]
+     *         [--report report.json] [--record trace.jsonl] [--baseline report.json] [--tolerance 0.15]
+     *         [--label name] [--sdk-metrics true]
+     * </pre>
+     * Without a profile or trace, the default profile runs. The duration and warmup override those of the profile, and
+     * the warmup also applies to traces. Without an endpoint, the workload runs against an embedded
+     * stand-in server, with the given latency, bandwidth limit and error rate. The process exits with status 2 if the
+     * report regressed against the baseline.
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String profileFile = null;
+        String traceFile = null;
+        double speed = 1;
+        int concurrency = 8;
+        long reportInterval = 10;
+        long duration = -1;
+        long warmup = -1;
+        String authURL = null;
+        String apiURL = null;
+        String project = "soak";
+        String user = "soak";
+        String password = "soak";
+        long latency = 0;
+        long jitter = 0;
+        long bandwidth = 0;
+        double errors = 0;
+        String reportFile = null;
+        String recordFile = null;
+        String baselineFile = null;
+        double tolerance = DEFAULT_TOLERANCE;
+        String label = "sdk";
+        boolean sdkMetrics = false;
+
+        for(int i = 0; i < args.length; i += 2){
+            if(i + 1 >= args.length){
+                exit("Missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            switch(args[i]){
+                case "--profile":
+                    profileFile = value;
+                    break;
+                case "--trace":
+                    traceFile = value;
+                    break;
+                case "--speed":
+                    speed = Double.parseDouble(value);
+                    break;
+                case "--concurrency":
+                    concurrency = Integer.parseInt(value);
+                    break;
+                case "--report-interval":
+                    reportInterval = Long.parseLong(value);
+                    break;
+                case "--duration":
+                    duration = Long.parseLong(value);
+                    break;
+                case "--warmup":
+                    warmup = Long.parseLong(value);
+                    break;
+                case "--auth-url":
+                    authURL = value;
+                    break;
+                case "--api-url":
+                    apiURL = value;
+                    break;
+                case "--project":
+                    project = value;
+                    break;
+                case "--user":
+                    user = value;
+                    break;
+                case "--password":
+                    password = value;
+                    break;
+                case "--latency":
+                    latency = Long.parseLong(value);
+                    break;
+                case "--jitter":
+                    jitter = Long.parseLong(value);
+                    break;
+                case "--bandwidth":
+                    bandwidth = Long.parseLong(value);
+                    break;
+                case "--error-rate":
+                    errors = Double.parseDouble(value);
+                    break;
+                case "--report":
+                    reportFile = value;
+                    break;
+                case "--record":
+                    recordFile = value;
+                    break;
+                case "--baseline":
+                    baselineFile = value;
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(value);
+                    break;
+                case "--label":
+                    label = value;
+                    break;
+                case "--sdk-metrics":
+                    sdkMetrics = Boolean.parseBoolean(value);
+                    break;
+                default:
+                    exit("Unknown option: " + args[i]);
+            }
+        }
+
+        if(profileFile != null && traceFile != null){
+            exit("Pass either a profile or a trace, not both.");
+        }
+        if((authURL == null) != (apiURL == null)){
+            exit("Pass both --auth-url and --api-url, or neither to use an embedded stand-in.");
+        }
+
+        //Read the inputs before starting anything, so mistakes in them fail fast.
+        JSONObject baseline = baselineFile != null ? readJSON(new File(baselineFile)) : null;
+        WorkloadProfile profile = null;
+        List<WorkloadOperation> trace = null;
+        JSONObject workload;
+        if(traceFile != null){
+            trace = WorkloadTrace.read(new File(traceFile));
+            workload = new JSONObject();
+            try {
+                workload.put("trace", new File(traceFile).getName());
+                workload.put("operations", trace.size());
+                workload.put("speed", speed);
+                workload.put("concurrency", concurrency);
+                workload.put("warmupSeconds", Math.max(0, warmup));
+            } catch (JSONException e) {
+                //Just creating JSONObject; no exceptions will occur.
+            }
+        }
+        else{
+            try {
+                profile = profileFile != null ? WorkloadProfile.fromJSON(readJSON(new File(profileFile))) : new WorkloadProfile();
+            } catch (JSONException | IllegalArgumentException e) {
+                exit("Invalid profile " + profileFile + ": " + e.getMessage());
+                return;
+            }
+            if(duration > 0){
+                profile.durationSeconds = duration;
+            }
+            if(warmup >= 0){
+                profile.warmupSeconds = warmup;
+            }
+            workload = profile.toJSON();
+        }
+
+        ObjectStorageStandIn standIn = null;
+        if(authURL == null){
+            standIn = new ObjectStorageStandIn(0);
+            standIn.setLatency(latency, jitter);
+            standIn.setBandwidthLimit(bandwidth);
+            standIn.setErrorRate(errors);
+            authURL = standIn.getAuthURL();
+            apiURL = standIn.getAPIURL();
+            System.out.println("Running against an embedded stand-in at " + apiURL);
+        }
+
+        ObjectStorageMetrics.setEnabled(sdkMetrics);
+        ObjectStorage.initialize(authURL, apiURL);
+        connect(project, user, password);
+
+        WorkloadTrace.Writer recorder = recordFile != null ? new WorkloadTrace.Writer(new File(recordFile)) : null;
+        WorkloadReport report;
+        try {
+            WorkloadDriver driver = new WorkloadDriver(recorder, System.out);
+            if(trace != null){
+                report = driver.runTrace(trace, concurrency, speed, Math.max(0, warmup), reportInterval);
+            }
+            else{
+                report = driver.runProfile(profile);
+            }
+        } finally {
+            if(recorder != null){
+                recorder.close();
+            }
+            if(standIn != null){
+                standIn.stop();
+            }
+        }
+
+        JSONObject result = report.toJSON(label, workload, sdkMetrics ? ObjectStorageMetrics.toJSON() : null);
+        printSummary(result);
+        if(reportFile != null){
+            writeJSON(new File(reportFile), result);
+            System.out.println("Report written to " + reportFile);
+        }
+
+        if(baseline != null){
+            List<String> regressions = WorkloadReport.compare(baseline, result, tolerance);
+            if(!regressions.isEmpty()){
+                System.out.println("Regressions against " + baseline.optString("label", baselineFile) + ":");
+                for(String regression : regressions){
+                    System.out.println("  " + regression);
+                }
+                System.exit(EXIT_REGRESSED);
+            }
+            System.out.println("No regressions against " + baseline.optString("label", baselineFile) + ".");
+        }
+        System.exit(0);
+    }
+
+    private static void connect(String project, String user, String password) throws InterruptedException {
+        final CountDownLatch connected = new CountDownLatch(1);
+        final String[] failure = new String[1];
+
+        ObjectStorage.connect(project, user, password, new ObjectStorageResponseListener<String>() {
+            @Override
+            public void onSuccess(String authToken) {
+                connected.countDown();
+            }
+
+            @Override
+            public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+                failure[0] = t != null ? t.toString() : "status " + (response != null ? response.getStatus() : 0);
+                connected.countDown();
+            }
+        });
+
+        if(!connected.await(1, TimeUnit.MINUTES)){
+            exit("Timed out connecting to Object Storage.");
+        }
+        if(failure[0] != null){
+            exit("Could not connect to Object Storage: " + failure[0]);
+        }
+    }
+
+    private static void printSummary(JSONObject result){
+        System.out.println(String.format(Locale.US, "%s: %d operations in %.0fs, %.1f ops/s, %d errors, heap high-water %.1fMB, gc %dms",
+                result.optString("label"), result.optLong("operationCount"), result.optDouble("durationSeconds"), result.optDouble("opsPerSecond"),
+                result.optLong("errorCount"), result.optLong("heapHighWaterBytes") / 1048576.0, result.optLong("gcMillis")));
+
+        JSONObject latency = result.optJSONObject("latency");
+        List<String> operations = new ArrayList<>();
+        for(WorkloadOperation.Type type : WorkloadOperation.Type.values()){
+            operations.add(type.getName());
+        }
+        operations.add("all");
+
+        for(String operation : operations){
+            JSONObject stats = latency.optJSONObject(operation);
+            if(stats == null){
+                continue;
+            }
+            System.out.println(String.format(Locale.US, "  %-9s %8d ops  mean %8.2fms  p50 %8.2fms  p90 %8.2fms  p99 %8.2fms  max %8.2fms  errors %d",
+                    operation, stats.optLong("count"), stats.optDouble("meanMillis"), stats.optDouble("p50Millis"), stats.optDouble("p90Millis"),
+                    stats.optDouble("p99Millis"), stats.optDouble("maxMillis"), stats.optLong("errors")));
+        }
+    }
+
+    private static JSONObject readJSON(File file) throws IOException {
+        try {
+            return new JSONObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void writeJSON(File file, JSONObject json) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+        try {
+            writer.write(json.toString(2));
+        } catch (JSONException e) {
+            throw new IOException(e);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void exit(String message){
+        System.err.println(message);
+        System.exit(EXIT_FAILED);
+    }
+}
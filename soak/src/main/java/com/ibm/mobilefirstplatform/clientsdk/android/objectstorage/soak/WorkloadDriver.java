@@ -0,0 +1,466 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.soak;
+
+
+import com.ibm.mobilefirstplatform.clientsdk.android.core.api.Response;
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.ObjectStorage;
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.ObjectStorageContainer;
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.ObjectStorageObject;
+import com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.ObjectStorageResponseListener;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a workload through the public SDK API. Each caller blocks on one SDK call at a time, so the concurrency of the
+ * workload is the number of SDK calls in flight. Containers and objects the workload needs are created before the
+ * measurement starts, and are not removed afterwards.
+ */
+final class WorkloadDriver {
+    private static final long OPERATION_TIMEOUT_MINUTES = 10;
+    private static final long HEAP_SAMPLE_INTERVAL_MILLIS = 100;
+    private static final int DEFAULT_SEED_SIZE = 1024;
+    private static final int MAX_LOGGED_FAILURES = 20;
+
+    private final WorkloadReport report = new WorkloadReport();
+    private final WorkloadTrace.Writer recorder;
+    private final PrintStream out;
+
+    private final ConcurrentHashMap<String, ObjectPool> pools = new ConcurrentHashMap<>();
+    private final AtomicLong objectCounter = new AtomicLong();
+    private final AtomicInteger loggedFailures = new AtomicInteger();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("soak-report"));
+
+    private byte[] payload = new byte[DEFAULT_SEED_SIZE];
+    private volatile long runStartNanos;
+
+    /**
+     * @param recorder records every operation that runs, or null
+     * @param out receives the progress output
+     */
+    WorkloadDriver(WorkloadTrace.Writer recorder, PrintStream out){
+        this.recorder = recorder;
+        this.out = out;
+    }
+
+    WorkloadReport getReport(){
+        return report;
+    }
+
+    /**
+     * Run a workload generated from the profile, with a closed loop of callers that each wait for the think time
+     * between operations.
+     */
+    WorkloadReport runProfile(final WorkloadProfile profile) throws IOException, InterruptedException {
+        payload = newPayload(profile.getMaxSize(), profile.seed);
+
+        Random seedRandom = new Random(profile.seed);
+        List<WorkloadOperation> setup = new ArrayList<>();
+        for(int i = 0; i < profile.containers; i++){
+            String container = profile.getContainerName(i);
+            pools.put(container, new ObjectPool());
+            for(int j = 0; j < profile.seedObjects; j++){
+                setup.add(new WorkloadOperation(WorkloadOperation.Type.STORE, container, "seed-" + j, profile.nextSize(seedRandom), -1));
+            }
+        }
+        setUp(setup);
+
+        runStartNanos = System.nanoTime();
+        startReporting(profile.warmupSeconds, profile.reportIntervalSeconds);
+
+        final long deadline = runStartNanos + TimeUnit.SECONDS.toNanos(profile.warmupSeconds + profile.durationSeconds);
+        Thread[] callers = new Thread[profile.concurrency];
+        for(int i = 0; i < callers.length; i++){
+            final Random random = new Random(profile.seed + 1 + i);
+            callers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while(System.nanoTime() < deadline){
+                            perform(next(profile, random));
+                            Thread.sleep(profile.nextThinkTime(random));
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "soak-caller-" + i);
+            callers[i].start();
+        }
+
+        for(Thread caller : callers){
+            caller.join();
+        }
+
+        return finish();
+    }
+
+    /**
+     * Replay a recorded workload, starting each operation at its recorded time divided by the speed, as long as fewer
+     * than the given number of operations are in flight.
+     * @param speed how much faster than recorded to replay, or 0 to run the operations back to back. Operations that run
+     *              back to back may overtake each other, so some reads can miss objects that are stored just before them.
+     * @param warmupSeconds how long to run before measuring
+     */
+    WorkloadReport runTrace(List<WorkloadOperation> operations, int concurrency, double speed, long warmupSeconds, long reportIntervalSeconds) throws IOException, InterruptedException {
+        long maxSize = DEFAULT_SEED_SIZE;
+        for(WorkloadOperation operation : operations){
+            maxSize = Math.max(maxSize, operation.size);
+        }
+        payload = newPayload(maxSize, 0);
+
+        List<WorkloadOperation> setup = new ArrayList<>();
+        List<WorkloadOperation> replay = new ArrayList<>();
+        Set<String> stored = new HashSet<>();
+        for(WorkloadOperation operation : operations){
+            String key = operation.container + "/" + operation.object;
+            if(operation.offsetMillis < 0){
+                setup.add(operation);
+                stored.add(key);
+                continue;
+            }
+            if(operation.type == WorkloadOperation.Type.STORE){
+                stored.add(key);
+            }
+            else if(operation.object != null && stored.add(key)){
+                //The trace reads an object it never stored, so it existed before the recording started.
+                setup.add(new WorkloadOperation(WorkloadOperation.Type.STORE, operation.container, operation.object, DEFAULT_SEED_SIZE, -1));
+            }
+            replay.add(operation);
+        }
+        for(WorkloadOperation operation : operations){
+            pools.put(operation.container, new ObjectPool());
+        }
+        setUp(setup);
+
+        runStartNanos = System.nanoTime();
+        startReporting(warmupSeconds, reportIntervalSeconds);
+
+        ExecutorService callers = Executors.newFixedThreadPool(concurrency, new DaemonThreadFactory("soak-caller"));
+        final Semaphore inFlight = new Semaphore(concurrency);
+        for(final WorkloadOperation operation : replay){
+            if(speed > 0){
+                long due = runStartNanos + (long) (TimeUnit.MILLISECONDS.toNanos(operation.offsetMillis) / speed);
+                long wait = due - System.nanoTime();
+                if(wait > 0){
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+
+            inFlight.acquire();
+            callers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        perform(operation);
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+            });
+        }
+
+        callers.shutdown();
+        callers.awaitTermination(OPERATION_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+
+        return finish();
+    }
+
+    /**
+     * Create the containers and store the objects the workload needs, without measuring or recording anything but the stored objects.
+     */
+    private void setUp(List<WorkloadOperation> setup) throws IOException, InterruptedException {
+        Set<String> containers = new LinkedHashSet<>(pools.keySet());
+        for(WorkloadOperation operation : setup){
+            containers.add(operation.container);
+        }
+        for(String container : containers){
+            Completion<ObjectStorageContainer> created = new Completion<>();
+            ObjectStorage.createContainer(container, created);
+            if(!created.await()){
+                throw new IOException("Could not create container " + container + ": " + created.failure);
+            }
+        }
+
+        out.println("Setting up " + containers.size() + " containers and " + setup.size() + " objects.");
+        for(WorkloadOperation operation : setup){
+            if(!execute(operation)){
+                throw new IOException("Could not set up the workload: " + operation);
+            }
+            pool(operation.container).add(operation.object);
+            record(operation);
+        }
+    }
+
+    private void startReporting(long warmupSeconds, final long reportIntervalSeconds){
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                report.sampleHeap();
+            }
+        }, 0, HEAP_SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        if(warmupSeconds > 0){
+            out.println("Warming up for " + warmupSeconds + "s.");
+        }
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                report.start();
+            }
+        }, warmupSeconds, TimeUnit.SECONDS);
+
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                out.println(WorkloadReport.format(report.closeInterval()));
+            }
+        }, warmupSeconds + reportIntervalSeconds, reportIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private WorkloadReport finish() throws InterruptedException {
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        report.finish();
+        return report;
+    }
+
+    /**
+     * Pick the next operation of a profile, with an object that exists for the operations that need one.
+     */
+    private WorkloadOperation next(WorkloadProfile profile, Random random){
+        String container = profile.getContainerName(random.nextInt(profile.containers));
+        ObjectPool pool = pool(container);
+        WorkloadOperation.Type type = profile.nextType(random);
+
+        String object = null;
+        switch(type){
+            case GET:
+            case METADATA:
+                object = pool.pick(random);
+                break;
+            case DELETE:
+                object = pool.remove(random);
+                break;
+            default:
+                break;
+        }
+
+        if(type == WorkloadOperation.Type.STORE || (type != WorkloadOperation.Type.LIST && object == null)){
+            //A full container has its objects replaced instead of growing further.
+            type = WorkloadOperation.Type.STORE;
+            object = pool.size() >= profile.maxObjects ? pool.pick(random) : "obj-" + objectCounter.incrementAndGet();
+        }
+
+        return new WorkloadOperation(type, container, object, type == WorkloadOperation.Type.STORE ? profile.nextSize(random) : 0, 0);
+    }
+
+    /**
+     * Run, measure and record a single operation.
+     */
+    private void perform(WorkloadOperation operation){
+        long offsetMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - runStartNanos);
+
+        long start = System.nanoTime();
+        boolean success = execute(operation);
+        report.record(operation.type, System.nanoTime() - start, success);
+
+        if(success && operation.type == WorkloadOperation.Type.STORE){
+            pool(operation.container).add(operation.object);
+        }
+        record(operation.resolve(operation.object, offsetMillis));
+    }
+
+    private void record(WorkloadOperation operation){
+        if(recorder == null){
+            return;
+        }
+        try {
+            recorder.write(operation);
+        } catch (IOException e) {
+            if(loggedFailures.incrementAndGet() <= MAX_LOGGED_FAILURES){
+                out.println("Could not record " + operation + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Make the SDK call for the operation and wait for its result.
+     * @return true if the call succeeded
+     */
+    private boolean execute(WorkloadOperation operation){
+        ObjectStorageContainer container = new ObjectStorageContainer(operation.container);
+        Completion<?> completion;
+
+        switch(operation.type){
+            case LIST:
+                Completion<List<ObjectStorageObject>> listed = new Completion<>();
+                container.getObjectList(listed);
+                completion = listed;
+                break;
+            case GET:
+                Completion<byte[]> loaded = new Completion<>();
+                new ObjectStorageObject(operation.object, container, null).load(false, loaded);
+                completion = loaded;
+                break;
+            case STORE:
+                Completion<ObjectStorageObject> stored = new Completion<>();
+                int size = (int) Math.min(operation.size > 0 ? operation.size : DEFAULT_SEED_SIZE, payload.length);
+                container.storeObject(operation.object, new ByteArrayInputStream(payload, 0, size), size, stored);
+                completion = stored;
+                break;
+            case DELETE:
+                Completion<Void> deleted = new Completion<>();
+                container.deleteObject(operation.object, deleted);
+                completion = deleted;
+                break;
+            case METADATA:
+                Completion<Map<String, List<String>>> metadata = new Completion<>();
+                new ObjectStorageObject(operation.object, container, null).getMetadata(metadata);
+                completion = metadata;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation.type);
+        }
+
+        boolean success;
+        try {
+            success = completion.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        if(!success && loggedFailures.incrementAndGet() <= MAX_LOGGED_FAILURES){
+            out.println("Failed: " + operation + ": " + completion.failure);
+        }
+        return success;
+    }
+
+    private ObjectPool pool(String container){
+        ObjectPool pool = pools.get(container);
+        if(pool == null){
+            ObjectPool created = new ObjectPool();
+            pool = pools.putIfAbsent(container, created);
+            if(pool == null){
+                pool = created;
+            }
+        }
+        return pool;
+    }
+
+    private static byte[] newPayload(long size, long seed){
+        byte[] data = new byte[(int) Math.max(DEFAULT_SEED_SIZE, size)];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * The names of the objects of one container that the workload stored and has not deleted.
+     */
+    private static class ObjectPool {
+        private final List<String> names = new ArrayList<>();
+        private final Set<String> known = new HashSet<>();
+
+        synchronized void add(String name){
+            if(known.add(name)){
+                names.add(name);
+            }
+        }
+
+        synchronized String pick(Random random){
+            return names.isEmpty() ? null : names.get(random.nextInt(names.size()));
+        }
+
+        synchronized String remove(Random random){
+            if(names.isEmpty()){
+                return null;
+            }
+            int index = random.nextInt(names.size());
+            String name = names.get(index);
+            names.set(index, names.get(names.size() - 1));
+            names.remove(names.size() - 1);
+            known.remove(name);
+            return name;
+        }
+
+        synchronized int size(){
+            return names.size();
+        }
+    }
+
+    /**
+     * Lets a caller wait for the result of an SDK call.
+     */
+    private static class Completion<T> implements ObjectStorageResponseListener<T> {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean success;
+        private volatile String failure;
+
+        @Override
+        public void onSuccess(T value) {
+            success = true;
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(Response response, Throwable t, JSONObject extendedInfo) {
+            failure = t != null ? t.toString() : "status " + (response != null ? response.getStatus() : 0);
+            done.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            if(!done.await(OPERATION_TIMEOUT_MINUTES, TimeUnit.MINUTES)){
+                failure = "timed out";
+                return false;
+            }
+            return success;
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix){
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
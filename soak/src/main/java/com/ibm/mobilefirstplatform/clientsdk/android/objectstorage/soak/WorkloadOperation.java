@@ -0,0 +1,107 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.soak;
+
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Locale;
+
+/**
+ * A single operation of a workload, as generated from a {@link WorkloadProfile} or read from a {@link WorkloadTrace}.
+ */
+final class WorkloadOperation {
+
+    /**
+     * The SDK calls a workload is made of.
+     */
+    enum Type {
+        LIST,
+        GET,
+        STORE,
+        DELETE,
+        METADATA;
+
+        String getName(){
+            return name().toLowerCase(Locale.US);
+        }
+
+        static Type fromName(String name){
+            try {
+                return valueOf(name.toUpperCase(Locale.US));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown operation: " + name);
+            }
+        }
+    }
+
+    final Type type;
+    final String container;
+    final String object;
+    final long size;
+    final long offsetMillis;
+
+    /**
+     * @param container the container the operation works on
+     * @param object the object the operation works on, or null for listings and for profile operations that pick an object when they run
+     * @param size the size of stored objects, or 0
+     * @param offsetMillis the time since the start of the run at which the operation started
+     */
+    WorkloadOperation(Type type, String container, String object, long size, long offsetMillis){
+        this.type = type;
+        this.container = container;
+        this.object = object;
+        this.size = size;
+        this.offsetMillis = offsetMillis;
+    }
+
+    /**
+     * Get the same operation on the given object, started at the given time.
+     */
+    WorkloadOperation resolve(String objectName, long startOffsetMillis){
+        return new WorkloadOperation(type, container, objectName, size, startOffsetMillis);
+    }
+
+    JSONObject toJSON(){
+        JSONObject json = new JSONObject();
+
+        try {
+            json.put("offsetMillis", offsetMillis);
+            json.put("op", type.getName());
+            json.put("container", container);
+            if(object != null){
+                json.put("object", object);
+            }
+            if(size > 0){
+                json.put("size", size);
+            }
+        } catch (JSONException e) {
+            //Just creating JSONObject; no exceptions will occur.
+        }
+
+        return json;
+    }
+
+    static WorkloadOperation fromJSON(JSONObject json) throws JSONException {
+        Type type = Type.fromName(json.getString("op"));
+        String object = json.optString("object", null);
+        if(object == null && type != Type.LIST){
+            throw new JSONException("The " + type.getName() + " operation needs an object.");
+        }
+        return new WorkloadOperation(type, json.getString("container"), object, json.optLong("size", 0), json.optLong("offsetMillis", 0));
+    }
+
+    @Override
+    public String toString(){
+        return type.getName() + " " + container + (object != null ? "/" + object : "");
+    }
+}
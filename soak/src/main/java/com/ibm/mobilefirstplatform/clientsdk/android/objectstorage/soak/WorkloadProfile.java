@@ -0,0 +1,233 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.soak;
+
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A declarative description of a workload: which operations run and how often, how large the stored objects are,
+ * how many callers run at once and how long each one waits between operations. Profiles are JSON files:
+ * <pre>
+ * {
+ *   "name": "mixed",
+ *   "durationSeconds": 3600,
+ *   "warmupSeconds": 30,
+ *   "concurrency": 8,
+ *   "thinkTimeMillis": 100,
+ *   "thinkTime": "exponential",
+ *   "containers": 2,
+ *   "seedObjects": 50,
+ *   "maxObjects": 1000,
+ *   "mix": {"list": 10, "get": 60, "store": 20, "delete": 5, "metadata": 5},
+ *   "sizes": [{"min": 1024, "max": 65536, "weight": 80}, {"min": 1048576, "max": 8388608, "weight": 20}],
+ *   "reportIntervalSeconds": 10,
+ *   "seed": 42
+ * }
+ * </pre>
+ * Every field is optional. The mix weights are relative. Object sizes are picked from the size ranges by weight,
+ * log-uniformly within a range. Think time is either fixed or exponentially distributed around its mean.
+ */
+final class WorkloadProfile {
+    private static final WorkloadOperation.Type[] TYPES = WorkloadOperation.Type.values();
+
+    String name = "default";
+    long durationSeconds = 600;
+    long warmupSeconds = 30;
+    int concurrency = 4;
+    long thinkTimeMillis = 100;
+    boolean exponentialThinkTime = true;
+    int containers = 2;
+    int seedObjects = 50;
+    int maxObjects = 1000;
+    long reportIntervalSeconds = 10;
+    long seed = 42;
+
+    private final double[] mix = {10, 60, 20, 5, 5};
+    private final List<long[]> sizes = new ArrayList<>();
+    private final List<Double> sizeWeights = new ArrayList<>();
+
+    WorkloadProfile(){
+        sizes.add(new long[]{1024, 64 * 1024});
+        sizeWeights.add(80.0);
+        sizes.add(new long[]{1024 * 1024, 8 * 1024 * 1024});
+        sizeWeights.add(20.0);
+    }
+
+    static WorkloadProfile fromJSON(JSONObject json) throws JSONException {
+        WorkloadProfile profile = new WorkloadProfile();
+
+        profile.name = json.optString("name", profile.name);
+        profile.durationSeconds = json.optLong("durationSeconds", profile.durationSeconds);
+        profile.warmupSeconds = json.optLong("warmupSeconds", profile.warmupSeconds);
+        profile.concurrency = json.optInt("concurrency", profile.concurrency);
+        profile.thinkTimeMillis = json.optLong("thinkTimeMillis", profile.thinkTimeMillis);
+        profile.exponentialThinkTime = !"fixed".equals(json.optString("thinkTime", "exponential"));
+        profile.containers = json.optInt("containers", profile.containers);
+        profile.seedObjects = json.optInt("seedObjects", profile.seedObjects);
+        profile.maxObjects = json.optInt("maxObjects", profile.maxObjects);
+        profile.reportIntervalSeconds = json.optLong("reportIntervalSeconds", profile.reportIntervalSeconds);
+        profile.seed = json.optLong("seed", profile.seed);
+
+        JSONObject mix = json.optJSONObject("mix");
+        if(mix != null){
+            for(int i = 0; i < TYPES.length; i++){
+                profile.mix[i] = 0;
+            }
+            Iterator<String> keys = mix.keys();
+            while(keys.hasNext()){
+                String key = keys.next();
+                profile.mix[WorkloadOperation.Type.fromName(key).ordinal()] = mix.getDouble(key);
+            }
+        }
+
+        JSONArray sizes = json.optJSONArray("sizes");
+        if(sizes != null){
+            profile.sizes.clear();
+            profile.sizeWeights.clear();
+            for(int i = 0; i < sizes.length(); i++){
+                JSONObject range = sizes.getJSONObject(i);
+                long min = range.getLong("min");
+                long max = range.optLong("max", min);
+                if(min <= 0 || max < min || max > Integer.MAX_VALUE){
+                    throw new JSONException("Invalid size range: " + range);
+                }
+                profile.sizes.add(new long[]{min, max});
+                profile.sizeWeights.add(range.optDouble("weight", 1));
+            }
+        }
+
+        profile.validate();
+        return profile;
+    }
+
+    private void validate() throws JSONException {
+        if(concurrency <= 0 || containers <= 0 || maxObjects <= 0 || reportIntervalSeconds <= 0 || durationSeconds <= 0){
+            throw new JSONException("The concurrency, containers, maxObjects, reportIntervalSeconds and durationSeconds must be positive.");
+        }
+        if(sum(mix) <= 0){
+            throw new JSONException("The operation mix is empty.");
+        }
+        if(sizes.isEmpty()){
+            throw new JSONException("The profile needs at least one size range.");
+        }
+    }
+
+    /**
+     * Pick the type of the next operation according to the mix.
+     */
+    WorkloadOperation.Type nextType(Random random){
+        double pick = random.nextDouble() * sum(mix);
+        for(int i = 0; i < TYPES.length; i++){
+            pick -= mix[i];
+            if(pick < 0){
+                return TYPES[i];
+            }
+        }
+        return TYPES[TYPES.length - 1];
+    }
+
+    /**
+     * Pick the size of a stored object according to the size ranges.
+     */
+    long nextSize(Random random){
+        double total = 0;
+        for(double weight : sizeWeights){
+            total += weight;
+        }
+
+        double pick = random.nextDouble() * total;
+        int index = 0;
+        while(index < sizes.size() - 1 && (pick -= sizeWeights.get(index)) >= 0){
+            index++;
+        }
+
+        long[] range = sizes.get(index);
+        double logMin = Math.log(range[0]);
+        double logMax = Math.log(range[1]);
+        return Math.min(range[1], Math.round(Math.exp(logMin + random.nextDouble() * (logMax - logMin))));
+    }
+
+    long nextThinkTime(Random random){
+        if(!exponentialThinkTime || thinkTimeMillis == 0){
+            return thinkTimeMillis;
+        }
+        return Math.round(-Math.log(1 - random.nextDouble()) * thinkTimeMillis);
+    }
+
+    /**
+     * Get the largest object size the profile can pick.
+     */
+    long getMaxSize(){
+        long max = 0;
+        for(long[] range : sizes){
+            max = Math.max(max, range[1]);
+        }
+        return max;
+    }
+
+    String getContainerName(int index){
+        return "soak-" + index;
+    }
+
+    private static double sum(double[] values){
+        double total = 0;
+        for(double value : values){
+            total += value;
+        }
+        return total;
+    }
+
+    JSONObject toJSON(){
+        JSONObject json = new JSONObject();
+
+        try {
+            json.put("name", name);
+            json.put("durationSeconds", durationSeconds);
+            json.put("warmupSeconds", warmupSeconds);
+            json.put("concurrency", concurrency);
+            json.put("thinkTimeMillis", thinkTimeMillis);
+            json.put("thinkTime", exponentialThinkTime ? "exponential" : "fixed");
+            json.put("containers", containers);
+            json.put("seedObjects", seedObjects);
+            json.put("maxObjects", maxObjects);
+            json.put("reportIntervalSeconds", reportIntervalSeconds);
+            json.put("seed", seed);
+
+            JSONObject mixJSON = new JSONObject();
+            for(int i = 0; i < TYPES.length; i++){
+                mixJSON.put(TYPES[i].getName(), mix[i]);
+            }
+            json.put("mix", mixJSON);
+
+            JSONArray sizesJSON = new JSONArray();
+            for(int i = 0; i < sizes.size(); i++){
+                JSONObject range = new JSONObject();
+                range.put("min", sizes.get(i)[0]);
+                range.put("max", sizes.get(i)[1]);
+                range.put("weight", sizeWeights.get(i));
+                sizesJSON.put(range);
+            }
+            json.put("sizes", sizesJSON);
+        } catch (JSONException e) {
+            //Just creating JSONObject; no exceptions will occur.
+        }
+
+        return json;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.soak;
+
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Collects the results of a run: latency and errors per operation, throughput, the heap high-water mark and the time
+ * spent in garbage collection, both for the whole run and for each reporting interval. Reports are written as JSON,
+ * and the report of one run can be compared with the report of another to find regressions.
+ */
+final class WorkloadReport {
+    private static final WorkloadOperation.Type[] TYPES = WorkloadOperation.Type.values();
+    private static final int ALL = TYPES.length;
+
+    //Differences below these are noise on a loaded machine, whatever the relative change.
+    private static final double MIN_LATENCY_DIFFERENCE_MILLIS = 1;
+    private static final long MIN_HEAP_DIFFERENCE_BYTES = 8 * 1024 * 1024;
+    private static final double MIN_GC_DIFFERENCE_MILLIS = 1;
+    private static final double MAX_ERROR_RATE_INCREASE = 0.01;
+
+    //A percentile is only compared when both runs have this many samples above it, otherwise it is mostly noise.
+    private static final int MIN_TAIL_SAMPLES = 10;
+
+    private final LatencyRecorder[] totals = new LatencyRecorder[TYPES.length + 1];
+    private final LatencyRecorder[] intervalTotals = new LatencyRecorder[TYPES.length + 1];
+    private final List<JSONObject> intervals = new ArrayList<>();
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private long startNanos;
+    private long endNanos;
+    private long intervalStartNanos;
+    private long gcMillisAtStart;
+    private long gcCountAtStart;
+    private long gcMillisAtInterval;
+    private long gcCountAtInterval;
+    private long heapHighWater;
+    private long intervalHeapHighWater;
+
+    WorkloadReport(){
+        for(int i = 0; i <= ALL; i++){
+            totals[i] = new LatencyRecorder();
+            intervalTotals[i] = new LatencyRecorder();
+        }
+        start();
+    }
+
+    /**
+     * Start measuring, discarding everything recorded so far, for example during the warmup.
+     */
+    synchronized void start(){
+        for(int i = 0; i <= ALL; i++){
+            totals[i].reset();
+            intervalTotals[i].reset();
+        }
+        intervals.clear();
+
+        startNanos = System.nanoTime();
+        intervalStartNanos = startNanos;
+        endNanos = 0;
+        gcMillisAtStart = getGCMillis();
+        gcCountAtStart = getGCCount();
+        gcMillisAtInterval = gcMillisAtStart;
+        gcCountAtInterval = gcCountAtStart;
+        heapHighWater = 0;
+        intervalHeapHighWater = 0;
+        sampleHeap();
+    }
+
+    synchronized void record(WorkloadOperation.Type type, long nanos, boolean success){
+        totals[type.ordinal()].record(nanos, success);
+        totals[ALL].record(nanos, success);
+        intervalTotals[type.ordinal()].record(nanos, success);
+        intervalTotals[ALL].record(nanos, success);
+    }
+
+    /**
+     * Sample the used heap. Called often, since the high-water mark is only as good as the sampling.
+     */
+    synchronized void sampleHeap(){
+        long used = memory.getHeapMemoryUsage().getUsed();
+        heapHighWater = Math.max(heapHighWater, used);
+        intervalHeapHighWater = Math.max(intervalHeapHighWater, used);
+    }
+
+    /**
+     * End the current reporting interval.
+     * @return the results of the interval
+     */
+    synchronized JSONObject closeInterval(){
+        sampleHeap();
+
+        long now = System.nanoTime();
+        long gcMillis = getGCMillis();
+        long gcCount = getGCCount();
+        double seconds = Math.max(1e-9, (now - intervalStartNanos) / 1e9);
+        LatencyRecorder all = intervalTotals[ALL];
+        double[] percentiles = all.getPercentilesMillis(50, 99);
+
+        JSONObject interval = new JSONObject();
+        try {
+            interval.put("elapsedSeconds", Math.round((now - startNanos) / 1e9));
+            interval.put("operationCount", all.getCount());
+            interval.put("errorCount", all.getErrors());
+            interval.put("opsPerSecond", all.getCount() / seconds);
+            interval.put("meanMillis", all.getMeanMillis());
+            interval.put("p50Millis", percentiles[0]);
+            interval.put("p99Millis", percentiles[1]);
+            interval.put("heapUsedBytes", memory.getHeapMemoryUsage().getUsed());
+            interval.put("heapHighWaterBytes", intervalHeapHighWater);
+            interval.put("gcMillis", gcMillis - gcMillisAtInterval);
+            interval.put("gcCount", gcCount - gcCountAtInterval);
+        } catch (JSONException e) {
+            //Just creating JSONObject; no exceptions will occur.
+        }
+        intervals.add(interval);
+
+        for(LatencyRecorder recorder : intervalTotals){
+            recorder.reset();
+        }
+        intervalStartNanos = now;
+        gcMillisAtInterval = gcMillis;
+        gcCountAtInterval = gcCount;
+        intervalHeapHighWater = 0;
+
+        return interval;
+    }
+
+    /**
+     * Stop measuring. The last, partial interval is kept if anything ran in it.
+     */
+    synchronized void finish(){
+        if(intervalTotals[ALL].getCount() > 0){
+            closeInterval();
+        }
+        endNanos = System.nanoTime();
+    }
+
+    private long getGCMillis(){
+        long total = 0;
+        for(GarbageCollectorMXBean collector : collectors){
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+
+    private long getGCCount(){
+        long total = 0;
+        for(GarbageCollectorMXBean collector : collectors){
+            total += Math.max(0, collector.getCollectionCount());
+        }
+        return total;
+    }
+
+    /**
+     * Get the report as JSON.
+     * @param label identifies the run, for example the SDK version
+     * @param workload the profile, or a description of the trace that ran
+     * @param sdkMetrics the SDK's own metrics, or null if they were not enabled
+     */
+    synchronized JSONObject toJSON(String label, JSONObject workload, JSONObject sdkMetrics){
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        double seconds = Math.max(1e-9, (end - startNanos) / 1e9);
+        LatencyRecorder all = totals[ALL];
+        long gcMillis = getGCMillis() - gcMillisAtStart;
+
+        JSONObject json = new JSONObject();
+        try {
+            json.put("label", label);
+            json.put("javaVersion", System.getProperty("java.version"));
+            json.put("workload", workload);
+            json.put("durationSeconds", seconds);
+            json.put("operationCount", all.getCount());
+            json.put("errorCount", all.getErrors());
+            json.put("opsPerSecond", all.getCount() / seconds);
+            json.put("heapHighWaterBytes", heapHighWater);
+            json.put("gcMillis", gcMillis);
+            json.put("gcCount", getGCCount() - gcCountAtStart);
+            json.put("gcMillisPerThousandOps", all.getCount() == 0 ? 0 : gcMillis * 1000.0 / all.getCount());
+
+            JSONObject latency = new JSONObject();
+            for(WorkloadOperation.Type type : TYPES){
+                if(totals[type.ordinal()].getCount() > 0){
+                    latency.put(type.getName(), totals[type.ordinal()].toJSON());
+                }
+            }
+            latency.put("all", all.toJSON());
+            json.put("latency", latency);
+
+            json.put("intervals", new JSONArray(intervals));
+            if(sdkMetrics != null){
+                json.put("sdkMetrics", sdkMetrics);
+            }
+        } catch (JSONException e) {
+            //Just creating JSONObject; no exceptions will occur.
+        }
+
+        return json;
+    }
+
+    /**
+     * Format an interval as one line of progress output.
+     */
+    static String format(JSONObject interval){
+        return String.format(Locale.US, "%6ds %9.1f ops/s  errors %-5d p50 %8.2fms  p99 %8.2fms  heap %7.1fMB  gc %5dms",
+                interval.optLong("elapsedSeconds"), interval.optDouble("opsPerSecond"), interval.optLong("errorCount"),
+                interval.optDouble("p50Millis"), interval.optDouble("p99Millis"),
+                interval.optLong("heapHighWaterBytes") / 1048576.0, interval.optLong("gcMillis"));
+    }
+
+    /**
+     * Compare a report with the report of an earlier run, usually of an earlier SDK version with the same workload.
+     * Throughput, latencies, error rates, the heap high-water mark and the GC time per operation are compared. Short
+     * runs are noisy, so percentiles are only compared for operations that ran often enough.
+     * @param tolerance the relative change that is accepted, such as 0.15 for 15%
+     * @return a description of every regression, empty if there are none
+     */
+    static List<String> compare(JSONObject baseline, JSONObject current, double tolerance){
+        List<String> regressions = new ArrayList<>();
+
+        double baseThroughput = baseline.optDouble("opsPerSecond", 0);
+        double throughput = current.optDouble("opsPerSecond", 0);
+        if(throughput < baseThroughput * (1 - tolerance)){
+            regressions.add(String.format(Locale.US, "Throughput fell from %.1f to %.1f ops/s", baseThroughput, throughput));
+        }
+
+        JSONObject baseLatency = baseline.optJSONObject("latency");
+        JSONObject latency = current.optJSONObject("latency");
+        if(baseLatency != null && latency != null){
+            Iterator<String> operations = baseLatency.keys();
+            while(operations.hasNext()){
+                String operation = operations.next();
+                JSONObject before = baseLatency.optJSONObject(operation);
+                JSONObject after = latency.optJSONObject(operation);
+                if(before == null || after == null){
+                    continue;
+                }
+
+                long samples = Math.min(before.optLong("count", 0), after.optLong("count", 0));
+                compareLatency(regressions, operation, "meanMillis", before, after, tolerance);
+                if(samples * 0.5 >= MIN_TAIL_SAMPLES){
+                    compareLatency(regressions, operation, "p50Millis", before, after, tolerance);
+                }
+                //The tail varies more from run to run than the median, so it gets twice the tolerance.
+                if(samples * 0.01 >= MIN_TAIL_SAMPLES){
+                    compareLatency(regressions, operation, "p99Millis", before, after, tolerance * 2);
+                }
+
+                double wasErrorRate = errorRate(before);
+                double isErrorRate = errorRate(after);
+                if(isErrorRate > wasErrorRate + MAX_ERROR_RATE_INCREASE){
+                    regressions.add(String.format(Locale.US, "%s error rate rose from %.2f%% to %.2f%%", operation, wasErrorRate * 100, isErrorRate * 100));
+                }
+            }
+        }
+
+        long baseHeap = baseline.optLong("heapHighWaterBytes", 0);
+        long heap = current.optLong("heapHighWaterBytes", 0);
+        if(heap > baseHeap * (1 + tolerance) && heap - baseHeap > MIN_HEAP_DIFFERENCE_BYTES){
+            regressions.add(String.format(Locale.US, "Heap high-water mark rose from %.1f to %.1f MB", baseHeap / 1048576.0, heap / 1048576.0));
+        }
+
+        double baseGC = baseline.optDouble("gcMillisPerThousandOps", 0);
+        double gc = current.optDouble("gcMillisPerThousandOps", 0);
+        //GC time depends on when collections happen to run, so like the tail latency it gets twice the tolerance.
+        if(gc > baseGC * (1 + tolerance * 2) && gc - baseGC > MIN_GC_DIFFERENCE_MILLIS){
+            regressions.add(String.format(Locale.US, "GC time rose from %.1f to %.1f ms per 1000 operations", baseGC, gc));
+        }
+
+        return regressions;
+    }
+
+    private static void compareLatency(List<String> regressions, String operation, String metric, JSONObject before, JSONObject after, double tolerance){
+        double was = before.optDouble(metric, 0);
+        double is = after.optDouble(metric, 0);
+        if(is > was * (1 + tolerance) && is - was > MIN_LATENCY_DIFFERENCE_MILLIS){
+            regressions.add(String.format(Locale.US, "%s %s rose from %.2f to %.2f ms", operation, metric, was, is));
+        }
+    }
+
+    private static double errorRate(JSONObject latency){
+        long count = latency.optLong("count", 0);
+        return count == 0 ? 0 : latency.optLong("errors", 0) / (double) count;
+    }
+}
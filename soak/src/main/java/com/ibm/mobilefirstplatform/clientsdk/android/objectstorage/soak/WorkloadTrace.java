@@ -0,0 +1,102 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.soak;
+
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads and writes recorded workloads. A trace is a file with one JSON operation per line, with the time it started
+ * relative to the start of the run:
+ * <pre>
+ * {"offsetMillis": 0, "op": "store", "container": "photos", "object": "cat.jpg", "size": 48213}
+ * {"offsetMillis": 12, "op": "get", "container": "photos", "object": "cat.jpg"}
+ * {"offsetMillis": 40, "op": "list", "container": "photos"}
+ * </pre>
+ * Every run can record the operations it made, so a profile run can be replayed exactly against another SDK version.
+ */
+final class WorkloadTrace {
+
+    private WorkloadTrace(){
+    }
+
+    /**
+     * Read a trace, ordered by the start time of the operations. Empty lines and lines starting with # are skipped.
+     */
+    static List<WorkloadOperation> read(File file) throws IOException {
+        List<WorkloadOperation> operations = new ArrayList<>();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        try {
+            String line;
+            int lineNumber = 0;
+            while((line = reader.readLine()) != null){
+                lineNumber++;
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")){
+                    continue;
+                }
+                try {
+                    operations.add(WorkloadOperation.fromJSON(new JSONObject(line)));
+                } catch (JSONException | IllegalArgumentException e) {
+                    throw new IOException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        Collections.sort(operations, new Comparator<WorkloadOperation>() {
+            @Override
+            public int compare(WorkloadOperation first, WorkloadOperation second) {
+                return first.offsetMillis < second.offsetMillis ? -1 : (first.offsetMillis == second.offsetMillis ? 0 : 1);
+            }
+        });
+        return operations;
+    }
+
+    /**
+     * Records operations as they run. Operations run concurrently, so the lines are only roughly ordered; {@link #read(File)} sorts them.
+     */
+    static class Writer implements Closeable {
+        private final BufferedWriter writer;
+
+        Writer(File file) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        }
+
+        synchronized void write(WorkloadOperation operation) throws IOException {
+            writer.write(operation.toJSON().toString());
+            writer.newLine();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin;
+
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Answers the Keystone v3 password authentication request with a token, its expiration date,
+ * and a service catalog pointing at the stand-in's object storage endpoint.
+ */
+class KeystoneHandler implements HttpHandler {
+    private static final Pattern PROJECT_ID = Pattern.compile("\"project\"\\s*:\\s*\\{\\s*\"id\"\\s*:\\s*\"([^\"]*)\"");
+
+    private final ObjectStorageStandIn standIn;
+
+    KeystoneHandler(ObjectStorageStandIn standIn){
+        this.standIn = standIn;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            String body = new String(SwiftHandler.readBody(exchange, standIn), "UTF-8");
+
+            if(standIn.injectFaults(exchange)){
+                return;
+            }
+
+            if(!"POST".equals(exchange.getRequestMethod())){
+                SwiftHandler.send(exchange, standIn, new SwiftHandler.SwiftResponse(405));
+                return;
+            }
+
+            Matcher matcher = PROJECT_ID.matcher(body);
+            if(!matcher.find()){
+                SwiftHandler.send(exchange, standIn, new SwiftHandler.SwiftResponse(400, "Missing project scope."));
+                return;
+            }
+            String projectID = matcher.group(1);
+
+            String token = "gAAAA" + UUID.randomUUID().toString().replace("-", "");
+            long expiresAt = standIn.issueToken(token);
+
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'000Z'", Locale.US);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+            String endpoint = standIn.getAPIURL() + projectID;
+            String responseBody = "{\"token\":{"
+                    + "\"methods\":[\"password\"],"
+                    + "\"expires_at\":\"" + dateFormat.format(new Date(expiresAt)) + "\","
+                    + "\"issued_at\":\"" + dateFormat.format(new Date()) + "\","
+                    + "\"project\":{\"id\":\"" + projectID + "\",\"name\":\"" + projectID + "\"},"
+                    + "\"catalog\":[{\"type\":\"object-store\",\"name\":\"swift\",\"endpoints\":["
+                    + "{\"interface\":\"public\",\"region\":\"standin\",\"url\":\"" + endpoint + "\"}]}]"
+                    + "}}";
+
+            SwiftHandler.SwiftResponse response = new SwiftHandler.SwiftResponse(201, responseBody);
+            response.headers.put("X-Subject-Token", token);
+            response.headers.put("Content-Type", "application/json");
+            SwiftHandler.send(exchange, standIn, response);
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin;
+
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A local stand-in for the Object Storage service. It implements the Keystone v3 token request and the Swift
+ * account, container and object API in memory, so the SDK can be tested offline.
+ *
+ * Latency, bandwidth limits and error rates can be injected, and changed while the stand-in is running:
+ * <pre>
+ *     ObjectStorageStandIn standIn = new ObjectStorageStandIn(0);
+ *     standIn.setLatency(50, 20);
+ *     standIn.setBandwidthLimit(256 * 1024);
+ *
+ *     ObjectStorage.initialize(standIn.getAuthURL(), standIn.getAPIURL());
+ * </pre>
+ *
+ * It can also be started from the command line, see {@link #main(String[])}.
+ */
+public class ObjectStorageStandIn {
+    private static final long DEFAULT_TOKEN_LIFETIME = 24 * 60 * 60 * 1000L;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final SwiftStore store = new SwiftStore();
+    private final Map<String, Long> tokens = new ConcurrentHashMap<>();
+    private final Random random = new Random();
+
+    private volatile long latencyMillis = 0;
+    private volatile long latencyJitterMillis = 0;
+    private volatile long bandwidthLimit = 0;
+    private volatile double errorRate = 0;
+    private volatile double stallRate = 0;
+    private volatile long stallMillis = 0;
+    private volatile long tokenLifetime = DEFAULT_TOKEN_LIFETIME;
+
+    /**
+     * Start a stand-in listening on the loopback interface.
+     * @param port the port to listen on, or 0 to pick a free port
+     * @throws IOException if the server could not be started
+     */
+    public ObjectStorageStandIn(int port) throws IOException {
+        this(new InetSocketAddress("127.0.0.1", port));
+    }
+
+    /**
+     * Start a stand-in listening on the given address.
+     * @param address the address to listen on
+     * @throws IOException if the server could not be started
+     */
+    public ObjectStorageStandIn(InetSocketAddress address) throws IOException {
+        //Without this, small responses wait for delayed ACKs and every request takes about 40ms.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        server = HttpServer.create(address, 128);
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "objectstorage-standin");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server.setExecutor(executor);
+        server.createContext("/v3/auth/tokens", new KeystoneHandler(this));
+        server.createContext("/v1/", new SwiftHandler(this, store));
+        server.start();
+    }
+
+    /**
+     * Stop the stand-in. All stored data is lost.
+     */
+    public void stop(){
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Get the port the stand-in is listening on.
+     * @return the port
+     */
+    public int getPort(){
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Get the Keystone token URL to pass to {@code ObjectStorage.initialize(String, String)}.
+     * @return the authentication URL
+     */
+    public String getAuthURL(){
+        return getBaseURL() + "/v3/auth/tokens";
+    }
+
+    /**
+     * Get the Swift API URL to pass to {@code ObjectStorage.initialize(String, String)}. The project ID is appended to it.
+     * @return the API URL, ending with AUTH_
+     */
+    public String getAPIURL(){
+        return getBaseURL() + "/v1/AUTH_";
+    }
+
+    private String getBaseURL(){
+        return "http://" + server.getAddress().getHostString() + ":" + getPort();
+    }
+
+    /**
+     * Delay every response.
+     * @param millis the fixed delay in milliseconds
+     * @param jitterMillis the maximum random delay added to the fixed delay, in milliseconds
+     */
+    public void setLatency(long millis, long jitterMillis){
+        latencyMillis = Math.max(0, millis);
+        latencyJitterMillis = Math.max(0, jitterMillis);
+    }
+
+    /**
+     * Limit the rate of every request and response body transfer. Each transfer is limited separately.
+     * @param bytesPerSecond the limit in bytes per second, or 0 for no limit
+     */
+    public void setBandwidthLimit(long bytesPerSecond){
+        bandwidthLimit = Math.max(0, bytesPerSecond);
+    }
+
+    long getBandwidthLimit(){
+        return bandwidthLimit;
+    }
+
+    /**
+     * Fail a fraction of all requests with 503 Service Unavailable.
+     * @param rate the fraction of requests that fail, between 0 and 1
+     */
+    public void setErrorRate(double rate){
+        errorRate = Math.min(1, Math.max(0, rate));
+    }
+
+    /**
+     * Pause a fraction of all response bodies halfway through, as a connection that stops moving data would.
+     * @param rate the fraction of responses that stall, between 0 and 1
+     * @param millis how long a stalled response pauses, in milliseconds
+     */
+    public void setStallRate(double rate, long millis){
+        stallRate = Math.min(1, Math.max(0, rate));
+        stallMillis = Math.max(0, millis);
+    }
+
+    /**
+     * Decide whether the next response body stalls.
+     * @return the time to pause halfway through the body in milliseconds, or 0 if it does not stall
+     */
+    long nextStall(){
+        synchronized (random){
+            return stallRate > 0 && random.nextDouble() < stallRate ? stallMillis : 0;
+        }
+    }
+
+    /**
+     * Set how long issued tokens are valid.
+     * @param millis the token lifetime in milliseconds
+     */
+    public void setTokenLifetime(long millis){
+        tokenLifetime = millis;
+    }
+
+    /**
+     * Invalidate all issued tokens, as if they had expired on the server.
+     */
+    public void revokeTokens(){
+        tokens.clear();
+    }
+
+    long issueToken(String token){
+        long expiresAt = System.currentTimeMillis() + tokenLifetime;
+        tokens.put(token, expiresAt);
+        return expiresAt;
+    }
+
+    boolean isAuthorized(String token, String method, String path, Map<String, String> query){
+        if(query.containsKey("temp_url_sig")){
+            return isValidTempURL(method, path, query);
+        }
+        if(token == null){
+            return false;
+        }
+        Long expiresAt = tokens.get(token);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    /**
+     * Check a TempURL signature the way Swift does: an HMAC-SHA1 of the method, the expiry time and the object path,
+     * keyed with one of the account or container Temp-URL-Key metadata values. A signature for GET or PUT also allows HEAD.
+     */
+    private boolean isValidTempURL(String method, String path, Map<String, String> query){
+        String signature = query.get("temp_url_sig");
+        long expires;
+        try {
+            expires = Long.parseLong(query.get("temp_url_expires"));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        //Only objects may be accessed with a TempURL: /v1/AUTH_<project>/container/object
+        String[] parts = path.split("/", 5);
+        if(expires < System.currentTimeMillis() / 1000 || parts.length < 5 || parts[4].isEmpty()){
+            return false;
+        }
+
+        List<String> keys = new ArrayList<>();
+        synchronized (store){
+            addKeys(keys, store.accountMetadata);
+            SwiftStore.StoredContainer container = store.containers.get(parts[3]);
+            if(container != null){
+                addKeys(keys, container.metadata);
+            }
+        }
+
+        List<String> methods = "HEAD".equals(method) ? Arrays.asList("HEAD", "GET", "PUT") : Collections.singletonList(method);
+
+        for(String key : keys){
+            for(String signedMethod : methods){
+                String expected = hmacSHA1(key, signedMethod + "\n" + expires + "\n" + path);
+                if(MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII), signature.getBytes(StandardCharsets.US_ASCII))){
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static void addKeys(List<String> keys, Map<String, String> metadata){
+        for(String name : new String[]{"Temp-URL-Key", "Temp-URL-Key-2"}){
+            String key = metadata.get(name);
+            if(key != null){
+                keys.add(key);
+            }
+        }
+    }
+
+    private static String hmacSHA1(String key, String message){
+        try {
+            Mac mac = Mac.getInstance("HmacSHA1");
+            mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA1"));
+            byte[] digest = mac.doFinal(message.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for(byte b : digest){
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Apply the configured latency and error rate to a request.
+     * @return true if the request was answered with an injected error
+     */
+    boolean injectFaults(HttpExchange exchange) throws IOException {
+        long delay = latencyMillis;
+        if(latencyJitterMillis > 0){
+            synchronized (random){
+                delay += (long) (random.nextDouble() * latencyJitterMillis);
+            }
+        }
+        if(delay > 0){
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while injecting latency.");
+            }
+        }
+
+        boolean fail;
+        synchronized (random){
+            fail = errorRate > 0 && random.nextDouble() < errorRate;
+        }
+        if(fail){
+            SwiftHandler.send(exchange, this, new SwiftHandler.SwiftResponse(503, "Service Unavailable"));
+        }
+        return fail;
+    }
+
+    /**
+     * Run the stand-in from the command line until the process is stopped.
+     * <pre>
+     *     java -jar standin.jar [--port 8080] [--latency millis] [--jitter millis] [--bandwidth bytesPerSecond] [--error-rate 0.01] [--stall-rate 0.01] [--stall millis] [--bind 0.0.0.0]
+     * </pre>
+     * @param args the command line arguments
+     * @throws IOException if the server could not be started
+     */
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        String bindAddress = "127.0.0.1";
+        long latency = 0;
+        long jitter = 0;
+        long bandwidth = 0;
+        double errors = 0;
+        double stalls = 0;
+        long stall = 30000;
+
+        for(int i = 0; i + 1 < args.length; i += 2){
+            switch(args[i]){
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--bind":
+                    bindAddress = args[i + 1];
+                    break;
+                case "--latency":
+                    latency = Long.parseLong(args[i + 1]);
+                    break;
+                case "--jitter":
+                    jitter = Long.parseLong(args[i + 1]);
+                    break;
+                case "--bandwidth":
+                    bandwidth = Long.parseLong(args[i + 1]);
+                    break;
+                case "--error-rate":
+                    errors = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--stall-rate":
+                    stalls = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--stall":
+                    stall = Long.parseLong(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        ObjectStorageStandIn standIn = new ObjectStorageStandIn(new InetSocketAddress(bindAddress, port));
+        standIn.setLatency(latency, jitter);
+        standIn.setBandwidthLimit(bandwidth);
+        standIn.setErrorRate(errors);
+        standIn.setStallRate(stalls, stall);
+
+        System.out.println("Object Storage stand-in listening.");
+        System.out.println("  Auth URL: " + standIn.getAuthURL());
+        System.out.println("  API URL:  " + standIn.getAPIURL());
+
+        //The server threads are daemons, so keep the process alive.
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            standIn.stop();
+        }
+    }
+}
@@ -0,0 +1,820 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin;
+
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Implements the subset of the Swift API used by the SDK: account, container and object operations, listings with
+ * markers, prefixes and delimiters, range requests, server-side copy, bulk delete, and dynamic and static large objects.
+ */
+class SwiftHandler implements HttpHandler {
+    private static final int DEFAULT_LISTING_LIMIT = 10000;
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final Pattern SLO_SEGMENT = Pattern.compile("\\{[^}]*\"path\"\\s*:\\s*\"([^\"]+)\"[^}]*\\}");
+    private static final Pattern SLO_ETAG = Pattern.compile("\"etag\"\\s*:\\s*\"([^\"]*)\"");
+    private static final Pattern SLO_SIZE = Pattern.compile("\"size_bytes\"\\s*:\\s*(\\d+)");
+
+    private static final AtomicLong transactionCounter = new AtomicLong();
+
+    private final ObjectStorageStandIn standIn;
+    private final SwiftStore store;
+
+    SwiftHandler(ObjectStorageStandIn standIn, SwiftStore store){
+        this.standIn = standIn;
+        this.store = store;
+    }
+
+    /**
+     * A complete response. Responses are built while the store is locked and sent after it is released,
+     * so slow, throttled transfers do not hold up other requests.
+     */
+    static class SwiftResponse {
+        final int status;
+        final Map<String, String> headers = new LinkedHashMap<>();
+        byte[] body;
+        //The length reported for HEAD requests, which have no body.
+        long contentLength = -1;
+
+        SwiftResponse(int status){
+            this.status = status;
+        }
+
+        SwiftResponse(int status, String text){
+            this(status, text.getBytes());
+        }
+
+        SwiftResponse(int status, byte[] body){
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static class SwiftRequest {
+        String method;
+        String container;
+        String object;
+        Map<String, String> query;
+        Headers headers;
+        byte[] body;
+
+        String header(String name){
+            return headers.getFirst(name);
+        }
+
+        boolean hasQuery(String name){
+            return query.containsKey(name);
+        }
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            SwiftRequest request = new SwiftRequest();
+            request.method = exchange.getRequestMethod();
+            request.headers = exchange.getRequestHeaders();
+            request.query = parseQuery(exchange.getRequestURI().getRawQuery());
+            request.body = readBody(exchange, standIn);
+
+            if(standIn.injectFaults(exchange)){
+                return;
+            }
+
+            //Paths are /v1/AUTH_<project>[/container[/object]]
+            String path = exchange.getRequestURI().getPath();
+            String[] parts = path.split("/", 5);
+            if(parts.length < 3 || !"v1".equals(parts[1])){
+                send(exchange, standIn, new SwiftResponse(404, "Not Found"));
+                return;
+            }
+            request.container = parts.length > 3 && parts[3].length() > 0 ? parts[3] : null;
+            request.object = parts.length > 4 && parts[4].length() > 0 ? parts[4] : null;
+
+            if(!standIn.isAuthorized(request.header("X-Auth-Token"), request.method, path, request.query)){
+                send(exchange, standIn, new SwiftResponse(401, "Unauthorized"));
+                return;
+            }
+
+            SwiftResponse response;
+            synchronized (store){
+                response = dispatch(request);
+            }
+
+            if("HEAD".equals(request.method)){
+                response.contentLength = response.body == null ? 0 : response.body.length;
+                response.body = null;
+            }
+
+            send(exchange, standIn, response);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private SwiftResponse dispatch(SwiftRequest request){
+        if(request.container == null){
+            return handleAccount(request);
+        }
+        if(request.object == null){
+            return handleContainer(request);
+        }
+        return handleObject(request);
+    }
+
+    private SwiftResponse handleAccount(SwiftRequest request){
+        if(request.hasQuery("bulk-delete") && ("POST".equals(request.method) || "DELETE".equals(request.method))){
+            return bulkDelete(request);
+        }
+
+        SwiftResponse response;
+        switch(request.method){
+            case "GET":
+            case "HEAD":
+                response = listContainers(request);
+                break;
+            case "POST":
+                updateMetadata(store.accountMetadata, request.headers, "X-Account-Meta-", "X-Remove-Account-Meta-");
+                response = new SwiftResponse(204);
+                break;
+            default:
+                return new SwiftResponse(405);
+        }
+
+        response.headers.put("X-Account-Container-Count", "" + store.containers.size());
+        response.headers.put("X-Account-Object-Count", "" + store.getObjectCount());
+        response.headers.put("X-Account-Bytes-Used", "" + store.getBytesUsed());
+        putMetadata(response, store.accountMetadata);
+        return response;
+    }
+
+    private SwiftResponse listContainers(SwiftRequest request){
+        List<String> names = SwiftStore.list(store.containers, request.query.get("prefix"), null,
+                request.query.get("marker"), request.query.get("end_marker"), getLimit(request));
+
+        if(isJSON(request)){
+            StringBuilder json = new StringBuilder("[");
+            for(String name : names){
+                SwiftStore.StoredContainer container = store.containers.get(name);
+                appendSeparator(json);
+                json.append("{\"name\":").append(quote(name))
+                        .append(",\"count\":").append(container.objects.size())
+                        .append(",\"bytes\":").append(container.getBytesUsed()).append('}');
+            }
+            return jsonResponse(json.append(']'));
+        }
+
+        return textListing(names);
+    }
+
+    private SwiftResponse handleContainer(SwiftRequest request){
+        SwiftStore.StoredContainer container = store.containers.get(request.container);
+
+        if("PUT".equals(request.method)){
+            boolean created = container == null;
+            if(created){
+                container = new SwiftStore.StoredContainer(request.container, now());
+                store.containers.put(request.container, container);
+            }
+            container.putTimestamp = now();
+            updateMetadata(container.metadata, request.headers, "X-Container-Meta-", "X-Remove-Container-Meta-");
+            return new SwiftResponse(created ? 201 : 202);
+        }
+
+        if(container == null){
+            return new SwiftResponse(404, "Not Found");
+        }
+
+        SwiftResponse response;
+        switch(request.method){
+            case "GET":
+            case "HEAD":
+                response = listObjects(request, container);
+                break;
+            case "POST":
+                updateMetadata(container.metadata, request.headers, "X-Container-Meta-", "X-Remove-Container-Meta-");
+                container.putTimestamp = now();
+                return new SwiftResponse(204);
+            case "DELETE":
+                if(!container.objects.isEmpty()){
+                    return new SwiftResponse(409, "There was a conflict when trying to complete your request.");
+                }
+                store.containers.remove(request.container);
+                return new SwiftResponse(204);
+            default:
+                return new SwiftResponse(405);
+        }
+
+        response.headers.put("X-Container-Object-Count", "" + container.objects.size());
+        response.headers.put("X-Container-Bytes-Used", "" + container.getBytesUsed());
+        response.headers.put("X-Timestamp", formatTimestamp(container.createdAt));
+        response.headers.put("X-Put-Timestamp", formatTimestamp(container.putTimestamp));
+        response.headers.put("Last-Modified", httpDate(lastModified(container)));
+        putMetadata(response, container.metadata);
+        return response;
+    }
+
+    private static double lastModified(SwiftStore.StoredContainer container){
+        double lastModified = container.putTimestamp;
+        for(SwiftStore.StoredObject object : container.objects.values()){
+            lastModified = Math.max(lastModified, object.timestamp);
+        }
+        return lastModified;
+    }
+
+    private SwiftResponse listObjects(SwiftRequest request, SwiftStore.StoredContainer container){
+        String delimiter = request.query.get("delimiter");
+        List<String> names = SwiftStore.list(container.objects, request.query.get("prefix"), delimiter,
+                request.query.get("marker"), request.query.get("end_marker"), getLimit(request));
+
+        if(isJSON(request)){
+            StringBuilder json = new StringBuilder("[");
+            for(String name : names){
+                SwiftStore.StoredObject object = container.objects.get(name);
+                appendSeparator(json);
+                if(object == null){
+                    json.append("{\"subdir\":").append(quote(name)).append('}');
+                    continue;
+                }
+                json.append("{\"name\":").append(quote(name))
+                        .append(",\"hash\":").append(quote(object.etag))
+                        .append(",\"bytes\":").append(object.data.length)
+                        .append(",\"content_type\":").append(quote(object.contentType))
+                        .append(",\"last_modified\":").append(quote(isoDate(object.timestamp))).append('}');
+            }
+            return jsonResponse(json.append(']'));
+        }
+
+        return textListing(names);
+    }
+
+    private SwiftResponse handleObject(SwiftRequest request){
+        SwiftStore.StoredContainer container = store.containers.get(request.container);
+        if(container == null){
+            return new SwiftResponse(404, "Not Found");
+        }
+
+        switch(request.method){
+            case "PUT":
+                String copyFrom = request.header("X-Copy-From");
+                if(copyFrom != null){
+                    return copy(request, copyFrom, request.container, request.object);
+                }
+                return putObject(request, container);
+            case "COPY":
+                String destination = request.header("Destination");
+                if(destination == null){
+                    return new SwiftResponse(412, "You must provide a Destination header.");
+                }
+                String[] destinationParts = stripLeadingSlash(decode(destination)).split("/", 2);
+                if(destinationParts.length < 2){
+                    return new SwiftResponse(412, "Destination header must be of the form <container name>/<object name>");
+                }
+                return copy(request, request.container + "/" + request.object, destinationParts[0], destinationParts[1]);
+            default:
+                break;
+        }
+
+        SwiftStore.StoredObject object = container.objects.get(request.object);
+        if(object == null){
+            return new SwiftResponse(404, "Not Found");
+        }
+
+        switch(request.method){
+            case "GET":
+            case "HEAD":
+                return getObject(request, object);
+            case "POST":
+                object.metadata.clear();
+                updateMetadata(object.metadata, request.headers, "X-Object-Meta-", "X-Remove-Object-Meta-");
+                object.timestamp = now();
+                return new SwiftResponse(202);
+            case "DELETE":
+                container.objects.remove(request.object);
+                if(object.segments != null && "delete".equals(request.query.get("multipart-manifest"))){
+                    for(String segment : object.segments){
+                        String[] segmentParts = stripLeadingSlash(segment).split("/", 2);
+                        SwiftStore.StoredContainer segmentContainer = store.containers.get(segmentParts[0]);
+                        if(segmentContainer != null && segmentParts.length == 2){
+                            segmentContainer.objects.remove(segmentParts[1]);
+                        }
+                    }
+                }
+                return new SwiftResponse(204);
+            default:
+                return new SwiftResponse(405);
+        }
+    }
+
+    private SwiftResponse putObject(SwiftRequest request, SwiftStore.StoredContainer container){
+        String contentType = request.header("Content-Type");
+        if(contentType == null){
+            contentType = "application/octet-stream";
+        }
+
+        SwiftStore.StoredObject object;
+
+        if("put".equals(request.query.get("multipart-manifest"))){
+            String manifestJSON = new String(request.body);
+            List<String> segments = new ArrayList<>();
+            StringBuilder segmentETags = new StringBuilder();
+
+            Matcher segmentMatcher = SLO_SEGMENT.matcher(manifestJSON);
+            while(segmentMatcher.find()){
+                String path = segmentMatcher.group(1);
+                String[] pathParts = stripLeadingSlash(path).split("/", 2);
+                SwiftStore.StoredObject segment = pathParts.length == 2 ? store.getObject(pathParts[0], pathParts[1]) : null;
+                if(segment == null){
+                    return new SwiftResponse(400, "Errors:\n" + path + ", 404 Not Found");
+                }
+
+                Matcher etagMatcher = SLO_ETAG.matcher(segmentMatcher.group());
+                if(etagMatcher.find() && etagMatcher.group(1).length() > 0 && !etagMatcher.group(1).equalsIgnoreCase(segment.etag)){
+                    return new SwiftResponse(400, "Errors:\n" + path + ", Etag Mismatch");
+                }
+                Matcher sizeMatcher = SLO_SIZE.matcher(segmentMatcher.group());
+                if(sizeMatcher.find() && Long.parseLong(sizeMatcher.group(1)) != segment.data.length){
+                    return new SwiftResponse(400, "Errors:\n" + path + ", Size Mismatch");
+                }
+
+                segments.add(path);
+                segmentETags.append(segment.etag);
+            }
+
+            if(segments.isEmpty()){
+                return new SwiftResponse(400, "Manifest must have at least one segment.");
+            }
+
+            object = new SwiftStore.StoredObject(request.object, new byte[0], md5(segmentETags.toString().getBytes()), contentType, now());
+            object.segments = segments;
+            object.manifestJSON = manifestJSON;
+        }
+        else{
+            String etag = md5(request.body);
+            String expectedETag = request.header("ETag");
+            if(expectedETag != null && !expectedETag.replace("\"", "").equalsIgnoreCase(etag)){
+                return new SwiftResponse(422, "Unprocessable Entity");
+            }
+
+            object = new SwiftStore.StoredObject(request.object, request.body, etag, contentType, now());
+            object.manifest = request.header("X-Object-Manifest");
+        }
+
+        updateMetadata(object.metadata, request.headers, "X-Object-Meta-", null);
+        container.objects.put(request.object, object);
+
+        SwiftResponse response = new SwiftResponse(201);
+        response.headers.put("ETag", object.etag);
+        response.headers.put("Last-Modified", httpDate(object.timestamp));
+        return response;
+    }
+
+    private SwiftResponse copy(SwiftRequest request, String source, String destinationContainer, String destinationObject){
+        String[] sourceParts = stripLeadingSlash(decode(source)).split("/", 2);
+        SwiftStore.StoredObject sourceObject = sourceParts.length == 2 ? store.getObject(sourceParts[0], sourceParts[1]) : null;
+        if(sourceObject == null){
+            return new SwiftResponse(404, "Not Found");
+        }
+
+        SwiftStore.StoredContainer container = store.containers.get(destinationContainer);
+        if(container == null){
+            return new SwiftResponse(404, "Not Found");
+        }
+
+        boolean manifestOnly = "get".equals(request.query.get("multipart-manifest"));
+
+        SwiftStore.StoredObject copy;
+        if(sourceObject.isLargeObject() && !manifestOnly){
+            byte[] data = assemble(sourceObject);
+            if(data == null){
+                return new SwiftResponse(409, "Conflict");
+            }
+            copy = new SwiftStore.StoredObject(destinationObject, data, md5(data), sourceObject.contentType, now());
+        }
+        else{
+            copy = new SwiftStore.StoredObject(destinationObject, sourceObject.data, sourceObject.etag, sourceObject.contentType, now());
+            copy.manifest = sourceObject.manifest;
+            copy.segments = sourceObject.segments;
+            copy.manifestJSON = sourceObject.manifestJSON;
+        }
+
+        if(!"true".equalsIgnoreCase(request.header("X-Fresh-Metadata"))){
+            copy.metadata.putAll(sourceObject.metadata);
+        }
+        updateMetadata(copy.metadata, request.headers, "X-Object-Meta-", null);
+
+        container.objects.put(destinationObject, copy);
+
+        SwiftResponse response = new SwiftResponse(201);
+        response.headers.put("ETag", copy.etag);
+        response.headers.put("X-Copied-From", sourceParts[0] + "/" + sourceParts[1]);
+        response.headers.put("Last-Modified", httpDate(copy.timestamp));
+        return response;
+    }
+
+    private SwiftResponse getObject(SwiftRequest request, SwiftStore.StoredObject object){
+        if(object.segments != null && "get".equals(request.query.get("multipart-manifest"))){
+            SwiftResponse response = new SwiftResponse(200, object.manifestJSON);
+            response.headers.put("Content-Type", "application/json; charset=utf-8");
+            response.headers.put("X-Static-Large-Object", "True");
+            return response;
+        }
+
+        byte[] data = assemble(object);
+        if(data == null){
+            //Like Swift, a static large object with a missing segment cannot be read.
+            return new SwiftResponse(409, "Conflict");
+        }
+        String etag = object.isLargeObject() ? "\"" + object.etag + "\"" : object.etag;
+
+        String ifNoneMatch = request.header("If-None-Match");
+        if(ifNoneMatch != null && ifNoneMatch.replace("\"", "").equalsIgnoreCase(object.etag)){
+            SwiftResponse response = new SwiftResponse(304);
+            response.headers.put("ETag", etag);
+            return response;
+        }
+
+        String ifMatch = request.header("If-Match");
+        if(ifMatch != null && !ifMatch.replace("\"", "").equalsIgnoreCase(object.etag)){
+            return new SwiftResponse(412, "Precondition Failed");
+        }
+
+        SwiftResponse response;
+        String range = request.header("Range");
+        Matcher rangeMatcher = range == null ? null : RANGE.matcher(range.trim());
+
+        if(rangeMatcher != null && rangeMatcher.matches() && (rangeMatcher.group(1).length() > 0 || rangeMatcher.group(2).length() > 0)){
+            long start;
+            long end;
+            if(rangeMatcher.group(1).length() == 0){
+                long suffix = Long.parseLong(rangeMatcher.group(2));
+                start = Math.max(0, data.length - suffix);
+                end = data.length - 1;
+            }
+            else{
+                start = Long.parseLong(rangeMatcher.group(1));
+                end = rangeMatcher.group(2).length() == 0 ? data.length - 1 : Math.min(Long.parseLong(rangeMatcher.group(2)), data.length - 1);
+            }
+
+            if(start >= data.length || start > end){
+                response = new SwiftResponse(416, "Requested Range Not Satisfiable");
+                response.headers.put("Content-Range", "bytes */" + data.length);
+                return response;
+            }
+
+            byte[] slice = new byte[(int) (end - start + 1)];
+            System.arraycopy(data, (int) start, slice, 0, slice.length);
+            response = new SwiftResponse(206, slice);
+            response.headers.put("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+        }
+        else{
+            response = new SwiftResponse(200, data);
+        }
+
+        response.headers.put("ETag", etag);
+        response.headers.put("Content-Type", object.contentType);
+        response.headers.put("Accept-Ranges", "bytes");
+        response.headers.put("Last-Modified", httpDate(object.timestamp));
+        response.headers.put("X-Timestamp", formatTimestamp(object.timestamp));
+        if(object.manifest != null){
+            response.headers.put("X-Object-Manifest", object.manifest);
+        }
+        if(object.segments != null){
+            response.headers.put("X-Static-Large-Object", "True");
+        }
+        putMetadata(response, object.metadata);
+        return response;
+    }
+
+    /**
+     * Get the data of an object, concatenating the segments of large objects.
+     * @return the data, or null if a segment of a static large object is missing
+     */
+    private byte[] assemble(SwiftStore.StoredObject object){
+        if(!object.isLargeObject()){
+            return object.data;
+        }
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        if(object.manifest != null){
+            String[] manifestParts = stripLeadingSlash(decode(object.manifest)).split("/", 2);
+            SwiftStore.StoredContainer segmentContainer = store.containers.get(manifestParts[0]);
+            String prefix = manifestParts.length == 2 ? manifestParts[1] : "";
+            if(segmentContainer != null){
+                for(Map.Entry<String, SwiftStore.StoredObject> segment : segmentContainer.objects.tailMap(prefix, true).entrySet()){
+                    if(!segment.getKey().startsWith(prefix)){
+                        break;
+                    }
+                    data.write(segment.getValue().data, 0, segment.getValue().data.length);
+                }
+            }
+        }
+        else{
+            for(String path : object.segments){
+                String[] pathParts = stripLeadingSlash(path).split("/", 2);
+                SwiftStore.StoredObject segment = store.getObject(pathParts[0], pathParts[1]);
+                byte[] segmentData = segment != null ? assemble(segment) : null;
+                if(segmentData == null){
+                    return null;
+                }
+                data.write(segmentData, 0, segmentData.length);
+            }
+        }
+
+        return data.toByteArray();
+    }
+
+    private SwiftResponse bulkDelete(SwiftRequest request){
+        int deleted = 0;
+        int notFound = 0;
+        List<String> errors = new ArrayList<>();
+
+        for(String line : new String(request.body).split("\n")){
+            String path = stripLeadingSlash(decode(line.trim()));
+            if(path.length() == 0){
+                continue;
+            }
+
+            String[] pathParts = path.split("/", 2);
+            SwiftStore.StoredContainer container = store.containers.get(pathParts[0]);
+
+            if(pathParts.length == 1){
+                if(container == null){
+                    notFound++;
+                }
+                else if(!container.objects.isEmpty()){
+                    errors.add("[" + quote("/" + path) + ",\"409 Conflict\"]");
+                }
+                else{
+                    store.containers.remove(pathParts[0]);
+                    deleted++;
+                }
+            }
+            else if(container == null || container.objects.remove(pathParts[1]) == null){
+                notFound++;
+            }
+            else{
+                deleted++;
+            }
+        }
+
+        StringBuilder json = new StringBuilder("{")
+                .append("\"Number Deleted\":").append(deleted)
+                .append(",\"Number Not Found\":").append(notFound)
+                .append(",\"Response Status\":").append(quote(errors.isEmpty() ? "200 OK" : "400 Bad Request"))
+                .append(",\"Response Body\":\"\"")
+                .append(",\"Errors\":[");
+        for(int i = 0; i < errors.size(); i++){
+            json.append(i > 0 ? "," : "").append(errors.get(i));
+        }
+        json.append("]}");
+
+        SwiftResponse response = new SwiftResponse(200, json.toString());
+        response.headers.put("Content-Type", "application/json; charset=utf-8");
+        return response;
+    }
+
+    private static void updateMetadata(Map<String, String> metadata, Headers headers, String prefix, String removePrefix){
+        for(Map.Entry<String, List<String>> header : headers.entrySet()){
+            String name = header.getKey();
+            String value = header.getValue().isEmpty() ? "" : header.getValue().get(0);
+
+            if(removePrefix != null && name.regionMatches(true, 0, removePrefix, 0, removePrefix.length())){
+                metadata.remove(name.substring(removePrefix.length()));
+            }
+            else if(name.regionMatches(true, 0, prefix, 0, prefix.length())){
+                String key = name.substring(prefix.length());
+                if(value.length() == 0){
+                    metadata.remove(key);
+                }
+                else{
+                    metadata.put(key, value);
+                }
+            }
+        }
+    }
+
+    private static void putMetadata(SwiftResponse response, TreeMap<String, String> metadata){
+        String prefix = response.headers.containsKey("X-Account-Object-Count") ? "X-Account-Meta-" :
+                response.headers.containsKey("X-Container-Object-Count") ? "X-Container-Meta-" : "X-Object-Meta-";
+        for(Map.Entry<String, String> entry : metadata.entrySet()){
+            response.headers.put(prefix + entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static SwiftResponse textListing(List<String> names){
+        if(names.isEmpty()){
+            return new SwiftResponse(204);
+        }
+        StringBuilder text = new StringBuilder();
+        for(String name : names){
+            text.append(name).append('\n');
+        }
+        SwiftResponse response = new SwiftResponse(200, text.toString());
+        response.headers.put("Content-Type", "text/plain; charset=utf-8");
+        return response;
+    }
+
+    private static SwiftResponse jsonResponse(StringBuilder json){
+        SwiftResponse response = new SwiftResponse(200, json.toString());
+        response.headers.put("Content-Type", "application/json; charset=utf-8");
+        return response;
+    }
+
+    private static boolean isJSON(SwiftRequest request){
+        String format = request.query.get("format");
+        String accept = request.header("Accept");
+        return "json".equals(format) || (format == null && accept != null && accept.contains("application/json"));
+    }
+
+    private static int getLimit(SwiftRequest request){
+        String limit = request.query.get("limit");
+        try {
+            return limit == null ? DEFAULT_LISTING_LIMIT : Math.min(DEFAULT_LISTING_LIMIT, Integer.parseInt(limit));
+        } catch (NumberFormatException e) {
+            return DEFAULT_LISTING_LIMIT;
+        }
+    }
+
+    private static void appendSeparator(StringBuilder json){
+        if(json.length() > 1){
+            json.append(',');
+        }
+    }
+
+    static String quote(String value){
+        StringBuilder quoted = new StringBuilder("\"");
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            switch(c){
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                default:
+                    if(c < 0x20){
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    }
+                    else{
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    static Map<String, String> parseQuery(String rawQuery){
+        Map<String, String> query = new HashMap<>();
+        if(rawQuery == null){
+            return query;
+        }
+        for(String parameter : rawQuery.split("&")){
+            if(parameter.length() == 0){
+                continue;
+            }
+            int index = parameter.indexOf('=');
+            if(index < 0){
+                query.put(decode(parameter), "");
+            }
+            else{
+                query.put(decode(parameter.substring(0, index)), decode(parameter.substring(index + 1)));
+            }
+        }
+        return query;
+    }
+
+    private static String decode(String value){
+        try {
+            return URLDecoder.decode(value.replace("+", "%2B"), "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    private static String stripLeadingSlash(String path){
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+
+    static String md5(byte[] data){
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(data);
+            StringBuilder hex = new StringBuilder();
+            for(byte b : digest){
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static double now(){
+        return System.currentTimeMillis() / 1000.0;
+    }
+
+    private static String formatTimestamp(double timestamp){
+        return String.format(Locale.US, "%.5f", timestamp);
+    }
+
+    private static String httpDate(double timestamp){
+        SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return dateFormat.format(new Date((long) (timestamp * 1000)));
+    }
+
+    private static String isoDate(double timestamp){
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'000'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return dateFormat.format(new Date((long) (timestamp * 1000)));
+    }
+
+    static byte[] readBody(HttpExchange exchange, ObjectStorageStandIn standIn) throws IOException {
+        InputStream in = ThrottledStreams.throttle(exchange.getRequestBody(), standIn);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[16384];
+        int read;
+        while((read = in.read(buffer, 0, buffer.length)) != -1){
+            body.write(buffer, 0, read);
+        }
+        in.close();
+        return body.toByteArray();
+    }
+
+    static void send(HttpExchange exchange, ObjectStorageStandIn standIn, SwiftResponse response) throws IOException {
+        String transactionID = String.format("tx%021x-%010x", transactionCounter.incrementAndGet(), System.currentTimeMillis() / 1000);
+
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("X-Trans-Id", transactionID);
+        headers.set("X-Openstack-Request-Id", transactionID);
+        headers.set("Date", httpDate(now()));
+        for(Map.Entry<String, String> header : response.headers.entrySet()){
+            headers.set(header.getKey(), header.getValue());
+        }
+
+        if(response.body == null || response.body.length == 0){
+            if(response.contentLength >= 0){
+                headers.set("Content-Length", "" + response.contentLength);
+            }
+            exchange.sendResponseHeaders(response.status, -1);
+            return;
+        }
+
+        exchange.sendResponseHeaders(response.status, response.body.length);
+        OutputStream out = ThrottledStreams.throttle(exchange.getResponseBody(), standIn);
+
+        long stall = standIn.nextStall();
+        int half = stall > 0 ? response.body.length / 2 : 0;
+        if(half > 0){
+            out.write(response.body, 0, half);
+            out.flush();
+            try {
+                Thread.sleep(stall);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while stalling.");
+            }
+        }
+
+        out.write(response.body, half, response.body.length - half);
+        out.close();
+    }
+}
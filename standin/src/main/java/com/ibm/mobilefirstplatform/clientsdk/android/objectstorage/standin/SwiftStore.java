@@ -0,0 +1,139 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The in-memory state of the stand-in: a single account with containers and objects, and their metadata.
+ * All methods are called with the store locked by the caller, see {@link SwiftHandler}.
+ */
+class SwiftStore {
+    final TreeMap<String, String> accountMetadata = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    final TreeMap<String, StoredContainer> containers = new TreeMap<>();
+
+    static class StoredContainer {
+        final String name;
+        final TreeMap<String, StoredObject> objects = new TreeMap<>();
+        final TreeMap<String, String> metadata = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        final double createdAt;
+        double putTimestamp;
+
+        StoredContainer(String name, double timestamp){
+            this.name = name;
+            this.createdAt = timestamp;
+            this.putTimestamp = timestamp;
+        }
+
+        long getBytesUsed(){
+            long bytes = 0;
+            for(StoredObject object : objects.values()){
+                bytes += object.data.length;
+            }
+            return bytes;
+        }
+    }
+
+    static class StoredObject {
+        final String name;
+        final byte[] data;
+        final String etag;
+        final String contentType;
+        final TreeMap<String, String> metadata = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        double timestamp;
+
+        //Dynamic large objects: "container/prefix" of the segments.
+        String manifest;
+        //Static large objects: the segment paths, in order, each "/container/object".
+        List<String> segments;
+        String manifestJSON;
+
+        StoredObject(String name, byte[] data, String etag, String contentType, double timestamp){
+            this.name = name;
+            this.data = data;
+            this.etag = etag;
+            this.contentType = contentType;
+            this.timestamp = timestamp;
+        }
+
+        boolean isLargeObject(){
+            return manifest != null || segments != null;
+        }
+    }
+
+    long getObjectCount(){
+        long count = 0;
+        for(StoredContainer container : containers.values()){
+            count += container.objects.size();
+        }
+        return count;
+    }
+
+    long getBytesUsed(){
+        long bytes = 0;
+        for(StoredContainer container : containers.values()){
+            bytes += container.getBytesUsed();
+        }
+        return bytes;
+    }
+
+    StoredObject getObject(String container, String object){
+        StoredContainer storedContainer = containers.get(container);
+        return storedContainer == null ? null : storedContainer.objects.get(object);
+    }
+
+    /**
+     * Select the listing entries after the marker, before the end marker, and with the given prefix.
+     * With a delimiter, names containing it after the prefix are rolled up into a single subdir entry ending with the delimiter.
+     */
+    static <T> List<String> list(NavigableMap<String, T> entries, String prefix, String delimiter, String marker, String endMarker, int limit){
+        NavigableMap<String, T> candidates = entries;
+        if(marker != null){
+            candidates = candidates.tailMap(marker, false);
+        }
+        if(endMarker != null){
+            candidates = candidates.headMap(endMarker, false);
+        }
+        if(prefix != null){
+            candidates = candidates.tailMap(prefix, true);
+        }
+
+        List<String> names = new ArrayList<>();
+        String lastSubdir = null;
+
+        for(String name : candidates.keySet()){
+            if(names.size() >= limit){
+                break;
+            }
+            if(prefix != null && !name.startsWith(prefix)){
+                break;
+            }
+            if(delimiter != null){
+                int index = name.indexOf(delimiter, prefix == null ? 0 : prefix.length());
+                if(index >= 0){
+                    String subdir = name.substring(0, index + delimiter.length());
+                    if(!subdir.equals(lastSubdir)){
+                        names.add(subdir);
+                        lastSubdir = subdir;
+                    }
+                    continue;
+                }
+            }
+            names.add(name);
+        }
+
+        return names;
+    }
+}
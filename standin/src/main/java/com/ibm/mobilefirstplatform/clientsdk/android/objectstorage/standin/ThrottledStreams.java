@@ -0,0 +1,103 @@
+/*
+ * IBM Confidential OCO Source Materials
+ *
+ * 5725-I43 Copyright IBM Corp. 2006, 2016
+ *
+ * The source code for this program is not published or otherwise
+ * divested of its trade secrets, irrespective of what has
+ * been deposited with the U.S. Copyright Office.
+ *
+ */
+package com.ibm.mobilefirstplatform.clientsdk.android.objectstorage.standin;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Streams that hold data transfers to the bandwidth limit configured on the stand-in. The limit is read for every chunk,
+ * so changing it affects transfers that are already running.
+ */
+final class ThrottledStreams {
+    private static final int MAX_CHUNK_SIZE = 8192;
+
+    private ThrottledStreams(){
+    }
+
+    static OutputStream throttle(final OutputStream out, final ObjectStorageStandIn standIn){
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                while(length > 0){
+                    int chunk = chunkSize(standIn.getBandwidthLimit(), length);
+                    out.write(bytes, offset, chunk);
+                    pause(standIn.getBandwidthLimit(), chunk);
+                    offset += chunk;
+                    length -= chunk;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+
+    static InputStream throttle(final InputStream in, final ObjectStorageStandIn standIn){
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                int read = in.read(bytes, offset, chunkSize(standIn.getBandwidthLimit(), length));
+                if(read > 0){
+                    pause(standIn.getBandwidthLimit(), read);
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    private static int chunkSize(long bytesPerSecond, int length){
+        if(bytesPerSecond <= 0){
+            return length;
+        }
+        //Keep chunks to about 10ms worth of data, so the rate is smooth.
+        long chunk = Math.max(1, Math.min(MAX_CHUNK_SIZE, bytesPerSecond / 100));
+        return (int) Math.min(length, chunk);
+    }
+
+    private static void pause(long bytesPerSecond, int transferred) throws IOException {
+        if(bytesPerSecond <= 0){
+            return;
+        }
+        long nanos = transferred * 1000000000L / bytesPerSecond;
+        try {
+            Thread.sleep(nanos / 1000000, (int) (nanos % 1000000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while throttling.");
+        }
+    }
+}